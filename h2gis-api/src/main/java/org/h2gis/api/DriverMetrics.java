@@ -0,0 +1,93 @@
+/*
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+/**
+ * Receives the measures of a driver during the import or the export of a file.
+ *
+ * Times are given in nanoseconds. The file time is spent reading, parsing or
+ * writing the file, the database time is spent in the JDBC calls (batch
+ * inserts, commits or result set reads).
+ */
+public interface DriverMetrics {
+
+    /**
+     * Metrics that ignore all the measures
+     */
+    DriverMetrics NONE = new DriverMetrics() {
+        @Override
+        public void addRows(long rows) {
+        }
+
+        @Override
+        public void addBytes(long bytes) {
+        }
+
+        @Override
+        public void addFileTime(long nanos) {
+        }
+
+        @Override
+        public void addDatabaseTime(long nanos) {
+        }
+
+        @Override
+        public void addBatch(int rows, long nanos) {
+        }
+    };
+
+    /**
+     * @param rows Number of rows read or written
+     */
+    void addRows(long rows);
+
+    /**
+     * @param bytes Number of bytes read or written in files
+     */
+    void addBytes(long bytes);
+
+    /**
+     * @param nanos Time spent reading, parsing or writing the file
+     */
+    void addFileTime(long nanos);
+
+    /**
+     * @param nanos Time spent in the database
+     */
+    void addDatabaseTime(long nanos);
+
+    /**
+     * A batch of rows has been flushed into the database
+     *
+     * @param rows Number of rows of the batch
+     * @param nanos Time spent executing and committing the batch
+     */
+    void addBatch(int rows, long nanos);
+
+    /**
+     * @param progress Progress visitor given to the driver, may be null
+     * @return The metrics of the progress visitor, {@link #NONE} if the
+     * visitor does not collect metrics
+     */
+    static DriverMetrics of(ProgressVisitor progress) {
+        return progress instanceof DriverMetrics ? (DriverMetrics) progress : NONE;
+    }
+}
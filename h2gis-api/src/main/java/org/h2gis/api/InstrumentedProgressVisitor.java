@@ -0,0 +1,223 @@
+/*
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A progress visitor that collects the metrics reported by the drivers.
+ *
+ * The progression is forwarded to another progress visitor. Sub processes
+ * report their metrics into this visitor. The measures can also be forwarded
+ * to a listener, to publish them into a monitoring system.
+ */
+public class InstrumentedProgressVisitor implements ProgressVisitor, DriverMetrics {
+
+    private final ProgressVisitor progress;
+    private final DriverMetrics listener;
+    private final InstrumentedProgressVisitor root;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong fileTime = new AtomicLong();
+    private final AtomicLong databaseTime = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchTime = new AtomicLong();
+    private final AtomicLong maxBatchTime = new AtomicLong();
+
+    /**
+     * Collect the metrics without progression
+     */
+    public InstrumentedProgressVisitor() {
+        this(new EmptyProgressVisitor());
+    }
+
+    /**
+     * @param progress Progress visitor that receives the progression
+     */
+    public InstrumentedProgressVisitor(ProgressVisitor progress) {
+        this(progress, NONE);
+    }
+
+    /**
+     * @param progress Progress visitor that receives the progression
+     * @param listener Receives all the measures
+     */
+    public InstrumentedProgressVisitor(ProgressVisitor progress, DriverMetrics listener) {
+        this.progress = progress;
+        this.listener = listener;
+        this.root = this;
+    }
+
+    private InstrumentedProgressVisitor(ProgressVisitor progress, InstrumentedProgressVisitor root) {
+        this.progress = progress;
+        this.listener = root.listener;
+        this.root = root;
+    }
+
+    @Override
+    public ProgressVisitor subProcess(int stepCount) {
+        return new InstrumentedProgressVisitor(progress.subProcess(stepCount), root);
+    }
+
+    @Override
+    public void endStep() {
+        progress.endStep();
+    }
+
+    @Override
+    public void setStep(int idStep) {
+        progress.setStep(idStep);
+    }
+
+    @Override
+    public int getStepCount() {
+        return progress.getStepCount();
+    }
+
+    @Override
+    public void endOfProgress() {
+        progress.endOfProgress();
+    }
+
+    @Override
+    public double getProgression() {
+        return progress.getProgression();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return progress.isCanceled();
+    }
+
+    @Override
+    public void cancel() {
+        progress.cancel();
+    }
+
+    @Override
+    public void addPropertyChangeListener(String property, PropertyChangeListener listener) {
+        progress.addPropertyChangeListener(property, listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        progress.removePropertyChangeListener(listener);
+    }
+
+    @Override
+    public void addRows(long rows) {
+        root.rows.addAndGet(rows);
+        listener.addRows(rows);
+    }
+
+    @Override
+    public void addBytes(long bytes) {
+        root.bytes.addAndGet(bytes);
+        listener.addBytes(bytes);
+    }
+
+    @Override
+    public void addFileTime(long nanos) {
+        root.fileTime.addAndGet(nanos);
+        listener.addFileTime(nanos);
+    }
+
+    @Override
+    public void addDatabaseTime(long nanos) {
+        root.databaseTime.addAndGet(nanos);
+        listener.addDatabaseTime(nanos);
+    }
+
+    @Override
+    public void addBatch(int rows, long nanos) {
+        root.batchCount.incrementAndGet();
+        root.batchTime.addAndGet(nanos);
+        root.maxBatchTime.accumulateAndGet(nanos, Math::max);
+        listener.addBatch(rows, nanos);
+    }
+
+    /**
+     * @return Number of rows read or written
+     */
+    public long getRows() {
+        return root.rows.get();
+    }
+
+    /**
+     * @return Number of bytes read or written in files
+     */
+    public long getBytes() {
+        return root.bytes.get();
+    }
+
+    /**
+     * @return Time spent reading, parsing or writing files, in nanoseconds
+     */
+    public long getFileTime() {
+        return root.fileTime.get();
+    }
+
+    /**
+     * @return Time spent in the database, in nanoseconds
+     */
+    public long getDatabaseTime() {
+        return root.databaseTime.get();
+    }
+
+    /**
+     * @return Number of batches flushed into the database
+     */
+    public long getBatchCount() {
+        return root.batchCount.get();
+    }
+
+    /**
+     * @return Total time spent flushing the batches, in nanoseconds
+     */
+    public long getBatchTime() {
+        return root.batchTime.get();
+    }
+
+    /**
+     * @return Time spent flushing the slowest batch, in nanoseconds
+     */
+    public long getMaxBatchTime() {
+        return root.maxBatchTime.get();
+    }
+
+    /**
+     * @return Number of rows processed by second of file and database time
+     */
+    public double getRowsPerSecond() {
+        long time = getFileTime() + getDatabaseTime();
+        return time > 0 ? getRows() / (time / 1e9) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d bytes, file %d ms, database %d ms, %d batches (max %d ms), %.0f rows/s",
+                getRows(), getBytes(), TimeUnit.NANOSECONDS.toMillis(getFileTime()),
+                TimeUnit.NANOSECONDS.toMillis(getDatabaseTime()), getBatchCount(),
+                TimeUnit.NANOSECONDS.toMillis(getMaxBatchTime()), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.benchmarks;
+
+import org.h2gis.functions.io.utility.IOMethods;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import and export of a point table through each file driver that supports
+ * both directions.
+ *
+ * Non spatial formats (dbf, csv, tsv) are fed with the attributes of the points only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DriverBenchmark {
+
+    @Param({"shp", "dbf", "geojson", "csv", "tsv"})
+    public String format;
+
+    @Param({"100000"})
+    public int rowCount;
+
+    private File directory;
+    private Connection connection;
+    private IOMethods ioMethods;
+    private String sourceTable;
+    private File importFile;
+    private File exportFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        directory = SyntheticData.createWorkingDirectory();
+        connection = SyntheticData.createDataBase(directory, "drivers");
+        ioMethods = new IOMethods();
+        SyntheticData.createPoints(connection, "POINTS", rowCount, 1000);
+        importFile = new File(directory, "points." + format);
+        exportFile = new File(directory, "export." + format);
+        if (ioMethods.getExportDriverFromFile(importFile).isSpatialFormat(format)) {
+            sourceTable = "POINTS";
+        } else {
+            sourceTable = "ATTRIBUTES";
+            try (Statement st = connection.createStatement()) {
+                st.execute("CREATE TABLE ATTRIBUTES AS SELECT ID, NAME, VAL FROM POINTS");
+            }
+        }
+        ioMethods.exportToFile(connection, sourceTable, importFile.getAbsolutePath(), null, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        connection.close();
+        SyntheticData.deleteWorkingDirectory(directory);
+    }
+
+    @Benchmark
+    public String[] importFile() throws SQLException {
+        return ioMethods.importFile(connection, importFile.getAbsolutePath(), "IMPORTED", null, true);
+    }
+
+    @Benchmark
+    public String[] exportFile() throws SQLException {
+        return ioMethods.exportToFile(connection, sourceTable, exportFile.getAbsolutePath(), null, true);
+    }
+}
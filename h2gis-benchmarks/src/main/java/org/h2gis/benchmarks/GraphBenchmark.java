@@ -0,0 +1,120 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.benchmarks;
+
+import org.h2gis.network.functions.NetworkFunctions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph creation and shortest path queries on a synthetic road grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphBenchmark {
+
+    /** Number of nodes on each side of the road grid */
+    @Param({"100"})
+    public int side;
+
+    private File directory;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        directory = SyntheticData.createWorkingDirectory();
+        connection = SyntheticData.createDataBase(directory, "graph");
+        NetworkFunctions.load(connection);
+        SyntheticData.createRoadGrid(connection, "ROADS", side, 10);
+        try (Statement st = connection.createStatement()) {
+            st.execute("CALL ST_GRAPH('ROADS')");
+            st.execute("CREATE TABLE EDGES AS SELECT A.*, ST_LENGTH(B.THE_GEOM) LENGTH "
+                    + "FROM ROADS_EDGES A, ROADS B WHERE A.EDGE_ID = B.ID");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        connection.close();
+        SyntheticData.deleteWorkingDirectory(directory);
+    }
+
+    @Benchmark
+    public boolean createGraph() throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ST_GRAPH('ROADS', 'THE_GEOM', 0.1, false, true)")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Distances from one vertex to all the others
+     */
+    @Benchmark
+    public long shortestPathLengthOneToAll() throws SQLException {
+        return count("SELECT COUNT(*) FROM ST_SHORTESTPATHLENGTH('EDGES', 'undirected', 1)");
+    }
+
+    @Benchmark
+    public long shortestPathLengthWeighted() throws SQLException {
+        return count("SELECT COUNT(*) FROM ST_SHORTESTPATHLENGTH('EDGES', 'undirected', 'LENGTH', 1)");
+    }
+
+    /**
+     * Distance between the two opposite corners of the grid
+     */
+    @Benchmark
+    public long shortestPathLengthOneToOne() throws SQLException {
+        return count("SELECT COUNT(*) FROM ST_SHORTESTPATHLENGTH('EDGES', 'undirected', 'LENGTH', 1, "
+                + side * side + ")");
+    }
+
+    private long count(String query) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
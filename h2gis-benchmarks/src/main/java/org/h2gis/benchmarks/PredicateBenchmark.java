@@ -0,0 +1,147 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.benchmarks;
+
+import org.h2gis.functions.spatial.predicates.ST_Contains;
+import org.h2gis.functions.spatial.predicates.ST_Intersects;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spatial predicates, called directly and through indexed spatial joins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PredicateBenchmark {
+
+    @Param({"100000"})
+    public int pointCount;
+
+    @Param({"1000"})
+    public int polygonCount;
+
+    @Param({"64"})
+    public int vertices;
+
+    private File directory;
+    private Connection connection;
+    private Geometry[] points;
+    private Geometry polygon;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        directory = SyntheticData.createWorkingDirectory();
+        connection = SyntheticData.createDataBase(directory, "predicates");
+        SyntheticData.createPoints(connection, "POINTS", pointCount, 1000);
+        SyntheticData.createPolygons(connection, "POLYGONS", polygonCount, vertices, 1000);
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE SPATIAL INDEX ON POINTS(THE_GEOM)");
+            st.execute("CREATE SPATIAL INDEX ON POLYGONS(THE_GEOM)");
+            List<Geometry> geometries = new ArrayList<>(pointCount);
+            try (ResultSet rs = st.executeQuery("SELECT THE_GEOM FROM POINTS")) {
+                while (rs.next()) {
+                    geometries.add((Geometry) rs.getObject(1));
+                }
+            }
+            points = geometries.toArray(new Geometry[0]);
+            try (ResultSet rs = st.executeQuery("SELECT ST_UNION(ST_ACCUM(THE_GEOM)) FROM POLYGONS")) {
+                rs.next();
+                polygon = (Geometry) rs.getObject(1);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        connection.close();
+        SyntheticData.deleteWorkingDirectory(directory);
+    }
+
+    /**
+     * The same multi polygon tested against all the points
+     */
+    @Benchmark
+    public int intersectsRepeatedGeometry() throws SQLException {
+        int count = 0;
+        for (Geometry point : points) {
+            if (ST_Intersects.isIntersects(polygon, point)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int containsRepeatedGeometry() throws SQLException {
+        int count = 0;
+        for (Geometry point : points) {
+            if (ST_Contains.isContains(polygon, point)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long intersectsJoin() throws SQLException {
+        return count("SELECT COUNT(*) FROM POLYGONS A, POINTS B WHERE A.THE_GEOM && B.THE_GEOM "
+                + "AND ST_INTERSECTS(A.THE_GEOM, B.THE_GEOM)");
+    }
+
+    @Benchmark
+    public long dWithinJoin() throws SQLException {
+        return count("SELECT COUNT(*) FROM POINTS A, POINTS B WHERE A.ID < 1000 "
+                + "AND ST_EXPAND(A.THE_GEOM, 10) && B.THE_GEOM AND ST_DWITHIN(A.THE_GEOM, B.THE_GEOM, 10)");
+    }
+
+    private long count(String query) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.benchmarks;
+
+import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.functions.io.dbf.internal.DbaseFileReader;
+import org.h2gis.functions.io.geojson.GeoJsonReaderDriver;
+import org.h2gis.functions.io.shp.internal.IndexFile;
+import org.h2gis.functions.io.shp.internal.ShapefileReader;
+import org.h2gis.functions.io.utility.IOMethods;
+import org.h2gis.postgis_jts.JtsBinaryParser;
+import org.h2gis.postgis_jts.JtsBinaryWriter;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Low level readers, without the cost of the SQL layer when possible :
+ * ShapefileReader, DbaseFileReader, GeoJsonReaderDriver and the PostGIS EWKB
+ * parser JtsBinaryParser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"100000"})
+    public int rowCount;
+
+    @Param({"32"})
+    public int vertices;
+
+    private File directory;
+    private Connection connection;
+    private File shpFile;
+    private File shxFile;
+    private File dbfFile;
+    private File geojsonFile;
+    private String[] hexEWKB;
+    private byte[][] binaryEWKB;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        directory = SyntheticData.createWorkingDirectory();
+        connection = SyntheticData.createDataBase(directory, "readers");
+        SyntheticData.createPolygons(connection, "POLYGONS", rowCount, vertices, 10000);
+        IOMethods ioMethods = new IOMethods();
+        shpFile = new File(directory, "polygons.shp");
+        shxFile = new File(directory, "polygons.shx");
+        dbfFile = new File(directory, "polygons.dbf");
+        geojsonFile = new File(directory, "polygons.geojson");
+        ioMethods.exportToFile(connection, "POLYGONS", shpFile.getAbsolutePath(), null, true);
+        ioMethods.exportToFile(connection, "POLYGONS", geojsonFile.getAbsolutePath(), null, true);
+        JtsBinaryWriter writer = new JtsBinaryWriter();
+        List<String> hexValues = new ArrayList<>(rowCount);
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT THE_GEOM FROM POLYGONS")) {
+            while (rs.next()) {
+                hexValues.add(writer.writeHexed((Geometry) rs.getObject(1)));
+            }
+        }
+        hexEWKB = hexValues.toArray(new String[0]);
+        binaryEWKB = new byte[hexEWKB.length][];
+        for (int i = 0; i < hexEWKB.length; i++) {
+            binaryEWKB[i] = writer.writeBinary(new JtsBinaryParser().parse(hexEWKB[i]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        connection.close();
+        SyntheticData.deleteWorkingDirectory(directory);
+    }
+
+    @Benchmark
+    public void shapefileReader(Blackhole blackhole) throws IOException {
+        try (FileInputStream shpStream = new FileInputStream(shpFile);
+             FileInputStream shxStream = new FileInputStream(shxFile)) {
+            ShapefileReader reader = new ShapefileReader(shpStream.getChannel());
+            IndexFile index = new IndexFile(shxStream.getChannel());
+            int recordCount = index.getRecordCount();
+            for (int i = 0; i < recordCount; i++) {
+                blackhole.consume(reader.geomAt(index.getOffset(i)));
+            }
+            reader.close();
+            index.close();
+        }
+    }
+
+    @Benchmark
+    public void dbaseFileReader(Blackhole blackhole) throws IOException {
+        try (FileInputStream dbfStream = new FileInputStream(dbfFile)) {
+            DbaseFileReader reader = new DbaseFileReader(dbfStream.getChannel(), null);
+            int recordCount = reader.getRecordCount();
+            int fieldCount = reader.getFieldCount();
+            for (int row = 0; row < recordCount; row++) {
+                for (int column = 0; column < fieldCount; column++) {
+                    blackhole.consume(reader.getFieldValue(row, column));
+                }
+            }
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public String geoJsonReaderDriver() throws SQLException, IOException {
+        return new GeoJsonReaderDriver(connection, geojsonFile, null, true)
+                .read(new EmptyProgressVisitor(), "GEOJSON_READ");
+    }
+
+    @Benchmark
+    public void jtsBinaryParserHex(Blackhole blackhole) {
+        JtsBinaryParser parser = new JtsBinaryParser();
+        for (String value : hexEWKB) {
+            blackhole.consume(parser.parse(value));
+        }
+    }
+
+    @Benchmark
+    public void jtsBinaryParserBinary(Blackhole blackhole) {
+        JtsBinaryParser parser = new JtsBinaryParser();
+        for (byte[] value : binaryEWKB) {
+            blackhole.consume(parser.parse(value));
+        }
+    }
+}
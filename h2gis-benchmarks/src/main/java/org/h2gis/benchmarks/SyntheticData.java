@@ -0,0 +1,252 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.benchmarks;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic data sets used by the benchmarks.
+ *
+ * All the generators use a fixed seed, two runs of a benchmark always work on
+ * the same geometries.
+ */
+public final class SyntheticData {
+
+    /** Seed of all the random generators */
+    public static final long SEED = 42;
+    private static final int BATCH_SIZE = 1000;
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Create a temporary directory that holds the database and the exported files
+     *
+     * @return The directory
+     * @throws IOException
+     */
+    public static File createWorkingDirectory() throws IOException {
+        return Files.createTempDirectory("h2gis-benchmarks").toFile();
+    }
+
+    /**
+     * Create a spatial database in the given directory
+     *
+     * @param directory Working directory
+     * @param name Database name
+     * @return Connection to the database
+     * @throws SQLException
+     */
+    public static Connection createDataBase(File directory, String name) throws SQLException {
+        try {
+            return H2GISDBFactory.createSpatialDataBase(new File(directory, name).toURI().toString()
+                    .replaceFirst("^file:/+", "file:///"));
+        } catch (ClassNotFoundException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    /**
+     * Delete a working directory and all its content
+     *
+     * @param directory Working directory
+     * @throws IOException
+     */
+    public static void deleteWorkingDirectory(File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Create a table of points uniformly distributed in the square [0, size]
+     *
+     * Columns are ID INT, NAME VARCHAR, VAL DOUBLE and THE_GEOM GEOMETRY(POINT)
+     *
+     * @param connection Connection
+     * @param tableName Table to create
+     * @param count Number of points
+     * @param size Size of the covered square
+     * @throws SQLException
+     */
+    public static void createPoints(Connection connection, String tableName, int count, double size) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + tableName);
+            st.execute("CREATE TABLE " + tableName + "(ID INT PRIMARY KEY, NAME VARCHAR(20), VAL DOUBLE, "
+                    + "THE_GEOM GEOMETRY(POINT))");
+        }
+        Random random = new Random(SEED);
+        Geometry[] geometries = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            geometries[i] = FACTORY.createPoint(new Coordinate(random.nextDouble() * size,
+                    random.nextDouble() * size));
+        }
+        insert(connection, tableName, geometries, random);
+    }
+
+    /**
+     * Create a table of star shaped polygons, one polygon per cell of a regular
+     * grid covering the square [0, size]
+     *
+     * Columns are ID INT, NAME VARCHAR, VAL DOUBLE and THE_GEOM GEOMETRY(POLYGON)
+     *
+     * @param connection Connection
+     * @param tableName Table to create
+     * @param count Number of polygons
+     * @param vertices Number of vertices of each polygon
+     * @param size Size of the covered square
+     * @throws SQLException
+     */
+    public static void createPolygons(Connection connection, String tableName, int count, int vertices,
+                                      double size) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + tableName);
+            st.execute("CREATE TABLE " + tableName + "(ID INT PRIMARY KEY, NAME VARCHAR(20), VAL DOUBLE, "
+                    + "THE_GEOM GEOMETRY(POLYGON))");
+        }
+        Random random = new Random(SEED);
+        int side = (int) Math.ceil(Math.sqrt(count));
+        double cellSize = size / side;
+        Geometry[] geometries = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            double centerX = (i % side + 0.5) * cellSize;
+            double centerY = (i / side + 0.5) * cellSize;
+            geometries[i] = createStar(random, centerX, centerY, cellSize * 0.75, vertices);
+        }
+        insert(connection, tableName, geometries, random);
+    }
+
+    /**
+     * Create a road network made of a regular grid of side x side nodes, each
+     * edge of the grid is stored as a two points LINESTRING. Nodes are moved by a
+     * small random offset so that edge lengths differ.
+     *
+     * Columns are ID INT, NAME VARCHAR, VAL DOUBLE and THE_GEOM GEOMETRY(LINESTRING)
+     *
+     * @param connection Connection
+     * @param tableName Table to create
+     * @param side Number of nodes on each side of the grid
+     * @param spacing Distance between two nodes
+     * @throws SQLException
+     */
+    public static void createRoadGrid(Connection connection, String tableName, int side, double spacing) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + tableName);
+            st.execute("CREATE TABLE " + tableName + "(ID INT PRIMARY KEY, NAME VARCHAR(20), VAL DOUBLE, "
+                    + "THE_GEOM GEOMETRY(LINESTRING))");
+        }
+        Random random = new Random(SEED);
+        Coordinate[][] nodes = new Coordinate[side][side];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                nodes[i][j] = new Coordinate(i * spacing + (random.nextDouble() - 0.5) * spacing * 0.2,
+                        j * spacing + (random.nextDouble() - 0.5) * spacing * 0.2);
+            }
+        }
+        Geometry[] geometries = new Geometry[2 * side * (side - 1)];
+        int edge = 0;
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                if (i + 1 < side) {
+                    geometries[edge++] = FACTORY.createLineString(new Coordinate[]{nodes[i][j], nodes[i + 1][j]});
+                }
+                if (j + 1 < side) {
+                    geometries[edge++] = FACTORY.createLineString(new Coordinate[]{nodes[i][j], nodes[i][j + 1]});
+                }
+            }
+        }
+        insert(connection, tableName, geometries, random);
+    }
+
+    /**
+     * Create a star shaped polygon
+     *
+     * @param random Random generator
+     * @param centerX X of the center
+     * @param centerY Y of the center
+     * @param diameter Maximal diameter
+     * @param vertices Number of vertices
+     * @return Polygon
+     */
+    public static Polygon createStar(Random random, double centerX, double centerY, double diameter, int vertices) {
+        Coordinate[] ring = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = diameter / 2 * (0.5 + random.nextDouble() / 2);
+            ring[i] = new Coordinate(centerX + Math.cos(angle) * radius, centerY + Math.sin(angle) * radius);
+        }
+        ring[vertices] = ring[0];
+        return FACTORY.createPolygon(ring);
+    }
+
+    private static void insert(Connection connection, String tableName, Geometry[] geometries,
+                               Random random) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + tableName
+                + " VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < geometries.length; i++) {
+                ps.setInt(1, i + 1);
+                ps.setString(2, "row" + i);
+                ps.setDouble(3, random.nextDouble() * 100);
+                ps.setObject(4, geometries[i]);
+                ps.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -22,10 +22,13 @@ package org.h2gis.functions.factory;
 
 import org.h2.api.Aggregate;
 import org.h2.tools.RunScript;
+import org.h2.util.StringUtils;
 import org.h2gis.api.Function;
 import org.h2gis.api.ScalarFunction;
 import org.h2gis.functions.io.DriverManager;
 import org.h2gis.functions.io.asc.AscRead;
+import org.h2gis.functions.io.asc.ST_ExplodeTiles;
+import org.h2gis.functions.io.asc.ST_TileValue;
 import org.h2gis.functions.io.dbf.DBFRead;
 import org.h2gis.functions.io.dbf.DBFWrite;
 import org.h2gis.functions.io.geojson.GeoJsonRead;
@@ -48,6 +51,7 @@ import org.h2gis.functions.spatial.affine_transformations.ST_Translate;
 import org.h2gis.functions.spatial.aggregate.ST_Accum;
 import org.h2gis.functions.spatial.aggregate.ST_Collect;
 import org.h2gis.functions.spatial.aggregate.ST_LineMerge;
+import org.h2gis.functions.spatial.aggregate.ST_UnionAgg;
 import org.h2gis.functions.spatial.buffer.ST_Buffer;
 import org.h2gis.functions.spatial.buffer.ST_OffSetCurve;
 import org.h2gis.functions.spatial.buffer.ST_RingSideBuffer;
@@ -59,9 +63,12 @@ import org.h2gis.functions.spatial.crs.ST_SetSRID;
 import org.h2gis.functions.spatial.crs.ST_Transform;
 import org.h2gis.functions.spatial.distance.*;
 import org.h2gis.functions.spatial.earth.ST_GeometryShadow;
+import org.h2gis.functions.spatial.earth.ST_GeometryShadowTable;
 import org.h2gis.functions.spatial.earth.ST_Isovist;
+import org.h2gis.functions.spatial.earth.ST_IsovistTable;
 import org.h2gis.functions.spatial.earth.ST_SunPosition;
 import org.h2gis.functions.spatial.earth.ST_Svf;
+import org.h2gis.functions.spatial.earth.ST_SvfTable;
 import org.h2gis.functions.spatial.edit.*;
 import org.h2gis.functions.spatial.generalize.ST_PrecisionReducer;
 import org.h2gis.functions.spatial.generalize.ST_Simplify;
@@ -85,12 +92,17 @@ import org.h2gis.functions.string.HexToVarBinary;
 import org.h2gis.functions.system.DoubleRange;
 import org.h2gis.functions.system.H2GISversion;
 import org.h2gis.functions.system.IntegerRange;
+import org.h2gis.functions.system.ST_ParallelApply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.*;
 import org.h2gis.functions.spatial.crs.ST_FindUTMSRID;
 import org.h2gis.functions.spatial.crs.UpdateGeometrySRID;
 import org.h2gis.functions.spatial.metadata.FindGeometryMetadata;
@@ -112,6 +124,11 @@ public class H2GISFunctions {
     /** H2 base type for geometry column {@link java.sql.ResultSetMetaData#getColumnTypeName(int)} */
     public static final String GEOMETRY_BASE_TYPE = "GEOMETRY";
     private static final Logger LOGGER = LoggerFactory.getLogger(H2GISFunctions.class);
+    /** Internal schema and table that store the H2GIS settings of the database */
+    private static final String SETTINGS_SCHEMA = "H2GIS_SCHEMA";
+    private static final String SETTINGS_TABLE = "H2GIS_SETTINGS";
+    /** Name of the setting that holds the registration marker */
+    private static final String REGISTRATION_MARKER = "REGISTRATION_MARKER";
 
     /**
      * @return instance of all built-ins functions
@@ -176,6 +193,7 @@ public class H2GISFunctions {
                 new ST_SRID(),
                 new ST_EnvelopesIntersect(),
                 new ST_Accum(),
+                new ST_UnionAgg(),
                 new ST_Transform(),
                 new ST_SetSRID(),
                 new ST_CoordDim(),
@@ -207,6 +225,7 @@ public class H2GISFunctions {
                 new ST_ConstrainedDelaunay(),
                 new ST_Covers(),
                 new ST_DWithin(),
+                new ST_SpatialJoin(),
                 new ST_Delaunay(),
                 new ST_Densify(),
                 new ST_Expand(),
@@ -278,12 +297,14 @@ public class H2GISFunctions {
                 new ST_RingSideBuffer(),
                 new ST_SunPosition(),
                 new ST_GeometryShadow(),
+                new ST_GeometryShadowTable(),
                 new ST_Voronoi(),
                 new ST_Tessellate(),
                 new ST_LineMerge(),
                 new ST_FlipCoordinates(),
                 new ST_MaxDistance(),
                 new ST_LongestLine(),
+                new ST_KNearestNeighbors(),
                 new ST_Perimeter(),
                 new ST_3DPerimeter(),
                 new ST_3DArea(),
@@ -297,22 +318,30 @@ public class H2GISFunctions {
                 new ST_NPoints(),
                 new ST_Graph(),
                 new H2GISversion(),
+                new ST_ParallelApply(),
                 new ST_Collect(),
                 new ST_RemoveDuplicatedCoordinates(),
                 new ST_MakeValid(),
                 new ST_Point(),
                 new ST_Node(),
                 new ST_Drape(),
+                new ST_DrapeTable(),
                 new ST_Svf(),
+                new ST_SvfTable(),
                 new JsonWrite(),
                 new ST_ShortestLine(),
                 new ST_OrientedEnvelope(),
                 new ST_Isovist(),
+                new ST_IsovistTable(),
                 new ST_EstimatedExtent(),
+                new ST_Hilbert(),
+                new ST_ClusterTable(),
                 new ST_FindUTMSRID(),
                 new ST_GeneratePoints(),
                 new ST_GeneratePointsInGrid(),
                 new AscRead(),
+                new ST_TileValue(),
+                new ST_ExplodeTiles(),
                 new FindGeometryMetadata(),
                 new UpdateGeometrySRID(),
                 new ST_InsertPoint(),
@@ -331,7 +360,11 @@ public class H2GISFunctions {
      */
     public static void load(Connection connection, String BundleSymbolicName, String BundleVersion) throws SQLException {
         String packagePrepend = BundleSymbolicName+":"+BundleVersion+":";
-        registerH2GISFunctions(connection,packagePrepend);
+        String marker = getRegistrationMarker(packagePrepend, false);
+        if (!isRegistered(connection, marker, false)) {
+            registerH2GISFunctions(connection, packagePrepend);
+            setRegistrationMarker(connection, marker);
+        }
         connection.commit();
     }
 
@@ -346,8 +379,120 @@ public class H2GISFunctions {
             LOGGER.warn("Some spatial functions will not be compatible with your version of JTS (" + jtsVersion.toString() + ")\n"
                     + "Please a JTS version greater or equals to 1.16");
         }
+        String marker = getRegistrationMarker("", true);
+        if (isRegistered(connection, marker, true)) {
+            // Same H2GIS functions already registered in this database
+            return;
+        }
         registerH2GISFunctions(connection, "");
         registerSpatialTables(connection);
+        setRegistrationMarker(connection, marker);
+    }
+
+    /**
+     * Build the registration marker, it identifies the H2GIS version and the
+     * registered functions. A database that holds the same marker does not
+     * need to be registered again.
+     *
+     * @param packagePrepend For OSGi environment only, use
+     * Bundle-SymbolicName:Bundle-Version:
+     * @param spatialTables True if the spatial tables are registered too
+     * @return Registration marker
+     * @throws SQLException
+     */
+    private static String getRegistrationMarker(String packagePrepend, boolean spatialTables) throws SQLException {
+        StringBuilder functions = new StringBuilder(packagePrepend);
+        for (Function function : getBuiltInsFunctions()) {
+            for (String statement : getRegistrationStatements(function, packagePrepend, false)) {
+                functions.append(statement).append(';');
+            }
+        }
+        if (spatialTables) {
+            functions.append(GEOMETRY_COLUMNS_VIEW);
+        }
+        return "H2GIS " + H2GISversion.geth2gisVersion().trim() + " " + Integer.toHexString(functions.toString().hashCode());
+    }
+
+    /**
+     * Check if the functions of this H2GIS version are already registered
+     *
+     * @param connection Active connection
+     * @param marker Expected registration marker
+     * @param spatialTables True to also check the spatial tables
+     * @return True if nothing has to be registered
+     * @throws SQLException
+     */
+    private static boolean isRegistered(Connection connection, String marker, boolean spatialTables) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, SETTINGS_SCHEMA, SETTINGS_TABLE, null)) {
+            if (!rs.next()) {
+                return false;
+            }
+        }
+        try (PreparedStatement pst = connection.prepareStatement("SELECT SETTING FROM " + SETTINGS_SCHEMA + "." + SETTINGS_TABLE
+                + " WHERE NAME = ?")) {
+            pst.setString(1, REGISTRATION_MARKER);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next() || !marker.equals(rs.getString(1))) {
+                    return false;
+                }
+            }
+        }
+        // All the aliases and aggregates must still be there, H2 lists the
+        // user aggregates in FUNCTION_ALIASES too, without JAVA_METHOD
+        Set<String> aliases = new HashSet<>();
+        Set<String> aggregates = new HashSet<>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ALIAS_NAME, JAVA_METHOD FROM INFORMATION_SCHEMA.FUNCTION_ALIASES")) {
+            while (rs.next()) {
+                String javaMethod = rs.getString(2);
+                if (javaMethod == null || javaMethod.isEmpty()) {
+                    aggregates.add(rs.getString(1).toUpperCase());
+                } else {
+                    aliases.add(rs.getString(1).toUpperCase());
+                }
+            }
+        }
+        for (Function function : getBuiltInsFunctions()) {
+            String alias = getAlias(function).toUpperCase();
+            if (function instanceof ScalarFunction && !aliases.contains(alias)
+                    || function instanceof Aggregate && !aggregates.contains(alias)) {
+                return false;
+            }
+        }
+        if (spatialTables) {
+            try (ResultSet rs = metaData.getTables(null, "PUBLIC", "%", null)) {
+                boolean spatialRefSys = false, geometryColumns = false;
+                while (rs.next()) {
+                    String tableName = rs.getString("TABLE_NAME");
+                    spatialRefSys |= "SPATIAL_REF_SYS".equalsIgnoreCase(tableName);
+                    geometryColumns |= "GEOMETRY_COLUMNS".equalsIgnoreCase(tableName);
+                }
+                return spatialRefSys && geometryColumns;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the registration marker in the internal H2GIS settings table
+     *
+     * @param connection Active connection
+     * @param marker Registration marker
+     * @throws SQLException
+     */
+    private static void setRegistrationMarker(Connection connection, String marker) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS " + SETTINGS_SCHEMA);
+            st.execute("CREATE TABLE IF NOT EXISTS " + SETTINGS_SCHEMA + "." + SETTINGS_TABLE
+                    + "(NAME VARCHAR PRIMARY KEY, SETTING VARCHAR)");
+        }
+        try (PreparedStatement pst = connection.prepareStatement("MERGE INTO " + SETTINGS_SCHEMA + "." + SETTINGS_TABLE
+                + "(NAME, SETTING) KEY(NAME) VALUES(?, ?)")) {
+            pst.setString(1, REGISTRATION_MARKER);
+            pst.setString(2, marker);
+            pst.executeUpdate();
+        }
     }
 
     /**
@@ -358,33 +503,45 @@ public class H2GISFunctions {
     public static void registerSpatialTables(Connection connection) throws SQLException {
         Statement st = connection.createStatement();
         st.execute("drop view if exists geometry_columns");
-        st.execute(
-                "CREATE VIEW geometry_columns AS "
-                + "SELECT  TABLE_CATALOG f_table_catalog, "
-                + " TABLE_SCHEMA f_table_schema, "
-                + " TABLE_NAME f_table_name, "
-                + " COLUMN_NAME f_geometry_column, "
-                + "1 storage_type, "
-                + "FindGeometryMetadata(TABLE_CATALOG,TABLE_SCHEMA,TABLE_NAME, COLUMN_NAME, COLUMN_TYPE)[1]:: int as geometry_type, "
-                + "FindGeometryMetadata(TABLE_CATALOG,TABLE_SCHEMA,TABLE_NAME, COLUMN_NAME, COLUMN_TYPE)[2]:: int as coord_dimension, "
-                + "FindGeometryMetadata(TABLE_CATALOG,TABLE_SCHEMA,TABLE_NAME, COLUMN_NAME, COLUMN_TYPE)[3]:: int as srid, "
-                + "FindGeometryMetadata(TABLE_CATALOG,TABLE_SCHEMA,TABLE_NAME, COLUMN_NAME, COLUMN_TYPE)[4]:: varchar as type "
-                + " FROM INFORMATION_SCHEMA.COLUMNS"
-                + " WHERE TYPE_NAME = 'GEOMETRY';");
+        st.execute(GEOMETRY_COLUMNS_VIEW);
         ResultSet rs = connection.getMetaData().getTables("", "PUBLIC", "SPATIAL_REF_SYS", null);
         if (!rs.next()) {
-            InputStreamReader reader = new InputStreamReader(
-                    H2GISFunctions.class.getResourceAsStream("spatial_ref_sys.sql"));
-            RunScript.execute(connection, reader);
-
-            try {
-                reader.close();
+            InputStream script = H2GISFunctions.class.getResourceAsStream("spatial_ref_sys.sql");
+            if (script == null) {
+                script = H2GISFunctions.class.getResourceAsStream("/org/h2gis/utilities/spatial_ref_sys.sql");
+            }
+            // The script is made of large multiple rows INSERT statements, run
+            // it in a single transaction instead of one commit by statement
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Reader reader = new InputStreamReader(script, StandardCharsets.UTF_8)) {
+                RunScript.execute(connection, reader);
+                connection.commit();
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new SQLException("Cannot read the spatial_ref_sys script", e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
         }
     }
 
+    private static final String GEOMETRY_COLUMNS_VIEW =
+                "CREATE VIEW geometry_columns AS "
+                + "SELECT f_table_catalog, f_table_schema, f_table_name, f_geometry_column, "
+                + "1 storage_type, "
+                + "metadata[1]:: int as geometry_type, "
+                + "metadata[2]:: int as coord_dimension, "
+                + "metadata[3]:: int as srid, "
+                + "metadata[4]:: varchar as type "
+                + " FROM (SELECT TABLE_CATALOG f_table_catalog, "
+                + " TABLE_SCHEMA f_table_schema, "
+                + " TABLE_NAME f_table_name, "
+                + " COLUMN_NAME f_geometry_column, "
+                // The metadata are read once by column, FindGeometryMetadata caches them until the schema changes
+                + "FindGeometryMetadata(TABLE_CATALOG,TABLE_SCHEMA,TABLE_NAME, COLUMN_NAME, COLUMN_TYPE) metadata"
+                + " FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TYPE_NAME = 'GEOMETRY');";
+
     /**
      * Return a string property of the function
      * @param function
@@ -432,19 +589,39 @@ public class H2GISFunctions {
      * @throws java.sql.SQLException
      */
     public static void registerFunction(Statement st,Function function,String packagePrepend,boolean dropAlias) throws SQLException {
+        List<String> statements = getRegistrationStatements(function, packagePrepend, dropAlias);
+        for (int i = 0; i < statements.size(); i++) {
+            if (dropAlias && i == 0 && function instanceof ScalarFunction) {
+                try {
+                    st.execute(statements.get(i));
+                } catch (SQLException ex) {
+                    // Ignore, some tables constraints may depend on this function
+                    LOGGER.debug(ex.getLocalizedMessage(), ex);
+                }
+            } else {
+                st.execute(statements.get(i));
+            }
+        }
+    }
+
+    /**
+     * Build the SQL statements that register a H2GIS java code function
+     *
+     * @param function Function instance
+     * @param packagePrepend For OSGi environment only, use Bundle-SymbolicName:Bundle-Version:
+     * @param dropAlias Drop alias if exists before define it.
+     * @return SQL statements, the DROP statement first if dropAlias is true
+     * @throws java.sql.SQLException
+     */
+    private static List<String> getRegistrationStatements(Function function, String packagePrepend, boolean dropAlias) throws SQLException {
         String functionClass = function.getClass().getName();
         String functionAlias = getAlias(function);
-
+        List<String> statements = new ArrayList<>(3);
         if(function instanceof ScalarFunction) {
             ScalarFunction scalarFunction = (ScalarFunction)function;
             String functionName = scalarFunction.getJavaStaticMethod();
             if(dropAlias) {
-                try {
-                    st.execute("DROP ALIAS IF EXISTS " + functionAlias);
-                } catch (SQLException ex) {
-                    // Ignore, some tables constraints may depend on this function
-                    LOGGER.debug(ex.getLocalizedMessage(), ex);
-                }
+                statements.add("DROP ALIAS IF EXISTS " + functionAlias);
             }
             String deterministic = "";
             if(getBooleanProperty(function,ScalarFunction.PROP_DETERMINISTIC,false)) {
@@ -452,22 +629,21 @@ public class H2GISFunctions {
             }
             // Create alias, H2 does not support prepare statement on create alias
             // "FORCE ALIAS means that the class not existing will not prevent the database from being opened."
-            st.execute("CREATE FORCE ALIAS IF NOT EXISTS " + functionAlias + deterministic + " FOR \"" + packagePrepend + functionClass + "." + functionName + "\"");
+            statements.add("CREATE FORCE ALIAS IF NOT EXISTS " + functionAlias + deterministic + " FOR \"" + packagePrepend + functionClass + "." + functionName + "\"");
             // Set comment
             String functionRemarks = getStringProperty(function, Function.PROP_REMARKS);
             if(!functionRemarks.isEmpty()) {
-                PreparedStatement ps = st.getConnection().prepareStatement("COMMENT ON ALIAS "+functionAlias+" IS ?");
-                ps.setString(1, functionRemarks);
-                ps.execute();
+                statements.add("COMMENT ON ALIAS " + functionAlias + " IS " + StringUtils.quoteStringSQL(functionRemarks));
             }
         } else if(function instanceof Aggregate) {
                 if(dropAlias) {
-                    st.execute("DROP AGGREGATE IF EXISTS " + functionAlias);
+                    statements.add("DROP AGGREGATE IF EXISTS " + functionAlias);
                 }
-                st.execute("CREATE FORCE AGGREGATE IF NOT EXISTS " + functionAlias + " FOR \"" + packagePrepend + functionClass + "\"");
+                statements.add("CREATE FORCE AGGREGATE IF NOT EXISTS " + functionAlias + " FOR \"" + packagePrepend + functionClass + "\"");
         } else {
                 throw new SQLException("Unsupported function "+functionClass);
         }
+        return statements;
     }
 
     /**
@@ -506,13 +682,37 @@ public class H2GISFunctions {
      * @throws SQLException
      */
     private static void registerH2GISFunctions(Connection connection, String packagePrepend) throws SQLException {
-        Statement st = connection.createStatement();
-        for (Function function : getBuiltInsFunctions()) {
+        try (Statement st = connection.createStatement()) {
+            // The DROP statements are run first, they fail if some tables
+            // constraints depend on a function
+            List<String> creates = new ArrayList<>();
+            for (Function function : getBuiltInsFunctions()) {
+                try {
+                    List<String> statements = getRegistrationStatements(function, packagePrepend, true);
+                    st.addBatch(statements.get(0));
+                    creates.addAll(statements.subList(1, statements.size()));
+                } catch (SQLException ex) {
+                    // Catch to register other functions
+                    ex.printStackTrace(System.err);
+                }
+            }
             try {
-                registerFunction(st, function, packagePrepend);
-            } catch (SQLException ex) {
-                // Catch to register other functions
-                ex.printStackTrace(System.err);
+                st.executeBatch();
+            } catch (BatchUpdateException ex) {
+                // Ignore, the functions are replaced by the CREATE FORCE statements
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+            }
+            for (String create : creates) {
+                st.addBatch(create);
+            }
+            try {
+                st.executeBatch();
+            } catch (BatchUpdateException ex) {
+                // H2 runs the whole batch, log the functions that could not be registered
+                for (SQLException next = ex.getNextException(); next != null; next = next.getNextException()) {
+                    LOGGER.error(next.getLocalizedMessage(), next);
+                }
+                LOGGER.error(ex.getLocalizedMessage(), ex);
             }
         }
     }
@@ -52,7 +52,10 @@ public class AscRead extends AbstractFunction implements ScalarFunction {
                 + "CALL ASCREAD('dem.asc', 'MYTABLE', GEOM_FILTER, DOWNSCALE_INT, AS_POLYGONS);\n"
                 + "GEOM_FILTER - Extract only pixels that intersects the provided geometry envelope, null to disable filter\n"
                 + "DOWNSCALE_INT - Coefficient used for exporting less cells (1 all cells, 2 for size / 2)\n"
-                + "AS_POLYGONS - If true pixels are converted to polygons. (default false return points)\n");
+                + "AS_POLYGONS - If true pixels are converted to polygons. (default false return points)\n"
+                + "CALL ASCREAD('dem.asc', 'MYTABLE', GEOM_FILTER, DOWNSCALE_INT, AS_POLYGONS, DELETE_TABLE, ENCODING, TYPE, TILE_SIZE);\n"
+                + "TILE_SIZE - If greater than 0 pixels are stored in tiles of TILE_SIZE x TILE_SIZE pixels, use\n"
+                + "ST_TileValue and ST_ExplodeTiles to read them. AS_POLYGONS is ignored\n");
     }
 
     @Override
@@ -267,4 +270,40 @@ public class AscRead extends AbstractFunction implements ScalarFunction {
         ascReaderDriver.setDeleteTable(deleteTable);
         importFile(connection, tableReference, URIUtilities.fileFromString(fileName), new EmptyProgressVisitor(), ascReaderDriver);
     }
+
+    /**
+     * Import a small subset of ASC file.
+     *
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param envelope Extract only pixels that intersects the provided geometry
+     * envelope, null to disable filter
+     * @param downScale Coefficient used for exporting less cells (1 all cells,
+     * 2 for size / 2)
+     * @param extractAsPolygons If true pixels are converted to polygon.
+     * (default false)
+     * @param deleteTable True to delete the table if exists
+     * @param encoding File encoding
+     * @param zType 1 for integer, 2 for double
+     * @param tileSize If greater than 0 pixels are stored in tiles of tileSize x
+     * tileSize pixels instead of one row per pixel
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void readAscii(Connection connection, String fileName, String tableReference, Geometry envelope, int downScale, boolean extractAsPolygons, boolean deleteTable, String encoding, int zType, int tileSize) throws IOException, SQLException {
+        AscReaderDriver ascReaderDriver = new AscReaderDriver();
+        if (envelope != null && !envelope.isEmpty()) {
+            ascReaderDriver.setExtractEnvelope(envelope.getEnvelopeInternal());
+        }
+        if (downScale > 1) {
+            ascReaderDriver.setDownScale(downScale);
+        }
+        ascReaderDriver.setAs3DPoint(!extractAsPolygons);
+        ascReaderDriver.setEncoding(encoding);
+        ascReaderDriver.setZType(zType);
+        ascReaderDriver.setDeleteTable(deleteTable);
+        ascReaderDriver.setTileSize(tileSize);
+        importFile(connection, tableReference, URIUtilities.fileFromString(fileName), new EmptyProgressVisitor(), ascReaderDriver);
+    }
 }
@@ -19,8 +19,10 @@
  */
 package org.h2gis.functions.io.asc;
 
+import org.h2gis.api.DriverMetrics;
 import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.dbtypes.DBTypes;
 import org.h2gis.utilities.dbtypes.DBUtils;
@@ -83,6 +85,7 @@ public class AscReaderDriver {
     private boolean deleteTable = false;
     private String encoding = "UTF-8";
     private boolean importNodata = false;
+    private int tileSize = 0;
 
     /**
      * @return If true ASC is imported as 3D points cloud, Raster is imported in
@@ -232,6 +235,7 @@ public class AscReaderDriver {
             try (FileInputStream inputStream = new FileInputStream(fileName)) {
                 outputTableName = readAsc(connection, inputStream, progress, outputTableName, srid);
             }
+            DriverMetrics.of(progress).addBytes(fileName.length());
             return new String[]{outputTableName};
         } else if (fileName != null && fileName.getName().toLowerCase().endsWith(".gz")) {
             if (!fileName.exists()) {
@@ -247,6 +251,7 @@ public class AscReaderDriver {
             }
             FileInputStream fis = new FileInputStream(fileName);
             outputTableName = readAsc(connection, new GZIPInputStream(fis), progress, outputTableName, srid);
+            DriverMetrics.of(progress).addBytes(fileName.length());
             return new String[]{outputTableName};
         } else {
             throw new SQLException("The asc read driver supports only asc or gz extensions");
@@ -274,6 +279,9 @@ public class AscReaderDriver {
             Scanner scanner = new Scanner(reader);
             // Read HEADER
             readHeader(scanner);
+            if (tileSize > 0) {
+                return readAscTiles(connection, scanner, progress, outputTable, srid);
+            }
             // Read values
             Statement st = connection.createStatement();
             PreparedStatement preparedStatement;
@@ -296,6 +304,7 @@ public class AscReaderDriver {
             }
             // Read data
             GeometryFactory factory = new GeometryFactory();
+            DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
             int batchSize = 0;
             int firstRow = 0;
             int firstCol = 0;
@@ -354,7 +363,9 @@ public class AscReaderDriver {
                             }
                         }
                         if (batchSize >= BATCH_MAX_SIZE) {
+                            metricsRecorder.databaseStage();
                             preparedStatement.executeBatch();
+                            metricsRecorder.batchFlushed(batchSize);
                             preparedStatement.clearBatch();
                             batchSize = 0;
                         }
@@ -366,14 +377,125 @@ public class AscReaderDriver {
                 }
             }
             if (batchSize > 0) {
+                metricsRecorder.databaseStage();
                 preparedStatement.executeBatch();
+                metricsRecorder.batchFlushed(batchSize);
             }
+            metricsRecorder.end();
             return outputTable;
         } catch (NoSuchElementException | NumberFormatException | IOException | SQLException ex) {
             throw new SQLException("Unexpected word " + lastWord, ex);
         }
     }
 
+    /**
+     * Store the raster cells in blocks of tileSize x tileSize cells. Each row of
+     * the output table holds the tile envelope and the packed cell values, see
+     * {@link AscTile}.
+     *
+     * @param connection
+     * @param scanner
+     * @param progress
+     * @param outputTable
+     * @param srid
+     * @return output table name
+     */
+    private String readAscTiles(Connection connection, Scanner scanner, ProgressVisitor progress, String outputTable,
+            int srid) throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("CREATE TABLE " + outputTable + "(PK SERIAL PRIMARY KEY, THE_GEOM GEOMETRY(POLYGON, " + srid + "), "
+                + "TILE_ROW integer, TILE_COL integer, TILE VARBINARY)");
+        PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO " + outputTable
+                + "(the_geom, TILE_ROW, TILE_COL, TILE) VALUES (?, ?, ?, ?)");
+        GeometryFactory factory = new GeometryFactory();
+        // Down scaled cells are stored as bigger cells
+        final double tileCellSize = cellSize * downScale;
+        final int outCols = (ncols + downScale - 1) / downScale;
+        final int outRows = (nrows + downScale - 1) / downScale;
+        final int tileCols = (outCols + tileSize - 1) / tileSize;
+        // Cells of one row of tiles
+        double[] band = new double[tileSize * outCols];
+        double[] cells = new double[tileSize * tileSize];
+        int bandRow = 0;
+        int tileRow = 0;
+        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+        int batchSize = 0;
+        ProgressVisitor cellProgress = new EmptyProgressVisitor();
+        if (progress != null) {
+            cellProgress = progress.subProcess(nrows);
+        }
+        for (int i = 0; i < nrows; i++) {
+            boolean keepRow = i % downScale == 0;
+            for (int j = 0; j < ncols; j++) {
+                if (readFirst) {
+                    lastWord = scanner.next();
+                } else {
+                    readFirst = true;
+                }
+                if (keepRow && j % downScale == 0) {
+                    band[bandRow * outCols + j / downScale] = Double.parseDouble(lastWord);
+                }
+            }
+            if (keepRow) {
+                bandRow++;
+            }
+            if (bandRow == tileSize || (keepRow && i / downScale == outRows - 1)) {
+                double upperLeftY = yValue - tileRow * tileSize * tileCellSize;
+                for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+                    int firstCol = tileCol * tileSize;
+                    int width = Math.min(tileSize, outCols - firstCol);
+                    double upperLeftX = xValue + firstCol * tileCellSize;
+                    Envelope tileEnvelope = new Envelope(upperLeftX, upperLeftX + width * tileCellSize,
+                            upperLeftY - bandRow * tileCellSize, upperLeftY);
+                    if (extractEnvelope != null && !extractEnvelope.intersects(tileEnvelope)) {
+                        continue;
+                    }
+                    boolean hasData = importNodata;
+                    for (int r = 0; r < bandRow; r++) {
+                        System.arraycopy(band, r * outCols + firstCol, cells, r * width, width);
+                        if (!hasData) {
+                            for (int c = 0; c < width; c++) {
+                                if (Math.abs(noData - cells[r * width + c]) != 0) {
+                                    hasData = true;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                    if (!hasData) {
+                        continue;
+                    }
+                    Polygon tileGeom = (Polygon) factory.toGeometry(tileEnvelope);
+                    tileGeom.setSRID(srid);
+                    preparedStatement.setObject(1, tileGeom);
+                    preparedStatement.setInt(2, tileRow);
+                    preparedStatement.setInt(3, tileCol);
+                    preparedStatement.setBytes(4, AscTile.encode(zType, width, bandRow, upperLeftX, upperLeftY,
+                            tileCellSize, noData, cells));
+                    preparedStatement.addBatch();
+                    batchSize++;
+                    if (batchSize >= BATCH_MAX_SIZE) {
+                        metricsRecorder.databaseStage();
+                        preparedStatement.executeBatch();
+                        metricsRecorder.batchFlushed(batchSize);
+                        preparedStatement.clearBatch();
+                        batchSize = 0;
+                    }
+                }
+                bandRow = 0;
+                tileRow++;
+            }
+            cellProgress.endStep();
+        }
+        if (batchSize > 0) {
+            metricsRecorder.databaseStage();
+            preparedStatement.executeBatch();
+            metricsRecorder.batchFlushed(batchSize);
+        }
+        metricsRecorder.end();
+        return outputTable;
+    }
+
     /**
      * Use to set the z conversion type 1 = integer 2 = double
      *
@@ -409,4 +531,24 @@ public class AscReaderDriver {
     public void setImportNodata(boolean importNodata) {
         this.importNodata = importNodata;
     }
+
+    /**
+     * @return Number of cells of a tile side, 0 if the raster is imported cell
+     * by cell
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Set a value greater than 0 to import the raster as tiles of tileSize x
+     * tileSize cells instead of one geometry per cell. The values of a tile
+     * can be read with {@link ST_TileValue} and expanded to cells with
+     * {@link ST_ExplodeTiles}.
+     *
+     * @param tileSize Number of cells of a tile side, 0 to disable tiling
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
 }
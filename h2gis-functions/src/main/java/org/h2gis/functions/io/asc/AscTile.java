@@ -0,0 +1,267 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.asc;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A block of raster cells stored in a single binary value.
+ *
+ * The binary layout is self-described, so a tile can be sampled without
+ * reading any other column of the table :
+ *
+ * version (byte), z type (byte, 1 integer, 2 double), width (int),
+ * height (int), upper left x (double), upper left y (double), cell size
+ * (double), nodata value (double) followed by width * height values stored
+ * row by row starting from the upper left cell.
+ */
+public class AscTile {
+
+    private static final byte VERSION = 1;
+    /** Size in bytes of the tile header */
+    public static final int HEADER_SIZE = 2 + 2 * Integer.BYTES + 4 * Double.BYTES;
+
+    private final int zType;
+    private final int width;
+    private final int height;
+    private final double upperLeftX;
+    private final double upperLeftY;
+    private final double cellSize;
+    private final double noData;
+    private final ByteBuffer values;
+
+    private AscTile(int zType, int width, int height, double upperLeftX, double upperLeftY,
+                    double cellSize, double noData, ByteBuffer values) {
+        this.zType = zType;
+        this.width = width;
+        this.height = height;
+        this.upperLeftX = upperLeftX;
+        this.upperLeftY = upperLeftY;
+        this.cellSize = cellSize;
+        this.noData = noData;
+        this.values = values;
+    }
+
+    /**
+     * Pack cell values into the tile binary format
+     *
+     * @param zType 1 to store values as integer, 2 as double
+     * @param width Number of columns of the tile
+     * @param height Number of rows of the tile
+     * @param upperLeftX X coordinate of the upper left corner of the tile
+     * @param upperLeftY Y coordinate of the upper left corner of the tile
+     * @param cellSize Size of a cell
+     * @param noData Value of the cells without data
+     * @param cells Cell values, row by row, starting from the upper left cell
+     * @return The tile binary value
+     */
+    public static byte[] encode(int zType, int width, int height, double upperLeftX, double upperLeftY,
+                                double cellSize, double noData, double[] cells) {
+        int valueSize = zType == 1 ? Integer.BYTES : Double.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + width * height * valueSize);
+        buffer.put(VERSION);
+        buffer.put((byte) zType);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putDouble(upperLeftX);
+        buffer.putDouble(upperLeftY);
+        buffer.putDouble(cellSize);
+        buffer.putDouble(noData);
+        int cellCount = width * height;
+        if (zType == 1) {
+            for (int i = 0; i < cellCount; i++) {
+                buffer.putInt((int) cells[i]);
+            }
+        } else {
+            for (int i = 0; i < cellCount; i++) {
+                buffer.putDouble(cells[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Read the header of a tile, cell values are decoded on demand.
+     *
+     * @param tile Tile binary value
+     * @return Tile instance
+     * @throws IllegalArgumentException if the binary value is not a tile
+     */
+    public static AscTile decode(byte[] tile) {
+        if (tile == null || tile.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid raster tile");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(tile);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported raster tile version " + version);
+        }
+        int zType = buffer.get();
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        double upperLeftX = buffer.getDouble();
+        double upperLeftY = buffer.getDouble();
+        double cellSize = buffer.getDouble();
+        double noData = buffer.getDouble();
+        int valueSize = zType == 1 ? Integer.BYTES : Double.BYTES;
+        if (tile.length != HEADER_SIZE + width * height * valueSize) {
+            throw new IllegalArgumentException("Invalid raster tile size");
+        }
+        return new AscTile(zType, width, height, upperLeftX, upperLeftY, cellSize, noData, buffer);
+    }
+
+    /**
+     * @return Number of columns of the tile
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Number of rows of the tile
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Size of a cell
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return Value of the cells without data
+     */
+    public double getNoData() {
+        return noData;
+    }
+
+    /**
+     * @return 1 if values are stored as integer, 2 as double
+     */
+    public int getZType() {
+        return zType;
+    }
+
+    /**
+     * @return Envelope covered by the tile cells
+     */
+    public Envelope getEnvelope() {
+        return new Envelope(upperLeftX, upperLeftX + width * cellSize,
+                upperLeftY - height * cellSize, upperLeftY);
+    }
+
+    /**
+     * @param row Row of the cell, 0 is the upper row
+     * @param col Column of the cell, 0 is the left column
+     * @return The cell value
+     */
+    public double getValue(int row, int col) {
+        int index = row * width + col;
+        if (zType == 1) {
+            return values.getInt(HEADER_SIZE + index * Integer.BYTES);
+        } else {
+            return values.getDouble(HEADER_SIZE + index * Double.BYTES);
+        }
+    }
+
+    /**
+     * @param row Row of the cell, 0 is the upper row
+     * @param col Column of the cell, 0 is the left column
+     * @return True if the cell holds the nodata value
+     */
+    public boolean isNoData(int row, int col) {
+        return Double.compare(getValue(row, col), noData) == 0;
+    }
+
+    /**
+     * @param x X coordinate
+     * @return Column of the cell that contains the coordinate, may be out of the tile
+     */
+    public int getColumn(double x) {
+        return (int) Math.floor((x - upperLeftX) / cellSize);
+    }
+
+    /**
+     * @param y Y coordinate
+     * @return Row of the cell that contains the coordinate, may be out of the tile
+     */
+    public int getRow(double y) {
+        return (int) Math.floor((upperLeftY - y) / cellSize);
+    }
+
+    /**
+     * Sample the tile at the given location
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return The cell value, null if the location is outside the tile or the
+     * cell holds the nodata value
+     */
+    public Double sample(double x, double y) {
+        int col = getColumn(x);
+        int row = getRow(y);
+        if (row < 0 || col < 0 || row >= height || col >= width) {
+            return null;
+        }
+        double value = getValue(row, col);
+        if (Double.compare(value, noData) == 0) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Compute the center of a cell
+     *
+     * @param row Row of the cell, 0 is the upper row
+     * @param col Column of the cell, 0 is the left column
+     * @param z Z value of the coordinate
+     * @return Cell center
+     */
+    public Coordinate getCellCenter(int row, int col, double z) {
+        return new Coordinate(upperLeftX + col * cellSize + cellSize / 2,
+                upperLeftY - row * cellSize - cellSize / 2, z);
+    }
+
+    /**
+     * Compute the polygon of a cell
+     *
+     * @param factory Geometry factory
+     * @param row Row of the cell, 0 is the upper row
+     * @param col Column of the cell, 0 is the left column
+     * @param z Z value of the polygon vertices
+     * @return Cell polygon
+     */
+    public Polygon getCellPolygon(GeometryFactory factory, int row, int col, double z) {
+        double x = upperLeftX + col * cellSize;
+        double y = upperLeftY - row * cellSize;
+        return factory.createPolygon(new Coordinate[]{new Coordinate(x, y, z),
+                new Coordinate(x, y - cellSize, z), new Coordinate(x + cellSize, y - cellSize, z),
+                new Coordinate(x + cellSize, y, z), new Coordinate(x, y, z)});
+    }
+}
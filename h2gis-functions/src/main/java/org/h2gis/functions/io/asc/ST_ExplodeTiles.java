@@ -0,0 +1,228 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.asc;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.sql.*;
+
+/**
+ * Expand the raster tiles imported by ASCREAD into one row per cell.
+ */
+public class ST_ExplodeTiles extends AbstractFunction implements ScalarFunction {
+
+    public ST_ExplodeTiles() {
+        addProperty(PROP_REMARKS, "Expand the raster tiles of a table imported with ASCREAD using a tile size\n"
+                + "into one row per cell. Cells without data are skipped.\n"
+                + "SELECT * FROM ST_ExplodeTiles('DEM');\n"
+                + "SELECT * FROM ST_ExplodeTiles('DEM', AS_POLYGONS);\n"
+                + "SELECT * FROM ST_ExplodeTiles('DEM', GEOM_FILTER, AS_POLYGONS);\n"
+                + "GEOM_FILTER - Extract only cells that intersects the provided geometry envelope\n"
+                + "AS_POLYGONS - If true cells are converted to polygons. (default false return points)");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "explodeTiles";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of tiles
+     * @return Cells as PointZ
+     * @throws SQLException
+     */
+    public static ResultSet explodeTiles(Connection connection, String tableName) throws SQLException {
+        return explodeTiles(connection, tableName, null, false);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of tiles
+     * @param asPolygons If true cells are converted to polygons
+     * @return Cells as PointZ or PolygonZ
+     * @throws SQLException
+     */
+    public static ResultSet explodeTiles(Connection connection, String tableName, boolean asPolygons) throws SQLException {
+        return explodeTiles(connection, tableName, null, asPolygons);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of tiles
+     * @param filter Extract only cells that intersects the envelope of this
+     * geometry, null to disable filter
+     * @param asPolygons If true cells are converted to polygons
+     * @return Cells as PointZ or PolygonZ
+     * @throws SQLException
+     */
+    public static ResultSet explodeTiles(Connection connection, String tableName, Geometry filter, boolean asPolygons) throws SQLException {
+        TileRowSource rowSource = new TileRowSource(connection, tableName,
+                filter == null || filter.isEmpty() ? null : filter.getEnvelopeInternal(), asPolygons);
+        SimpleResultSet rs = new SimpleResultSet(rowSource);
+        rs.addColumn("PK", Types.INTEGER, 10, 0);
+        rs.addColumn("TILE_PK", Types.INTEGER, 10, 0);
+        rs.addColumn("THE_GEOM", Types.OTHER, "GEOMETRY", 0, 0);
+        rs.addColumn("Z", Types.DOUBLE, 17, 0);
+        return rs;
+    }
+
+    /**
+     * Decode the tiles only on request
+     */
+    private static class TileRowSource implements SimpleRowSource {
+        private final Connection connection;
+        private final String tableName;
+        private final Envelope filter;
+        private final boolean asPolygons;
+        private final GeometryFactory factory = new GeometryFactory();
+        private boolean firstRow = true;
+        private ResultSet tableQuery;
+        private int srid;
+        private AscTile tile;
+        private int tilePk;
+        private int row;
+        private int col;
+        private int rowEnd;
+        private int colStart;
+        private int colEnd;
+        private int id = 1;
+
+        private TileRowSource(Connection connection, String tableName, Envelope filter, boolean asPolygons) {
+            this.connection = connection;
+            this.tableName = tableName;
+            this.filter = filter;
+            this.asPolygons = asPolygons;
+        }
+
+        @Override
+        public Object[] readRow() throws SQLException {
+            if (firstRow) {
+                reset();
+            }
+            while (true) {
+                while (tile != null && row < rowEnd) {
+                    int currentRow = row;
+                    int currentCol = col++;
+                    if (col >= colEnd) {
+                        col = colStart;
+                        row++;
+                    }
+                    if (!tile.isNoData(currentRow, currentCol)) {
+                        double z = tile.getValue(currentRow, currentCol);
+                        Geometry cell;
+                        if (asPolygons) {
+                            cell = tile.getCellPolygon(factory, currentRow, currentCol, z);
+                        } else {
+                            cell = factory.createPoint(tile.getCellCenter(currentRow, currentCol, z));
+                        }
+                        cell.setSRID(srid);
+                        return new Object[]{id++, tilePk, cell, z};
+                    }
+                }
+                if (!nextTile()) {
+                    return null;
+                }
+            }
+        }
+
+        private boolean nextTile() throws SQLException {
+            tile = null;
+            if (!tableQuery.next()) {
+                return false;
+            }
+            tilePk = tableQuery.getInt(1);
+            try {
+                tile = AscTile.decode(tableQuery.getBytes(2));
+            } catch (IllegalArgumentException ex) {
+                throw new SQLException(ex.getLocalizedMessage(), ex);
+            }
+            row = 0;
+            colStart = 0;
+            rowEnd = tile.getHeight();
+            colEnd = tile.getWidth();
+            if (filter != null) {
+                Envelope tileEnvelope = tile.getEnvelope();
+                double minX = Math.max(filter.getMinX(), tileEnvelope.getMinX());
+                double maxX = Math.min(filter.getMaxX(), tileEnvelope.getMaxX());
+                double minY = Math.max(filter.getMinY(), tileEnvelope.getMinY());
+                double maxY = Math.min(filter.getMaxY(), tileEnvelope.getMaxY());
+                colStart = Math.max(0, tile.getColumn(minX));
+                colEnd = Math.min(colEnd, tile.getColumn(maxX) + 1);
+                row = Math.max(0, tile.getRow(maxY));
+                rowEnd = Math.min(rowEnd, tile.getRow(minY) + 1);
+                if (colStart >= colEnd) {
+                    rowEnd = row;
+                }
+            }
+            col = colStart;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (tableQuery != null) {
+                try {
+                    tableQuery.getStatement().close();
+                    tableQuery = null;
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        @Override
+        public void reset() throws SQLException {
+            close();
+            firstRow = false;
+            tile = null;
+            id = 1;
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation tableLocation = TableLocation.parse(tableName, dbType);
+            Tuple<String, GeometryMetaData> geomMetadata = GeometryTableUtilities.getFirstColumnMetaData(connection, tableLocation);
+            if (geomMetadata == null) {
+                throw new SQLException("The table " + tableLocation + " does not contain a geometry column");
+            }
+            srid = geomMetadata.second().SRID;
+            if (filter != null) {
+                PreparedStatement ps = connection.prepareStatement("SELECT PK, TILE FROM " + tableLocation
+                        + " WHERE " + TableLocation.quoteIdentifier(geomMetadata.first(), dbType) + " && ?");
+                Geometry filterGeometry = factory.toGeometry(filter);
+                filterGeometry.setSRID(srid);
+                ps.setObject(1, filterGeometry);
+                tableQuery = ps.executeQuery();
+            } else {
+                tableQuery = connection.createStatement().executeQuery("SELECT PK, TILE FROM " + tableLocation);
+            }
+        }
+    }
+}
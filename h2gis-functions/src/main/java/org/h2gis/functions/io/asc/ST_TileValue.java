@@ -0,0 +1,65 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.asc;
+
+import org.h2gis.api.DeterministicScalarFunction;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.sql.SQLException;
+
+/**
+ * Sample the value of a raster tile imported by ASCREAD at a point location.
+ */
+public class ST_TileValue extends DeterministicScalarFunction {
+
+    public ST_TileValue() {
+        addProperty(PROP_REMARKS, "Return the value of the raster tile cell that contains the point.\n"
+                + "The tile must be imported with ASCREAD using a tile size.\n"
+                + "Return null if the point is outside the tile or the cell has no data.\n"
+                + "SELECT ST_TileValue(r.TILE, p.THE_GEOM) FROM DEM r, POINTS p WHERE r.THE_GEOM && p.THE_GEOM");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getValue";
+    }
+
+    /**
+     * @param tile Raster tile
+     * @param geometry Point location
+     * @return The cell value, null if the point is outside the tile or the cell
+     * has no data
+     * @throws SQLException
+     */
+    public static Double getValue(byte[] tile, Geometry geometry) throws SQLException {
+        if (tile == null || geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        if (!(geometry instanceof Point)) {
+            throw new SQLException("Only point geometry is supported");
+        }
+        try {
+            return AscTile.decode(tile).sample(geometry.getCoordinate().x, geometry.getCoordinate().y);
+        } catch (IllegalArgumentException ex) {
+            throw new SQLException(ex.getLocalizedMessage(), ex);
+        }
+    }
+}
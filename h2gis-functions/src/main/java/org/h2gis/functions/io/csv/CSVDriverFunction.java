@@ -24,11 +24,13 @@ import org.h2.tools.Csv;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.functions.io.DriverManager;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 
 import java.io.*;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.sql.*;
 import java.util.regex.Matcher;
@@ -112,7 +114,9 @@ public class CSVDriverFunction implements DriverFunction{
                     if (csvOptions != null && csvOptions.indexOf('=') >= 0) {
                         csv.setOptions(csvOptions);
                     }
-                    csv.write(fileName.getPath(), st.executeQuery(tableReference), null);
+                    DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                    metricsRecorder.addRows(csv.write(fileName.getPath(), st.executeQuery(tableReference), null));
+                    metricsRecorder.end(fileName);
                     return new String[]{tableReference};
                 }
             } else {
@@ -129,7 +133,9 @@ public class CSVDriverFunction implements DriverFunction{
                 if (csvOptions != null && csvOptions.indexOf('=') >= 0) {
                     csv.setOptions(csvOptions);
                 }
-                csv.write(fileName.getPath(), st.executeQuery("SELECT * FROM " + outputTable), null);
+                DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                metricsRecorder.addRows(csv.write(fileName.getPath(), st.executeQuery("SELECT * FROM " + outputTable), null));
+                metricsRecorder.end(fileName);
                 return new String[]{outputTable};
             }
         }
@@ -192,6 +198,10 @@ public class CSVDriverFunction implements DriverFunction{
             }
             TableLocation requestedTable = TableLocation.parse(tableReference, dbType);
             String outputTable = requestedTable.getTable();
+            if (csvOptions != null && isTyped(csvOptions)) {
+                importTypedFile(connection, outputTable, dbType, fileName, csvOptions, progress);
+                return new String[]{outputTable};
+            }
             FileInputStream fis = new FileInputStream(fileName);
             FileChannel fc = fis.getChannel();
             long fileSize = fc.size();
@@ -229,6 +239,7 @@ public class CSVDriverFunction implements DriverFunction{
                 stmt.execute(createTable.toString());
             }
             PreparedStatement pst = connection.prepareStatement(insertTable.toString());
+            DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
             long batchSize = 0;
             try {
                 while (reader.next()) {
@@ -242,8 +253,10 @@ public class CSVDriverFunction implements DriverFunction{
                     pst.addBatch();
                     batchSize++;
                     if (batchSize >= BATCH_MAX_SIZE) {
+                        metricsRecorder.databaseStage();
                         pst.executeBatch();
                         connection.commit();
+                        metricsRecorder.batchFlushed((int) batchSize);
                         pst.clearBatch();
                         batchSize = 0;
                     }
@@ -257,10 +270,13 @@ public class CSVDriverFunction implements DriverFunction{
                     }
                 }
                 if (batchSize > 0) {
+                    metricsRecorder.databaseStage();
                     pst.executeBatch();
                     pst.clearBatch();
                     connection.commit();
+                    metricsRecorder.batchFlushed((int) batchSize);
                 }
+                metricsRecorder.end(fileName);
 
             } finally {
                 pst.close();
@@ -270,4 +286,77 @@ public class CSVDriverFunction implements DriverFunction{
         }
         return null;
     }
+
+    private static boolean isTyped(String csvOptions) {
+        for (String option : csvOptions.trim().split("\\s+")) {
+            if (option.equalsIgnoreCase("typed=true")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Import the file with typed columns. The typed options are read here, the
+     * other options are given to the H2 CSV parser to read the separators
+     * and the charset.
+     *
+     * typed=true, enable the typed import
+     * threads=n, number of threads used to parse the file
+     * sampleSize=n, number of rows read to choose the column types
+     * xColumn=name yColumn=name, build a THE_GEOM point column
+     * srid=n, SRID of the geometries
+     *
+     * @param connection Active connection
+     * @param outputTable Table name
+     * @param dbType Database type
+     * @param fileName CSV file
+     * @param csvOptions CSV options
+     * @param progress Progress visitor
+     * @throws SQLException
+     * @throws IOException
+     */
+    private void importTypedFile(Connection connection, String outputTable, DBTypes dbType, File fileName,
+                                 String csvOptions, ProgressVisitor progress) throws SQLException, IOException {
+        CSVTypedReader reader = new CSVTypedReader(fileName);
+        StringBuilder h2Options = new StringBuilder();
+        String xColumn = null;
+        String yColumn = null;
+        for (String option : csvOptions.trim().split("\\s+")) {
+            int separator = option.indexOf('=');
+            String key = separator < 0 ? option : option.substring(0, separator);
+            String value = separator < 0 ? "" : option.substring(separator + 1);
+            try {
+                if (key.equalsIgnoreCase("typed")) {
+                    continue;
+                } else if (key.equalsIgnoreCase("threads")) {
+                    reader.setThreadCount(Integer.parseInt(value));
+                } else if (key.equalsIgnoreCase("sampleSize")) {
+                    reader.setSampleSize(Integer.parseInt(value));
+                } else if (key.equalsIgnoreCase("xColumn")) {
+                    xColumn = value;
+                } else if (key.equalsIgnoreCase("yColumn")) {
+                    yColumn = value;
+                } else if (key.equalsIgnoreCase("srid")) {
+                    reader.setSrid(Integer.parseInt(value));
+                } else {
+                    h2Options.append(option).append(" ");
+                }
+            } catch (NumberFormatException ex) {
+                throw new SQLException("The option " + key + " must be an integer", ex);
+            }
+        }
+        if (xColumn != null || yColumn != null) {
+            reader.setPointColumns(xColumn, yColumn);
+        }
+        Csv csv = new Csv();
+        String charset = csv.setOptions(h2Options.toString().trim());
+        if (charset != null) {
+            reader.setCharset(Charset.forName(charset));
+        }
+        reader.setFieldSeparator(csv.getFieldSeparatorRead());
+        reader.setFieldDelimiter(csv.getFieldDelimiter());
+        reader.setNullString(csv.getNullString());
+        reader.read(connection, outputTable, dbType, progress);
+    }
 }
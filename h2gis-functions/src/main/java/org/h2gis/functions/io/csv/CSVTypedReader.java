@@ -0,0 +1,703 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.csv;
+
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Import a CSV file into a table with typed columns.
+ *
+ * The first rows of the file are sampled to choose the type of each column
+ * (INTEGER, BIGINT, DOUBLE PRECISION, DATE, GEOMETRY from WKT or VARCHAR).
+ * A point geometry can also be built from two coordinate columns.
+ *
+ * The file is read by blocks that end on a record boundary. The blocks are
+ * split into fields and converted on a pool of threads directly from the
+ * bytes, then inserted in the file order.
+ */
+public class CSVTypedReader {
+
+    private static final int BATCH_MAX_SIZE = 200;
+    private static final int BLOCK_SIZE = 1 << 22;
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("[-+]?\\d{1,19}");
+    private static final Pattern DOUBLE_PATTERN = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern WKT_PATTERN = Pattern.compile(
+            "(?i)(POINT|LINESTRING|POLYGON|MULTIPOINT|MULTILINESTRING|MULTIPOLYGON|GEOMETRYCOLLECTION)\\s*(Z|M|ZM)?\\s*[(E].*");
+
+    /**
+     * Column types that can be inferred
+     */
+    public enum ColumnType {
+        INTEGER("INTEGER"), BIGINT("BIGINT"), DOUBLE("DOUBLE PRECISION"), DATE("DATE"), GEOMETRY("GEOMETRY"), VARCHAR("VARCHAR");
+
+        private final String sqlType;
+
+        ColumnType(String sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        /**
+         * @return SQL type of the column
+         */
+        public String getSqlType() {
+            return sqlType;
+        }
+    }
+
+    private final File fileName;
+    private Charset charset = Charset.forName("UTF-8");
+    private byte fieldSeparator = ',';
+    private byte fieldDelimiter = '"';
+    private String nullString = "";
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int sampleSize = 1000;
+    private String xColumn;
+    private String yColumn;
+    private int srid = 0;
+    private String[] columnNames;
+    private ColumnType[] columnTypes;
+    private int xIndex = -1;
+    private int yIndex = -1;
+
+    /**
+     * @param fileName CSV file
+     */
+    public CSVTypedReader(File fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @param charset Encoding of the file, it must encode the ASCII
+     * characters on a single byte
+     * @throws SQLException If the charset is not supported
+     */
+    public void setCharset(Charset charset) throws SQLException {
+        if (!isAsciiCompatible(charset)) {
+            throw new SQLException("The charset " + charset.name() + " is not supported by the typed CSV import");
+        }
+        this.charset = charset;
+    }
+
+    /**
+     * @param fieldSeparator Field separator, a single byte character
+     */
+    public void setFieldSeparator(char fieldSeparator) {
+        this.fieldSeparator = (byte) fieldSeparator;
+    }
+
+    /**
+     * @param fieldDelimiter Quote character, a single byte character or 0 to
+     * disable quoting
+     */
+    public void setFieldDelimiter(char fieldDelimiter) {
+        this.fieldDelimiter = (byte) fieldDelimiter;
+    }
+
+    /**
+     * @param nullString Unquoted value read as NULL
+     */
+    public void setNullString(String nullString) {
+        this.nullString = nullString;
+    }
+
+    /**
+     * @param threadCount Number of threads used to parse the blocks
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @param sampleSize Number of rows read to infer the column types
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = Math.max(1, sampleSize);
+    }
+
+    /**
+     * Build a THE_GEOM point column from two coordinate columns
+     *
+     * @param xColumn Name of the X (longitude) column
+     * @param yColumn Name of the Y (latitude) column
+     */
+    public void setPointColumns(String xColumn, String yColumn) {
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+    }
+
+    /**
+     * @param srid SRID of the geometry columns
+     */
+    public void setSrid(int srid) {
+        this.srid = srid;
+    }
+
+    /**
+     * @return Column names read from the header, available after the import
+     */
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return Inferred column types, available after the import
+     */
+    public ColumnType[] getColumnTypes() {
+        return columnTypes;
+    }
+
+    /**
+     * @param charset
+     * @return True if the ASCII characters are encoded on one byte with the
+     * same value
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        String ascii = "azAZ09,;|\t\"'\r\n";
+        return Arrays.equals(ascii.getBytes(charset), ascii.getBytes(Charset.forName("US-ASCII")));
+    }
+
+    /**
+     * Create the table and copy the content of the file
+     *
+     * @param connection Active connection
+     * @param outputTable Table name
+     * @param dbType Database type
+     * @param progress Progress visitor
+     * @throws SQLException
+     * @throws IOException
+     */
+    public void read(Connection connection, String outputTable, DBTypes dbType, ProgressVisitor progress) throws SQLException, IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try (FileInputStream fis = new FileInputStream(fileName); FileChannel fc = fis.getChannel()) {
+            long fileSize = fc.size();
+            BlockReader blockReader = new BlockReader(fc);
+            byte[] block = blockReader.next();
+            if (block == null) {
+                throw new SQLException("The CSV file " + fileName.getName() + " is empty");
+            }
+            List<String[]> rows = split(block, block.length);
+            // Sample more blocks if the first one does not contain enough rows
+            List<byte[]> sampledBlocks = new ArrayList<>();
+            sampledBlocks.add(block);
+            while (rows.size() <= sampleSize && (block = blockReader.next()) != null) {
+                sampledBlocks.add(block);
+                rows.addAll(split(block, block.length));
+            }
+            if (rows.isEmpty()) {
+                throw new SQLException("The CSV file " + fileName.getName() + " does not contain a header");
+            }
+            columnNames = readHeader(rows.remove(0));
+            inferTypes(rows);
+            createTable(connection, outputTable, dbType);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            String insert = getInsertQuery(outputTable);
+            try (PreparedStatement pst = connection.prepareStatement(insert)) {
+                DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                Inserter inserter = new Inserter(pst, metricsRecorder);
+                try {
+                    inserter.insert(convert(rows, new WKTReader(new GeometryFactory(new PrecisionModel(), srid))));
+                } catch (InvalidValueException ex) {
+                    throw ex.toSQLException(0);
+                }
+                rows = null;
+                sampledBlocks.clear();
+                ArrayDeque<Future<List<Object[]>>> pending = new ArrayDeque<>();
+                while ((block = blockReader.next()) != null) {
+                    final byte[] current = block;
+                    pending.add(executorService.submit(() -> convert(split(current, current.length),
+                            new WKTReader(new GeometryFactory(new PrecisionModel(), srid)))));
+                    if (pending.size() >= threadCount * 2) {
+                        inserter.insert(get(pending.poll(), inserter.getRowCount()));
+                        progress.setStep((int) (((double) blockReader.getPosition() / fileSize) * 100));
+                    }
+                    if (progress.isCanceled()) {
+                        throw new SQLException("Canceled by user");
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    inserter.insert(get(pending.poll(), inserter.getRowCount()));
+                }
+                inserter.flush();
+                // Commit once, a failure must not leave a partially loaded table
+                connection.commit();
+                metricsRecorder.end(fileName);
+            } catch (SQLException | IOException | RuntimeException ex) {
+                connection.rollback();
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("DROP TABLE IF EXISTS " + outputTable);
+                }
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @param future Conversion of a block
+     * @param previousRows Number of records read before the block
+     * @return Converted rows
+     * @throws SQLException
+     */
+    private static List<Object[]> get(Future<List<Object[]>> future, long previousRows) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The CSV import has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof InvalidValueException) {
+                throw ((InvalidValueException) ex.getCause()).toSQLException(previousRows);
+            }
+            throw new SQLException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    private String[] readHeader(String[] header) throws SQLException {
+        String[] names = new String[header.length];
+        for (int i = 0; i < header.length; i++) {
+            String name = header[i] == null ? "" : header[i].trim();
+            names[i] = name.isEmpty() ? "COLUMN" + i : name;
+            if (names[i].equalsIgnoreCase(xColumn)) {
+                xIndex = i;
+            }
+            if (names[i].equalsIgnoreCase(yColumn)) {
+                yIndex = i;
+            }
+        }
+        if ((xColumn != null || yColumn != null) && (xIndex < 0 || yIndex < 0)) {
+            throw new SQLException("The coordinate columns " + xColumn + ", " + yColumn + " are not in the CSV file");
+        }
+        return names;
+    }
+
+    /**
+     * Choose the narrowest type that accepts all the sampled values of each
+     * column
+     *
+     * @param rows Sampled rows
+     */
+    private void inferTypes(List<String[]> rows) {
+        columnTypes = new ColumnType[columnNames.length];
+        WKTReader wktReader = new WKTReader();
+        for (int i = 0; i < columnNames.length; i++) {
+            boolean isInteger = true, isBigInt = true, isDouble = true, isDate = true, isGeometry = true;
+            boolean hasValue = false;
+            int count = 0;
+            for (String[] row : rows) {
+                if (count++ >= sampleSize) {
+                    break;
+                }
+                String value = i < row.length ? row[i] : null;
+                if (value == null) {
+                    continue;
+                }
+                hasValue = true;
+                if (isBigInt) {
+                    Long longValue = INTEGER_PATTERN.matcher(value).matches() ? parseLong(value) : null;
+                    isBigInt = longValue != null;
+                    isInteger = isBigInt && isInteger && longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE;
+                }
+                isDouble = isDouble && DOUBLE_PATTERN.matcher(value).matches();
+                isDate = isDate && DATE_PATTERN.matcher(value).matches() && parseDate(value) != null;
+                if (isGeometry) {
+                    try {
+                        isGeometry = WKT_PATTERN.matcher(value).matches() && wktReader.read(value) != null;
+                    } catch (ParseException ex) {
+                        isGeometry = false;
+                    }
+                }
+            }
+            if (!hasValue) {
+                columnTypes[i] = ColumnType.VARCHAR;
+            } else if (isInteger) {
+                columnTypes[i] = ColumnType.INTEGER;
+            } else if (isBigInt) {
+                columnTypes[i] = ColumnType.BIGINT;
+            } else if (isDouble) {
+                columnTypes[i] = ColumnType.DOUBLE;
+            } else if (isDate) {
+                columnTypes[i] = ColumnType.DATE;
+            } else if (isGeometry) {
+                columnTypes[i] = ColumnType.GEOMETRY;
+            } else {
+                columnTypes[i] = ColumnType.VARCHAR;
+            }
+        }
+        if (xIndex >= 0) {
+            columnTypes[xIndex] = ColumnType.DOUBLE;
+            columnTypes[yIndex] = ColumnType.DOUBLE;
+        }
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static Date parseDate(String value) {
+        try {
+            return Date.valueOf(value);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private String getColumnName(String name, DBTypes dbType) {
+        if (name.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            return name;
+        }
+        return TableLocation.quoteIdentifier(name, dbType);
+    }
+
+    private void createTable(Connection connection, String outputTable, DBTypes dbType) throws SQLException {
+        StringBuilder createTable = new StringBuilder("CREATE TABLE ");
+        createTable.append(outputTable).append("(");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                createTable.append(",");
+            }
+            createTable.append(getColumnName(columnNames[i], dbType)).append(" ");
+            if (columnTypes[i] == ColumnType.GEOMETRY && srid > 0) {
+                createTable.append("GEOMETRY(GEOMETRY, ").append(srid).append(")");
+            } else {
+                createTable.append(columnTypes[i].getSqlType());
+            }
+        }
+        if (xIndex >= 0) {
+            createTable.append(", THE_GEOM GEOMETRY(POINT, ").append(srid).append(")");
+        }
+        createTable.append(")");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(createTable.toString());
+        }
+    }
+
+    private String getInsertQuery(String outputTable) {
+        StringBuilder insertTable = new StringBuilder("INSERT INTO ");
+        insertTable.append(outputTable).append(" VALUES(");
+        int columnCount = columnNames.length + (xIndex >= 0 ? 1 : 0);
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                insertTable.append(",");
+            }
+            insertTable.append("?");
+        }
+        insertTable.append(")");
+        return insertTable.toString();
+    }
+
+    /**
+     * Convert the text values into the column types
+     *
+     * @param rows Text rows
+     * @param wktReader Reader used for the geometry columns
+     * @return Converted rows
+     */
+    private List<Object[]> convert(List<String[]> rows, WKTReader wktReader) throws InvalidValueException {
+        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid);
+        int columnCount = columnNames.length + (xIndex >= 0 ? 1 : 0);
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (int r = 0; r < rows.size(); r++) {
+            String[] row = rows.get(r);
+            Object[] converted = new Object[columnCount];
+            for (int i = 0; i < columnNames.length && i < row.length; i++) {
+                String value = row[i];
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    switch (columnTypes[i]) {
+                        case INTEGER:
+                            converted[i] = Integer.parseInt(value.startsWith("+") ? value.substring(1) : value);
+                            break;
+                        case BIGINT:
+                            converted[i] = Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+                            break;
+                        case DOUBLE:
+                            converted[i] = Double.parseDouble(value);
+                            break;
+                        case DATE:
+                            converted[i] = Date.valueOf(value);
+                            break;
+                        case GEOMETRY:
+                            Geometry geometry = wktReader.read(value);
+                            geometry.setSRID(srid);
+                            converted[i] = geometry;
+                            break;
+                        default:
+                            converted[i] = value;
+                    }
+                } catch (IllegalArgumentException | ParseException ex) {
+                    throw new InvalidValueException(r, "The value '" + value + "' of the column " + columnNames[i]
+                            + " is not a " + columnTypes[i].name().toLowerCase(Locale.ROOT), ex);
+                }
+            }
+            if (xIndex >= 0 && converted[xIndex] != null && converted[yIndex] != null) {
+                converted[columnNames.length] = factory.createPoint(
+                        new Coordinate((Double) converted[xIndex], (Double) converted[yIndex]));
+            }
+            values.add(converted);
+        }
+        return values;
+    }
+
+    /**
+     * Split a block of complete records into fields
+     *
+     * @param bytes Block
+     * @param length Number of bytes to read
+     * @return Records
+     */
+    List<String[]> split(byte[] bytes, int length) {
+        List<String[]> rows = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        ByteArrayOutputStream quoted = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < length) {
+            fields.clear();
+            boolean endOfRecord = false;
+            while (!endOfRecord) {
+                if (fieldDelimiter != 0 && position < length && bytes[position] == fieldDelimiter) {
+                    // Quoted field, a doubled delimiter is an escaped delimiter
+                    quoted.reset();
+                    position++;
+                    int start = position;
+                    while (position < length) {
+                        if (bytes[position] == fieldDelimiter) {
+                            if (position + 1 < length && bytes[position + 1] == fieldDelimiter) {
+                                quoted.write(bytes, start, position + 1 - start);
+                                position += 2;
+                                start = position;
+                                continue;
+                            }
+                            break;
+                        }
+                        position++;
+                    }
+                    quoted.write(bytes, start, Math.min(position, length) - start);
+                    position++;
+                    fields.add(new String(quoted.toByteArray(), charset));
+                    // Skip the characters between the closing delimiter and the separator
+                    while (position < length && bytes[position] != fieldSeparator && bytes[position] != '\n') {
+                        position++;
+                    }
+                } else {
+                    int start = position;
+                    while (position < length && bytes[position] != fieldSeparator && bytes[position] != '\n') {
+                        position++;
+                    }
+                    int end = position;
+                    while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\r' || bytes[end - 1] == '\t')) {
+                        end--;
+                    }
+                    while (start < end && (bytes[start] == ' ' || bytes[start] == '\t')) {
+                        start++;
+                    }
+                    String value = new String(bytes, start, end - start, charset);
+                    fields.add(value.equals(nullString) ? null : value);
+                }
+                if (position >= length || bytes[position] == '\n') {
+                    endOfRecord = true;
+                }
+                position++;
+            }
+            // Skip the empty lines
+            if (!(fields.size() == 1 && fields.get(0) == null)) {
+                rows.add(fields.toArray(new String[0]));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Insert the converted rows by batch
+     */
+    private static class Inserter {
+        private final PreparedStatement pst;
+        private final DriverMetricsRecorder metricsRecorder;
+        private int batchSize = 0;
+        private long rowCount = 0;
+
+        Inserter(PreparedStatement pst, DriverMetricsRecorder metricsRecorder) {
+            this.pst = pst;
+            this.metricsRecorder = metricsRecorder;
+        }
+
+        void insert(List<Object[]> rows) throws SQLException {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    pst.setObject(i + 1, row[i]);
+                }
+                pst.addBatch();
+                batchSize++;
+                rowCount++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    flush();
+                }
+            }
+        }
+
+        long getRowCount() {
+            return rowCount;
+        }
+
+        void flush() throws SQLException {
+            if (batchSize > 0) {
+                metricsRecorder.databaseStage();
+                pst.executeBatch();
+                pst.clearBatch();
+                metricsRecorder.batchFlushed(batchSize);
+                batchSize = 0;
+            }
+        }
+    }
+
+    /**
+     * A value that does not match the type of its column. The row is relative
+     * to its block, the line in the file is only known when the blocks are
+     * inserted in order.
+     */
+    private static class InvalidValueException extends Exception {
+        private final int row;
+
+        InvalidValueException(int row, String message, Throwable cause) {
+            super(message, cause);
+            this.row = row;
+        }
+
+        /**
+         * @param previousRows Number of records read before the block
+         * @return Error that names the line of the value in the file
+         */
+        SQLException toSQLException(long previousRows) {
+            // The header is the first line
+            long line = previousRows + row + 2;
+            return new SQLException(getMessage() + " at line " + line
+                    + ", increase the sampleSize option or import the file without the typed option", getCause());
+        }
+    }
+
+    /**
+     * Read the file by blocks that end on a record boundary. A new line in
+     * a quoted field is not a record boundary.
+     */
+    private class BlockReader {
+        private final FileChannel fc;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        private byte[] remaining = new byte[0];
+        private long position = 0;
+        private boolean endOfFile = false;
+
+        BlockReader(FileChannel fc) {
+            this.fc = fc;
+        }
+
+        long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return The next block or null at the end of the file
+         * @throws IOException
+         */
+        byte[] next() throws IOException {
+            byte[] data = remaining;
+            while (true) {
+                if (endOfFile) {
+                    remaining = new byte[0];
+                    return data.length == 0 ? null : data;
+                }
+                buffer.clear();
+                int read = fc.read(buffer);
+                if (read < 0) {
+                    endOfFile = true;
+                    continue;
+                }
+                position += read;
+                byte[] merged = Arrays.copyOf(data, data.length + read);
+                System.arraycopy(buffer.array(), 0, merged, data.length, read);
+                data = merged;
+                int boundary = lastRecordBoundary(data);
+                if (boundary > 0) {
+                    remaining = Arrays.copyOfRange(data, boundary, data.length);
+                    return Arrays.copyOf(data, boundary);
+                }
+            }
+        }
+
+        /**
+         * @param data Bytes that start on a record boundary
+         * @return Position after the last new line that is not in a quoted field
+         */
+        private int lastRecordBoundary(byte[] data) {
+            boolean inQuotes = false;
+            int boundary = 0;
+            for (int i = 0; i < data.length; i++) {
+                byte b = data[i];
+                if (fieldDelimiter != 0 && b == fieldDelimiter) {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    boundary = i + 1;
+                }
+            }
+            return boundary;
+        }
+    }
+}
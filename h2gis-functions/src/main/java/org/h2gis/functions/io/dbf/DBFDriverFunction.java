@@ -32,11 +32,14 @@ import org.h2gis.functions.io.dbf.internal.DbaseFileException;
 import org.h2gis.functions.io.dbf.internal.DbaseFileHeader;
 import org.h2gis.functions.io.file_table.FileEngine;
 import org.h2gis.functions.io.file_table.H2TableIndex;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
+import org.h2gis.functions.io.utility.ParallelRowWriter;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.sql.*;
 import java.util.ArrayList;
@@ -56,6 +59,7 @@ public class DBFDriverFunction implements DriverFunction {
 
     public static String DESCRIPTION = "dBase III format";
     private static final int BATCH_MAX_SIZE = 200;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
 
     @Override
     public String[] exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
@@ -101,17 +105,7 @@ public class DBFDriverFunction implements DriverFunction {
                     header.setNumRecords(recordCount);
                     DBFDriver dbfDriver = new DBFDriver();
                     dbfDriver.initDriver(fileName, header);
-                    Object[] row = new Object[header.getNumFields()];
-                    while (rs.next()) {
-                        int i = 0;
-                        for (Integer index : columnIndexes) {
-                            row[i++] = rs.getObject(index);
-                        }
-                        dbfDriver.insertRow(row);
-                        if (copyProgress != null) {
-                            copyProgress.endStep();
-                        }
-                    }
+                    writeRows(rs, columnIndexes, dbfDriver, recordCount, copyProgress, progress);
                     dbfDriver.close();
                     return new String[]{tableReference};
 
@@ -146,17 +140,7 @@ public class DBFDriverFunction implements DriverFunction {
                         header.setNumRecords(recordCount);
                         DBFDriver dbfDriver = new DBFDriver();
                         dbfDriver.initDriver(fileName, header);
-                        Object[] row = new Object[header.getNumFields()];
-                        while (rs.next()) {
-                            int i = 0;
-                            for (Integer index : columnIndexes) {
-                                row[i++] = rs.getObject(index);
-                            }
-                            dbfDriver.insertRow(row);
-                            if (lineProgress != null) {
-                                lineProgress.endStep();
-                            }
-                        }
+                        writeRows(rs, columnIndexes, dbfDriver, recordCount, lineProgress, progress);
                         dbfDriver.close();
                         return new String[]{outputTable};
                     }
@@ -166,6 +150,68 @@ public class DBFDriverFunction implements DriverFunction {
         }
     }
 
+    /**
+     * Copy the rows of the result set into the dbf file. Large exports encode
+     * the records on a pool of threads.
+     *
+     * @param rs Result set to export
+     * @param columnIndexes Exported columns
+     * @param dbfDriver Driver in write mode
+     * @param recordCount Number of rows of the result set
+     * @param rowProgress Progress, one step per row, may be null
+     * @param progress Progress of the export
+     * @throws SQLException
+     * @throws IOException
+     */
+    private void writeRows(ResultSet rs, List<Integer> columnIndexes, DBFDriver dbfDriver, int recordCount,
+                           ProgressVisitor rowProgress, ProgressVisitor progress) throws SQLException, IOException {
+        Object[] row = new Object[columnIndexes.size()];
+        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+        ParallelRowWriter<ByteBuffer> rowWriter = null;
+        if (threadCount > 1 && recordCount > ParallelRowWriter.BLOCK_SIZE) {
+            rowWriter = new ParallelRowWriter<>(threadCount, dbfDriver::encodeRows, dbfDriver::writeEncodedRows);
+        }
+        try {
+            long rowCount = 0;
+            metricsRecorder.databaseStage();
+            while (rs.next()) {
+                int i = 0;
+                for (Integer index : columnIndexes) {
+                    row[i++] = rs.getObject(index);
+                }
+                metricsRecorder.fileStage();
+                if (rowWriter != null) {
+                    rowWriter.add(row);
+                } else {
+                    dbfDriver.insertRow(row);
+                }
+                rowCount++;
+                if (rowProgress != null) {
+                    rowProgress.endStep();
+                }
+                metricsRecorder.databaseStage();
+            }
+            metricsRecorder.fileStage();
+            if (rowWriter != null) {
+                rowWriter.finish();
+            }
+            metricsRecorder.addRows(rowCount);
+            metricsRecorder.end(dbfDriver.getDbfFile());
+        } finally {
+            if (rowWriter != null) {
+                rowWriter.close();
+            }
+        }
+    }
+
+    /**
+     * @param threadCount Number of threads used to encode the records of
+     * large exports, 1 to encode the records on the calling thread
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
     @Override
     public String[] exportTable(Connection connection, String tableReference, File fileName,String encoding, ProgressVisitor progress) throws SQLException, IOException {
         return exportTable(connection, tableReference, fileName,  encoding, false,progress);
@@ -253,6 +299,7 @@ public class DBFDriverFunction implements DriverFunction {
                                 String.format("INSERT INTO %s VALUES ( %s )", outputTable,
                                         getQuestionMark(dbfHeader.getNumFields() + 1)))) {
                             JDBCUtilities.attachCancelResultSet(preparedStatement, progress);
+                            DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
                             long batchSize = 0;
                             for (int rowId = 0; rowId < dbfDriver.getRowCount(); rowId++) {
                                 preparedStatement.setObject(1, rowId + 1);
@@ -262,18 +309,23 @@ public class DBFDriverFunction implements DriverFunction {
                                 preparedStatement.addBatch();
                                 batchSize++;
                                 if (batchSize >= BATCH_MAX_SIZE) {
+                                    metricsRecorder.databaseStage();
                                     preparedStatement.executeBatch();
                                     connection.commit();
+                                    metricsRecorder.batchFlushed((int) batchSize);
                                     preparedStatement.clearBatch();
                                     batchSize = 0;
                                     copyProgress.endStep();
                                 }
                             }
                             if (batchSize > 0) {
+                                metricsRecorder.databaseStage();
                                 preparedStatement.executeBatch();
                                 connection.commit();
+                                metricsRecorder.batchFlushed((int) batchSize);
                                 preparedStatement.clearBatch();
                             }
+                            metricsRecorder.end(dbfDriver.getDbfFile());
                             connection.setAutoCommit(true);
                         }
                     } catch (Exception ex) {
@@ -27,6 +27,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Manage DBFReader and DBFWriter
@@ -83,6 +85,41 @@ public class DBFDriver implements FileDriver {
         }
     }
 
+    /**
+     * Encode a block of rows. The driver is not modified, so blocks can be
+     * encoded on several threads then written in order with
+     * {@link #writeEncodedRows(ByteBuffer)}.
+     *
+     * @param rows Rows content, must be of the same type as declared in the header
+     * @return Encoded records
+     * @throws IOException
+     */
+    public ByteBuffer encodeRows(List<Object[]> rows) throws IOException {
+        checkWriter();
+        DbaseFileWriter.RecordEncoder recordEncoder = dbaseFileWriter.newRecordEncoder();
+        ByteBuffer records = ByteBuffer.allocate(rows.size() * recordEncoder.getRecordLength());
+        try {
+            for (Object[] values : rows) {
+                recordEncoder.encode(values, records);
+            }
+        } catch (DbaseFileException ex) {
+            throw new IOException(ex.getLocalizedMessage(), ex);
+        }
+        records.flip();
+        return records;
+    }
+
+    /**
+     * Write records encoded by {@link #encodeRows(List)}
+     *
+     * @param records Encoded records
+     * @throws IOException
+     */
+    public void writeEncodedRows(ByteBuffer records) throws IOException {
+        checkWriter();
+        dbaseFileWriter.write(records);
+    }
+
     private void checkReader() {
         if(dbaseFileReader == null) {
             throw new IllegalStateException("The driver is not in read mode");
@@ -31,6 +31,8 @@ import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Calendar;
 
 /**
@@ -58,6 +60,10 @@ import java.util.Calendar;
  *
  * </PRE></CODE>
  *
+ * When the file encoding is compatible with ASCII, the fields are read from
+ * their raw bytes: numbers are parsed without decoding, and the character values
+ * are interned in a dictionary by column.
+ *
  * @author Ian Schneider
  * @see
  * "http://svn.geotools.org/geotools/tags/2.3.1/plugin/shapefile/src/org/geotools/data/shapefile/dbf/DbaseFileReader.java"
@@ -71,6 +77,13 @@ public class DbaseFileReader {
     private CharsetDecoder decoder;
     private char[] fieldTypes;
     private int[] fieldLengths;
+    private int[] fieldOffsets;
+    private byte[] fieldBytes;
+    private boolean asciiCompatible;
+    private ValueDictionary[] dictionaries;
+    /** Powers of ten exactly represented by a double */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
     private static final Logger LOG = LoggerFactory.getLogger(DbaseFileReader.class);
 
     /**
@@ -98,14 +111,37 @@ public class DbaseFileReader {
         // Set up some buffers and lookups for efficiency
         fieldTypes = new char[header.getNumFields()];
         fieldLengths = new int[header.getNumFields()];
+        fieldOffsets = new int[header.getNumFields()];
+        dictionaries = new ValueDictionary[header.getNumFields()];
+        int maxFieldLength = 0;
         for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
             fieldTypes[i] = header.getFieldType(i);
             fieldLengths[i] = header.getFieldLength(i);
+            fieldOffsets[i] = i == 0 ? 0 : fieldOffsets[i - 1] + fieldLengths[i - 1];
+            maxFieldLength = Math.max(maxFieldLength, fieldLengths[i]);
+            if (fieldTypes[i] == 'C' || fieldTypes[i] == 'c') {
+                dictionaries[i] = new ValueDictionary();
+            }
         }
+        fieldBytes = new byte[maxFieldLength];
 
         charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
         Charset chars = Charset.forName(header.getFileEncoding());
         decoder = chars.newDecoder();
+        asciiCompatible = isAsciiCompatible(chars);
+    }
+
+    /**
+     * @param charset
+     * @return True if the ASCII characters are encoded on one byte with the
+     * same value
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        String ascii = " 09azAZ+-.,*";
+        return Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
     }
 
     /**
@@ -134,32 +170,204 @@ public class DbaseFileReader {
         charBuffer = null;
         decoder = null;
         header = null;
+        dictionaries = null;
     }
 
-    /**
-     * @param pos Pos index in the buffer
-     * @param length Array length to extract
-     * @return byte array extracted from the buffer
-     * @throws IOException
-     */
-    private byte[] getBytes(long pos, int length) throws IOException {
-        byte[] bytes = new byte[length];
-        buffer.get(pos, bytes);
-        return bytes;
+    public Value getFieldValue(int row, int column) throws IOException {
+        int fieldLength = fieldLengths[column];
+        buffer.get(getPositionFor(row, column), fieldBytes, 0, fieldLength);
+        if (asciiCompatible && fieldLength > 0) {
+            Value value = readRawField(column, fieldLength);
+            if (value != null) {
+                return value;
+            }
+        }
+        return decodeField(column, fieldLength);
     }
 
-    public Value getFieldValue(int row, int column) throws IOException {
-        long fieldPosition = getPositionFor(row, column);
-        int fieldLength = getLengthFor(column);
-        byte[] fieldBytes = getBytes(fieldPosition, fieldLength);
-        ByteBuffer field = ByteBuffer.wrap(fieldBytes);
+    private Value decodeField(int column, int fieldLength) throws IOException {
+        ByteBuffer field = ByteBuffer.wrap(fieldBytes, 0, fieldLength);
 
         charBuffer.clear();
         decoder.decode(field, charBuffer, true);
         charBuffer.flip();
 
         return readObject(0, column);
+    }
+
+    /**
+     * Read the field from its bytes without decoding it
+     *
+     * @param column Field index
+     * @param fieldLength Field length
+     * @return The value or null if the field must be decoded
+     */
+    private Value readRawField(int column, int fieldLength) throws IOException {
+        switch (fieldTypes[column]) {
+            case 'l':
+            case 'L':
+                switch (fieldBytes[0]) {
+                    case 't':
+                    case 'T':
+                    case 'Y':
+                    case 'y':
+                        return ValueBoolean.TRUE;
+                    case 'f':
+                    case 'F':
+                    case 'N':
+                    case 'n':
+                        return ValueBoolean.FALSE;
+                    default:
+                        return fieldBytes[0] >= 0 ? ValueNull.INSTANCE : null;
+                }
+            case 'c':
+            case 'C':
+                if (fieldBytes[0] == 0) {
+                    return ValueNull.INSTANCE;
+                }
+                return readCharacters(column, fieldLength);
+            case 'n':
+            case 'N':
+                if (fieldBytes[0] == '*') {
+                    return ValueNull.INSTANCE;
+                }
+                if (header.getFieldDecimalCount(column) == 0) {
+                    return parseInteger(fieldLength);
+                }
+                return parseDouble(fieldLength);
+            case 'f':
+            case 'F':
+                if (fieldBytes[0] == '*') {
+                    return ValueNull.INSTANCE;
+                }
+                return parseDouble(fieldLength);
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b >= 0 && (b == 0 || Character.isWhitespace((char) b));
+    }
+
+    /**
+     * Character field, trimmed then interned in the column dictionary
+     */
+    private Value readCharacters(int column, int fieldLength) throws IOException {
+        int start = 0;
+        int end = fieldLength - 1;
+        while (start < end && isBlank(fieldBytes[start])) {
+            start++;
+        }
+        while (end > start && isBlank(fieldBytes[end])) {
+            end--;
+        }
+        int length = end + 1 - start;
+        ValueDictionary dictionary = dictionaries[column];
+        Value value = dictionary == null ? null : dictionary.get(fieldBytes, start, length);
+        if (value == null) {
+            boolean ascii = true;
+            for (int i = start; i <= end && ascii; i++) {
+                ascii = fieldBytes[i] >= 0;
+            }
+            if (ascii) {
+                value = ValueVarchar.get(new String(fieldBytes, start, length, StandardCharsets.ISO_8859_1));
+            } else {
+                value = decodeField(column, fieldLength);
+            }
+            if (dictionary != null) {
+                dictionary.put(fieldBytes, start, length, value);
+                if (!dictionary.isEnabled()) {
+                    // Too many distinct values, the next rows skip the lookup
+                    dictionaries[column] = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Parse an integer field made of an optional sign and at most 18 digits
+     *
+     * @return The value or null if the field must be decoded
+     */
+    private Value parseInteger(int fieldLength) {
+        int start = 0;
+        int end = fieldLength;
+        while (start < end && fieldBytes[start] >= 0 && fieldBytes[start] <= ' ') {
+            start++;
+        }
+        while (end > start && fieldBytes[end - 1] >= 0 && fieldBytes[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (fieldBytes[start] == '-' || fieldBytes[start] == '+')) {
+            negative = fieldBytes[start] == '-';
+            start++;
+        }
+        if (start == end || end - start > 18) {
+            return null;
+        }
+        long number = 0;
+        for (int i = start; i < end; i++) {
+            int digit = fieldBytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            number = number * 10 + digit;
+        }
+        if (negative) {
+            number = -number;
+        }
+        if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+            return ValueInteger.get((int) number);
+        }
+        return ValueBigint.get(number);
+    }
 
+    /**
+     * Parse a decimal field made of an optional sign, at most 15 digits and a
+     * dot. The value is the exact mantissa divided by an exact power of ten so
+     * it is rounded as Double.parseDouble does.
+     *
+     * @return The value or null if the field must be decoded
+     */
+    private Value parseDouble(int fieldLength) {
+        int start = 0;
+        int end = fieldLength;
+        while (start < end && fieldBytes[start] >= 0 && fieldBytes[start] <= ' ') {
+            start++;
+        }
+        while (end > start && fieldBytes[end - 1] >= 0 && fieldBytes[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (fieldBytes[start] == '-' || fieldBytes[start] == '+')) {
+            negative = fieldBytes[start] == '-';
+            start++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            byte b = fieldBytes[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0 || digits > 15 || decimals >= POWERS_OF_TEN.length) {
+            return null;
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return ValueDouble.get(negative ? -value : value);
     }
 
     public int getLengthFor(int column) {
@@ -169,12 +377,7 @@ public class DbaseFileReader {
     protected long getPositionFor(int row, int column) {
         long recordOffset = header.getHeaderLength() + (long) row
                 * header.getRecordLength() + 1;
-        long fieldOffset = 0;
-        for (int i = 0; i < column; i++) {
-            fieldOffset += header.getFieldLength(i);
-        }
-
-        return fieldOffset + recordOffset;
+        return fieldOffsets[column] + recordOffset;
     }
 
     private Value readObject(final int fieldOffset, final int fieldNum) throws IOException {
@@ -22,8 +22,11 @@ package org.h2gis.functions.io.dbf.internal;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.util.Arrays;
@@ -44,6 +47,10 @@ import java.util.Locale;
  * </PRE></CODE> You must supply the <CODE>moreRecords</CODE> and
  * <CODE>getMyRecord()</CODE> logic...
  *
+ * Records are packed in a buffer of several records before being written to
+ * the channel. Records can also be encoded on other threads with a
+ * {@link RecordEncoder} then appended in order with {@link #write(ByteBuffer)}.
+ *
  * @author Ian Schneider
  * @source $URL:
  * http://svn.geotools.org/geotools/trunk/gt/modules/plugin/shapefile/src/main/java/org/geotools/data/shapefile/dbf/DbaseFileWriter.java
@@ -51,18 +58,13 @@ import java.util.Locale;
  */
 public class DbaseFileWriter {
 
+    /** Size of the buffer of records written at once to the channel */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     private DbaseFileHeader header;
-    private DbaseFileWriter.FieldFormatter formatter;
     WritableByteChannel channel;
     private ByteBuffer buffer;
     private Charset charset;
-
-    /**
-     * The null values to use for each column. This will be accessed only when
-     * null values are actually encountered, but it is allocated in the ctor to
-     * save time and memory.
-     */
-    private final byte[][] nullValues;
+    private RecordEncoder recordEncoder;
 
     /**
      * Create a DbaseFileWriter using the specified header and writing to the
@@ -100,56 +102,22 @@ public class DbaseFileWriter {
         this.channel = out;
         // DBase does not support UTF-8
         this.charset = charset == null ? Charset.forName(DbaseFileHeader.DEFAULT_ENCODING) : charset;
-        this.formatter = new DbaseFileWriter.FieldFormatter(this.charset);
-
-        // As the 'shapelib' osgeo project does, we use specific values for
-        // null cells. We can set up these values for each column once, in
-        // the constructor, to save time and memory.
-        nullValues = new byte[header.getNumFields()][];
-        for (int i = 0; i < nullValues.length; i++) {
-            char nullChar;
-            switch (header.getFieldType(i)) {
-                case 'C':
-                case 'c':
-                case 'M':
-                case 'G':
-                    nullChar = '\0';
-                    break;
-                case 'L':
-                case 'l':
-                    nullChar = '?';
-                    break;
-                case 'N':
-                case 'n':
-                case 'F':
-                case 'f':
-                    nullChar = '*';
-                    break;
-                case 'D':
-                case 'd':
-                    nullChar = '0';
-                    break;
-                case '@':
-                    // becomes day 0 time 0.
-                    nullChar = '\0';
-                    break;
-                default:
-                    // catches at least 'D', and 'd'
-                    nullChar = '0';
-                    break;
-            }
-            nullValues[i] = new byte[header.getFieldLength(i)];
-            Arrays.fill(nullValues[i], (byte) nullChar);
-        }
-        buffer = ByteBuffer.allocateDirect(header.getRecordLength());
+        this.recordEncoder = new RecordEncoder(header, this.charset);
+        int recordLength = header.getRecordLength();
+        buffer = ByteBuffer.allocateDirect(Math.max(1, WRITE_BUFFER_SIZE / recordLength) * recordLength);
     }
 
-    private void write() throws IOException {
-        buffer.position(0);
-        int r = buffer.remaining();
-        do {
-            r -= channel.write(buffer);
-        } while (r > 0);
+    /**
+     * Write the buffered records to the channel
+     *
+     * @throws java.io.IOException If IO error occurs.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
     }
 
     /**
@@ -160,71 +128,35 @@ public class DbaseFileWriter {
      * @throws DbaseFileException If the entry doesn't comply to the header.
      */
     public void write(Object[] record) throws IOException, DbaseFileException {
-
-        if (record.length != header.getNumFields()) {
-            throw new DbaseFileException("Wrong number of fields "
-                    + record.length + " expected " + header.getNumFields());
+        if (buffer.remaining() < header.getRecordLength()) {
+            flush();
         }
+        recordEncoder.encode(record, buffer);
+    }
 
-        buffer.position(0);
-
-        // put the 'not-deleted' marker
-        buffer.put((byte) ' ');
-
-        for (int i = 0; i < header.getNumFields(); i++) {
-            Object value = record[i];
-            if (value == null) {
-                buffer.put(nullValues[i]);
-            } else {
-                String fieldString = fieldString(value, i);
-                if (header.getFieldLength(i) != fieldString
-                        .getBytes(charset.name()).length) {
-                    buffer.put(nullValues[i]);
-                } else {
-                    buffer.put(fieldString.getBytes(charset.name()));
-                }
+    /**
+     * Write records encoded by a {@link RecordEncoder} of this writer.
+     *
+     * @param records Encoded records, from the position to the limit of the
+     * buffer
+     * @throws java.io.IOException If IO error occurs.
+     */
+    public void write(ByteBuffer records) throws IOException {
+        if (records.remaining() <= buffer.remaining()) {
+            buffer.put(records);
+        } else {
+            flush();
+            while (records.hasRemaining()) {
+                channel.write(records);
             }
-
         }
-
-        write();
     }
 
-    private String fieldString(Object obj, final int col) {
-        String o;
-        final int fieldLen = header.getFieldLength(col);
-        switch (header.getFieldType(col)) {
-            case 'C':
-            case 'M':
-            case 'G':
-            case 'c':
-                o = formatter.getFieldString(fieldLen, obj.toString());
-                break;
-            case 'L':
-            case 'l':
-                o = (obj == null ? "F" : (Boolean) obj ? "T" : "F");
-                break;
-            case 'N':
-            case 'n':
-                // int?
-                if (header.getFieldDecimalCount(col) == 0) {
-                    o = formatter.getFieldString(fieldLen, 0, (Number) obj );
-                    break;
-                }
-            case 'F':
-            case 'f':
-                o = formatter.getFieldString(fieldLen, header
-                        .getFieldDecimalCount(col), (Number) obj);
-                break;
-            case 'D':
-            case 'd':
-                o = formatter.getFieldString((Date) obj );
-                break;
-            default:
-                throw new IllegalStateException("Unknown type "
-                        + header.getFieldType(col));
-        }
-        return o;
+    /**
+     * @return A new record encoder, an encoder must be used by a single thread
+     */
+    public RecordEncoder newRecordEncoder() {
+        return new RecordEncoder(header, charset);
     }
 
     /**
@@ -242,12 +174,170 @@ public class DbaseFileWriter {
         // buffer.put((byte) 0).position(0).limit(1);
         // write();
         if (channel.isOpen()) {
+            flush();
             channel.close();
         }
 
         buffer = null;
         channel = null;
-        formatter = null;
+        recordEncoder = null;
+    }
+
+    /**
+     * Encode records in the dbase format. The encoder keeps formatting state,
+     * use one encoder by thread.
+     */
+    public static class RecordEncoder {
+
+        private final DbaseFileHeader header;
+        private final FieldFormatter formatter;
+        private final CharsetEncoder encoder;
+        private final ByteBuffer fieldBuffer;
+
+        /**
+         * The null values to use for each column. This will be accessed only when
+         * null values are actually encountered, but it is allocated in the ctor to
+         * save time and memory.
+         */
+        private final byte[][] nullValues;
+
+        private RecordEncoder(DbaseFileHeader header, Charset charset) {
+            this.header = header;
+            this.formatter = new FieldFormatter(charset);
+            this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            // As the 'shapelib' osgeo project does, we use specific values for
+            // null cells. We can set up these values for each column once, in
+            // the constructor, to save time and memory.
+            nullValues = new byte[header.getNumFields()][];
+            for (int i = 0; i < nullValues.length; i++) {
+                char nullChar;
+                switch (header.getFieldType(i)) {
+                    case 'C':
+                    case 'c':
+                    case 'M':
+                    case 'G':
+                        nullChar = '\0';
+                        break;
+                    case 'L':
+                    case 'l':
+                        nullChar = '?';
+                        break;
+                    case 'N':
+                    case 'n':
+                    case 'F':
+                    case 'f':
+                        nullChar = '*';
+                        break;
+                    case 'D':
+                    case 'd':
+                        nullChar = '0';
+                        break;
+                    case '@':
+                        // becomes day 0 time 0.
+                        nullChar = '\0';
+                        break;
+                    default:
+                        // catches at least 'D', and 'd'
+                        nullChar = '0';
+                        break;
+                }
+                nullValues[i] = new byte[header.getFieldLength(i)];
+                Arrays.fill(nullValues[i], (byte) nullChar);
+            }
+            int maxFieldLength = 0;
+            for (int i = 0; i < header.getNumFields(); i++) {
+                maxFieldLength = Math.max(maxFieldLength, header.getFieldLength(i));
+            }
+            fieldBuffer = ByteBuffer.allocate(maxFieldLength);
+        }
+
+        /**
+         * @return Length in bytes of an encoded record
+         */
+        public int getRecordLength() {
+            return header.getRecordLength();
+        }
+
+        /**
+         * Encode a single dbase record.
+         *
+         * @param record The entries to write.
+         * @param out Buffer that receives the record, must have at least
+         * {@link #getRecordLength()} bytes remaining.
+         * @throws DbaseFileException If the entry doesn't comply to the header.
+         */
+        public void encode(Object[] record, ByteBuffer out) throws DbaseFileException {
+            if (record.length != header.getNumFields()) {
+                throw new DbaseFileException("Wrong number of fields "
+                        + record.length + " expected " + header.getNumFields());
+            }
+            // put the 'not-deleted' marker
+            out.put((byte) ' ');
+            for (int i = 0; i < nullValues.length; i++) {
+                Object value = record[i];
+                if (value == null || !encodeField(fieldString(value, i), header.getFieldLength(i))) {
+                    out.put(nullValues[i]);
+                } else {
+                    out.put(fieldBuffer);
+                }
+            }
+        }
+
+        /**
+         * Encode a field value in the field buffer
+         *
+         * @return False if the encoded value does not have the length of the field
+         */
+        private boolean encodeField(String value, int fieldLength) {
+            fieldBuffer.clear();
+            fieldBuffer.limit(fieldLength);
+            encoder.reset();
+            if (encoder.encode(CharBuffer.wrap(value), fieldBuffer, true).isOverflow()
+                    || encoder.flush(fieldBuffer).isOverflow() || fieldBuffer.hasRemaining()) {
+                return false;
+            }
+            fieldBuffer.flip();
+            return true;
+        }
+
+        private String fieldString(Object obj, final int col) {
+            String o;
+            final int fieldLen = header.getFieldLength(col);
+            switch (header.getFieldType(col)) {
+                case 'C':
+                case 'M':
+                case 'G':
+                case 'c':
+                    o = formatter.getFieldString(fieldLen, obj.toString());
+                    break;
+                case 'L':
+                case 'l':
+                    o = (obj == null ? "F" : (Boolean) obj ? "T" : "F");
+                    break;
+                case 'N':
+                case 'n':
+                    // int?
+                    if (header.getFieldDecimalCount(col) == 0) {
+                        o = formatter.getFieldString(fieldLen, 0, (Number) obj );
+                        break;
+                    }
+                case 'F':
+                case 'f':
+                    o = formatter.getFieldString(fieldLen, header
+                            .getFieldDecimalCount(col), (Number) obj);
+                    break;
+                case 'D':
+                case 'd':
+                    o = formatter.getFieldString((Date) obj );
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown type "
+                            + header.getFieldType(col));
+            }
+            return o;
+        }
     }
 
     /**
@@ -0,0 +1,115 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.dbf.internal;
+
+import org.h2.value.Value;
+
+/**
+ * Interning dictionary of the values of a dbf column.
+ *
+ * The values are looked up from the raw bytes of the field, so a code
+ * repeated on many rows is decoded and allocated only once. The dictionary is
+ * disabled when the column holds too many distinct values.
+ */
+final class ValueDictionary {
+    /** Maximum number of distinct values */
+    private static final int MAX_SIZE = 1024;
+    /** Longer values are not kept */
+    static final int MAX_BYTES = 64;
+    private byte[][] keys = new byte[MAX_SIZE * 2][];
+    private Value[] values = new Value[MAX_SIZE * 2];
+    private int size = 0;
+
+    /**
+     * @return False if the column has too many distinct values
+     */
+    boolean isEnabled() {
+        return keys != null;
+    }
+
+    /**
+     * @param bytes Field bytes
+     * @param start First byte of the value
+     * @param length Length of the value
+     * @return The value or null if the value is not in the dictionary
+     */
+    Value get(byte[] bytes, int start, int length) {
+        if (keys == null || length > MAX_BYTES) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(bytes, start, length) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (equals(keys[slot], bytes, start, length)) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a value missing from the dictionary
+     *
+     * @param bytes Field bytes
+     * @param start First byte of the value
+     * @param length Length of the value
+     * @param value Decoded value
+     */
+    void put(byte[] bytes, int start, int length, Value value) {
+        if (keys == null || length > MAX_BYTES) {
+            return;
+        }
+        if (size >= MAX_SIZE) {
+            // High cardinality column, interning does not pay
+            keys = null;
+            values = null;
+            return;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(bytes, start, length) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        byte[] key = new byte[length];
+        System.arraycopy(bytes, start, key, 0, length);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private static int hash(byte[] bytes, int start, int length) {
+        int h = 1;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] bytes, int start, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
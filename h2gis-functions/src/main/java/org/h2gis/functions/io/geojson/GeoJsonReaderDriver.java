@@ -26,6 +26,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import org.h2.value.ValueGeometry;
 import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.dbtypes.DBTypes;
@@ -64,6 +65,7 @@ public class GeoJsonReaderDriver {
     private int nbFeature = 1;
     private int featureCounter = 1;
     private ProgressVisitor progress = new EmptyProgressVisitor();
+    private DriverMetricsRecorder metricsRecorder;
     // For progression information return
     private static final int AVERAGE_NODE_SIZE = 500;
     boolean hasGeometryField = false;
@@ -138,6 +140,7 @@ public class GeoJsonReaderDriver {
 
             if (fileName.length() > 0) {
                 this.progress = progress.subProcess(100);
+                metricsRecorder = new DriverMetricsRecorder(this.progress);
                 init();
                 FileInputStream fis = new FileInputStream(fileName);
                 if (parseMetadata(new GZIPInputStream(fis))) {
@@ -146,6 +149,7 @@ public class GeoJsonReaderDriver {
                     fis = new FileInputStream(fileName);
                     parseData(new GZIPInputStream(fis));
                     connection.setAutoCommit(true);
+                    metricsRecorder.end(fileName);
                     return tableLocation;
                 } else {
                     throw new SQLException("Cannot create the table " + tableLocation + " to import the GeoJSON data");
@@ -186,12 +190,14 @@ public class GeoJsonReaderDriver {
      */
     private void parseGeoJson(ProgressVisitor progress) throws SQLException, IOException {
         this.progress = progress.subProcess(100);
+        metricsRecorder = new DriverMetricsRecorder(this.progress);
         init();
         if (parseMetadata(new FileInputStream(fileName))) {
             connection.setAutoCommit(false);
             GF = new GeometryFactory(new PrecisionModel(), parsedSRID);
             parseData(new FileInputStream(fileName));
             connection.setAutoCommit(true);
+            metricsRecorder.end(fileName);
 
         } else {
             throw new SQLException("Cannot create the table " + tableLocation + " to import the GeoJSON data");
@@ -1036,8 +1042,10 @@ public class GeoJsonReaderDriver {
                     preparedStatement.addBatch();
                     batchSize++;
                     if (batchSize >= BATCH_MAX_SIZE) {
+                        metricsRecorder.databaseStage();
                         preparedStatement.executeBatch();
                         connection.commit();
+                        metricsRecorder.batchFlushed((int) batchSize);
                         preparedStatement.clearBatch();
                         batchSize = 0;
                     }
@@ -1045,19 +1053,21 @@ public class GeoJsonReaderDriver {
                     token = jp.nextToken(); //START_OBJECT new feature                    
                     featureCounter++;
                     progress.setStep((featureCounter / nbFeature) * 100);
-                    if (batchSize > 0) {
-                        try {
-                            preparedStatement.executeBatch();
-                            connection.commit();
-                            preparedStatement.clearBatch();
-                        }catch (SQLException ex){
-                            throw new SQLException(ex.getNextException());
-                        }
-                    }
                 } else {
                     throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + geomType + "'");
                 }
             }
+            if (batchSize > 0) {
+                try {
+                    metricsRecorder.databaseStage();
+                    preparedStatement.executeBatch();
+                    connection.commit();
+                    metricsRecorder.batchFlushed((int) batchSize);
+                    preparedStatement.clearBatch();
+                }catch (SQLException ex){
+                    throw new SQLException(ex.getNextException());
+                }
+            }
             //LOOP END_ARRAY ]
             log.info(featureCounter-1 + " geojson features have been imported.");
         } else {
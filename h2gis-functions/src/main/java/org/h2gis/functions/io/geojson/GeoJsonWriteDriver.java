@@ -22,7 +22,9 @@ package org.h2gis.functions.io.geojson;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import org.h2gis.api.DriverMetrics;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.dbtypes.DBTypes;
@@ -139,6 +141,7 @@ public class GeoJsonWriteDriver {
         } else {
             throw new SQLException("Only .geojson , .gz or .zip extensions are supported");
         }
+        DriverMetrics.of(progress).addBytes(fileName.length());
     }
 
     /**
@@ -203,16 +206,25 @@ public class GeoJsonWriteDriver {
                 copyProgress.endStep();
 
                 //Iterate next rows and check SRID
+                DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                long featureCount = 1;
+                metricsRecorder.databaseStage();
                 while (rs.next()) {
+                    metricsRecorder.fileStage();
                     writeFeatureCheckSRID(jsonGenerator, rs, geometryInfo.second(), srid);
+                    featureCount++;
                     copyProgress.endStep();
+                    metricsRecorder.databaseStage();
                 }
+                metricsRecorder.fileStage();
                 copyProgress.endOfProgress();
                 // footer
                 jsonGenerator.writeEndArray();
                 jsonGenerator.writeEndObject();
                 jsonGenerator.flush();
                 jsonGenerator.close();
+                metricsRecorder.addRows(featureCount);
+                metricsRecorder.end();
             } finally {
                 rs.close();
             }
@@ -275,16 +287,25 @@ public class GeoJsonWriteDriver {
                     try {
                         ResultSetMetaData resultSetMetaData = rs.getMetaData();
                         cacheMetadata(resultSetMetaData);
+                        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                        long featureCount = 0;
+                        metricsRecorder.databaseStage();
                         while (rs.next()) {
+                            metricsRecorder.fileStage();
                             writeFeature(jsonGenerator, rs, geometryTableInfo.second());
+                            featureCount++;
                             copyProgress.endStep();
+                            metricsRecorder.databaseStage();
                         }
+                        metricsRecorder.fileStage();
                         copyProgress.endOfProgress();
                         // footer
                         jsonGenerator.writeEndArray();
                         jsonGenerator.writeEndObject();
                         jsonGenerator.flush();
                         jsonGenerator.close();
+                        metricsRecorder.addRows(featureCount);
+                        metricsRecorder.end();
 
                     } finally {
                         rs.close();
@@ -432,6 +453,7 @@ public class GeoJsonWriteDriver {
                 throw new SQLException("Only .geojson , .gz or .zip extensions are supported");
             }
         }
+        DriverMetrics.of(progress).addBytes(fileName.length());
     }
 
     /**
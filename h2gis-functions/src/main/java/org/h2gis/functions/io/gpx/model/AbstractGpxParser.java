@@ -20,12 +20,14 @@
 
 package org.h2gis.functions.io.gpx.model;
 
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 /**
  * Abstract class of all Gpx-Parsers. It contains the more general attributes,
@@ -55,6 +57,7 @@ public abstract class AbstractGpxParser extends DefaultHandler {
     //PreparedStatement to manage gpx tables
     private PreparedStatement wptPreparedStmt, rtePreparedStmt, rteptPreparedStmt,
             trkPreparedStmt, trkSegmentsPreparedStmt, trkPointsPreparedStmt;
+    private DriverMetricsRecorder metricsRecorder;
 
     /**
      * Fires one or more times for each text node encountered. It saves text
@@ -282,6 +285,36 @@ public abstract class AbstractGpxParser extends DefaultHandler {
         this.trkPointsPreparedStmt = trkPointsPreparedStmt;
     }
 
+    /**
+     * Gives the recorder of the import metrics.
+     *
+     * @return
+     */
+    public DriverMetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    /**
+     * Set the recorder of the import metrics.
+     *
+     * @param metricsRecorder
+     */
+    public void setMetricsRecorder(DriverMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Insert the current row, the insert is measured as a batch of one row.
+     *
+     * @param pStm Prepared statement of the table
+     * @throws SQLException
+     */
+    protected void insert(PreparedStatement pStm) throws SQLException {
+        metricsRecorder.databaseStage();
+        pStm.execute();
+        metricsRecorder.batchFlushed(1);
+    }
+
     /**
      * Gives the segment which is being parsed.
      *
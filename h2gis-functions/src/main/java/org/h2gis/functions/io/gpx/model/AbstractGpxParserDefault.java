@@ -21,6 +21,7 @@
 package org.h2gis.functions.io.gpx.model;
 
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
@@ -223,7 +224,9 @@ public abstract class AbstractGpxParserDefault extends AbstractGpxParser {
                     setReader(XMLReaderFactory.createXMLReader());
                     getReader().setErrorHandler(this);
                     getReader().setContentHandler(this);
+                    setMetricsRecorder(new DriverMetricsRecorder(progress));
                     getReader().parse(new InputSource(new FileInputStream(fileName)));
+                    getMetricsRecorder().end(fileName);
                     return tableNames.toArray(new String[0]);
                 } catch (SAXException ex) {
                     throw new SQLException(ex);
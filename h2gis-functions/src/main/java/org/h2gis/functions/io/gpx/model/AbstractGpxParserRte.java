@@ -61,6 +61,7 @@ public abstract class AbstractGpxParserRte extends AbstractGpxParser {
         setContentBuffer(parent.getContentBuffer());
         setRtePreparedStmt(parent.getRtePreparedStmt());
         setRteptPreparedStmt(parent.getRteptPreparedStmt());
+        setMetricsRecorder(parent.getMetricsRecorder());
         setElementNames(parent.getElementNames());
         setCurrentLine(parent.getCurrentLine());
         setRteList(new ArrayList<Coordinate>());
@@ -139,7 +140,7 @@ public abstract class AbstractGpxParserRte extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the route line ", ex);
             }
@@ -156,7 +157,7 @@ public abstract class AbstractGpxParserRte extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the route points ", ex);
             }
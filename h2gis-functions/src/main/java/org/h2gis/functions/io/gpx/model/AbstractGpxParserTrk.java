@@ -70,6 +70,7 @@ public abstract class AbstractGpxParserTrk extends AbstractGpxParser {
         setTrkPreparedStmt(parent.getTrkPreparedStmt());
         setTrkSegmentsPreparedStmt(parent.getTrkSegmentsPreparedStmt());
         setTrkPointsPreparedStmt(parent.getTrkPointsPreparedStmt());
+        setMetricsRecorder(parent.getMetricsRecorder());
         setElementNames(parent.getElementNames());
         setCurrentLine(parent.getCurrentLine());
         setTrksegList(new ArrayList<Coordinate>());
@@ -151,7 +152,7 @@ public abstract class AbstractGpxParserTrk extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the track line ", ex);
             }
@@ -175,7 +176,7 @@ public abstract class AbstractGpxParserTrk extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the track segment ", ex);
             }
@@ -191,7 +192,7 @@ public abstract class AbstractGpxParserTrk extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the track waypoints.", ex);
             }
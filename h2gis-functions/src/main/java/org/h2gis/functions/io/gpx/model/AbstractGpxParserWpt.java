@@ -50,6 +50,7 @@ public class AbstractGpxParserWpt extends AbstractGpxParser {
         setParent(parent);
         setContentBuffer(parent.getContentBuffer());
         setWptPreparedStmt(parent.getWptPreparedStmt());
+        setMetricsRecorder(parent.getMetricsRecorder());
         setElementNames(parent.getElementNames());
         setCurrentPoint(parent.getCurrentPoint());
     }
@@ -98,7 +99,7 @@ public class AbstractGpxParserWpt extends AbstractGpxParser {
                     pStm.setObject(i, object);
                     i++;
                 }
-                pStm.execute();
+                insert(pStm);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot import the waypoint.", ex);
             }
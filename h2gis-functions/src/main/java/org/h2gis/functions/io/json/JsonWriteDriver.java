@@ -24,6 +24,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -278,7 +279,11 @@ public class JsonWriteDriver {
                     try {
                         ResultSetMetaData rsmd = rs.getMetaData();
                         int numColumns = rsmd.getColumnCount();
+                        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                        long rowCount = 0;
+                        metricsRecorder.databaseStage();
                         while (rs.next()) {
+                            metricsRecorder.fileStage();
                             jsonGenerator.writeStartObject();
                             for (int i = 1; i < numColumns + 1; i++) {
                                 String columnName = rsmd.getColumnName(i);
@@ -286,11 +291,16 @@ public class JsonWriteDriver {
                                 writeObject(t, rs, i, jsonGenerator, columnName);
                             }
                             jsonGenerator.writeEndObject();
+                            rowCount++;
                             copyProgress.endStep();
+                            metricsRecorder.databaseStage();
                         }
+                        metricsRecorder.fileStage();
                         copyProgress.endOfProgress();
                         jsonGenerator.flush();
                         jsonGenerator.close();
+                        metricsRecorder.addRows(rowCount);
+                        metricsRecorder.end();
                     } finally {
                         rs.close();
                     }
@@ -333,7 +343,11 @@ public class JsonWriteDriver {
 
         ResultSetMetaData rsmd = rs.getMetaData();
         int numColumns = rsmd.getColumnCount();
+        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(p);
+        long writtenRows = 0;
+        metricsRecorder.databaseStage();
         while (rs.next()) {
+            metricsRecorder.fileStage();
             jsonGenerator.writeStartObject();
             for (int i = 1; i < numColumns + 1; i++) {
                 String columnName = rsmd.getColumnName(i);
@@ -341,11 +355,16 @@ public class JsonWriteDriver {
                 writeObject(t, rs, i, jsonGenerator, columnName);
             }
             jsonGenerator.writeEndObject();
+            writtenRows++;
             copyProgress.endStep();
+            metricsRecorder.databaseStage();
         }
+        metricsRecorder.fileStage();
         copyProgress.endOfProgress();
         jsonGenerator.flush();
         jsonGenerator.close();
+        metricsRecorder.addRows(writtenRows);
+        metricsRecorder.end();
     }
 
     /**
@@ -21,6 +21,7 @@
 package org.h2gis.functions.io.kml;
 
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.locationtech.jts.geom.Geometry;
 
 import javax.xml.stream.XMLOutputFactory;
@@ -249,10 +250,19 @@ public class KMLWriterDriver {
                 xmlOut.writeStartElement("name");
                 xmlOut.writeCharacters(tableName);
                 xmlOut.writeEndElement();//Name
+                DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+                long placemarkCount = 0;
+                metricsRecorder.databaseStage();
                 while (rs.next()) {
+                    metricsRecorder.fileStage();
                     writePlacemark(xmlOut, rs, geomField);
+                    placemarkCount++;
                     progress.endStep();
+                    metricsRecorder.databaseStage();
                 }
+                metricsRecorder.fileStage();
+                metricsRecorder.addRows(placemarkCount);
+                metricsRecorder.end();
 
             } finally {
                 rs.close();
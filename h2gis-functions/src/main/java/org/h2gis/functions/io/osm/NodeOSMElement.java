@@ -63,6 +63,20 @@ public class NodeOSMElement extends OSMElement {
                 latitude));
     }
 
+    /**
+     * @return Latitude value
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return Longitude value
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
     /**
      * @return Elevation (also known as altitude or height) above mean sea level in metre,
      *                  based on geoid model EGM 96 which is used by WGS 84 (GPS).
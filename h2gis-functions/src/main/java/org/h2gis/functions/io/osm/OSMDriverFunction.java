@@ -40,6 +40,7 @@ public class OSMDriverFunction implements DriverFunction {
     public static String DESCRIPTION = "OSM file (0.6)";
     public static String DESCRIPTION_GZ = "OSM Gzipped file (0.6)";
     public static String DESCRIPTION_BZ2 = "OSM Bzipped file (0.6)";
+    public static String DESCRIPTION_PBF = "OSM Protocolbuffer Binary Format file (0.6)";
 
 
     @Override
@@ -60,6 +61,8 @@ public class OSMDriverFunction implements DriverFunction {
             return DESCRIPTION_GZ;
         } else  if (format.equalsIgnoreCase("bz2")) {
             return DESCRIPTION_BZ2;
+        } else  if (format.equalsIgnoreCase("pbf")) {
+            return DESCRIPTION_PBF;
         } else {
             return "";
         }
@@ -69,7 +72,8 @@ public class OSMDriverFunction implements DriverFunction {
     public boolean isSpatialFormat(String extension) {
         return extension.equalsIgnoreCase("osm") ||
                 extension.equalsIgnoreCase("gz") ||
-                extension.equalsIgnoreCase("bz2");
+                extension.equalsIgnoreCase("bz2") ||
+                extension.equalsIgnoreCase("pbf");
     }
 
     @Override
@@ -123,14 +127,33 @@ public class OSMDriverFunction implements DriverFunction {
 
     @Override
     public String[] importFile(Connection connection, String tableReference, File fileName, String options, boolean deleteTables, ProgressVisitor progress) throws SQLException, IOException {
+        return importFile(connection, tableReference, fileName, options, deleteTables, false, progress);
+    }
+
+    /**
+     *
+     * @param connection Active connection, do not close this connection.
+     * @param tableReference prefix uses to store the OSM tables
+     * @param fileName File path to read
+     * @param options Encoding of the file
+     * @param deleteTables true to delete the existing tables
+     * @param wayGeometry true to store the linestring of the ways in the way
+     * table
+     * @param progress
+     * @throws SQLException Table write error
+     * @throws IOException File read error
+     */
+    public String[] importFile(Connection connection, String tableReference, File fileName, String options, boolean deleteTables,
+                               boolean wayGeometry, ProgressVisitor progress) throws SQLException, IOException {
         progress = DriverManager.check(connection,tableReference,fileName, progress);
         OSMParser osmp = new OSMParser(connection, fileName, options, deleteTables);
+        osmp.setWayGeometry(wayGeometry);
         return osmp.read(tableReference, progress);
     }
 
     @Override
     public String[] getImportFormats() {
-        return new String[]{"osm","osm.gz","osm.bz2"};
+        return new String[]{"osm","osm.gz","osm.bz2","osm.pbf"};
     }
 
 }
@@ -0,0 +1,153 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.osm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap index of the node coordinates, addressed directly by the node id.
+ *
+ * The coordinates are stored as two fixed point integers (1e-7 degree, the
+ * OSM precision) in a temporary memory mapped file. The file is sparse, only
+ * the pages that contain a node use disk space, so the index can address the
+ * whole range of the planet node ids while keeping the java heap small.
+ * The file is mapped by chunks, a chunk is only mapped when a node id falls
+ * in its range.
+ * Negative node ids (new objects written by editors such as JOSM) cannot be
+ * addressed in the file, they are kept in a heap map as they are few.
+ */
+public class OSMNodeIndex implements Closeable {
+
+    private static final int NODE_SIZE = 2 * Integer.BYTES;
+    // 16M nodes per mapped chunk (128MB of address space)
+    private static final int CHUNK_SHIFT = 24;
+    private static final long CHUNK_NODES = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_NODES - 1;
+    private static final double PRECISION = 1e7;
+    // Stored latitudes are shifted so that 0 means that the node is not in the index
+    private static final int LATITUDE_SHIFT = 1_000_000_000;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final Map<Long, double[]> negativeNodes = new HashMap<>();
+
+    /**
+     * Create the index in a temporary file
+     *
+     * @throws IOException
+     */
+    public OSMNodeIndex() throws IOException {
+        file = File.createTempFile("h2gis_osm_nodes", ".idx");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    private MappedByteBuffer getChunk(long id, boolean create) throws IOException {
+        int chunkIndex = (int) (id >>> CHUNK_SHIFT);
+        while (chunks.size() <= chunkIndex) {
+            chunks.add(null);
+        }
+        MappedByteBuffer chunk = chunks.get(chunkIndex);
+        if (chunk == null && create) {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkIndex * CHUNK_NODES * NODE_SIZE,
+                    CHUNK_NODES * NODE_SIZE);
+            chunks.set(chunkIndex, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Store the location of a node
+     *
+     * @param id Node id
+     * @param longitude Longitude in degree
+     * @param latitude Latitude in degree
+     * @throws IOException
+     */
+    public void put(long id, double longitude, double latitude) throws IOException {
+        if (id < 0) {
+            negativeNodes.put(id, new double[]{longitude, latitude});
+            return;
+        }
+        MappedByteBuffer chunk = getChunk(id, true);
+        int position = (int) ((id & CHUNK_MASK) * NODE_SIZE);
+        chunk.putInt(position, (int) Math.round(latitude * PRECISION) + LATITUDE_SHIFT);
+        chunk.putInt(position + Integer.BYTES, (int) Math.round(longitude * PRECISION));
+    }
+
+    /**
+     * Read the location of a node
+     *
+     * @param id Node id
+     * @param coordinate Array of size 2 that receives the longitude and the
+     * latitude
+     * @return False if the node is not in the index
+     * @throws IOException
+     */
+    public boolean get(long id, double[] coordinate) throws IOException {
+        if (id < 0) {
+            double[] node = negativeNodes.get(id);
+            if (node == null) {
+                return false;
+            }
+            coordinate[0] = node[0];
+            coordinate[1] = node[1];
+            return true;
+        }
+        if ((id >>> CHUNK_SHIFT) >= chunks.size()) {
+            return false;
+        }
+        MappedByteBuffer chunk = getChunk(id, false);
+        if (chunk == null) {
+            return false;
+        }
+        int position = (int) ((id & CHUNK_MASK) * NODE_SIZE);
+        int latitude = chunk.getInt(position);
+        if (latitude == 0) {
+            return false;
+        }
+        coordinate[0] = chunk.getInt(position + Integer.BYTES) / PRECISION;
+        coordinate[1] = (latitude - LATITUDE_SHIFT) / PRECISION;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        negativeNodes.clear();
+        channel.close();
+        randomAccessFile.close();
+        if (!file.delete()) {
+            // The mapped buffers may still lock the file until they are garbage collected
+            file.deleteOnExit();
+        }
+    }
+}
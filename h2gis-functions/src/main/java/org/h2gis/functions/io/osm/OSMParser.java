@@ -24,10 +24,14 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.h2.api.ErrorCode;
 import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateList;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -47,6 +51,7 @@ import java.sql.Types;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
@@ -96,6 +101,7 @@ public class OSMParser extends DefaultHandler {
     private WayOSMElement wayOSMElement;
     private OSMElement relationOSMElement;
     private ProgressVisitor progress = new EmptyProgressVisitor();
+    private DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
     private FileChannel fc;
     private long fileSize = 0;
     private long readFileSizeEachNode = 1;
@@ -104,6 +110,9 @@ public class OSMParser extends DefaultHandler {
     private static final int AVERAGE_NODE_SIZE = 500;
     private static String TAG_DUPLICATE_EXCEPTION = String.valueOf(ErrorCode.DUPLICATE_KEY_1);
     private Connection connection;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean wayGeometry = false;
+    private OSMNodeIndex nodeIndex;
 
     public OSMParser(Connection connection, File fileName, String encoding, boolean deleteTable) {
         this.connection=connection;
@@ -112,6 +121,24 @@ public class OSMParser extends DefaultHandler {
         this.deleteTable=deleteTable;
     }
 
+    /**
+     * @param threadCount Number of threads used to decode the blocks of an
+     * .osm.pbf file
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param wayGeometry True to build the linestring of each way while the
+     * file is read. The node locations are kept in an off-heap index so the
+     * geometry is written in the THE_GEOM column of the way table without
+     * joining the node tables afterwards.
+     */
+    public void setWayGeometry(boolean wayGeometry) {
+        this.wayGeometry = wayGeometry;
+    }
+
     /**
      * Read the OSM file and create its corresponding tables.
      *
@@ -121,8 +148,9 @@ public class OSMParser extends DefaultHandler {
      * @throws SQLException
      */
     public String[] read(String tableName, ProgressVisitor progress) throws SQLException {
-        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2"))) {
-            throw new SQLException(new IllegalArgumentException("This driver handle only .osm, .osm.gz and .osm.bz2 files"));
+        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2")
+                || fileName.getName().endsWith("osm.pbf"))) {
+            throw new SQLException(new IllegalArgumentException("This driver handle only .osm, .osm.gz, .osm.bz2 and .osm.pbf files"));
         }
         this.progress = progress.subProcess(100);
         // Initialisation
@@ -138,7 +166,17 @@ public class OSMParser extends DefaultHandler {
 
 
         FileInputStream fs = null;
+        metricsRecorder = new DriverMetricsRecorder(this.progress);
         try {
+            if (wayGeometry) {
+                nodeIndex = new OSMNodeIndex();
+            }
+            if (fileName.getName().endsWith(".osm.pbf")) {
+                // Blobs of the binary format are decoded in parallel
+                new OSMPbfReader(fileName, threadCount).read(this.progress, this::insertBlock);
+                flushBatches();
+                return outputOSMTableNames;
+            }
             fs = new FileInputStream(fileName);
             this.fc = fs.getChannel();
             this.fileSize = fc.size();
@@ -172,7 +210,7 @@ public class OSMParser extends DefaultHandler {
                     parser.parse(is);
                     return outputOSMTableNames;
                 } else {
-                    throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2");
+                    throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2, .osm.pbf");
                 }
             }
         } catch (SAXException ex) {
@@ -180,6 +218,7 @@ public class OSMParser extends DefaultHandler {
         } catch (IOException ex) {
             throw new SQLException("Cannot parse the file " + fileName.getAbsolutePath(), ex);
         } finally {
+            metricsRecorder.end(fileName);
             try {
                 if (fs != null) {
                     fs.close();
@@ -187,6 +226,14 @@ public class OSMParser extends DefaultHandler {
             } catch (IOException ex) {
                 throw new SQLException("Cannot close the file " + fileName.getAbsolutePath(), ex);
             }
+            try {
+                if (nodeIndex != null) {
+                    nodeIndex.close();
+                    nodeIndex = null;
+                }
+            } catch (IOException ex) {
+                throw new SQLException("Cannot close the node index", ex);
+            }
             // When the reading ends, close() method has to be called
             if (nodePreparedStmt != null) {
                 nodePreparedStmt.close();
@@ -261,7 +308,7 @@ public class OSMParser extends DefaultHandler {
         String nodeTagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.NODE_TAG, dbType);
         nodeTagPreparedStmt = OSMTablesFactory.createNodeTagTable(connection, nodeTagTableName);
         String wayTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY, dbType);
-        wayPreparedStmt = OSMTablesFactory.createWayTable(connection, wayTableName);
+        wayPreparedStmt = OSMTablesFactory.createWayTable(connection, wayTableName, wayGeometry);
         String wayTagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY_TAG, dbType);
         wayTagPreparedStmt = OSMTablesFactory.createWayTagTable(connection, wayTagTableName);
         String wayNodeTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY_NODE, dbType);
@@ -355,103 +402,51 @@ public class OSMParser extends DefaultHandler {
 
     @Override
     public void endDocument() throws SAXException {
-        // Execute remaining batch
         try {
-            nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize, 1);
-            nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize, 1);
-            wayPreparedStmtBatchSize = insertBatch(wayPreparedStmt, wayPreparedStmtBatchSize, 1);
-            wayTagPreparedStmtBatchSize = insertBatch(wayTagPreparedStmt, wayTagPreparedStmtBatchSize, 1);
-            relationPreparedStmtBatchSize = insertBatch(relationPreparedStmt, relationPreparedStmtBatchSize, 1);
-            relationTagPreparedStmtBatchSize = insertBatch(relationTagPreparedStmt, relationTagPreparedStmtBatchSize, 1);
-            nodeMemberPreparedStmtBatchSize = insertBatch(nodeMemberPreparedStmt,nodeMemberPreparedStmtBatchSize, 1);
-            wayMemberPreparedStmtBatchSize = insertBatch(wayMemberPreparedStmt, wayMemberPreparedStmtBatchSize, 1);
-            relationMemberPreparedStmtBatchSize = insertBatch(relationMemberPreparedStmt, relationMemberPreparedStmtBatchSize, 1);
-            wayNodePreparedStmtBatchSize = insertBatch(wayNodePreparedStmt, wayNodePreparedStmtBatchSize, 1);
+            flushBatches();
         } catch (SQLException ex) {
             throw new SAXException("Could not insert sql batch", ex);
         }
     }
 
+    /**
+     * Execute remaining batch
+     *
+     * @throws SQLException
+     */
+    private void flushBatches() throws SQLException {
+        nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize, 1);
+        nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize, 1);
+        wayPreparedStmtBatchSize = insertBatch(wayPreparedStmt, wayPreparedStmtBatchSize, 1);
+        wayTagPreparedStmtBatchSize = insertBatch(wayTagPreparedStmt, wayTagPreparedStmtBatchSize, 1);
+        relationPreparedStmtBatchSize = insertBatch(relationPreparedStmt, relationPreparedStmtBatchSize, 1);
+        relationTagPreparedStmtBatchSize = insertBatch(relationTagPreparedStmt, relationTagPreparedStmtBatchSize, 1);
+        nodeMemberPreparedStmtBatchSize = insertBatch(nodeMemberPreparedStmt,nodeMemberPreparedStmtBatchSize, 1);
+        wayMemberPreparedStmtBatchSize = insertBatch(wayMemberPreparedStmt, wayMemberPreparedStmtBatchSize, 1);
+        relationMemberPreparedStmtBatchSize = insertBatch(relationMemberPreparedStmt, relationMemberPreparedStmtBatchSize, 1);
+        wayNodePreparedStmtBatchSize = insertBatch(wayNodePreparedStmt, wayNodePreparedStmtBatchSize, 1);
+    }
+
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
         if (localName.compareToIgnoreCase("node") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                nodePreparedStmt.setObject(1, nodeOSMElement.getID());
-                nodePreparedStmt.setObject(2, nodeOSMElement.getPoint(gf));
-                nodePreparedStmt.setObject(3, nodeOSMElement.getElevation());
-                nodePreparedStmt.setObject(4, nodeOSMElement.getUser());
-                nodePreparedStmt.setObject(5, nodeOSMElement.getUID());
-                nodePreparedStmt.setObject(6, nodeOSMElement.getVisible());
-                nodePreparedStmt.setObject(7, nodeOSMElement.getVersion());
-                nodePreparedStmt.setObject(8, nodeOSMElement.getChangeSet());
-                nodePreparedStmt.setObject(9, nodeOSMElement.getTimeStamp(), Types.DATE);
-                nodePreparedStmt.setString(10, nodeOSMElement.getName());
-                nodePreparedStmt.addBatch();
-                nodePreparedStmtBatchSize++;
-                HashMap<String, String> tags = nodeOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    nodeTagPreparedStmt.setObject(1, nodeOSMElement.getID());
-                    nodeTagPreparedStmt.setObject(2, entry.getKey());
-                    nodeTagPreparedStmt.setObject(3, entry.getValue());
-                    nodeTagPreparedStmt.addBatch();
-                    nodeTagPreparedStmtBatchSize++;
-                }
+                insertNode(nodeOSMElement);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the node  :  " + nodeOSMElement.getID(), ex);
             }
         } else if (localName.compareToIgnoreCase("way") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                wayPreparedStmt.setObject(1, wayOSMElement.getID());
-                wayPreparedStmt.setObject(2, wayOSMElement.getUser());
-                wayPreparedStmt.setObject(3, wayOSMElement.getUID());
-                wayPreparedStmt.setObject(4, wayOSMElement.getVisible());
-                wayPreparedStmt.setObject(5, wayOSMElement.getVersion());
-                wayPreparedStmt.setObject(6, wayOSMElement.getChangeSet());
-                wayPreparedStmt.setTimestamp(7, wayOSMElement.getTimeStamp());
-                wayPreparedStmt.setString(8, wayOSMElement.getName());
-                wayPreparedStmt.addBatch();
-                wayPreparedStmtBatchSize++;
-                HashMap<String, String> tags = wayOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    wayTagPreparedStmt.setObject(1, wayOSMElement.getID());
-                    wayTagPreparedStmt.setObject(2, entry.getKey());
-                    wayTagPreparedStmt.setObject(3, entry.getValue());
-                    wayTagPreparedStmt.addBatch();
-                    wayTagPreparedStmtBatchSize++;
-                }
-                int order = 1;
-                for (long ref :  wayOSMElement.getNodesRef()) {
-                    wayNodePreparedStmt.setObject(1, wayOSMElement.getID());
-                    wayNodePreparedStmt.setObject(2, ref);
-                    wayNodePreparedStmt.setObject(3, order++);
-                    wayNodePreparedStmt.addBatch();
-                    wayNodePreparedStmtBatchSize++;
-                }
+                insertWay(wayOSMElement);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the way  :  " + wayOSMElement.getID(), ex);
             }
         } else if (localName.compareToIgnoreCase("relation") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                relationPreparedStmt.setObject(1, relationOSMElement.getID());
-                relationPreparedStmt.setObject(2, relationOSMElement.getUser());
-                relationPreparedStmt.setObject(3, relationOSMElement.getUID());
-                relationPreparedStmt.setObject(4, relationOSMElement.getVisible());
-                relationPreparedStmt.setObject(5, relationOSMElement.getVersion());
-                relationPreparedStmt.setObject(6, relationOSMElement.getChangeSet());
-                relationPreparedStmt.setTimestamp(7, relationOSMElement.getTimeStamp());
-                relationPreparedStmt.addBatch();
-                relationPreparedStmtBatchSize++;
-                HashMap<String, String> tags = relationOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    relationTagPreparedStmt.setObject(1, relationOSMElement.getID());
-                    relationTagPreparedStmt.setObject(2, entry.getKey());
-                    relationTagPreparedStmt.setObject(3, entry.getValue());
-                    relationTagPreparedStmt.addBatch();
-                    relationTagPreparedStmtBatchSize++;
-                }
+                insertRelation(relationOSMElement);
                 idMemberOrder = 0;
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the relation  :  " + relationOSMElement.getID(), ex);
@@ -474,6 +469,190 @@ public class OSMParser extends DefaultHandler {
         }
     }
 
+    /**
+     * Add the node and its tags to the insert batches
+     *
+     * @param nodeOSMElement
+     * @throws SQLException
+     */
+    private void insertNode(NodeOSMElement nodeOSMElement) throws SQLException {
+        nodePreparedStmt.setObject(1, nodeOSMElement.getID());
+        nodePreparedStmt.setObject(2, nodeOSMElement.getPoint(gf));
+        nodePreparedStmt.setObject(3, nodeOSMElement.getElevation());
+        nodePreparedStmt.setObject(4, nodeOSMElement.getUser());
+        nodePreparedStmt.setObject(5, nodeOSMElement.getUID());
+        nodePreparedStmt.setObject(6, nodeOSMElement.getVisible());
+        nodePreparedStmt.setObject(7, nodeOSMElement.getVersion());
+        nodePreparedStmt.setObject(8, nodeOSMElement.getChangeSet());
+        nodePreparedStmt.setObject(9, nodeOSMElement.getTimeStamp(), Types.DATE);
+        nodePreparedStmt.setString(10, nodeOSMElement.getName());
+        nodePreparedStmt.addBatch();
+        nodePreparedStmtBatchSize++;
+        if (nodeIndex != null) {
+            try {
+                nodeIndex.put(nodeOSMElement.getID(), nodeOSMElement.getLongitude(), nodeOSMElement.getLatitude());
+            } catch (IOException ex) {
+                throw new SQLException("Cannot store the node location", ex);
+            }
+        }
+        HashMap<String, String> tags = nodeOSMElement.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            nodeTagPreparedStmt.setObject(1, nodeOSMElement.getID());
+            nodeTagPreparedStmt.setObject(2, entry.getKey());
+            nodeTagPreparedStmt.setObject(3, entry.getValue());
+            nodeTagPreparedStmt.addBatch();
+            nodeTagPreparedStmtBatchSize++;
+        }
+    }
+
+    /**
+     * Add the way, its tags and its nodes to the insert batches
+     *
+     * @param wayOSMElement
+     * @throws SQLException
+     */
+    private void insertWay(WayOSMElement wayOSMElement) throws SQLException {
+        wayPreparedStmt.setObject(1, wayOSMElement.getID());
+        wayPreparedStmt.setObject(2, wayOSMElement.getUser());
+        wayPreparedStmt.setObject(3, wayOSMElement.getUID());
+        wayPreparedStmt.setObject(4, wayOSMElement.getVisible());
+        wayPreparedStmt.setObject(5, wayOSMElement.getVersion());
+        wayPreparedStmt.setObject(6, wayOSMElement.getChangeSet());
+        wayPreparedStmt.setTimestamp(7, wayOSMElement.getTimeStamp());
+        wayPreparedStmt.setString(8, wayOSMElement.getName());
+        if (nodeIndex != null) {
+            wayPreparedStmt.setObject(9, getWayGeometry(wayOSMElement));
+        }
+        wayPreparedStmt.addBatch();
+        wayPreparedStmtBatchSize++;
+        HashMap<String, String> tags = wayOSMElement.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            wayTagPreparedStmt.setObject(1, wayOSMElement.getID());
+            wayTagPreparedStmt.setObject(2, entry.getKey());
+            wayTagPreparedStmt.setObject(3, entry.getValue());
+            wayTagPreparedStmt.addBatch();
+            wayTagPreparedStmtBatchSize++;
+        }
+        int order = 1;
+        for (long ref :  wayOSMElement.getNodesRef()) {
+            wayNodePreparedStmt.setObject(1, wayOSMElement.getID());
+            wayNodePreparedStmt.setObject(2, ref);
+            wayNodePreparedStmt.setObject(3, order++);
+            wayNodePreparedStmt.addBatch();
+            wayNodePreparedStmtBatchSize++;
+        }
+    }
+
+    /**
+     * Build the linestring of a way from the indexed node locations. The
+     * nodes that are missing in the file (clipped extracts) are ignored.
+     *
+     * @param wayOSMElement
+     * @return The linestring or null if less than two nodes are available
+     * @throws SQLException
+     */
+    private LineString getWayGeometry(WayOSMElement wayOSMElement) throws SQLException {
+        List<Long> refs = wayOSMElement.getNodesRef();
+        CoordinateList coordinates = new CoordinateList();
+        double[] location = new double[2];
+        try {
+            for (long ref : refs) {
+                if (nodeIndex.get(ref, location)) {
+                    coordinates.add(new Coordinate(location[0], location[1]), false);
+                }
+            }
+        } catch (IOException ex) {
+            throw new SQLException("Cannot read the node location", ex);
+        }
+        if (coordinates.size() < 2) {
+            return null;
+        }
+        return gf.createLineString(coordinates.toCoordinateArray());
+    }
+
+    /**
+     * Add the relation and its tags to the insert batches
+     *
+     * @param relationOSMElement
+     * @throws SQLException
+     */
+    private void insertRelation(OSMElement relationOSMElement) throws SQLException {
+        relationPreparedStmt.setObject(1, relationOSMElement.getID());
+        relationPreparedStmt.setObject(2, relationOSMElement.getUser());
+        relationPreparedStmt.setObject(3, relationOSMElement.getUID());
+        relationPreparedStmt.setObject(4, relationOSMElement.getVisible());
+        relationPreparedStmt.setObject(5, relationOSMElement.getVersion());
+        relationPreparedStmt.setObject(6, relationOSMElement.getChangeSet());
+        relationPreparedStmt.setTimestamp(7, relationOSMElement.getTimeStamp());
+        relationPreparedStmt.addBatch();
+        relationPreparedStmtBatchSize++;
+        HashMap<String, String> tags = relationOSMElement.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            relationTagPreparedStmt.setObject(1, relationOSMElement.getID());
+            relationTagPreparedStmt.setObject(2, entry.getKey());
+            relationTagPreparedStmt.setObject(3, entry.getValue());
+            relationTagPreparedStmt.addBatch();
+            relationTagPreparedStmtBatchSize++;
+        }
+    }
+
+    /**
+     * Add a relation member to the insert batches
+     *
+     * @param memberPreparedStmt
+     * @param relationId
+     * @param ref
+     * @param role
+     * @param order
+     * @throws SQLException
+     */
+    private void insertMember(PreparedStatement memberPreparedStmt, long relationId, long ref, String role, int order) throws SQLException {
+        memberPreparedStmt.setObject(1, relationId);
+        memberPreparedStmt.setObject(2, ref);
+        memberPreparedStmt.setObject(3, role);
+        memberPreparedStmt.setObject(4, order);
+        memberPreparedStmt.addBatch();
+    }
+
+    /**
+     * Store the elements decoded from an OSM PBF file
+     *
+     * @param block
+     * @throws SQLException
+     */
+    private void insertBlock(OSMPbfReader.PrimitiveBlock block) throws SQLException {
+        for (NodeOSMElement node : block.getNodes()) {
+            insertNode(node);
+            insertBatch();
+        }
+        for (WayOSMElement way : block.getWays()) {
+            insertWay(way);
+            insertBatch();
+        }
+        for (RelationOSMElement relation : block.getRelations()) {
+            insertRelation(relation);
+            int order = 1;
+            for (RelationOSMElement.Member member : relation.getMembers()) {
+                switch (member.getType()) {
+                    case RelationOSMElement.NODE_MEMBER:
+                        insertMember(nodeMemberPreparedStmt, relation.getID(), member.getRef(), member.getRole(), order);
+                        nodeMemberPreparedStmtBatchSize++;
+                        break;
+                    case RelationOSMElement.WAY_MEMBER:
+                        insertMember(wayMemberPreparedStmt, relation.getID(), member.getRef(), member.getRole(), order);
+                        wayMemberPreparedStmtBatchSize++;
+                        break;
+                    case RelationOSMElement.RELATION_MEMBER:
+                        insertMember(relationMemberPreparedStmt, relation.getID(), member.getRef(), member.getRole(), order);
+                        relationMemberPreparedStmtBatchSize++;
+                        break;
+                }
+                order++;
+            }
+            insertBatch();
+        }
+    }
+
     private void insertBatch() throws SQLException {
         nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize);
         nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize);
@@ -488,8 +667,10 @@ public class OSMParser extends DefaultHandler {
     }
     private int insertBatch(PreparedStatement st, int batchSize, int maxBatchSize) throws SQLException {
         if(batchSize >= maxBatchSize) {
+            metricsRecorder.databaseStage();
             st.executeBatch();
             connection.commit();
+            metricsRecorder.batchFlushed(batchSize);
             st.clearBatch();
             return 0;
         } else {
@@ -0,0 +1,821 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.osm;
+
+import org.h2gis.api.ProgressVisitor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read an OSM PBF file (.osm.pbf).
+ *
+ * The file is a sequence of independent blobs. The blobs are read
+ * sequentially then decompressed and decoded on a pool of worker threads. The
+ * decoded blocks are given back to the {@link BlockHandler} in the file order.
+ *
+ * The protocol buffer messages are decoded by hand in order to avoid a
+ * dependency to the protobuf library, see
+ * https://wiki.openstreetmap.org/wiki/PBF_Format
+ */
+public class OSMPbfReader {
+
+    // Maximum sizes defined by the format specification
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+    private static final Set<String> SUPPORTED_FEATURES = new HashSet<>(Arrays.asList("OsmSchema-V0.6", "DenseNodes",
+            "HistoricalInformation"));
+    private final File fileName;
+    private final int threadCount;
+
+    /**
+     * Receive the decoded blocks in the file order
+     */
+    public interface BlockHandler {
+        /**
+         * @param block Decoded elements of a blob
+         * @throws SQLException
+         */
+        void handle(PrimitiveBlock block) throws SQLException;
+    }
+
+    /**
+     * Elements decoded from one blob of the file
+     */
+    public static class PrimitiveBlock {
+        private final List<NodeOSMElement> nodes = new ArrayList<>();
+        private final List<WayOSMElement> ways = new ArrayList<>();
+        private final List<RelationOSMElement> relations = new ArrayList<>();
+
+        public List<NodeOSMElement> getNodes() {
+            return nodes;
+        }
+
+        public List<WayOSMElement> getWays() {
+            return ways;
+        }
+
+        public List<RelationOSMElement> getRelations() {
+            return relations;
+        }
+    }
+
+    /**
+     * @param fileName OSM PBF file
+     * @param threadCount Number of threads used to decode the blobs
+     */
+    public OSMPbfReader(File fileName, int threadCount) {
+        this.fileName = fileName;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Read the file
+     *
+     * @param progress Progress, one step per percent of the file
+     * @param handler Receive the decoded blocks
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void read(ProgressVisitor progress, BlockHandler handler) throws IOException, SQLException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<PrimitiveBlock>> pending = new ArrayDeque<>();
+        long fileSize = fileName.length();
+        long position = 0;
+        int step = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 65536))) {
+            while (true) {
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+                    throw new IOException("Invalid blob header size " + headerSize);
+                }
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                BlobHeader blobHeader = BlobHeader.decode(header);
+                if (blobHeader.dataSize < 0 || blobHeader.dataSize > MAX_BLOB_SIZE) {
+                    throw new IOException("Invalid blob size " + blobHeader.dataSize);
+                }
+                final byte[] blob = new byte[blobHeader.dataSize];
+                in.readFully(blob);
+                position += 4 + headerSize + blob.length;
+                if ("OSMHeader".equals(blobHeader.type)) {
+                    checkHeaderBlock(decompress(blob));
+                } else if ("OSMData".equals(blobHeader.type)) {
+                    pending.add(executorService.submit(() -> decodePrimitiveBlock(decompress(blob))));
+                    // Keep a bounded number of decoded blocks in memory
+                    while (pending.size() > threadCount * 2) {
+                        handler.handle(getResult(pending.poll()));
+                    }
+                }
+                // Unknown blob types are skipped as required by the specification
+                if (progress.isCanceled()) {
+                    throw new SQLException("Canceled by user");
+                }
+                int newStep = fileSize > 0 ? (int) ((position * 100) / fileSize) : 0;
+                while (step < newStep) {
+                    progress.endStep();
+                    step++;
+                }
+            }
+            while (!pending.isEmpty()) {
+                handler.handle(getResult(pending.poll()));
+            }
+        } finally {
+            for (Future<PrimitiveBlock> future : pending) {
+                future.cancel(true);
+            }
+            executorService.shutdownNow();
+        }
+    }
+
+    private static PrimitiveBlock getResult(Future<PrimitiveBlock> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding the OSM blocks", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Cannot decode the OSM block", ex.getCause());
+        }
+    }
+
+    /**
+     * Check that the file does not require unsupported features
+     *
+     * @param data HeaderBlock message
+     * @throws IOException
+     */
+    private static void checkHeaderBlock(byte[] data) throws IOException {
+        ProtobufInput input = new ProtobufInput(data, 0, data.length);
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            if (tag >>> 3 == 4) {
+                String feature = new String(input.readBytes(), StandardCharsets.UTF_8);
+                if (!SUPPORTED_FEATURES.contains(feature)) {
+                    throw new IOException("The OSM PBF feature " + feature + " is not supported");
+                }
+            } else {
+                input.skip(tag);
+            }
+        }
+    }
+
+    /**
+     * Extract the content of a Blob message
+     *
+     * @param blob Blob message
+     * @return Uncompressed content
+     * @throws IOException
+     */
+    static byte[] decompress(byte[] blob) throws IOException {
+        ProtobufInput input = new ProtobufInput(blob, 0, blob.length);
+        int rawSize = -1;
+        byte[] raw = null;
+        byte[] zlibData = null;
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    raw = input.readBytes();
+                    break;
+                case 2:
+                    rawSize = (int) input.readVarint();
+                    break;
+                case 3:
+                    zlibData = input.readBytes();
+                    break;
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    throw new IOException("Only raw and zlib compressed OSM PBF blobs are supported");
+                default:
+                    input.skip(tag);
+            }
+        }
+        if (raw != null) {
+            return raw;
+        }
+        if (zlibData == null || rawSize < 0) {
+            throw new IOException("Invalid OSM PBF blob");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlibData);
+            byte[] data = new byte[rawSize];
+            int length = 0;
+            while (length < rawSize && !inflater.finished()) {
+                int read = inflater.inflate(data, length, rawSize - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != rawSize) {
+                throw new IOException("Invalid OSM PBF blob size");
+            }
+            return data;
+        } catch (DataFormatException ex) {
+            throw new IOException("Cannot uncompress the OSM PBF blob", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decode a PrimitiveBlock message
+     *
+     * @param data PrimitiveBlock message
+     * @return Decoded elements
+     * @throws IOException
+     */
+    static PrimitiveBlock decodePrimitiveBlock(byte[] data) throws IOException {
+        ProtobufInput input = new ProtobufInput(data, 0, data.length);
+        String[] stringTable = new String[0];
+        List<int[]> groups = new ArrayList<>();
+        BlockContext context = new BlockContext();
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    stringTable = decodeStringTable(input.readMessage());
+                    break;
+                case 2:
+                    // Groups are decoded when all the block parameters are known
+                    int length = (int) input.readVarint();
+                    groups.add(new int[]{input.position(), length});
+                    input.skipBytes(length);
+                    break;
+                case 17:
+                    context.granularity = input.readVarint();
+                    break;
+                case 18:
+                    context.dateGranularity = input.readVarint();
+                    break;
+                case 19:
+                    context.latOffset = input.readVarint();
+                    break;
+                case 20:
+                    context.lonOffset = input.readVarint();
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        context.strings = stringTable;
+        PrimitiveBlock block = new PrimitiveBlock();
+        for (int[] group : groups) {
+            decodePrimitiveGroup(new ProtobufInput(data, group[0], group[0] + group[1]), context, block);
+        }
+        return block;
+    }
+
+    private static String[] decodeStringTable(ProtobufInput input) throws IOException {
+        List<String> strings = new ArrayList<>();
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            if (tag >>> 3 == 1) {
+                strings.add(input.readString());
+            } else {
+                input.skip(tag);
+            }
+        }
+        return strings.toArray(new String[0]);
+    }
+
+    private static void decodePrimitiveGroup(ProtobufInput input, BlockContext context, PrimitiveBlock block) throws IOException {
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    block.nodes.add(decodeNode(input.readMessage(), context));
+                    break;
+                case 2:
+                    decodeDenseNodes(input.readMessage(), context, block.nodes);
+                    break;
+                case 3:
+                    block.ways.add(decodeWay(input.readMessage(), context));
+                    break;
+                case 4:
+                    block.relations.add(decodeRelation(input.readMessage(), context));
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+    }
+
+    private static NodeOSMElement decodeNode(ProtobufInput input, BlockContext context) throws IOException {
+        long id = 0, lat = 0, lon = 0;
+        int[] keys = null, values = null;
+        ProtobufInput info = null;
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    id = input.readSignedVarint();
+                    break;
+                case 2:
+                    keys = append(keys, input.readPackedInts(tag));
+                    break;
+                case 3:
+                    values = append(values, input.readPackedInts(tag));
+                    break;
+                case 4:
+                    info = input.readMessage();
+                    break;
+                case 8:
+                    lat = input.readSignedVarint();
+                    break;
+                case 9:
+                    lon = input.readSignedVarint();
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        NodeOSMElement node = new NodeOSMElement(context.latitude(lat), context.longitude(lon));
+        node.setId(id);
+        node.setVisible(true);
+        if (info != null) {
+            decodeInfo(info, context, node);
+        }
+        addTags(node, keys, values, context);
+        return node;
+    }
+
+    private static void decodeDenseNodes(ProtobufInput input, BlockContext context, List<NodeOSMElement> nodes) throws IOException {
+        long[] ids = new long[0], lats = new long[0], lons = new long[0];
+        int[] keysValues = new int[0];
+        ProtobufInput denseInfo = null;
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    ids = append(ids, input.readPackedSignedLongs(tag));
+                    break;
+                case 5:
+                    denseInfo = input.readMessage();
+                    break;
+                case 8:
+                    lats = append(lats, input.readPackedSignedLongs(tag));
+                    break;
+                case 9:
+                    lons = append(lons, input.readPackedSignedLongs(tag));
+                    break;
+                case 10:
+                    keysValues = append(keysValues, input.readPackedInts(tag));
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        if (lats.length != ids.length || lons.length != ids.length) {
+            throw new IOException("Invalid OSM PBF dense nodes");
+        }
+        int firstNode = nodes.size();
+        long id = 0, lat = 0, lon = 0;
+        int keyValueIndex = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += ids[i];
+            lat += lats[i];
+            lon += lons[i];
+            NodeOSMElement node = new NodeOSMElement(context.latitude(lat), context.longitude(lon));
+            node.setId(id);
+            node.setVisible(true);
+            // Tags of the node are stored as key, value pairs ended by 0
+            while (keyValueIndex < keysValues.length && keysValues[keyValueIndex] != 0) {
+                node.addTag(context.strings[keysValues[keyValueIndex]], context.strings[keysValues[keyValueIndex + 1]]);
+                keyValueIndex += 2;
+            }
+            keyValueIndex++;
+            nodes.add(node);
+        }
+        if (denseInfo != null) {
+            decodeDenseInfo(denseInfo, context, nodes, firstNode);
+        }
+    }
+
+    private static void decodeDenseInfo(ProtobufInput input, BlockContext context, List<NodeOSMElement> nodes, int firstNode) throws IOException {
+        int[] versions = null;
+        long[] timestamps = null, changesets = null, uids = null, userSids = null, visibles = null;
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    versions = append(versions, input.readPackedInts(tag));
+                    break;
+                case 2:
+                    timestamps = append(timestamps, input.readPackedSignedLongs(tag));
+                    break;
+                case 3:
+                    changesets = append(changesets, input.readPackedSignedLongs(tag));
+                    break;
+                case 4:
+                    uids = append(uids, input.readPackedSignedLongs(tag));
+                    break;
+                case 5:
+                    userSids = append(userSids, input.readPackedSignedLongs(tag));
+                    break;
+                case 6:
+                    visibles = append(visibles, input.readPackedLongs(tag));
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        long timestamp = 0, changeset = 0, uid = 0, userSid = 0;
+        for (int i = firstNode; i < nodes.size(); i++) {
+            int index = i - firstNode;
+            NodeOSMElement node = nodes.get(i);
+            if (versions != null && index < versions.length) {
+                node.setVersion(versions[index]);
+            }
+            if (timestamps != null && index < timestamps.length) {
+                timestamp += timestamps[index];
+                node.setTimestamp(context.timestamp(timestamp));
+            }
+            if (changesets != null && index < changesets.length) {
+                changeset += changesets[index];
+                node.setChangeset((int) changeset);
+            }
+            if (uids != null && index < uids.length) {
+                uid += uids[index];
+                node.setUid(uid);
+            }
+            if (userSids != null && index < userSids.length) {
+                userSid += userSids[index];
+                node.setUser(context.strings[(int) userSid]);
+            }
+            if (visibles != null && index < visibles.length) {
+                node.setVisible(visibles[index] != 0);
+            }
+        }
+    }
+
+    private static WayOSMElement decodeWay(ProtobufInput input, BlockContext context) throws IOException {
+        WayOSMElement way = new WayOSMElement();
+        way.setVisible(true);
+        int[] keys = null, values = null;
+        long ref = 0;
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    way.setId(input.readVarint());
+                    break;
+                case 2:
+                    keys = append(keys, input.readPackedInts(tag));
+                    break;
+                case 3:
+                    values = append(values, input.readPackedInts(tag));
+                    break;
+                case 4:
+                    decodeInfo(input.readMessage(), context, way);
+                    break;
+                case 8:
+                    for (long delta : input.readPackedSignedLongs(tag)) {
+                        ref += delta;
+                        way.addRef(ref);
+                    }
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        addTags(way, keys, values, context);
+        return way;
+    }
+
+    private static RelationOSMElement decodeRelation(ProtobufInput input, BlockContext context) throws IOException {
+        RelationOSMElement relation = new RelationOSMElement();
+        relation.setVisible(true);
+        int[] keys = null, values = null, roles = new int[0];
+        long[] memberIds = new long[0], types = new long[0];
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    relation.setId(input.readVarint());
+                    break;
+                case 2:
+                    keys = append(keys, input.readPackedInts(tag));
+                    break;
+                case 3:
+                    values = append(values, input.readPackedInts(tag));
+                    break;
+                case 4:
+                    decodeInfo(input.readMessage(), context, relation);
+                    break;
+                case 8:
+                    roles = append(roles, input.readPackedInts(tag));
+                    break;
+                case 9:
+                    memberIds = append(memberIds, input.readPackedSignedLongs(tag));
+                    break;
+                case 10:
+                    types = append(types, input.readPackedLongs(tag));
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+        if (roles.length != memberIds.length || types.length != memberIds.length) {
+            throw new IOException("Invalid OSM PBF relation " + relation.getID());
+        }
+        long memberId = 0;
+        for (int i = 0; i < memberIds.length; i++) {
+            memberId += memberIds[i];
+            relation.addMember((int) types[i], memberId, context.strings[roles[i]]);
+        }
+        addTags(relation, keys, values, context);
+        return relation;
+    }
+
+    private static void decodeInfo(ProtobufInput input, BlockContext context, OSMElement element) throws IOException {
+        while (input.hasRemaining()) {
+            int tag = input.readTag();
+            switch (tag >>> 3) {
+                case 1:
+                    element.setVersion((int) input.readVarint());
+                    break;
+                case 2:
+                    element.setTimestamp(context.timestamp(input.readVarint()));
+                    break;
+                case 3:
+                    element.setChangeset((int) input.readVarint());
+                    break;
+                case 4:
+                    element.setUid((int) input.readVarint());
+                    break;
+                case 5:
+                    element.setUser(context.strings[(int) input.readVarint()]);
+                    break;
+                case 6:
+                    element.setVisible(input.readVarint() != 0);
+                    break;
+                default:
+                    input.skip(tag);
+            }
+        }
+    }
+
+    private static void addTags(OSMElement element, int[] keys, int[] values, BlockContext context) throws IOException {
+        if (keys == null) {
+            return;
+        }
+        if (values == null || values.length != keys.length) {
+            throw new IOException("Invalid OSM PBF tags for the element " + element.getID());
+        }
+        for (int i = 0; i < keys.length; i++) {
+            element.addTag(context.strings[keys[i]], context.strings[values[i]]);
+        }
+    }
+
+    private static int[] append(int[] values, int[] newValues) {
+        if (values == null || values.length == 0) {
+            return newValues;
+        }
+        int[] result = Arrays.copyOf(values, values.length + newValues.length);
+        System.arraycopy(newValues, 0, result, values.length, newValues.length);
+        return result;
+    }
+
+    private static long[] append(long[] values, long[] newValues) {
+        if (values == null || values.length == 0) {
+            return newValues;
+        }
+        long[] result = Arrays.copyOf(values, values.length + newValues.length);
+        System.arraycopy(newValues, 0, result, values.length, newValues.length);
+        return result;
+    }
+
+    /**
+     * Parameters shared by all the elements of a PrimitiveBlock
+     */
+    private static class BlockContext {
+        private String[] strings;
+        private long granularity = 100;
+        private long latOffset = 0;
+        private long lonOffset = 0;
+        private long dateGranularity = 1000;
+
+        private double latitude(long lat) {
+            return (latOffset + granularity * lat) / 1e9;
+        }
+
+        private double longitude(long lon) {
+            return (lonOffset + granularity * lon) / 1e9;
+        }
+
+        private Timestamp timestamp(long time) {
+            return new Timestamp(time * dateGranularity);
+        }
+    }
+
+    /**
+     * BlobHeader message
+     */
+    private static class BlobHeader {
+        private String type;
+        private int dataSize = -1;
+
+        private static BlobHeader decode(byte[] data) throws IOException {
+            BlobHeader header = new BlobHeader();
+            ProtobufInput input = new ProtobufInput(data, 0, data.length);
+            while (input.hasRemaining()) {
+                int tag = input.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        header.type = input.readString();
+                        break;
+                    case 3:
+                        header.dataSize = (int) input.readVarint();
+                        break;
+                    default:
+                        input.skip(tag);
+                }
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Minimal reader of the protocol buffer wire format
+     */
+    static class ProtobufInput {
+        private static final int VARINT = 0;
+        private static final int FIXED64 = 1;
+        private static final int LENGTH_DELIMITED = 2;
+        private static final int FIXED32 = 5;
+        private final byte[] data;
+        private int position;
+        private final int limit;
+
+        ProtobufInput(byte[] data, int offset, int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        int position() {
+            return position;
+        }
+
+        int readTag() throws IOException {
+            return (int) readVarint();
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) {
+                    throw new IOException("Truncated OSM PBF message");
+                }
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint in OSM PBF message");
+        }
+
+        long readSignedVarint() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        void skipBytes(int length) throws IOException {
+            if (length < 0 || position + length > limit) {
+                throw new IOException("Truncated OSM PBF message");
+            }
+            position += length;
+        }
+
+        ProtobufInput readMessage() throws IOException {
+            int length = (int) readVarint();
+            int start = position;
+            skipBytes(length);
+            return new ProtobufInput(data, start, start + length);
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = (int) readVarint();
+            int start = position;
+            skipBytes(length);
+            return Arrays.copyOfRange(data, start, start + length);
+        }
+
+        String readString() throws IOException {
+            int length = (int) readVarint();
+            int start = position;
+            skipBytes(length);
+            return new String(data, start, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Read a repeated varint field, packed or not
+         */
+        long[] readPackedLongs(int tag) throws IOException {
+            if ((tag & 7) != LENGTH_DELIMITED) {
+                return new long[]{readVarint()};
+            }
+            ProtobufInput packed = readMessage();
+            long[] values = new long[packed.limit - packed.position];
+            int count = 0;
+            while (packed.hasRemaining()) {
+                values[count++] = packed.readVarint();
+            }
+            return Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Read a repeated zigzag encoded varint field, packed or not
+         */
+        long[] readPackedSignedLongs(int tag) throws IOException {
+            long[] values = readPackedLongs(tag);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (values[i] >>> 1) ^ -(values[i] & 1);
+            }
+            return values;
+        }
+
+        int[] readPackedInts(int tag) throws IOException {
+            long[] values = readPackedLongs(tag);
+            int[] ints = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                ints[i] = (int) values[i];
+            }
+            return ints;
+        }
+
+        void skip(int tag) throws IOException {
+            switch (tag & 7) {
+                case VARINT:
+                    readVarint();
+                    break;
+                case FIXED64:
+                    skipBytes(8);
+                    break;
+                case LENGTH_DELIMITED:
+                    skipBytes((int) readVarint());
+                    break;
+                case FIXED32:
+                    skipBytes(4);
+                    break;
+                default:
+                    throw new IOException("Unsupported protocol buffer wire type " + (tag & 7));
+            }
+        }
+    }
+}
@@ -41,7 +41,7 @@ import java.sql.SQLException;
 public class OSMRead extends AbstractFunction implements ScalarFunction {
 
     public OSMRead() {
-        addProperty(PROP_REMARKS, "Read a OSM file and copy the content in the specified tables.\n"
+        addProperty(PROP_REMARKS, "Read a OSM file (.osm, .osm.gz, .osm.bz2 or .osm.pbf) and copy the content in the specified tables.\n"
                 + "The user can set a prefix name for all OSM tables and specify if the existing OSM\n"
                 + " tables must be dropped."
                 + "\n OSMRead(..."
@@ -50,7 +50,9 @@ public class OSMRead extends AbstractFunction implements ScalarFunction {
                 + "\n path of the file, table name"
                 + "\n path of the file, true for delete the table with the same file name"
                 + "\n path of the file, table name, encoding chartset"
-                + "\n path of the file, table name, encoding chartset, true to delete the table name");
+                + "\n path of the file, table name, encoding chartset, true to delete the table name"
+                + "\n path of the file, table name, encoding chartset, true to delete the table name,"
+                + " true to store the linestring of the ways in the THE_GEOM column of the way table");
     }
 
     @Override
@@ -123,6 +125,26 @@ public class OSMRead extends AbstractFunction implements ScalarFunction {
         osmdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), encoding, deleteTables, new EmptyProgressVisitor());
     }
 
+    /**
+     *
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param encoding
+     * @param deleteTables
+     * @param wayGeometry true to build the linestring of the ways during the
+     * import
+     * @throws FileNotFoundException
+     * @throws SQLException
+     * @throws IOException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference, String encoding, boolean deleteTables,
+                                   boolean wayGeometry) throws FileNotFoundException, SQLException, IOException {
+        OSMDriverFunction osmdf = new OSMDriverFunction();
+        osmdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), encoding, deleteTables, wayGeometry,
+                new EmptyProgressVisitor());
+    }
+
     /**
      *
      * @param connection
@@ -131,12 +131,33 @@ public class OSMTablesFactory {
      * @throws SQLException
      */
     public static PreparedStatement createWayTable(Connection connection, String wayTableName) throws SQLException {
+        return createWayTable(connection, wayTableName, false);
+    }
+
+    /**
+     * Create the ways table that will be used to import OSM ways
+     *
+     * @param connection
+     * @param wayTableName
+     * @param withGeometry True to add a THE_GEOM column that stores the
+     * linestring of the way
+     * @return
+     * @throws SQLException
+     */
+    public static PreparedStatement createWayTable(Connection connection, String wayTableName, boolean withGeometry) throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             StringBuilder sb = new StringBuilder("CREATE TABLE ");
             sb.append(wayTableName);
-            sb.append("(ID_WAY BIGINT PRIMARY KEY, USER_NAME VARCHAR, UID BIGINT, VISIBLE BOOLEAN, VERSION INTEGER, CHANGESET INTEGER, LAST_UPDATE TIMESTAMP, NAME VARCHAR);");
+            sb.append("(ID_WAY BIGINT PRIMARY KEY, USER_NAME VARCHAR, UID BIGINT, VISIBLE BOOLEAN, VERSION INTEGER, CHANGESET INTEGER, LAST_UPDATE TIMESTAMP, NAME VARCHAR");
+            if (withGeometry) {
+                sb.append(", THE_GEOM GEOMETRY(LINESTRING, 4326)");
+            }
+            sb.append(");");
             stmt.execute(sb.toString());
         }
+        if (withGeometry) {
+            return connection.prepareStatement("INSERT INTO " + wayTableName + " VALUES (?,?,?,?,?,?,?,?,?);");
+        }
         return connection.prepareStatement("INSERT INTO " + wayTableName + " VALUES (?,?,?,?,?,?,?,?);");
     }
 
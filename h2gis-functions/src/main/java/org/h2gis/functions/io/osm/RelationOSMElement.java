@@ -0,0 +1,96 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.osm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class to manage the relation element properties.
+ */
+public class RelationOSMElement extends OSMElement {
+
+    /** Member types, as numbered in the OSM PBF format */
+    public static final int NODE_MEMBER = 0;
+    public static final int WAY_MEMBER = 1;
+    public static final int RELATION_MEMBER = 2;
+
+    private final List<Member> members = new ArrayList<Member>();
+
+    public RelationOSMElement() {
+        super();
+    }
+
+    /**
+     * Add a member to the relation
+     *
+     * @param type Member type NODE_MEMBER, WAY_MEMBER or RELATION_MEMBER
+     * @param ref Id of the member
+     * @param role Role of the member in the relation
+     */
+    public void addMember(int type, long ref, String role) {
+        members.add(new Member(type, ref, role));
+    }
+
+    /**
+     * Return the ordered list of members
+     *
+     * @return
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * Member of a relation
+     */
+    public static class Member {
+        private final int type;
+        private final long ref;
+        private final String role;
+
+        private Member(int type, long ref, String role) {
+            this.type = type;
+            this.ref = ref;
+            this.role = role;
+        }
+
+        /**
+         * @return Member type NODE_MEMBER, WAY_MEMBER or RELATION_MEMBER
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return Id of the member
+         */
+        public long getRef() {
+            return ref;
+        }
+
+        /**
+         * @return Role of the member in the relation
+         */
+        public String getRole() {
+            return role;
+        }
+    }
+}
@@ -32,6 +32,8 @@ import org.h2gis.functions.io.file_table.H2TableIndex;
 import org.h2gis.functions.io.shp.internal.SHPDriver;
 import org.h2gis.functions.io.shp.internal.ShapeType;
 import org.h2gis.functions.io.shp.internal.ShapefileHeader;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
+import org.h2gis.functions.io.utility.ParallelRowWriter;
 import org.h2gis.functions.io.utility.PRJUtil;
 import org.h2gis.utilities.GeometryTypeCodes;
 import org.h2gis.utilities.JDBCUtilities;
@@ -64,6 +66,7 @@ public class SHPDriverFunction implements DriverFunction {
 
     public static String DESCRIPTION = "ESRI shapefile";
     private static final int BATCH_MAX_SIZE = 200;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
 
     @Override
     public String[] exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
@@ -163,6 +166,7 @@ public class SHPDriverFunction implements DriverFunction {
     private String[] doExport(Connection connection, Integer spatialFieldIndex, ResultSet rs, int recordCount, File fileName, ProgressVisitor progress, String encoding) throws SQLException, IOException {
         int srid = 0;
         ShapeType shapeType = null;
+        ParallelRowWriter<SHPDriver.EncodedRows> rowWriter = null;
         try {
             ResultSetMetaData resultSetMetaData = rs.getMetaData();
             ArrayList<Integer> columnIndexes = new ArrayList<Integer>();
@@ -174,11 +178,15 @@ public class SHPDriverFunction implements DriverFunction {
             header.setNumRecords(recordCount);
             SHPDriver shpDriver = null;
             Object[] row = new Object[header.getNumFields() + 1];
+            DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+            long rowCount = 0;
+            metricsRecorder.databaseStage();
             while (rs.next()) {
                 int i = 0;
                 for (Integer index : columnIndexes) {
                     row[i++] = rs.getObject(index);
                 }
+                metricsRecorder.fileStage();
                 if (shpDriver == null) {
                     // If there is not shape type constraint read the first geometry and use the same type
                     Geometry wkb = (Geometry) rs.getObject(spatialFieldIndex);
@@ -197,14 +205,30 @@ public class SHPDriverFunction implements DriverFunction {
                         throw new SQLException("Unsupported geometry type.");
                     }
                 }
-                if (shpDriver != null) {
+                if (rowWriter == null && threadCount > 1 && recordCount > ParallelRowWriter.BLOCK_SIZE) {
+                    rowWriter = new ParallelRowWriter<>(threadCount, shpDriver::encodeRows, shpDriver::writeEncodedRows);
+                }
+                if (rowWriter != null) {
+                    rowWriter.add(row);
+                } else {
                     shpDriver.insertRow(row);
                 }
+                rowCount++;
                 progress.endStep();
+                metricsRecorder.databaseStage();
             }
-            if (shpDriver != null) {
-                shpDriver.close();
+            metricsRecorder.fileStage();
+            if (rowWriter != null) {
+                rowWriter.finish();
             }
+            if (shpDriver == null) {
+                // The shape type is read from the first row
+                metricsRecorder.end();
+                throw new SQLException("Cannot export an empty table into a shapefile.");
+            }
+            shpDriver.close();
+            metricsRecorder.addRows(rowCount);
+            metricsRecorder.end(shpDriver.shpFile, shpDriver.shxFile, shpDriver.dbfFile);
             if(srid>=0) {
                 String path = fileName.getAbsolutePath();
                 String nameWithoutExt = path.substring(0, path.lastIndexOf('.'));
@@ -216,10 +240,21 @@ public class SHPDriverFunction implements DriverFunction {
             return new String[]{shpDriver.shpFile.getAbsolutePath(), shpDriver.shxFile.getAbsolutePath(), shpDriver.dbfFile.getAbsolutePath()};
 
         } finally {
+            if (rowWriter != null) {
+                rowWriter.close();
+            }
             rs.close();
         }
     }
 
+    /**
+     * @param threadCount Number of threads used to encode the records of
+     * large exports, 1 to encode the records on the calling thread
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
     @Override
     public String getFormatDescription(String format) {
         if (format.equalsIgnoreCase("shp")) {
@@ -327,6 +362,7 @@ public class SHPDriverFunction implements DriverFunction {
                     connection.setAutoCommit(false);
                     final int columnCount = shpDriver.getFieldCount();
                     try (PreparedStatement preparedStatement = connection.prepareStatement(lastSql)) {
+                        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
                         long batchSize = 0;
                         for (int rowId = 0; rowId < shpDriver.getRowCount(); rowId++) {
                             for (int columnId = 0; columnId < columnCount; columnId++) {
@@ -335,17 +371,22 @@ public class SHPDriverFunction implements DriverFunction {
                             preparedStatement.addBatch();
                             batchSize++;
                             if (batchSize >= BATCH_MAX_SIZE) {
+                                metricsRecorder.databaseStage();
                                 preparedStatement.executeBatch();
                                 connection.commit();
+                                metricsRecorder.batchFlushed((int) batchSize);
                                 preparedStatement.clearBatch();
                                 batchSize = 0;
                                 copyProgress.endStep();
                             }
                         }
                         if (batchSize > 0) {
+                            metricsRecorder.databaseStage();
                             preparedStatement.executeBatch();
                             connection.commit();
+                            metricsRecorder.batchFlushed((int) batchSize);
                         }
+                        metricsRecorder.end(shpDriver.shpFile, shpDriver.shxFile, shpDriver.dbfFile);
                         connection.setAutoCommit(true);
                         return new String[]{outputTableName};
                     }
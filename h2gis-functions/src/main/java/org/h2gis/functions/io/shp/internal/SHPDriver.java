@@ -29,9 +29,12 @@ import org.h2gis.functions.io.dbf.internal.DbaseFileHeader;
 import org.locationtech.jts.geom.Geometry;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Merge ShapeFileReader and DBFReader.
@@ -73,6 +76,38 @@ public class SHPDriver implements FileDriver {
      */
     @Override
     public void insertRow(Object[] values) throws IOException {
+        shapefileWriter.writeGeometry(getGeometry(values));
+        dbfDriver.insertRow(getDbfValues(values));
+    }
+
+    /**
+     * Encode a block of rows. The driver is not modified, so blocks can be encoded on several threads then written in
+     * order with {@link #writeEncodedRows(EncodedRows)}.
+     * @param rows Rows content
+     * @return Encoded rows
+     * @throws IOException
+     */
+    public EncodedRows encodeRows(List<Object[]> rows) throws IOException {
+        List<Geometry> geometries = new ArrayList<>(rows.size());
+        List<Object[]> dbfRows = new ArrayList<>(rows.size());
+        for (Object[] values : rows) {
+            geometries.add(getGeometry(values));
+            dbfRows.add(getDbfValues(values));
+        }
+        return new EncodedRows(shapefileWriter.encodeGeometries(geometries), dbfDriver.encodeRows(dbfRows));
+    }
+
+    /**
+     * Write rows encoded by {@link #encodeRows(List)}
+     * @param rows Encoded rows
+     * @throws IOException
+     */
+    public void writeEncodedRows(EncodedRows rows) throws IOException {
+        shapefileWriter.writeEncodedGeometries(rows.geometries);
+        dbfDriver.writeEncodedRows(rows.records);
+    }
+
+    private Geometry getGeometry(Object[] values) throws IOException {
         if(!(values[geometryFieldIndex] instanceof Geometry)) {
             if(values[geometryFieldIndex]==null) {
                 throw new IOException("Shape files do not support NULL Geometry values.");
@@ -81,8 +116,13 @@ public class SHPDriver implements FileDriver {
                         " found "+values[geometryFieldIndex].getClass()+" instead.");
             }
         }
-        shapefileWriter.writeGeometry((Geometry)values[geometryFieldIndex]);
-        // Extract the DBF part of the row
+        return (Geometry) values[geometryFieldIndex];
+    }
+
+    /**
+     * Extract the DBF part of the row
+     */
+    private Object[] getDbfValues(Object[] values) {
         Object[] dbfValues = new Object[values.length - 1];
         // Copy DBF data before geometryFieldIndex
         if(geometryFieldIndex > 0) {
@@ -92,7 +132,7 @@ public class SHPDriver implements FileDriver {
         if(geometryFieldIndex + 1 < values.length) {
             System.arraycopy(values, geometryFieldIndex + 1, dbfValues, geometryFieldIndex, dbfValues.length - geometryFieldIndex);
         }
-        dbfDriver.insertRow(dbfValues);
+        return dbfValues;
     }
 
     /**
@@ -274,6 +314,17 @@ public class SHPDriver implements FileDriver {
     public int getSrid() {
         return srid;
     }
-    
-    
+
+    /**
+     * Block of rows encoded out of the driver
+     */
+    public static final class EncodedRows {
+        private final ShapefileWriter.EncodedGeometries geometries;
+        private final ByteBuffer records;
+
+        private EncodedRows(ShapefileWriter.EncodedGeometries geometries, ByteBuffer records) {
+            this.geometries = geometries;
+            this.records = records;
+        }
+    }
 }
@@ -23,9 +23,12 @@ import org.h2gis.functions.io.utility.WriteBufferManager;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.util.List;
 
 /**
  * ShapefileWriter allows for the storage of geometries in esris shp format.
@@ -173,6 +176,77 @@ public class ShapefileWriter {
         offset += length + 4;
     }
 
+    /**
+     * Encode the content of a block of geometry records. The writer is not
+     * modified, so blocks can be encoded from several threads once the headers
+     * have been written, then given in order to
+     * {@link #writeEncodedGeometries(EncodedGeometries)}.
+     *
+     * @param geometries Geometries of the block
+     * @return Encoded records
+     * @throws java.io.IOException
+     */
+    public EncodedGeometries encodeGeometries(List<Geometry> geometries) throws IOException {
+        if (type == null) {
+            throw new IllegalStateException("Header must be written before encodeGeometries");
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        WriteBufferManager contentBuffer = new WriteBufferManager(Channels.newChannel(content));
+        contentBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        int[] lengths = new int[geometries.size()];
+        Envelope envelope = null;
+        int i = 0;
+        for (Geometry g : geometries) {
+            if (g == null) {
+                lengths[i++] = 4;
+                contentBuffer.putInt(0);
+            } else {
+                lengths[i++] = handler.getLength(g);
+                contentBuffer.putInt(type.id);
+                handler.write(contentBuffer, g);
+                if (envelope == null) {
+                    envelope = new Envelope(g.getEnvelopeInternal());
+                } else {
+                    envelope.expandToInclude(g.getEnvelopeInternal());
+                }
+            }
+        }
+        contentBuffer.flush();
+        return new EncodedGeometries(content.toByteArray(), lengths, envelope);
+    }
+
+    /**
+     * Write a block of records encoded by {@link #encodeGeometries(List)}
+     *
+     * @param encoded Encoded records
+     * @throws java.io.IOException
+     */
+    public void writeEncodedGeometries(EncodedGeometries encoded) throws IOException {
+        if (type == null) {
+            throw new IllegalStateException("Header must be written before writeEncodedGeometries");
+        }
+        if (encoded.envelope != null) {
+            if (bounds == null) {
+                bounds = new Envelope(encoded.envelope);
+            } else {
+                bounds.expandToInclude(encoded.envelope);
+            }
+        }
+        int contentOffset = 0;
+        for (int byteLength : encoded.lengths) {
+            int length = byteLength / 2;
+            shapeBuffer.order(ByteOrder.BIG_ENDIAN);
+            shapeBuffer.putInt(++cnt);
+            shapeBuffer.putInt(length);
+            shapeBuffer.put(encoded.content, contentOffset, byteLength);
+            contentOffset += byteLength;
+            // write to the shx
+            indexBuffer.putInt(offset);
+            indexBuffer.putInt(length);
+            offset += length + 4;
+        }
+    }
+
     /**
      * Close the underlying Channels.
      *
@@ -194,4 +268,18 @@ public class ShapefileWriter {
         shapeBuffer = null;
     }
 
+    /**
+     * Geometry records encoded out of the writer
+     */
+    public static final class EncodedGeometries {
+        private final byte[] content;
+        private final int[] lengths;
+        private final Envelope envelope;
+
+        private EncodedGeometries(byte[] content, int[] lengths, Envelope envelope) {
+            this.content = content;
+            this.lengths = lengths;
+            this.envelope = envelope;
+        }
+    }
 }
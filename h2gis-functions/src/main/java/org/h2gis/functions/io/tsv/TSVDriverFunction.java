@@ -23,6 +23,7 @@ import org.h2.tools.Csv;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.functions.io.DriverManager;
+import org.h2gis.functions.io.utility.DriverMetricsRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 
@@ -254,7 +255,9 @@ public class TSVDriverFunction implements DriverFunction {
             csvOptions = String.format("charset=%s fieldSeparator=\t fieldDelimiter=\t", encoding);
         }
         csv.setOptions(csvOptions);
-        csv.write(writer, res);
+        DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
+        metricsRecorder.addRows(csv.write(writer, res));
+        metricsRecorder.end();
     }
 
     @Override
@@ -327,6 +330,7 @@ public class TSVDriverFunction implements DriverFunction {
             }
 
             PreparedStatement pst = connection.prepareStatement(insertTable.toString());
+            DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
             long batchSize = 0;
             try {
                 while (reader.next()) {
@@ -340,7 +344,9 @@ public class TSVDriverFunction implements DriverFunction {
                     pst.addBatch();
                     batchSize++;
                     if (batchSize >= BATCH_MAX_SIZE) {
+                        metricsRecorder.databaseStage();
                         pst.executeBatch();
+                        metricsRecorder.batchFlushed((int) batchSize);
                         pst.clearBatch();
                         batchSize = 0;
                     }
@@ -355,8 +361,11 @@ public class TSVDriverFunction implements DriverFunction {
                     }
                 }
                 if (batchSize > 0) {
+                    metricsRecorder.databaseStage();
                     pst.executeBatch();
+                    metricsRecorder.batchFlushed((int) batchSize);
                 }
+                metricsRecorder.end(fileName);
                 return new String[]{table};
             } finally {
                 pst.close();
@@ -400,6 +409,7 @@ public class TSVDriverFunction implements DriverFunction {
                 }
 
                 PreparedStatement pst = connection.prepareStatement(insertTable.toString());
+                DriverMetricsRecorder metricsRecorder = new DriverMetricsRecorder(progress);
                 long batchSize = 0;
                 try {
                     while (reader.next()) {
@@ -413,14 +423,19 @@ public class TSVDriverFunction implements DriverFunction {
                         pst.addBatch();
                         batchSize++;
                         if (batchSize >= BATCH_MAX_SIZE) {
+                            metricsRecorder.databaseStage();
                             pst.executeBatch();
+                            metricsRecorder.batchFlushed((int) batchSize);
                             pst.clearBatch();
                             batchSize = 0;
                         }
                     }
                     if (batchSize > 0) {
+                        metricsRecorder.databaseStage();
                         pst.executeBatch();
+                        metricsRecorder.batchFlushed((int) batchSize);
                     }
+                    metricsRecorder.end(fileName);
                     return new String[]{table};
                 } finally {
                     pst.close();
@@ -0,0 +1,128 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.utility;
+
+import org.h2gis.api.DriverMetrics;
+import org.h2gis.api.ProgressVisitor;
+
+import java.io.File;
+
+/**
+ * Measures the stages of an import or an export and reports them into the
+ * {@link DriverMetrics} of the progress visitor.
+ *
+ * The recorder is always in one of the two stages, file or database. Each
+ * switch adds the elapsed time to the stage that ends. When the progress
+ * visitor does not collect metrics nothing is measured.
+ */
+public final class DriverMetricsRecorder {
+
+    private final DriverMetrics metrics;
+    private final boolean enabled;
+    private long stageStart;
+    private boolean databaseStage = false;
+
+    /**
+     * Create a recorder, the file stage starts now
+     *
+     * @param progress Progress visitor given to the driver
+     */
+    public DriverMetricsRecorder(ProgressVisitor progress) {
+        metrics = DriverMetrics.of(progress);
+        enabled = metrics != DriverMetrics.NONE;
+        stageStart = enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Start reading, parsing or writing the file
+     */
+    public void fileStage() {
+        if (enabled && databaseStage) {
+            long now = System.nanoTime();
+            metrics.addDatabaseTime(now - stageStart);
+            stageStart = now;
+            databaseStage = false;
+        }
+    }
+
+    /**
+     * Start a database operation
+     */
+    public void databaseStage() {
+        if (enabled && !databaseStage) {
+            long now = System.nanoTime();
+            metrics.addFileTime(now - stageStart);
+            stageStart = now;
+            databaseStage = true;
+        }
+    }
+
+    /**
+     * A batch has been executed and committed, must be called in the database
+     * stage. Records the batch and its rows then switches to the file stage.
+     *
+     * @param rows Number of rows of the batch
+     */
+    public void batchFlushed(int rows) {
+        if (enabled) {
+            long now = System.nanoTime();
+            if (databaseStage) {
+                metrics.addDatabaseTime(now - stageStart);
+                metrics.addBatch(rows, now - stageStart);
+            } else {
+                metrics.addFileTime(now - stageStart);
+                metrics.addBatch(rows, 0);
+            }
+            metrics.addRows(rows);
+            stageStart = now;
+            databaseStage = false;
+        }
+    }
+
+    /**
+     * @param rows Number of rows read or written
+     */
+    public void addRows(long rows) {
+        metrics.addRows(rows);
+    }
+
+    /**
+     * Close the current stage and add the size of the files read or written
+     *
+     * @param files Files read or written, missing files are ignored
+     */
+    public void end(File... files) {
+        if (enabled) {
+            long now = System.nanoTime();
+            if (databaseStage) {
+                metrics.addDatabaseTime(now - stageStart);
+            } else {
+                metrics.addFileTime(now - stageStart);
+            }
+            stageStart = now;
+            databaseStage = false;
+            for (File file : files) {
+                if (file != null && file.isFile()) {
+                    metrics.addBytes(file.length());
+                }
+            }
+        }
+    }
+}
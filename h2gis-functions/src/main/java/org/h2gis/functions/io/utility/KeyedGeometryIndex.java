@@ -0,0 +1,127 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geometries of a whole table loaded in memory with their key and indexed in
+ * a STR tree.
+ *
+ * The key is the same as the one of {@link KeyedRowSource}. The items of the
+ * tree are the positions of the geometries, the null and empty geometries are
+ * not loaded. The index is read only once built and can be shared by the
+ * worker threads.
+ */
+public final class KeyedGeometryIndex {
+
+    private final long[] keys;
+    private final Geometry[] geometries;
+    private final STRtree index;
+
+    private KeyedGeometryIndex(long[] keys, Geometry[] geometries, STRtree index) {
+        this.keys = keys;
+        this.geometries = geometries;
+        this.index = index;
+    }
+
+    /**
+     * Read and index the geometries of a table
+     *
+     * @param connection Active connection
+     * @param location Table
+     * @param geometryColumn Geometry column name
+     * @param dbType Database type
+     * @return Index of the geometries of the table
+     * @throws SQLException
+     */
+    public static KeyedGeometryIndex load(Connection connection, TableLocation location, String geometryColumn,
+                                          DBTypes dbType) throws SQLException {
+        String keyColumn = KeyedRowSource.getKeyColumn(connection, location, dbType);
+        List<Geometry> geometries = new ArrayList<>();
+        long[] keys = new long[16];
+        long rowNumber = 1;
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + (keyColumn != null ? keyColumn + ", " : "")
+                     + TableLocation.quoteIdentifier(geometryColumn, dbType) + " FROM " + location)) {
+            while (rs.next()) {
+                long key = keyColumn != null ? rs.getLong(1) : rowNumber;
+                Geometry geometry = (Geometry) rs.getObject(keyColumn != null ? 2 : 1);
+                rowNumber++;
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                if (geometries.size() == keys.length) {
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                }
+                keys[geometries.size()] = key;
+                geometries.add(geometry);
+            }
+        }
+        STRtree tree = new STRtree();
+        for (int i = 0; i < geometries.size(); i++) {
+            tree.insert(geometries.get(i).getEnvelopeInternal(), i);
+        }
+        tree.build();
+        return new KeyedGeometryIndex(keys, geometries.toArray(new Geometry[0]), tree);
+    }
+
+    /**
+     * @return STR tree of the positions of the geometries
+     */
+    public STRtree getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Number of indexed geometries
+     */
+    public int size() {
+        return geometries.length;
+    }
+
+    /**
+     * @param item Position of the geometry
+     * @return Key of the row of the geometry
+     */
+    public long getKey(int item) {
+        return keys[item];
+    }
+
+    /**
+     * @param item Position of the geometry
+     * @return Geometry
+     */
+    public Geometry getGeometry(int item) {
+        return geometries[item];
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Row source of a table function that reads the rows of a table with their
+ * key.
+ *
+ * The key is the integer primary key of the table (INTEGER or BIGINT), or the
+ * row number if the table has no such key. It is always returned as a long.
+ * An input value is an array that holds the key followed by the selected
+ * columns.
+ */
+public abstract class KeyedRowSource extends ParallelRowSource<Object[]> {
+
+    private boolean hasPrimaryKey;
+    private int columnCount;
+    private long rowNumber;
+
+    /**
+     * @param blockSize Number of input rows computed by a single task
+     */
+    protected KeyedRowSource(int blockSize) {
+        super(blockSize);
+    }
+
+    /**
+     * Select the key and the given columns of a table, to be returned by
+     * {@link #openQuery()}
+     *
+     * @param connection Active connection
+     * @param location Table
+     * @param columns Comma separated list of the selected expressions
+     * @param dbType Database type
+     * @return Input rows
+     * @throws SQLException
+     */
+    protected ResultSet queryWithKey(Connection connection, TableLocation location, String columns,
+                                     DBTypes dbType) throws SQLException {
+        String keyColumn = getKeyColumn(connection, location, dbType);
+        hasPrimaryKey = keyColumn != null;
+        rowNumber = 1;
+        ResultSet resultSet = connection.createStatement().executeQuery("SELECT "
+                + (hasPrimaryKey ? keyColumn + ", " : "") + columns + " FROM " + location);
+        columnCount = resultSet.getMetaData().getColumnCount() - (hasPrimaryKey ? 1 : 0);
+        return resultSet;
+    }
+
+    @Override
+    protected Object[] readInput(ResultSet resultSet) throws SQLException {
+        Object[] input = new Object[columnCount + 1];
+        int first;
+        if (hasPrimaryKey) {
+            input[0] = resultSet.getLong(1);
+            first = 2;
+        } else {
+            input[0] = rowNumber++;
+            first = 1;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            input[i + 1] = resultSet.getObject(first + i);
+        }
+        return input;
+    }
+
+    /**
+     * Add a key column to the output of a table function
+     *
+     * @param resultSet Output of the table function
+     * @param name Column name
+     */
+    public static void addKeyColumn(SimpleResultSet resultSet, String name) {
+        resultSet.addColumn(name, Types.BIGINT, 19, 0);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param location Table
+     * @param dbType Database type
+     * @return The quoted integer primary key of the table, null if the rows
+     * are numbered
+     * @throws SQLException
+     */
+    static String getKeyColumn(Connection connection, TableLocation location, DBTypes dbType) throws SQLException {
+        Tuple<String, Integer> primaryKey = JDBCUtilities.getIntegerPrimaryKeyNameAndIndex(connection, location);
+        return primaryKey == null ? null : TableLocation.quoteIdentifier(primaryKey.first(), dbType);
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.utility;
+
+import org.h2.tools.SimpleRowSource;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Row source of a table function that computes its rows through the common
+ * fork join pool.
+ *
+ * The input rows are read in blocks by the calling thread, each block is
+ * computed by a worker thread and the output rows are returned in the order
+ * of the input rows. The number of blocks computed ahead is bounded.
+ *
+ * @param <T> Input value read from a row of the input query
+ */
+public abstract class ParallelRowSource<T> implements SimpleRowSource {
+
+    /** Default number of input rows of a block */
+    public static final int BLOCK_SIZE = 256;
+
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final Deque<Future<List<Object[]>>> pending = new ArrayDeque<>();
+    private Iterator<Object[]> rows = Collections.emptyIterator();
+    private ResultSet query;
+    private boolean firstRow = true;
+    private boolean exhausted = false;
+
+    /**
+     * @param blockSize Number of input rows computed by a single task
+     */
+    protected ParallelRowSource(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+        this.maxPendingBlocks = 2 * ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    /**
+     * Execute the input query, called on the first row and on reset. The
+     * statement of the result set, or the result set itself if it has no
+     * statement, is closed with this row source.
+     *
+     * @return Input rows
+     * @throws SQLException
+     */
+    protected abstract ResultSet openQuery() throws SQLException;
+
+    /**
+     * Read the current row of the input query, called from the thread that
+     * reads the rows of this source
+     *
+     * @param resultSet Input rows
+     * @return Input value
+     * @throws SQLException
+     */
+    protected abstract T readInput(ResultSet resultSet) throws SQLException;
+
+    /**
+     * Compute the output rows of a block, called from the worker threads
+     *
+     * @param inputs Input values of the block
+     * @param outputRows Output rows, in the order of the input values
+     * @throws SQLException
+     */
+    protected abstract void compute(List<T> inputs, List<Object[]> outputRows) throws SQLException;
+
+    @Override
+    public Object[] readRow() throws SQLException {
+        if (firstRow) {
+            reset();
+        }
+        while (!rows.hasNext()) {
+            submitBlocks();
+            if (pending.isEmpty()) {
+                return null;
+            }
+            rows = getResult(pending.poll()).iterator();
+        }
+        return rows.next();
+    }
+
+    private void submitBlocks() throws SQLException {
+        while (!exhausted && pending.size() < maxPendingBlocks) {
+            final List<T> inputs = new ArrayList<>(blockSize);
+            while (inputs.size() < blockSize && query.next()) {
+                inputs.add(readInput(query));
+            }
+            if (inputs.size() < blockSize) {
+                exhausted = true;
+            }
+            if (inputs.isEmpty()) {
+                return;
+            }
+            pending.add(pool.submit(() -> {
+                List<Object[]> outputRows = new ArrayList<>(inputs.size());
+                compute(inputs, outputRows);
+                return outputRows;
+            }));
+        }
+    }
+
+    private static List<Object[]> getResult(Future<List<Object[]>> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while computing the rows", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new SQLException("Cannot compute the rows", ex.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Future<List<Object[]>> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        rows = Collections.emptyIterator();
+        if (query != null) {
+            try {
+                Statement statement = query.getStatement();
+                if (statement != null) {
+                    statement.close();
+                } else {
+                    query.close();
+                }
+                query = null;
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void reset() throws SQLException {
+        close();
+        firstRow = false;
+        exhausted = false;
+        query = openQuery();
+    }
+}
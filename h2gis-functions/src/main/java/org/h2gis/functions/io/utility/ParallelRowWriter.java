@@ -0,0 +1,143 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.io.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Write the rows of an export through a pool of threads.
+ *
+ * The rows are grouped in blocks, the blocks are encoded on the worker
+ * threads then written by the calling thread in the order of the rows. The
+ * number of encoded blocks waiting to be written is bounded.
+ *
+ * @param <T> Encoded block
+ */
+public final class ParallelRowWriter<T> implements Closeable {
+
+    /** Number of rows of a block */
+    public static final int BLOCK_SIZE = 1000;
+
+    /**
+     * Encode a block of rows, called from the worker threads
+     *
+     * @param <T> Encoded block
+     */
+    public interface Encoder<T> {
+        T encode(List<Object[]> rows) throws IOException;
+    }
+
+    /**
+     * Write an encoded block, called from the thread that adds the rows
+     *
+     * @param <T> Encoded block
+     */
+    public interface Writer<T> {
+        void write(T encoded) throws IOException;
+    }
+
+    private final int threadCount;
+    private final Encoder<T> encoder;
+    private final Writer<T> writer;
+    private final ExecutorService executorService;
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+    private List<Object[]> block = new ArrayList<>(BLOCK_SIZE);
+
+    /**
+     * @param threadCount Number of threads used to encode the blocks
+     * @param encoder Encode the blocks
+     * @param writer Write the encoded blocks
+     */
+    public ParallelRowWriter(int threadCount, Encoder<T> encoder, Writer<T> writer) {
+        this.threadCount = Math.max(1, threadCount);
+        this.encoder = encoder;
+        this.writer = writer;
+        executorService = Executors.newFixedThreadPool(this.threadCount);
+    }
+
+    /**
+     * Add a row, the row array is copied so the caller can reuse it
+     *
+     * @param row Row values
+     * @throws IOException
+     */
+    public void add(Object[] row) throws IOException {
+        block.add(row.clone());
+        if (block.size() >= BLOCK_SIZE) {
+            submit();
+        }
+    }
+
+    private void submit() throws IOException {
+        final List<Object[]> rows = block;
+        block = new ArrayList<>(BLOCK_SIZE);
+        pending.add(executorService.submit(() -> encoder.encode(rows)));
+        // Keep a bounded number of encoded blocks in memory
+        while (pending.size() > threadCount * 2) {
+            writer.write(getResult(pending.poll()));
+        }
+    }
+
+    /**
+     * Encode the last rows and write all the pending blocks
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (!block.isEmpty()) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writer.write(getResult(pending.poll()));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Future<T> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executorService.shutdownNow();
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding the rows", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Cannot encode the rows", ex.getCause());
+        }
+    }
+}
@@ -231,6 +231,22 @@ public final class ReadBufferManager {
                 return this.buffer.get(buffer);
         }
 
+        /**
+         * Gets length bytes at the specified position
+         *
+         * @param pos
+         * @param buffer
+         * @param offset Index of the first byte written in the array
+         * @param length Number of bytes to read
+         * @return
+         * @throws java.io.IOException
+         */
+        public ByteBuffer get(long pos, byte[] buffer, int offset, int length) throws IOException {
+                int windowOffset = getWindowOffset(pos, length);
+                this.buffer.position(windowOffset);
+                return this.buffer.get(buffer, offset, length);
+        }
+
         /**
          * Moves the current position to the specified one
          *
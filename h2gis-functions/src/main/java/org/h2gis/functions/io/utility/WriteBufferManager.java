@@ -23,7 +23,7 @@ package org.h2gis.functions.io.utility;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Class to write files using nio.
@@ -34,7 +34,7 @@ public final class WriteBufferManager {
 
 	private static final int BUFFER_SIZE = 1024 * 128;
 
-	private FileChannel channel;
+	private WritableByteChannel channel;
 
 	private ByteBuffer buffer;
 
@@ -45,7 +45,7 @@ public final class WriteBufferManager {
 	 * @param channel
 	 * @throws java.io.IOException
 	 */
-	public WriteBufferManager(FileChannel channel) throws IOException {
+	public WriteBufferManager(WritableByteChannel channel) throws IOException {
 		this.channel = channel;
 		buffer = ByteBuffer.allocate(BUFFER_SIZE);
 	}
@@ -94,6 +94,19 @@ public final class WriteBufferManager {
 		buffer.put(bs);
 	}
 
+	/**
+	 * Puts a part of the specified bytes at the current position
+	 *
+	 * @param bs
+	 * @param offset Index of the first byte to put
+	 * @param length Number of bytes to put
+	 * @throws java.io.IOException
+	 */
+	public void put(byte[] bs, int offset, int length) throws IOException {
+		prepareToAddBytes(length);
+		buffer.put(bs, offset, length);
+	}
+
 	/**
 	 * flushes the cached contents into the channel. It is mandatory to call
 	 * this method to finish the writing of the channel
@@ -0,0 +1,346 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.aggregate;
+
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulate the geometries of an aggregate with a small memory footprint.
+ *
+ * While the inputs are only points or only linestrings the coordinates are
+ * appended into growable primitive arrays, the JTS objects are built when
+ * the result is requested. Other geometries are kept in a list. When a group
+ * exceeds the spill threshold, the accumulated values are written into a
+ * temporary file and read back by {@link #getGeometries(GeometryFactory)}.
+ */
+public class GeometryAccumulator implements Closeable {
+
+    /** Default number of bytes kept in memory before spilling to disk */
+    public static final long DEFAULT_SPILL_THRESHOLD = 64L * 1024 * 1024;
+    private static final int EMPTY = -1;
+    private static final int POINTS = 0;
+    private static final int LINES = 1;
+    private static final int MIXED = 2;
+    private static final byte RECORD_POINT = 'P';
+    private static final byte RECORD_LINE = 'L';
+    private static final byte RECORD_WKB = 'W';
+    private static final int GEOMETRY_OVERHEAD = 64;
+
+    private final long spillThreshold;
+    private int mode = EMPTY;
+    // x, y, z of each coordinate
+    private double[] coordinates = new double[48];
+    private int coordinateSize = 0;
+    // Coordinate index of the first coordinate of each linestring
+    private int[] parts = new int[16];
+    private int partCount = 0;
+    private List<Geometry> geometries = new ArrayList<>();
+    private long geometriesSize = 0;
+    private int count = 0;
+    private int minDim = Integer.MAX_VALUE;
+    private int maxDim = Integer.MIN_VALUE;
+    private File spillFile;
+    private DataOutputStream spillOutput;
+    private WKBWriter wkbWriter;
+
+    public GeometryAccumulator() {
+        this(DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * @param spillThreshold Number of bytes kept in memory before writing the
+     * accumulated geometries into a temporary file
+     */
+    public GeometryAccumulator(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * @return Number of accumulated geometries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Lowest dimension of the accumulated geometries
+     */
+    public int getMinDimension() {
+        return minDim;
+    }
+
+    /**
+     * @return Highest dimension of the accumulated geometries
+     */
+    public int getMaxDimension() {
+        return maxDim;
+    }
+
+    /**
+     * @return True if some geometries have been written into the temporary file
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Add a geometry, the collections are split into their components
+     *
+     * @param geometry Geometry
+     * @throws SQLException If the temporary file cannot be written
+     */
+    public void add(Geometry geometry) throws SQLException {
+        if (geometry == null) {
+            return;
+        }
+        if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                addComponent(geometry.getGeometryN(i));
+            }
+        } else {
+            addComponent(geometry);
+        }
+        if (memorySize() > spillThreshold) {
+            spill();
+        }
+    }
+
+    private void addComponent(Geometry geometry) {
+        int dimension = geometry.getDimension();
+        maxDim = Math.max(maxDim, dimension);
+        minDim = Math.min(minDim, dimension);
+        count++;
+        if (geometry.getClass() == Point.class && (mode == EMPTY || mode == POINTS) && isPrimitive(geometry)) {
+            mode = POINTS;
+            appendCoordinates(((Point) geometry).getCoordinateSequence());
+        } else if (geometry.getClass() == LineString.class && (mode == EMPTY || mode == LINES) && isPrimitive(geometry)) {
+            mode = LINES;
+            if (partCount == parts.length) {
+                parts = Arrays.copyOf(parts, parts.length * 2);
+            }
+            parts[partCount++] = coordinateSize / 3;
+            appendCoordinates(((LineString) geometry).getCoordinateSequence());
+        } else {
+            if (mode != MIXED) {
+                // Inputs are not homogeneous anymore, build the JTS objects of the primitive values
+                geometries.addAll(buildPrimitives(new GeometryFactory(new PrecisionModel(), geometry.getSRID())));
+                clearPrimitives();
+                mode = MIXED;
+            }
+            geometries.add(geometry);
+            geometriesSize += GEOMETRY_OVERHEAD + geometry.getNumPoints() * 3L * Double.BYTES;
+        }
+    }
+
+    /**
+     * @return True if the coordinates of the geometry can be stored as x, y, z values
+     */
+    private static boolean isPrimitive(Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return false;
+        }
+        CoordinateSequence sequence = geometry instanceof Point ? ((Point) geometry).getCoordinateSequence()
+                : ((LineString) geometry).getCoordinateSequence();
+        return sequence.getMeasures() == 0;
+    }
+
+    private void appendCoordinates(CoordinateSequence sequence) {
+        int size = sequence.size();
+        int required = coordinateSize + size * 3;
+        if (required > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, Math.max(required, coordinates.length * 2));
+        }
+        boolean hasZ = sequence.getDimension() > 2;
+        for (int i = 0; i < size; i++) {
+            coordinates[coordinateSize++] = sequence.getX(i);
+            coordinates[coordinateSize++] = sequence.getY(i);
+            coordinates[coordinateSize++] = hasZ ? sequence.getOrdinate(i, CoordinateSequence.Z) : Coordinate.NULL_ORDINATE;
+        }
+    }
+
+    private long memorySize() {
+        return (long) coordinateSize * Double.BYTES + (long) partCount * Integer.BYTES + geometriesSize;
+    }
+
+    private void clearPrimitives() {
+        coordinates = new double[48];
+        coordinateSize = 0;
+        parts = new int[16];
+        partCount = 0;
+    }
+
+    private Coordinate[] getCoordinates(int start, int end) {
+        Coordinate[] part = new Coordinate[end - start];
+        for (int i = start; i < end; i++) {
+            part[i - start] = new Coordinate(coordinates[i * 3], coordinates[i * 3 + 1], coordinates[i * 3 + 2]);
+        }
+        return part;
+    }
+
+    private List<Geometry> buildPrimitives(GeometryFactory factory) {
+        int coordinateCount = coordinateSize / 3;
+        List<Geometry> built = new ArrayList<>();
+        if (mode == POINTS) {
+            for (int i = 0; i < coordinateCount; i++) {
+                built.add(factory.createPoint(getCoordinates(i, i + 1)[0]));
+            }
+        } else if (mode == LINES) {
+            for (int i = 0; i < partCount; i++) {
+                int end = i + 1 < partCount ? parts[i + 1] : coordinateCount;
+                built.add(factory.createLineString(getCoordinates(parts[i], end)));
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Write the values kept in memory into the temporary file
+     *
+     * @throws SQLException
+     */
+    private void spill() throws SQLException {
+        try {
+            if (spillOutput == null) {
+                spillFile = File.createTempFile("h2gis_accum", ".bin");
+                spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+            }
+            int coordinateCount = coordinateSize / 3;
+            if (mode == POINTS) {
+                for (int i = 0; i < coordinateSize; i += 3) {
+                    spillOutput.writeByte(RECORD_POINT);
+                    spillOutput.writeDouble(coordinates[i]);
+                    spillOutput.writeDouble(coordinates[i + 1]);
+                    spillOutput.writeDouble(coordinates[i + 2]);
+                }
+            } else if (mode == LINES) {
+                for (int i = 0; i < partCount; i++) {
+                    int end = i + 1 < partCount ? parts[i + 1] : coordinateCount;
+                    spillOutput.writeByte(RECORD_LINE);
+                    spillOutput.writeInt(end - parts[i]);
+                    for (int j = parts[i] * 3; j < end * 3; j++) {
+                        spillOutput.writeDouble(coordinates[j]);
+                    }
+                }
+            } else if (mode == MIXED) {
+                if (wkbWriter == null) {
+                    wkbWriter = new WKBWriter(3);
+                }
+                for (Geometry geometry : geometries) {
+                    byte[] wkb = wkbWriter.write(geometry);
+                    spillOutput.writeByte(RECORD_WKB);
+                    spillOutput.writeInt(wkb.length);
+                    spillOutput.write(wkb);
+                }
+                geometries = new ArrayList<>();
+                geometriesSize = 0;
+            }
+            clearPrimitives();
+        } catch (IOException ex) {
+            close();
+            throw new SQLException("Cannot write the accumulated geometries into a temporary file", ex);
+        }
+    }
+
+    /**
+     * Read back the geometries written into the temporary file
+     */
+    private List<Geometry> readSpill(GeometryFactory factory) throws SQLException {
+        List<Geometry> spilled = new ArrayList<>();
+        try {
+            spillOutput.close();
+            WKBReader wkbReader = new WKBReader(factory);
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)))) {
+                int recordType;
+                while ((recordType = input.read()) != -1) {
+                    if (recordType == RECORD_POINT) {
+                        spilled.add(factory.createPoint(new Coordinate(input.readDouble(), input.readDouble(), input.readDouble())));
+                    } else if (recordType == RECORD_LINE) {
+                        Coordinate[] line = new Coordinate[input.readInt()];
+                        for (int i = 0; i < line.length; i++) {
+                            line[i] = new Coordinate(input.readDouble(), input.readDouble(), input.readDouble());
+                        }
+                        spilled.add(factory.createLineString(line));
+                    } else {
+                        byte[] wkb = new byte[input.readInt()];
+                        input.readFully(wkb);
+                        Geometry geometry = wkbReader.read(wkb);
+                        geometry.setSRID(factory.getSRID());
+                        spilled.add(geometry);
+                    }
+                }
+            }
+        } catch (IOException | ParseException ex) {
+            throw new SQLException("Cannot read the accumulated geometries from the temporary file", ex);
+        } finally {
+            close();
+        }
+        return spilled;
+    }
+
+    /**
+     * Delete the temporary file, if any. Called when the result has been
+     * read or when the aggregate fails.
+     */
+    @Override
+    public void close() {
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException ex) {
+                // The file is deleted anyway
+            }
+            spillOutput = null;
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Build the accumulated geometries, in the insertion order. The
+     * temporary file is deleted.
+     *
+     * @param factory Factory of the points and linestrings
+     * @return Geometries
+     * @throws SQLException If the temporary file cannot be read
+     */
+    public List<Geometry> getGeometries(GeometryFactory factory) throws SQLException {
+        List<Geometry> result = new ArrayList<>(count);
+        if (spillFile != null) {
+            result.addAll(readSpill(factory));
+        }
+        if (mode == MIXED) {
+            result.addAll(geometries);
+        } else {
+            result.addAll(buildPrimitives(factory));
+        }
+        return result;
+    }
+}
@@ -27,8 +27,6 @@ import org.locationtech.jts.geom.*;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -38,9 +36,7 @@ import java.util.List;
  * @author Erwan Bocher, CNRS
  */
 public class ST_Accum extends AbstractFunction implements Aggregate {
-    private List<Geometry> toUnite = new LinkedList<Geometry>();
-    private int minDim = Integer.MAX_VALUE;
-    private int maxDim = Integer.MIN_VALUE;
+    private GeometryAccumulator toUnite = new GeometryAccumulator();
     private int srid =-1;
 
     public ST_Accum() {
@@ -65,32 +61,6 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
         return Value.GEOMETRY;
     }
 
-    private void feedDim(Geometry geometry) {
-        final int geomDim = geometry.getDimension();
-        maxDim = Math.max(maxDim, geomDim);
-        minDim = Math.min(minDim, geomDim);
-    }
-
-    /**
-     * Add geometry into an array to accumulate
-     * @param geom 
-     */
-    private void addGeometry(Geometry geom) {
-        if (geom != null) {
-            if (geom instanceof GeometryCollection) {
-                List<Geometry> toUnitTmp = new ArrayList<Geometry>(geom.getNumGeometries());
-                for (int i = 0; i < geom.getNumGeometries(); i++) {
-                    toUnitTmp.add(geom.getGeometryN(i));
-                    feedDim(geom.getGeometryN(i));
-                }
-                toUnite.addAll(toUnitTmp);
-            } else {
-                toUnite.add(geom);
-                feedDim(geom);
-            }
-        }
-    }
-
     @Override
     public void add(Object o) throws SQLException {
         if (o instanceof Geometry) {
@@ -99,12 +69,14 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
                 srid=geom.getSRID();
             }
             if(srid==geom.getSRID()){
-            addGeometry(geom);
+            toUnite.add(geom);
             }
             else {
+              toUnite.close();
               throw new SQLException("Operation on mixed SRID geometries not supported");  
             }
         } else if (o != null) {
+            toUnite.close();
             throw new SQLException("ST_Accum accepts only Geometry values. Input: " +
                     o.getClass().getSimpleName());
         }
@@ -112,17 +84,23 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
 
     @Override
     public GeometryCollection getResult() throws SQLException {
-        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid==-1?0:srid);        
-        if(maxDim != minDim) {
-            return factory.createGeometryCollection(toUnite.toArray(new Geometry[0]));
+        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid==-1?0:srid);
+        List<Geometry> geometries;
+        try {
+            geometries = toUnite.getGeometries(factory);
+        } finally {
+            toUnite.close();
+        }
+        if(toUnite.getMaxDimension() != toUnite.getMinDimension()) {
+            return factory.createGeometryCollection(geometries.toArray(new Geometry[0]));
         } else {
-            switch (maxDim) {
+            switch (toUnite.getMaxDimension()) {
                 case 0:
-                    return factory.createMultiPoint(toUnite.toArray(new Point[0]));
+                    return factory.createMultiPoint(geometries.toArray(new Point[0]));
                 case 1:
-                    return factory.createMultiLineString(toUnite.toArray(new LineString[0]));
+                    return factory.createMultiLineString(geometries.toArray(new LineString[0]));
                 default:
-                    return factory.createMultiPolygon(toUnite.toArray(new Polygon[0]));
+                    return factory.createMultiPolygon(geometries.toArray(new Polygon[0]));
             }
         }
     }
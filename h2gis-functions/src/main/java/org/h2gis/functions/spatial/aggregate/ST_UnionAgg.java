@@ -0,0 +1,225 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.aggregate;
+
+import org.h2.api.Aggregate;
+import org.h2.value.Value;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.functions.spatial.properties.ST_Hilbert;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate that computes the union of a column of geometries.
+ *
+ * The geometries are buffered in batches, each batch is sorted along a
+ * Hilbert curve and unioned on a fork-join pool while the next batch is
+ * read. The batch results are merged two by two as a balanced tree, so only
+ * a few partial unions and a bounded number of pending batches are kept in
+ * memory.
+ */
+public class ST_UnionAgg extends AbstractFunction implements Aggregate {
+
+    /** Default number of geometries by batch */
+    public static final int DEFAULT_BATCH_SIZE = 2048;
+
+    private final int batchSize;
+    private final int maxPendingBatches;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private List<Geometry> batch = new ArrayList<>();
+    // Partial union of 2^level batches, null when the level is free
+    private final List<ForkJoinTask<Geometry>> levels = new ArrayList<>();
+    private final Deque<ForkJoinTask<Geometry>> pendingBatches = new ArrayDeque<>();
+    private int srid = -1;
+
+    /**
+     * Default constructor
+     */
+    public ST_UnionAgg() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize Number of geometries unioned by a single task
+     */
+    public ST_UnionAgg(int batchSize) {
+        this.batchSize = batchSize;
+        this.maxPendingBatches = 2 * ForkJoinPool.getCommonPoolParallelism();
+        addProperty(PROP_REMARKS, "This aggregate function returns the union of a column of geometries.\n"
+                + "The geometries are unioned by batches of close geometries on several threads.");
+    }
+
+    @Override
+    public void init(Connection connection) throws SQLException {
+    }
+
+    @Override
+    public int getInternalType(int[] inputTypes) throws SQLException {
+        if (inputTypes.length != 1) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects 1 argument.");
+        }
+        if (inputTypes[0] != Value.GEOMETRY) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects a Geometry argument");
+        }
+        return Value.GEOMETRY;
+    }
+
+    @Override
+    public void add(Object o) throws SQLException {
+        if (o instanceof Geometry) {
+            Geometry geom = (Geometry) o;
+            if (srid == -1) {
+                srid = geom.getSRID();
+            }
+            if (srid != geom.getSRID()) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            batch.add(geom);
+            if (batch.size() >= batchSize) {
+                submitBatch();
+            }
+        } else if (o != null) {
+            throw new SQLException("ST_UnionAgg accepts only Geometry values. Input: "
+                    + o.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public Geometry getResult() throws SQLException {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        // Merge the remaining levels, from the smallest partial union
+        ForkJoinTask<Geometry> result = null;
+        for (ForkJoinTask<Geometry> level : levels) {
+            if (level != null) {
+                result = result == null ? level : pool.submit(new Merge(level, result));
+            }
+        }
+        levels.clear();
+        pendingBatches.clear();
+        if (result == null) {
+            return null;
+        }
+        Geometry union = join(result);
+        union.setSRID(srid == -1 ? 0 : srid);
+        return union;
+    }
+
+    /**
+     * Sort the buffered geometries, union them on the pool and add the
+     * result in the merge tree.
+     */
+    private void submitBatch() throws SQLException {
+        ForkJoinTask<Geometry> task = pool.submit(new BatchUnion(batch));
+        batch = new ArrayList<>(batchSize);
+        pendingBatches.addLast(task);
+        // Bound the memory, wait for the oldest batch if the pool is late
+        while (pendingBatches.size() > maxPendingBatches) {
+            join(pendingBatches.removeFirst());
+        }
+        while (!pendingBatches.isEmpty() && pendingBatches.peekFirst().isDone()) {
+            pendingBatches.removeFirst();
+        }
+        // Binary counter, two partial unions of the same level are merged
+        int level = 0;
+        while (level < levels.size() && levels.get(level) != null) {
+            task = pool.submit(new Merge(levels.get(level), task));
+            levels.set(level, null);
+            level++;
+        }
+        if (level == levels.size()) {
+            levels.add(task);
+        } else {
+            levels.set(level, task);
+        }
+    }
+
+    private static Geometry join(ForkJoinTask<Geometry> task) throws SQLException {
+        try {
+            return task.join();
+        } catch (RuntimeException ex) {
+            throw new SQLException("Cannot compute the union of the geometries", ex);
+        }
+    }
+
+    /**
+     * Union of a batch of geometries sorted along a Hilbert curve
+     */
+    private static final class BatchUnion extends RecursiveTask<Geometry> {
+        private final List<Geometry> geometries;
+
+        BatchUnion(List<Geometry> geometries) {
+            this.geometries = geometries;
+        }
+
+        @Override
+        protected Geometry compute() {
+            Envelope extent = new Envelope();
+            for (Geometry geometry : geometries) {
+                extent.expandToInclude(geometry.getEnvelopeInternal());
+            }
+            long[] keys = new long[geometries.size()];
+            Integer[] order = new Integer[geometries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Envelope envelope = geometries.get(i).getEnvelopeInternal();
+                keys[i] = envelope.isNull() ? 0 : ST_Hilbert.hilbertIndex(extent, envelope.centre().x, envelope.centre().y);
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+            List<Geometry> sorted = new ArrayList<>(keys.length);
+            for (Integer i : order) {
+                sorted.add(geometries.get(i));
+            }
+            return UnaryUnionOp.union(sorted);
+        }
+    }
+
+    /**
+     * Union of two partial unions
+     */
+    private static final class Merge extends RecursiveTask<Geometry> {
+        private final ForkJoinTask<Geometry> left;
+        private final ForkJoinTask<Geometry> right;
+
+        Merge(ForkJoinTask<Geometry> left, ForkJoinTask<Geometry> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        protected Geometry compute() {
+            return UnaryUnionOp.union(Arrays.asList(left.join(), right.join()));
+        }
+    }
+}
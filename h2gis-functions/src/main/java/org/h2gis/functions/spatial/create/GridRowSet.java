@@ -21,41 +21,60 @@ package org.h2gis.functions.spatial.create;
 
 import org.h2.tools.SimpleResultSet;
 import org.h2.tools.SimpleRowSource;
+import org.h2gis.functions.io.utility.ParallelRowSource;
 import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
 import org.h2gis.utilities.dbtypes.DBUtils;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.cts.util.UTMUtils;
 import org.h2gis.utilities.GeographyUtilities;
 import static org.h2gis.utilities.GeographyUtilities.computeLongitudeDistance;
 import org.h2gis.utilities.GeometryMetaData;
 import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.Tuple;
 
 /**
  * GridRowSet is used to populate a result set with all grid cells. A cell could
  * be represented as a polygon or its center point.
  *
+ * The cells can be restricted to the cells that intersect the input geometries.
+ * In this case the grid is computed by bands of rows on the common fork join
+ * pool, the geometries of each band are fetched using the spatial index of the
+ * input table.
+ *
  * @author Erwan Bocher
  */
 public class GridRowSet implements SimpleRowSource {
 
     private static final GeometryFactory GF = new GeometryFactory();
-    private static int cellI = 0;
-    private static int cellJ = 0;
+    // Maximum number of cells of a band of rows computed by a single task
+    private static final int BAND_CELLS = 65536;
+    private int cellI = 0;
+    private int cellJ = 0;
     private int maxI, maxJ;
+    private final double inputDeltaX, inputDeltaY;
     private double deltaX, deltaY;
     private double minX, minY;
-    private int id = 0;
     private final Connection connection;
     private boolean firstRow = true;
     private Envelope envelope;
     private boolean isTable;
     private String tableName;
+    private Geometry geometry;
+    private String geometryColumn;
     private boolean isCenterCell = false;
     private int srid;
     private boolean isRowColumnNumber =false;
+    private boolean isIntersectingCells = false;
+    private BandRowSource bandRowSource;
 
     /**
      * The grid will be computed according a table stored in the database
@@ -67,8 +86,8 @@ public class GridRowSet implements SimpleRowSource {
      */
     public GridRowSet(Connection connection, double deltaX, double deltaY, String tableName) {
         this.connection = connection;
-        this.deltaX = deltaX;
-        this.deltaY = deltaY;
+        this.inputDeltaX = deltaX;
+        this.inputDeltaY = deltaY;
         this.tableName = tableName;
         this.isTable = true;
     }
@@ -83,8 +102,9 @@ public class GridRowSet implements SimpleRowSource {
      */
     public GridRowSet(Connection connection, double deltaX, double deltaY, Geometry geometry) {
         this.connection = connection;
-        this.deltaX = deltaX;
-        this.deltaY = deltaY;
+        this.inputDeltaX = deltaX;
+        this.inputDeltaY = deltaY;
+        this.geometry = geometry;
         this.srid = geometry.getSRID();
         this.envelope = geometry.getEnvelopeInternal();
         this.isTable = false;
@@ -95,46 +115,66 @@ public class GridRowSet implements SimpleRowSource {
         if (firstRow) {
             reset();
         }
+        if (bandRowSource != null) {
+            return bandRowSource.readRow();
+        }
         if (cellI == maxI) {
             cellJ++;
             cellI = 0;
         }
         if (cellJ >= maxJ) {
-            cellJ = 0;
             return null;
         }
-        if (isCenterCell) {
-            return new Object[]{getCellPoint(), id++, cellI, cellJ + 1};
-        }
-        return new Object[]{getCellPolygon(), id++, cellI, cellJ + 1};
+        Object[] row = getCellRow(cellI, cellJ);
+        cellI++;
+        return row;
     }
 
     @Override
     public void close() {
+        if (bandRowSource != null) {
+            bandRowSource.close();
+        }
     }
 
     @Override
     public void reset() throws SQLException {
+        close();
         cellI = 0;
         cellJ = 0;
         firstRow = false;
         //We compute the extend according the first input value
         if (isTable) {
-            Statement statement = connection.createStatement();
             //Find the SRID
-            Tuple<String, GeometryMetaData> geomMetadata = GeometryTableUtilities.getFirstColumnMetaData(connection, TableLocation.parse(tableName, DBUtils.getDBType(connection)));
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation location = TableLocation.parse(tableName, dbType);
+            Tuple<String, GeometryMetaData> geomMetadata = GeometryTableUtilities.getFirstColumnMetaData(connection, location);
             srid = geomMetadata.second().SRID;
-            try (ResultSet rs = statement.executeQuery("select ST_Extent(" + geomMetadata.first() + ")  from " + tableName)) {
-                rs.next();
-                Geometry geomExtend = (Geometry) rs.getObject(1);
+            geometryColumn = geomMetadata.first();
+            //Use the spatial index or the cached extent first, the full scan is only a fallback
+            Geometry geomExtend;
+            try {
+                geomExtend = GeometryTableUtilities.getEstimatedExtent(connection, location, geometryColumn);
+            } catch (SQLException ex) {
+                geomExtend = null;
+            }
+            String quotedColumn = TableLocation.quoteIdentifier(geometryColumn, dbType);
+            if (geomExtend == null || geomExtend.isEmpty()) {
+                try (Statement statement = connection.createStatement();
+                        ResultSet rs = statement.executeQuery("select ST_Extent(" + quotedColumn + ") from " + location)) {
+                    rs.next();
+                    geomExtend = (Geometry) rs.getObject(1);
+                }
                 if (geomExtend == null) {
                     throw new SQLException("The envelope cannot be null.");
-                } else {
-                    envelope = geomExtend.getEnvelopeInternal();
-                    initParameters();
                 }
-
+                envelope = geomExtend.getEnvelopeInternal();
+            } else if (JDBCUtilities.isSpatialIndexed(connection, location, geometryColumn)) {
+                envelope = getIndexedExtent(geomExtend.getEnvelopeInternal(), location, quotedColumn);
+            } else {
+                envelope = geomExtend.getEnvelopeInternal();
             }
+            initParameters();
         } else {
             if (envelope == null || envelope.isNull()) {
                 throw new SQLException("The input geometry used to compute the grid cannot be null.");
@@ -143,40 +183,70 @@ public class GridRowSet implements SimpleRowSource {
                 initParameters();
             }
         }
+        if (isIntersectingCells) {
+            bandRowSource = new BandRowSource();
+        }
+    }
+
+    /**
+     * Compute the row of a cell
+     *
+     * @param i Column of the cell
+     * @param j Row of the cell
+     * @return The cell geometry, its id, column and row numbers
+     */
+    private Object[] getCellRow(int i, int j) {
+        Geometry cell = isCenterCell ? getCellPoint(i, j) : getCellPolygon(i, j);
+        return new Object[]{cell, j * maxI + i, i + 1, j + 1};
     }
 
     /**
      * Compute the polygon corresponding to the cell
      *
+     * @param i Column of the cell
+     * @param j Row of the cell
      * @return Polygon of the cell
      */
-    private Polygon getCellPolygon() {
+    private Polygon getCellPolygon(int i, int j) {
+        Polygon gg = getBlockPolygon(i, j, i + 1, j + 1);
+        gg.setSRID(srid);
+        return gg;
+    }
+
+    /**
+     * Compute the polygon that covers a block of cells
+     *
+     * @param i1 First column of the block
+     * @param j1 First row of the block
+     * @param i2 Column after the last column of the block
+     * @param j2 Row after the last row of the block
+     * @return Polygon of the block
+     */
+    private Polygon getBlockPolygon(int i1, int j1, int i2, int j2) {
         final Coordinate[] summits = new Coordinate[5];
-        double x1 = minX + cellI * deltaX;
-        double y1 = minY + cellJ * deltaY;
-        double x2 = minX + (cellI + 1) * deltaX;
-        double y2 = minY + (cellJ + 1) * deltaY;
+        double x1 = minX + i1 * deltaX;
+        double y1 = minY + j1 * deltaY;
+        double x2 = minX + i2 * deltaX;
+        double y2 = minY + j2 * deltaY;
         summits[0] = new Coordinate(x1, y1);
         summits[1] = new Coordinate(x2, y1);
         summits[2] = new Coordinate(x2, y2);
         summits[3] = new Coordinate(x1, y2);
         summits[4] = new Coordinate(x1, y1);
         final LinearRing g = GF.createLinearRing(summits);
-        final Polygon gg = GF.createPolygon(g, null);
-        cellI++;
-        gg.setSRID(srid);
-        return gg;
+        return GF.createPolygon(g, null);
     }
 
     /**
      * Compute the point of the cell
      *
+     * @param i Column of the cell
+     * @param j Row of the cell
      * @return Center point of the cell
      */
-    private Point getCellPoint() {
-        double x1 = (minX + cellI * deltaX) + (deltaX / 2d);
-        double y1 = (minY + cellJ * deltaY) + (deltaY / 2d);
-        cellI++;
+    private Point getCellPoint(int i, int j) {
+        double x1 = (minX + i * deltaX) + (deltaX / 2d);
+        double y1 = (minY + j * deltaY) + (deltaY / 2d);
         Point gg = GF.createPoint(new Coordinate(x1, y1));
         gg.setSRID(srid);
         return gg;
@@ -217,13 +287,73 @@ public class GridRowSet implements SimpleRowSource {
         return this.isRowColumnNumber;
     }
 
+    /**
+     * Set true to keep only the cells that intersect the input geometries
+     * @param isIntersectingCells
+     */
+    public void setIntersectingCells(boolean isIntersectingCells) {
+        this.isIntersectingCells = isIntersectingCells;
+    }
+
+    /**
+     * Return true if only the cells that intersect the input geometries are kept
+     * @return
+     */
+    public boolean isIntersectingCells() {
+        return isIntersectingCells;
+    }
+
     /**
      * Compute the parameters need to create each cells
      *
      */
+    /**
+     * The envelope of a spatial index is stored with a float precision, the
+     * exact bounds are read from the geometries close to each side of it.
+     *
+     * @param estimated envelope of the spatial index
+     * @param location input table
+     * @param quotedColumn geometry column
+     * @return the exact extent of the geometry column
+     * @throws SQLException
+     */
+    private Envelope getIndexedExtent(Envelope estimated, TableLocation location, String quotedColumn) throws SQLException {
+        double tolerance = Math.ulp((float) Math.max(Math.max(Math.abs(estimated.getMinX()), Math.abs(estimated.getMaxX())),
+                Math.max(Math.abs(estimated.getMinY()), Math.abs(estimated.getMaxY()))));
+        Envelope area = new Envelope(estimated);
+        area.expandBy(tolerance);
+        Envelope[] sides = new Envelope[]{
+            new Envelope(area.getMinX(), estimated.getMinX() + tolerance, area.getMinY(), area.getMaxY()),
+            new Envelope(estimated.getMaxX() - tolerance, area.getMaxX(), area.getMinY(), area.getMaxY()),
+            new Envelope(area.getMinX(), area.getMaxX(), area.getMinY(), estimated.getMinY() + tolerance),
+            new Envelope(area.getMinX(), area.getMaxX(), estimated.getMaxY() - tolerance, area.getMaxY())};
+        double[] bounds = new double[4];
+        GeometryFactory factory = new GeometryFactory();
+        try (PreparedStatement ps = connection.prepareStatement("select ST_Extent(" + quotedColumn + ") from "
+                + location + " where " + quotedColumn + " && ?")) {
+            for (int i = 0; i < sides.length; i++) {
+                Geometry side = factory.toGeometry(sides[i]);
+                side.setSRID(srid);
+                ps.setObject(1, side);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Geometry sideExtent = rs.next() ? (Geometry) rs.getObject(1) : null;
+                    if (sideExtent == null) {
+                        //The index is not up to date with the table
+                        return estimated;
+                    }
+                    Envelope env = sideExtent.getEnvelopeInternal();
+                    bounds[i] = i == 0 ? env.getMinX() : i == 1 ? env.getMaxX() : i == 2 ? env.getMinY() : env.getMaxY();
+                }
+            }
+        }
+        return new Envelope(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
     private void initParameters() throws SQLException {
         this.minX = envelope.getMinX();
         this.minY = envelope.getMinY();
+        this.deltaX = inputDeltaX;
+        this.deltaY = inputDeltaY;
         if(isRowColumnNumber()){
             if(deltaX<1 || deltaY<1){
                 throw new SQLException("The number of columns and rows must be greater or equals than 1.");
@@ -291,4 +421,153 @@ public class GridRowSet implements SimpleRowSource {
         srs.addColumn("ID_ROW", Types.INTEGER, 10, 0);
         return srs;
     }
+
+    /**
+     * Band of grid rows with the input geometries that may intersect it
+     */
+    private static class Band {
+        private final int firstRow;
+        private final int lastRow;
+        private final List<Geometry> geometries;
+
+        private Band(int firstRow, int lastRow, List<Geometry> geometries) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.geometries = geometries;
+        }
+    }
+
+    /**
+     * Compute the cells that intersect the input geometries, band by band
+     */
+    private class BandRowSource extends ParallelRowSource<Band> {
+        private final int bandRows;
+        private PreparedStatement bandQuery;
+
+        private BandRowSource() {
+            super(1);
+            bandRows = Math.max(1, BAND_CELLS / Math.max(1, maxI));
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            if (isTable && bandQuery == null) {
+                DBTypes dbType = DBUtils.getDBType(connection);
+                bandQuery = connection.prepareStatement("SELECT " + TableLocation.quoteIdentifier(geometryColumn, dbType)
+                        + " FROM " + TableLocation.parse(tableName, dbType) + " WHERE "
+                        + TableLocation.quoteIdentifier(geometryColumn, dbType) + " && ?");
+            }
+            SimpleResultSet bands = new SimpleResultSet();
+            bands.addColumn("FIRST_ROW", Types.INTEGER, 10, 0);
+            for (int j = 0; j < maxJ; j += bandRows) {
+                bands.addRow(j);
+            }
+            return bands;
+        }
+
+        @Override
+        protected Band readInput(ResultSet resultSet) throws SQLException {
+            int firstRow = resultSet.getInt(1);
+            int lastRow = Math.min(maxJ, firstRow + bandRows);
+            Polygon bandPolygon = getBlockPolygon(0, firstRow, maxI, lastRow);
+            List<Geometry> geometries = new ArrayList<>();
+            if (isTable) {
+                bandPolygon.setSRID(srid);
+                bandQuery.setObject(1, bandPolygon);
+                try (ResultSet rs = bandQuery.executeQuery()) {
+                    while (rs.next()) {
+                        Geometry geom = (Geometry) rs.getObject(1);
+                        if (geom != null && !geom.isEmpty()) {
+                            geometries.add(geom);
+                        }
+                    }
+                }
+            } else if (geometry.getEnvelopeInternal().intersects(bandPolygon.getEnvelopeInternal())) {
+                geometries.add(geometry);
+            }
+            return new Band(firstRow, lastRow, geometries);
+        }
+
+        @Override
+        protected void compute(List<Band> inputs, List<Object[]> outputRows) {
+            for (Band band : inputs) {
+                if (band.geometries.isEmpty()) {
+                    continue;
+                }
+                // Prepared geometries build their index lazily, keep them local to the task
+                List<PreparedGeometry> geometries = new ArrayList<>(band.geometries.size());
+                for (Geometry geom : band.geometries) {
+                    geometries.add(PreparedGeometryFactory.prepare(geom));
+                }
+                int rowCount = band.lastRow - band.firstRow;
+                boolean[] cells = new boolean[rowCount * maxI];
+                markCells(cells, band.firstRow, 0, band.firstRow, maxI, band.lastRow, geometries);
+                for (int j = 0; j < rowCount; j++) {
+                    for (int i = 0; i < maxI; i++) {
+                        if (cells[j * maxI + i]) {
+                            outputRows.add(getCellRow(i, band.firstRow + j));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Mark the cells of a block that intersect the geometries. The block is
+         * split in two until it is fully covered by a geometry, far from all the
+         * geometries or reduced to a single cell.
+         */
+        private void markCells(boolean[] cells, int bandFirstRow, int i1, int j1, int i2, int j2,
+                               List<PreparedGeometry> geometries) {
+            Polygon block = getBlockPolygon(i1, j1, i2, j2);
+            Envelope blockEnvelope = block.getEnvelopeInternal();
+            List<PreparedGeometry> intersecting = new ArrayList<>(geometries.size());
+            for (PreparedGeometry geom : geometries) {
+                if (geom.getGeometry().getEnvelopeInternal().intersects(blockEnvelope) && geom.intersects(block)) {
+                    if (i2 - i1 > 1 || j2 - j1 > 1) {
+                        if (geom.contains(block)) {
+                            fillCells(cells, bandFirstRow, i1, j1, i2, j2);
+                            return;
+                        }
+                    }
+                    intersecting.add(geom);
+                }
+            }
+            if (intersecting.isEmpty()) {
+                return;
+            }
+            if (i2 - i1 == 1 && j2 - j1 == 1) {
+                cells[(j1 - bandFirstRow) * maxI + i1] = true;
+            } else if (i2 - i1 >= j2 - j1) {
+                int middle = (i1 + i2) / 2;
+                markCells(cells, bandFirstRow, i1, j1, middle, j2, intersecting);
+                markCells(cells, bandFirstRow, middle, j1, i2, j2, intersecting);
+            } else {
+                int middle = (j1 + j2) / 2;
+                markCells(cells, bandFirstRow, i1, j1, i2, middle, intersecting);
+                markCells(cells, bandFirstRow, i1, middle, i2, j2, intersecting);
+            }
+        }
+
+        private void fillCells(boolean[] cells, int bandFirstRow, int i1, int j1, int i2, int j2) {
+            for (int j = j1; j < j2; j++) {
+                for (int i = i1; i < i2; i++) {
+                    cells[(j - bandFirstRow) * maxI + i] = true;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (bandQuery != null) {
+                try {
+                    bandQuery.close();
+                    bandQuery = null;
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+    }
 }
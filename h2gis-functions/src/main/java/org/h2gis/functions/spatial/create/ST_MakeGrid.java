@@ -46,6 +46,8 @@ public class ST_MakeGrid extends AbstractFunction implements ScalarFunction {
                 + "The delta X and Y cell grid are expressed in a cartesian plane."
                 + "An optional value set to true indicates that the delta x and delta y defines the number of" +
                 "columns and rows\n"
+                + "A second optional value set to true keeps only the cells that intersect the input geometries,\n"
+                + "the geometries of a table are fetched with its spatial index.\n"
                 + "Note :The geometry could be expressed using a subquery as\n"
                 + " (SELECT the_geom from myTable)");
     }
@@ -67,19 +69,7 @@ public class ST_MakeGrid extends AbstractFunction implements ScalarFunction {
      * @throws SQLException
      */
     public static ResultSet createGrid(Connection connection, Value value, double deltaX, double deltaY) throws SQLException {
-        if(value == null){
-            return null;
-        }
-        if (value instanceof ValueVarchar) {
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, value.getString());
-            return gridRowSet.getResultSet();
-        } else if (value instanceof ValueGeometry) {
-            ValueGeometry geom = (ValueGeometry) value;
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, geom.getGeometry());
-            return gridRowSet.getResultSet();
-        } else {
-            throw new SQLException("This function supports only table name or geometry as first argument.");
-        }
+        return createGrid(connection, value, deltaX, deltaY, false);
     }
 
     /**
@@ -90,24 +80,44 @@ public class ST_MakeGrid extends AbstractFunction implements ScalarFunction {
      * @param value could be the name of a table or a geometry.
      * @param deltaX the X cell size
      * @param deltaY the Y cell size
+     * @param isColumnsRowsMeasure true if the delta X and Y are the number of columns and rows
      * @return a resultset that contains all cells as a set of polygons
      * @throws SQLException
      */
     public static ResultSet createGrid(Connection connection, Value value, double deltaX, double deltaY, boolean isColumnsRowsMeasure) throws SQLException {
+        return createGrid(connection, value, deltaX, deltaY, isColumnsRowsMeasure, false);
+    }
+
+    /**
+     * Create a regular grid using the first input argument to compute the full
+     * extent.
+     *
+     * @param connection
+     * @param value could be the name of a table or a geometry.
+     * @param deltaX the X cell size
+     * @param deltaY the Y cell size
+     * @param isColumnsRowsMeasure true if the delta X and Y are the number of columns and rows
+     * @param isIntersectingCells true to keep only the cells that intersect the
+     * input geometries, the geometries of a table are fetched with its spatial index
+     * @return a resultset that contains the cells as a set of polygons
+     * @throws SQLException
+     */
+    public static ResultSet createGrid(Connection connection, Value value, double deltaX, double deltaY,
+                                       boolean isColumnsRowsMeasure, boolean isIntersectingCells) throws SQLException {
         if(value == null){
             return null;
         }
+        GridRowSet gridRowSet;
         if (value instanceof ValueVarchar) {
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, value.getString());
-            gridRowSet.setIsRowColumnNumber(isColumnsRowsMeasure);
-            return gridRowSet.getResultSet();
+            gridRowSet = new GridRowSet(connection, deltaX, deltaY, value.getString());
         } else if (value instanceof ValueGeometry) {
             ValueGeometry geom = (ValueGeometry) value;
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, geom.getGeometry());
-            gridRowSet.setIsRowColumnNumber(isColumnsRowsMeasure);
-            return gridRowSet.getResultSet();
+            gridRowSet = new GridRowSet(connection, deltaX, deltaY, geom.getGeometry());
         } else {
             throw new SQLException("This function supports only table name or geometry as first argument.");
         }
+        gridRowSet.setIsRowColumnNumber(isColumnsRowsMeasure);
+        gridRowSet.setIntersectingCells(isIntersectingCells);
+        return gridRowSet.getResultSet();
     }
 }
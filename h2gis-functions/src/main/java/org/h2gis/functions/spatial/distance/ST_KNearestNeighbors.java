@@ -0,0 +1,228 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.distance;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedGeometryIndex;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.AbstractNode;
+import org.locationtech.jts.index.strtree.Boundable;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+
+import java.sql.*;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Find the k nearest rows of a target table for each row of a query table.
+ *
+ * The geometries of the target table are read once and indexed in a STR
+ * tree. The rows of the query table are read by blocks, each block is
+ * searched on the common fork join pool with a best-first traversal of the
+ * tree : the nodes are visited by increasing envelope distance and the
+ * search stops as soon as k geometries are closer than any remaining node.
+ */
+public class ST_KNearestNeighbors extends AbstractFunction implements ScalarFunction {
+
+    public ST_KNearestNeighbors() {
+        addProperty(PROP_REMARKS, "Return the k nearest rows of a target table for each row of a query table.\n"
+                + "SELECT * FROM ST_KNearestNeighbors('QUERY_TABLE', 'TARGET_TABLE', k);\n"
+                + "SELECT * FROM ST_KNearestNeighbors('QUERY_TABLE', 'TARGET_TABLE', k, maxDistance);\n"
+                + "The geometries of TARGET_TABLE are kept in memory. The optional maxDistance ignores the farther\n"
+                + "rows.\n"
+                + "The result contains the primary keys PK_A of QUERY_TABLE and PK_B of TARGET_TABLE (or the row\n"
+                + "number if the table has no integer primary key), the RANK of the neighbor starting from 1 and\n"
+                + "the DISTANCE between the geometries. When the same table is given twice each row is its own\n"
+                + "first neighbor.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "nearestNeighbors";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param queryTable Table scanned by blocks
+     * @param targetTable Table indexed in memory
+     * @param k Number of neighbors per row of the query table
+     * @return PK_A, PK_B, RANK, DISTANCE
+     * @throws SQLException
+     */
+    public static ResultSet nearestNeighbors(Connection connection, String queryTable, String targetTable,
+                                             int k) throws SQLException {
+        return nearestNeighbors(connection, queryTable, targetTable, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param queryTable Table scanned by blocks
+     * @param targetTable Table indexed in memory
+     * @param k Number of neighbors per row of the query table
+     * @param maxDistance Maximum distance of the neighbors
+     * @return PK_A, PK_B, RANK, DISTANCE
+     * @throws SQLException
+     */
+    public static ResultSet nearestNeighbors(Connection connection, String queryTable, String targetTable,
+                                             int k, double maxDistance) throws SQLException {
+        if (k < 1) {
+            throw new SQLException("The number of neighbors must be greater than 0");
+        }
+        if (maxDistance < 0) {
+            throw new SQLException("The maximum distance must be greater than or equal to 0");
+        }
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else {
+            rs = new SimpleResultSet(new NeighborRowSource(connection, queryTable, targetTable, k, maxDistance));
+        }
+        KeyedRowSource.addKeyColumn(rs, "PK_A");
+        KeyedRowSource.addKeyColumn(rs, "PK_B");
+        rs.addColumn("RANK", Types.INTEGER, 10, 0);
+        rs.addColumn("DISTANCE", Types.DOUBLE, 17, 0);
+        return rs;
+    }
+
+    /**
+     * Node or geometry of the tree waiting to be visited, with a lower bound
+     * of its distance to the query geometry : the distance of its envelope,
+     * until the exact distance of the geometry is computed.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        private final double distance;
+        private final AbstractNode node;
+        private final int item;
+        private final boolean exact;
+
+        private Candidate(double distance, AbstractNode node, int item, boolean exact) {
+            this.distance = distance;
+            this.node = node;
+            this.item = item;
+            this.exact = exact;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int cmp = Double.compare(distance, other.distance);
+            if (cmp != 0) {
+                return cmp;
+            }
+            // Refine the bounds first so that equidistant geometries are ranked by their order in the table
+            if (exact != other.exact) {
+                return exact ? 1 : -1;
+            }
+            return Integer.compare(item, other.item);
+        }
+    }
+
+    /**
+     * Read the rows of the query table and search their neighbors on request
+     */
+    private static class NeighborRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String queryTable;
+        private final String targetTable;
+        private final int k;
+        private final double maxDistance;
+        // Geometries of the target table
+        private KeyedGeometryIndex indexB;
+
+        private NeighborRowSource(Connection connection, String queryTable, String targetTable, int k,
+                                  double maxDistance) {
+            super(BLOCK_SIZE);
+            this.connection = connection;
+            this.queryTable = queryTable;
+            this.targetTable = targetTable;
+            this.k = k;
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation locationA = TableLocation.parse(queryTable, dbType);
+            TableLocation locationB = TableLocation.parse(targetTable, dbType);
+            Tuple<String, GeometryMetaData> geometryA = GeometryTableUtilities.getFirstColumnMetaData(connection, locationA);
+            Tuple<String, GeometryMetaData> geometryB = GeometryTableUtilities.getFirstColumnMetaData(connection, locationB);
+            if (geometryA.second().SRID != geometryB.second().SRID) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            if (indexB == null) {
+                indexB = KeyedGeometryIndex.load(connection, locationB, geometryB.first(), dbType);
+            }
+            return queryWithKey(connection, locationA, TableLocation.quoteIdentifier(geometryA.first(), dbType), dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) {
+            for (Object[] input : inputs) {
+                Geometry geometry = (Geometry) input[1];
+                if (geometry == null || geometry.isEmpty() || indexB.size() == 0) {
+                    continue;
+                }
+                Envelope envelope = geometry.getEnvelopeInternal();
+                PriorityQueue<Candidate> queue = new PriorityQueue<>();
+                queue.add(new Candidate(0, indexB.getIndex().getRoot(), -1, false));
+                int rank = 0;
+                while (rank < k && !queue.isEmpty()) {
+                    Candidate candidate = queue.poll();
+                    if (candidate.distance > maxDistance) {
+                        break;
+                    }
+                    if (candidate.exact) {
+                        rank++;
+                        outputRows.add(new Object[]{input[0], indexB.getKey(candidate.item), rank, candidate.distance});
+                    } else if (candidate.node == null) {
+                        // The geometry is closer than any other bound, compute its distance
+                        queue.add(new Candidate(geometry.distance(indexB.getGeometry(candidate.item)), null,
+                                candidate.item, true));
+                    } else {
+                        for (Object child : candidate.node.getChildBoundables()) {
+                            Boundable boundable = (Boundable) child;
+                            double distance = envelope.distance((Envelope) boundable.getBounds());
+                            if (distance > maxDistance) {
+                                continue;
+                            }
+                            if (boundable instanceof ItemBoundable) {
+                                queue.add(new Candidate(distance, null,
+                                        (Integer) ((ItemBoundable) boundable).getItem(), false));
+                            } else {
+                                queue.add(new Candidate(distance, (AbstractNode) boundable, -1, false));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
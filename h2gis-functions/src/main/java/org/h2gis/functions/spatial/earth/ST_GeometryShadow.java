@@ -22,6 +22,7 @@ package org.h2gis.functions.spatial.earth;
 
 import org.h2gis.api.DeterministicScalarFunction;
 import org.h2gis.functions.spatial.convert.GeometryCoordinateDimension;
+import org.locationtech.jts.algorithm.Orientation;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.operation.union.CascadedPolygonUnion;
 
@@ -111,6 +112,19 @@ public class ST_GeometryShadow extends DeterministicScalarFunction {
         }
         //Compute the shadow offset
         double[] shadowOffSet = shadowOffset(azimuth, altitude, height);
+        return shadowGeometry(geometry, shadowOffSet, doUnion);
+    }
+
+    /**
+     * Compute the shadow footprint of a geometry from an already computed
+     * shadow offset, see {@link #shadowOffset(double, double, double)}
+     *
+     * @param geometry input geometry
+     * @param shadowOffSet offset of the shadow in X and Y directions
+     * @param doUnion unified or not the polygon shadows
+     * @return
+     */
+    static Geometry shadowGeometry(Geometry geometry, double[] shadowOffSet, boolean doUnion) {
         if (geometry instanceof Polygon) {
             return shadowPolygon((Polygon) geometry, shadowOffSet, geometry.getFactory(), doUnion);
         } else if (geometry instanceof LineString) {
@@ -243,12 +257,13 @@ public class ST_GeometryShadow extends DeterministicScalarFunction {
             }
             
             Coordinate nextEnd = moveCoordinate(endCoord, shadow);
-            Coordinate nextStart = moveCoordinate(startCoord, shadow);
-            Polygon polygon = factory.createPolygon(new Coordinate[]{startCoord,
-                endCoord, nextEnd,
-                nextStart, startCoord});
-            if (polygon.isValid()) {                
-                shadows.add(polygon);
+            // The quad is a parallelogram, it is valid unless the wall is
+            // parallel to the shadow direction or has a zero length
+            if (Orientation.index(startCoord, endCoord, nextEnd) != Orientation.COLLINEAR) {
+                Coordinate nextStart = moveCoordinate(startCoord, shadow);
+                shadows.add(factory.createPolygon(new Coordinate[]{startCoord,
+                    endCoord, nextEnd,
+                    nextStart, startCoord}));
             }
         }
     }
@@ -0,0 +1,271 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.earth;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.functions.spatial.aggregate.ST_UnionAgg;
+import org.h2gis.functions.spatial.convert.GeometryCoordinateDimension;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.Point;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compute the shadow footprints of all the geometries of a table for one or
+ * several sun positions.
+ *
+ * The shadow offset of each sun position is computed once for a unit height
+ * then scaled by the height of each row, the rows are computed in parallel
+ * blocks. The shadows can be dissolved by sun position with the parallel
+ * union of {@link ST_UnionAgg}.
+ */
+public class ST_GeometryShadowTable extends AbstractFunction implements ScalarFunction {
+
+    public ST_GeometryShadowTable() {
+        addProperty(PROP_REMARKS, "Compute the shadow footprints of all the geometries of a table.\n"
+                + "SELECT * FROM ST_GeometryShadowTable('BUILDINGS', ST_SunPosition(...), 'HEIGHT');\n"
+                + "SELECT * FROM ST_GeometryShadowTable('BUILDINGS', sunPositions, 'HEIGHT', dissolve);\n"
+                + "Avalaible arguments are :\n"
+                + "(1) The table of POINT, LINE or POLYGON geometries.\n"
+                + "(2) The sun position as a POINT (x = azimuth, y = altitude in radians) see ST_SunPosition,\n"
+                + "or a MULTIPOINT of sun positions.\n"
+                + "(3) The height of the geometries, a column name or any SQL expression of the table columns.\n"
+                + "(4) Optional parameter, if true the shadows are dissolved into a single geometry by sun position.\n"
+                + "False is the default value.\n"
+                + "The result contains the primary key of the table (or the row number if the table has no\n"
+                + "integer primary key), the index of the sun position (SUN_ID starts at 1) and the shadow.\n"
+                + "With the dissolve option the result contains only the SUN_ID and the dissolved shadow.\n"
+                + "The shadow is null if the height is null or the sun is below the horizon.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "computeShadow";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of geometries
+     * @param sunPosition Sun position point or multipoint of sun positions
+     * @param height Height column or SQL expression
+     * @return PK, SUN_ID, THE_GEOM
+     * @throws SQLException
+     */
+    public static ResultSet computeShadow(Connection connection, String tableName, Geometry sunPosition,
+                                          String height) throws SQLException {
+        return computeShadow(connection, tableName, sunPosition, height, false);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of geometries
+     * @param sunPosition Sun position point or multipoint of sun positions
+     * @param height Height column or SQL expression
+     * @param dissolve True to dissolve the shadows by sun position
+     * @return PK, SUN_ID, THE_GEOM or SUN_ID, THE_GEOM if the shadows are
+     * dissolved
+     * @throws SQLException
+     */
+    public static ResultSet computeShadow(Connection connection, String tableName, Geometry sunPosition,
+                                          String height, boolean dissolve) throws SQLException {
+        if (sunPosition == null || sunPosition.isEmpty()) {
+            throw new IllegalArgumentException("The sun position must be set");
+        }
+        double[][] unitOffsets = new double[sunPosition.getNumGeometries()][];
+        for (int i = 0; i < unitOffsets.length; i++) {
+            Geometry sun = sunPosition.getGeometryN(i);
+            if (!(sun instanceof Point)) {
+                throw new IllegalArgumentException("The sun position must be stored in a point with \n"
+                        + "x = sun azimuth in radians (direction along the horizon, measured from north to\n"
+                        + "east and y = sun altitude above the horizon in radians.");
+            }
+            Coordinate sunCoordinate = sun.getCoordinate();
+            // No shadow footprint when the sun is below the horizon
+            if (sunCoordinate.y > 0) {
+                unitOffsets[i] = ST_GeometryShadow.shadowOffset(sunCoordinate.x, sunCoordinate.y, 1);
+            }
+        }
+        ShadowRowSource shadowRowSource = new ShadowRowSource(connection, tableName, height, unitOffsets);
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else if (dissolve) {
+            rs = new SimpleResultSet(new DissolveRowSource(shadowRowSource, unitOffsets.length));
+        } else {
+            rs = new SimpleResultSet(shadowRowSource);
+        }
+        if (!dissolve) {
+            KeyedRowSource.addKeyColumn(rs, "PK");
+        }
+        rs.addColumn("SUN_ID", Types.INTEGER, 10, 0);
+        rs.addColumn("THE_GEOM", Types.OTHER, "GEOMETRY", 0, 0);
+        return rs;
+    }
+
+    /**
+     * Compute the unified shadow of a geometry, the parts of a collection are
+     * computed one by one.
+     *
+     * @param geometry Input geometry
+     * @param shadowOffset Offset of the shadow
+     * @return The shadow
+     */
+    private static Geometry shadow(Geometry geometry, double[] shadowOffset) {
+        if (geometry instanceof GeometryCollection) {
+            int numGeometries = geometry.getNumGeometries();
+            if (numGeometries == 1) {
+                return shadow(geometry.getGeometryN(0), shadowOffset);
+            }
+            List<Geometry> shadows = new ArrayList<>(numGeometries);
+            for (int i = 0; i < numGeometries; i++) {
+                Geometry shadow = shadow(geometry.getGeometryN(i), shadowOffset);
+                if (shadow != null) {
+                    shadows.add(shadow);
+                }
+            }
+            if (shadows.isEmpty()) {
+                return null;
+            }
+            return GeometryCoordinateDimension.force(geometry.getFactory().buildGeometry(shadows).union(), 3);
+        }
+        return ST_GeometryShadow.shadowGeometry(geometry, shadowOffset, true);
+    }
+
+    /**
+     * Read the geometries and compute their shadows on request
+     */
+    private static class ShadowRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String tableName;
+        private final String height;
+        private final double[][] unitOffsets;
+
+        private ShadowRowSource(Connection connection, String tableName, String height, double[][] unitOffsets) {
+            super(Math.max(1, BLOCK_SIZE / unitOffsets.length));
+            this.connection = connection;
+            this.tableName = tableName;
+            this.height = height;
+            this.unitOffsets = unitOffsets;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation location = TableLocation.parse(tableName, dbType);
+            Tuple<String, GeometryMetaData> geometryColumn = GeometryTableUtilities.getFirstColumnMetaData(connection, location);
+            return queryWithKey(connection, location, TableLocation.quoteIdentifier(geometryColumn.first(), dbType)
+                    + ", (" + height + ")", dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) throws SQLException {
+            for (Object[] input : inputs) {
+                Geometry geometry = (Geometry) input[1];
+                Number height = (Number) input[2];
+                if (height != null && height.doubleValue() <= 0) {
+                    throw new SQLException("The height of the geometry must be greater than 0.");
+                }
+                for (int i = 0; i < unitOffsets.length; i++) {
+                    Geometry shadow = null;
+                    if (geometry != null && !geometry.isEmpty() && height != null && unitOffsets[i] != null) {
+                        double h = height.doubleValue();
+                        shadow = shadow(geometry, new double[]{unitOffsets[i][0] * h, unitOffsets[i][1] * h});
+                        if (shadow != null) {
+                            shadow.setSRID(geometry.getSRID());
+                        }
+                    }
+                    outputRows.add(new Object[]{input[0], i + 1, shadow});
+                }
+            }
+        }
+    }
+
+    /**
+     * Dissolve the shadows of each sun position on the first request
+     */
+    private static class DissolveRowSource implements SimpleRowSource {
+        private final ShadowRowSource shadowRowSource;
+        private final int sunCount;
+        private Geometry[] dissolved;
+        private int sunIndex = 0;
+
+        private DissolveRowSource(ShadowRowSource shadowRowSource, int sunCount) {
+            this.shadowRowSource = shadowRowSource;
+            this.sunCount = sunCount;
+        }
+
+        @Override
+        public Object[] readRow() throws SQLException {
+            if (dissolved == null) {
+                ST_UnionAgg[] unions = new ST_UnionAgg[sunCount];
+                for (int i = 0; i < sunCount; i++) {
+                    unions[i] = new ST_UnionAgg();
+                }
+                Object[] row;
+                while ((row = shadowRowSource.readRow()) != null) {
+                    unions[(Integer) row[1] - 1].add(row[2]);
+                }
+                shadowRowSource.close();
+                dissolved = new Geometry[sunCount];
+                for (int i = 0; i < sunCount; i++) {
+                    Geometry union = unions[i].getResult();
+                    if (union != null) {
+                        dissolved[i] = GeometryCoordinateDimension.force(union, 3);
+                    }
+                }
+            }
+            if (sunIndex >= sunCount) {
+                return null;
+            }
+            Geometry shadow = dissolved[sunIndex];
+            sunIndex++;
+            return new Object[]{sunIndex, shadow};
+        }
+
+        @Override
+        public void close() {
+            shadowRowSource.close();
+        }
+
+        @Override
+        public void reset() throws SQLException {
+            close();
+            dissolved = null;
+            sunIndex = 0;
+            shadowRowSource.reset();
+        }
+    }
+}
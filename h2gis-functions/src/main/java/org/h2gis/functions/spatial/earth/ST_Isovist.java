@@ -92,7 +92,19 @@ public class ST_Isovist extends DeterministicScalarFunction {
 
         Geometry isopoly = isovist(viewPoint, lineSegments, maxDistance);
 
-        // Intersects with view constrain
+        return constrainView(viewPoint, isopoly, maxDistance, radBegin, radSize);
+    }
+
+    /**
+     * Intersects the visibility polygon with the view angle
+     * @param viewPoint Isovist location
+     * @param isopoly The visibility polygon
+     * @param maxDistance Maximum distance of view from viewPoint (spatial ref units)
+     * @param radBegin Constraint view angle start in radian
+     * @param radSize Constraint view angle size in radian
+     * @return The visibility polygon limited to the view angle
+     */
+    static Geometry constrainView(Geometry viewPoint, Geometry isopoly, double maxDistance, double radBegin, double radSize) {
         GeometricShapeFactory geometricShapeFactory = new GeometricShapeFactory();
         geometricShapeFactory.setCentre(viewPoint.getCoordinate());
         geometricShapeFactory.setWidth(maxDistance * 2);
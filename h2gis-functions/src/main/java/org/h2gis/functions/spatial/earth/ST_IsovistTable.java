@@ -0,0 +1,276 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.earth;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.h2gis.utilities.jts_utils.VisibilityAlgorithm;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.ItemVisitor;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compute the visibility polygon of all the points of a table.
+ *
+ * The obstacle segments are read and indexed once, each view point is
+ * computed using only the segments located within the maximum distance.
+ */
+public class ST_IsovistTable extends AbstractFunction implements ScalarFunction {
+
+    public ST_IsovistTable() {
+        addProperty(PROP_REMARKS, "Compute the visibility polygon of each point of a table, obstructed by the\n"
+                + "LINESTRING(S) or POLYGON(S) of an obstacles table.\n"
+                + "SELECT * FROM ST_IsovistTable('POINTS', 'WALLS', maxDistance);\n"
+                + "SELECT * FROM ST_IsovistTable('POINTS', 'WALLS', maxDistance, radBegin, radSize);\n"
+                + "maxDistance = Maximum distance of view from the point (spatial ref units)\n"
+                + "radBegin, radSize = Constraint view angle start and size in radian\n"
+                + "The result contains the primary key of the points table (or the row number if the table has no\n"
+                + "integer primary key) and the visibility polygon. The polygon is null if the geometry is not a point.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "isovist";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param pointsTable Table of view points
+     * @param obstaclesTable Table of occlusion geometries
+     * @param maxDistance Maximum distance of view from the points (spatial ref units)
+     * @return PK, THE_GEOM
+     * @throws SQLException
+     */
+    public static ResultSet isovist(Connection connection, String pointsTable, String obstaclesTable,
+                                    double maxDistance) throws SQLException {
+        return isovist(connection, pointsTable, obstaclesTable, maxDistance, 0, 2 * Math.PI);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param pointsTable Table of view points
+     * @param obstaclesTable Table of occlusion geometries
+     * @param maxDistance Maximum distance of view from the points (spatial ref units)
+     * @param radBegin Constraint view angle start in radian
+     * @param radSize Constraint view angle size in radian
+     * @return PK, THE_GEOM
+     * @throws SQLException
+     */
+    public static ResultSet isovist(Connection connection, String pointsTable, String obstaclesTable,
+                                    double maxDistance, double radBegin, double radSize) throws SQLException {
+        if (maxDistance <= 0) {
+            throw new SQLException("The maximum distance must be a valid distance superior than 0");
+        }
+        if (radSize <= 0) {
+            throw new SQLException("Angle size must be superior than 0 rad");
+        }
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else {
+            rs = new SimpleResultSet(new IsovistRowSource(connection, pointsTable, obstaclesTable,
+                    maxDistance, radSize >= 2 * Math.PI ? Double.NaN : radBegin, radSize));
+        }
+        KeyedRowSource.addKeyColumn(rs, "PK");
+        rs.addColumn("THE_GEOM", Types.OTHER, "GEOMETRY", 0, 0);
+        return rs;
+    }
+
+    /**
+     * Read the view points and compute their visibility polygon on request
+     */
+    private static class IsovistRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String pointsTable;
+        private final String obstaclesTable;
+        private final double maxDistance;
+        // NaN if the view is not constrained
+        private final double radBegin;
+        private final double radSize;
+        private SegmentIndex obstacles;
+        private int srid;
+
+        private IsovistRowSource(Connection connection, String pointsTable, String obstaclesTable,
+                                 double maxDistance, double radBegin, double radSize) {
+            super(BLOCK_SIZE);
+            this.connection = connection;
+            this.pointsTable = pointsTable;
+            this.obstaclesTable = obstaclesTable;
+            this.maxDistance = maxDistance;
+            this.radBegin = radBegin;
+            this.radSize = radSize;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation pointsLocation = TableLocation.parse(pointsTable, dbType);
+            TableLocation obstaclesLocation = TableLocation.parse(obstaclesTable, dbType);
+            Tuple<String, GeometryMetaData> pointsGeometry = GeometryTableUtilities.getFirstColumnMetaData(connection, pointsLocation);
+            Tuple<String, GeometryMetaData> obstaclesGeometry = GeometryTableUtilities.getFirstColumnMetaData(connection, obstaclesLocation);
+            srid = pointsGeometry.second().SRID;
+            if (srid != obstaclesGeometry.second().SRID) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            if (obstacles == null) {
+                obstacles = new SegmentIndex();
+                try (Statement st = connection.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT " + TableLocation.quoteIdentifier(obstaclesGeometry.first(), dbType)
+                             + " FROM " + obstaclesLocation)) {
+                    while (rs.next()) {
+                        obstacles.addGeometry((Geometry) rs.getObject(1));
+                    }
+                }
+                obstacles.build();
+            }
+            return queryWithKey(connection, pointsLocation, TableLocation.quoteIdentifier(pointsGeometry.first(), dbType), dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) {
+            VisibilityAlgorithm visibilityAlgorithm = new VisibilityAlgorithm(maxDistance);
+            for (Object[] input : inputs) {
+                Object viewPoint = input[1];
+                Geometry isovist = null;
+                if (viewPoint instanceof Point && !((Point) viewPoint).isEmpty()) {
+                    Coordinate position = ((Point) viewPoint).getCoordinate();
+                    visibilityAlgorithm.clearSegments();
+                    obstacles.addSegments(position, maxDistance, visibilityAlgorithm);
+                    isovist = visibilityAlgorithm.getIsoVist(position, true);
+                    if (!Double.isNaN(radBegin)) {
+                        isovist = ST_Isovist.constrainView((Point) viewPoint, isovist, maxDistance, radBegin, radSize);
+                    }
+                    isovist.setSRID(srid);
+                }
+                outputRows.add(new Object[]{input[0], isovist});
+            }
+        }
+    }
+
+    /**
+     * Occlusion segments stored in a primitive array and indexed once
+     */
+    private static final class SegmentIndex {
+        // x0, y0, x1, y1 of each segment
+        private double[] segments = new double[4 * 64];
+        private int segmentCount = 0;
+        private final STRtree tree = new STRtree();
+
+        void addGeometry(Geometry geometry) {
+            if (geometry instanceof LineString) {
+                addSegments(((LineString) geometry).getCoordinateSequence());
+            } else if (geometry instanceof Polygon) {
+                Polygon polygon = (Polygon) geometry;
+                addSegments(polygon.getExteriorRing().getCoordinateSequence());
+                int ringCount = polygon.getNumInteriorRing();
+                for (int i = 0; i < ringCount; i++) {
+                    addSegments(polygon.getInteriorRingN(i).getCoordinateSequence());
+                }
+            } else if (geometry != null) {
+                int geoCount = geometry.getNumGeometries();
+                for (int i = 0; i < geoCount; i++) {
+                    Geometry simpleGeom = geometry.getGeometryN(i);
+                    if (simpleGeom != geometry) {
+                        addGeometry(simpleGeom);
+                    }
+                }
+            }
+        }
+
+        private void addSegments(CoordinateSequence coords) {
+            for (int i = 0; i < coords.size() - 1; i++) {
+                if (segments.length < 4 * (segmentCount + 1)) {
+                    segments = Arrays.copyOf(segments, segments.length * 2);
+                }
+                int offset = 4 * segmentCount;
+                double x0 = coords.getX(i);
+                double y0 = coords.getY(i);
+                double x1 = coords.getX(i + 1);
+                double y1 = coords.getY(i + 1);
+                segments[offset] = x0;
+                segments[offset + 1] = y0;
+                segments[offset + 2] = x1;
+                segments[offset + 3] = y1;
+                tree.insert(new Envelope(x0, x1, y0, y1), segmentCount);
+                segmentCount++;
+            }
+        }
+
+        void build() {
+            if (segmentCount > 0) {
+                tree.build();
+            }
+        }
+
+        /**
+         * Add to the visibility algorithm the segments located within the
+         * distance of the position
+         */
+        void addSegments(Coordinate position, double distance, VisibilityAlgorithm visibilityAlgorithm) {
+            if (segmentCount == 0) {
+                return;
+            }
+            final double x = position.x;
+            final double y = position.y;
+            final double squaredDistance = distance * distance;
+            tree.query(new Envelope(x - distance, x + distance, y - distance, y + distance), new ItemVisitor() {
+                @Override
+                public void visitItem(Object item) {
+                    int offset = 4 * (Integer) item;
+                    double x0 = segments[offset];
+                    double y0 = segments[offset + 1];
+                    double x1 = segments[offset + 2];
+                    double y1 = segments[offset + 3];
+                    // Closest point of the segment
+                    double dx = x1 - x0;
+                    double dy = y1 - y0;
+                    double length = dx * dx + dy * dy;
+                    double t = length > 0 ? ((x - x0) * dx + (y - y0) * dy) / length : 0;
+                    t = Math.max(0, Math.min(1, t));
+                    double cx = x0 + t * dx - x;
+                    double cy = y0 + t * dy - y;
+                    if (cx * cx + cy * cy <= squaredDistance) {
+                        visibilityAlgorithm.addSegment(new Coordinate(x0, y0), new Coordinate(x1, y1));
+                    }
+                }
+            });
+        }
+    }
+}
@@ -21,12 +21,8 @@ package org.h2gis.functions.spatial.earth;
 
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
-import org.h2gis.utilities.jts_utils.CoordinateUtils;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.index.strtree.STRtree;
-import org.locationtech.jts.math.Vector2D;
-
-import java.util.List;
 
 /**
  * This function will be used to compute the Sky View Factor based on geometries
@@ -37,7 +33,7 @@ import java.util.List;
 public class ST_Svf extends DeterministicScalarFunction{
 
     //target step length m
-    private static int RAY_STEP_LENGTH = 10;
+    private static final int RAY_STEP_LENGTH = 10;
     
     public ST_Svf(){
         addProperty(PROP_REMARKS, "Return the Sky View Factor (SVF) for a given point.\n"
@@ -107,72 +103,13 @@ public class ST_Svf extends DeterministicScalarFunction{
             throw new IllegalArgumentException("The ray length parameter must be greater than 0");
         }
         
-        RAY_STEP_LENGTH = stepRayLength;
-
-        if (geoms.getDimension() > 0) {            
-            GeometryFactory factory = pt.getFactory();
-            //Convert input geoms to a set of linestring
-            STRtree sTRtree = new STRtree();
-            int nbGeoms = geoms.getNumGeometries();
-            for (int i = 0; i < nbGeoms; i++) {
-                Geometry subGeom = geoms.getGeometryN(i);
-                if (subGeom instanceof LineString) {
-                    addSegments(subGeom.getCoordinates(),factory, sTRtree);
-                } else if (subGeom instanceof Polygon) {
-                    Polygon p = (Polygon) subGeom;
-                    addSegments(p.getExteriorRing().getCoordinates(),factory, sTRtree);
-                    int nbInterior = p.getNumInteriorRing();
-                    for (int j = 0; j < nbInterior; j++) {
-                        addSegments(p.getInteriorRingN(j).getCoordinates(),factory, sTRtree);
-                    }
-                }
-            }
-            if(sTRtree.isEmpty()){
-                return 1D;
-            }
+        if (geoms.getDimension() > 0) {
+            SvfObstacleIndex obstacles = new SvfObstacleIndex();
+            obstacles.addGeometry(geoms);
             Coordinate startCoordinate = pt.getCoordinate();
-            double startZ = Double.isNaN(startCoordinate.z)?0:startCoordinate.z;
-            double sumArea = 2*Math.PI; 
-            double elementaryAngle = sumArea / rayCount;
-            int stepCount = (int) Math.round(distance / RAY_STEP_LENGTH);
-            double stepLength = distance / stepCount;
-            //Compute the  SVF for each ray according an angle  
-            for (int i = 0; i < rayCount; i+=1) {             
-                //To limit the number of geometries in the query with create a progressive ray
-                Vector2D vStart = new Vector2D(startCoordinate);
-                double angleRad = elementaryAngle * i;
-                Vector2D v = Vector2D.create(Math.cos(angleRad), Math.sin(angleRad));
-                // This is the translation vector
-                v = v.multiply(stepLength);
-                double max = 0;
-                for (int j = 0; j < stepCount; j++) {
-                    LineSegment stepLine = new LineSegment(vStart.add(v.multiply(j)).toCoordinate(), vStart.add(v.multiply(j + 1)).toCoordinate());
-                    LineString rayStep = stepLine.toGeometry(factory);
-                    List<LineString> interEnv = sTRtree.query(rayStep.getEnvelopeInternal());
-                    if (!interEnv.isEmpty()) {
-                        for (LineString lineGeoms : interEnv) {
-                            Coordinate[] coords = lineGeoms.getCoordinates();
-                            Coordinate coordsStart = coords[0];
-                            Coordinate coordsEnd = coords[1];
-                            if (Math.max(coordsStart.z, coordsEnd.z) > max * j * stepLength){
-                                Geometry ptsIntersect =  lineGeoms.intersection(rayStep);
-                                if (ptsIntersect instanceof Point && ptsIntersect!=null) {
-                                    double coordWithZ = CoordinateUtils.interpolate(lineGeoms.getCoordinateN(0), lineGeoms.getCoordinateN(1), ptsIntersect.getCoordinate());
-                                    double distancePoint = ptsIntersect.distance(pt);
-                                    double ratio = (coordWithZ - startZ) / distancePoint;
-                                    if (ratio > max) {
-                                        max = ratio;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-                double sinTheta = Math.sin(Math.atan(max));
-                sumArea -= elementaryAngle * sinTheta * sinTheta;
-            }
-            svf = sumArea / (2 * Math.PI);
-        }        
+            svf = obstacles.computeSvf(startCoordinate.x, startCoordinate.y, startCoordinate.z,
+                    distance, rayCount, stepRayLength);
+        }
         return svf;
         
     }
@@ -0,0 +1,181 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.earth;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Compute the Sky View Factor of all the points of a table.
+ *
+ * The obstacles are read and indexed once, then the points are computed in
+ * parallel blocks.
+ */
+public class ST_SvfTable extends AbstractFunction implements ScalarFunction {
+
+    // Points are cheap to read but long to compute, keep small blocks
+    private static final int BLOCK_SIZE = 64;
+
+    public ST_SvfTable() {
+        addProperty(PROP_REMARKS, "Return the Sky View Factor (SVF) of each point of a table.\n"
+                + "SELECT * FROM ST_SvfTable('POINTS', 'BUILDINGS', distance, rayCount);\n"
+                + "SELECT * FROM ST_SvfTable('POINTS', 'BUILDINGS', distance, rayCount, RAY_STEP_LENGTH);\n"
+                + "points = Table of points (x, y, z) - the SVF is calculated from each point\n"
+                + "obstacles = Table of geometries used as sky obstacles (z coordinates should be given and not NaN)\n"
+                + "distance = Only obstacles located within this distance from a point are considered in the calculation (double - in meters)\n"
+                + "rayCount = Number of ray considered for the calculation (integer - number of direction of calculation)\n"
+                + "RAY_STEP_LENGTH = 10 (default) Each ray is subdivided to make the calculation faster. This argument set\n"
+                + "the length of each subdivision\n"
+                + "The result contains the primary key of the points table (or the row number if the table has no\n"
+                + "integer primary key), the point and the SVF. The SVF is null if the geometry is not a point.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "computeSvf";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param pointsTable Table of points
+     * @param obstaclesTable Table of sky obstacles
+     * @param distance Only obstacles located within this distance from a
+     * point are considered
+     * @param rayCount Number of rays
+     * @return PK, THE_GEOM, SVF
+     * @throws SQLException
+     */
+    public static ResultSet computeSvf(Connection connection, String pointsTable, String obstaclesTable,
+                                       double distance, int rayCount) throws SQLException {
+        return computeSvf(connection, pointsTable, obstaclesTable, distance, rayCount, 10);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param pointsTable Table of points
+     * @param obstaclesTable Table of sky obstacles
+     * @param distance Only obstacles located within this distance from a
+     * point are considered
+     * @param rayCount Number of rays
+     * @param stepRayLength Length of the sub rays used to query the obstacles
+     * @return PK, THE_GEOM, SVF
+     * @throws SQLException
+     */
+    public static ResultSet computeSvf(Connection connection, String pointsTable, String obstaclesTable,
+                                       double distance, int rayCount, int stepRayLength) throws SQLException {
+        if (distance <= 0) {
+            throw new IllegalArgumentException("The distance value must be greater than 0");
+        }
+        if (rayCount < 4) {
+            throw new IllegalArgumentException("The number of rays must be greater than or equal to 4");
+        }
+        if (stepRayLength <= 0) {
+            throw new IllegalArgumentException("The ray length parameter must be greater than 0");
+        }
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else {
+            rs = new SimpleResultSet(new SvfRowSource(connection, pointsTable, obstaclesTable,
+                    distance, rayCount, stepRayLength));
+        }
+        KeyedRowSource.addKeyColumn(rs, "PK");
+        rs.addColumn("THE_GEOM", Types.OTHER, "GEOMETRY", 0, 0);
+        rs.addColumn("SVF", Types.DOUBLE, 17, 0);
+        return rs;
+    }
+
+    /**
+     * Read the points and compute their SVF on request
+     */
+    private static class SvfRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String pointsTable;
+        private final String obstaclesTable;
+        private final double distance;
+        private final int rayCount;
+        private final int stepRayLength;
+        private SvfObstacleIndex obstacles;
+
+        private SvfRowSource(Connection connection, String pointsTable, String obstaclesTable,
+                             double distance, int rayCount, int stepRayLength) {
+            super(BLOCK_SIZE);
+            this.connection = connection;
+            this.pointsTable = pointsTable;
+            this.obstaclesTable = obstaclesTable;
+            this.distance = distance;
+            this.rayCount = rayCount;
+            this.stepRayLength = stepRayLength;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation pointsLocation = TableLocation.parse(pointsTable, dbType);
+            TableLocation obstaclesLocation = TableLocation.parse(obstaclesTable, dbType);
+            Tuple<String, GeometryMetaData> pointsGeometry = GeometryTableUtilities.getFirstColumnMetaData(connection, pointsLocation);
+            Tuple<String, GeometryMetaData> obstaclesGeometry = GeometryTableUtilities.getFirstColumnMetaData(connection, obstaclesLocation);
+            if (pointsGeometry.second().SRID != obstaclesGeometry.second().SRID) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            if (obstacles == null) {
+                obstacles = new SvfObstacleIndex();
+                try (Statement st = connection.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT " + TableLocation.quoteIdentifier(obstaclesGeometry.first(), dbType)
+                             + " FROM " + obstaclesLocation)) {
+                    while (rs.next()) {
+                        obstacles.addGeometry((Geometry) rs.getObject(1));
+                    }
+                }
+                obstacles.build();
+            }
+            return queryWithKey(connection, pointsLocation, TableLocation.quoteIdentifier(pointsGeometry.first(), dbType), dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) {
+            for (Object[] input : inputs) {
+                Object geometry = input[1];
+                Double svf = null;
+                if (geometry instanceof Point && !((Point) geometry).isEmpty()) {
+                    Coordinate pt = ((Point) geometry).getCoordinate();
+                    svf = obstacles.computeSvf(pt.x, pt.y, pt.z, distance, rayCount, stepRayLength);
+                }
+                outputRows.add(new Object[]{input[0], geometry, svf});
+            }
+        }
+    }
+}
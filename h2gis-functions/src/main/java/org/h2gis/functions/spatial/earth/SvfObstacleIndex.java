@@ -0,0 +1,251 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.earth;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.ItemVisitor;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.Arrays;
+
+/**
+ * Segments of the sky obstacles used to compute the Sky View Factor.
+ *
+ * The segment coordinates are stored in a primitive array and indexed once,
+ * then {@link #computeSvf(double, double, double, double, int, double)} can
+ * be called concurrently for any number of points.
+ */
+public class SvfObstacleIndex {
+
+    // x0, y0, z0, x1, y1, z1 of each segment
+    private double[] segments = new double[6 * 64];
+    private int segmentCount = 0;
+    private final STRtree tree = new STRtree();
+    private volatile boolean built = false;
+
+    /**
+     * Add the segments of the lines and polygon rings of a geometry.
+     * Segments with a NaN z are ignored.
+     *
+     * @param geometry Sky obstacles
+     */
+    public void addGeometry(Geometry geometry) {
+        if (built) {
+            throw new IllegalStateException("Obstacles cannot be added once the index is used");
+        }
+        if (geometry == null || geometry.getDimension() == 0) {
+            return;
+        }
+        int nbGeoms = geometry.getNumGeometries();
+        for (int i = 0; i < nbGeoms; i++) {
+            Geometry subGeom = geometry.getGeometryN(i);
+            if (subGeom instanceof LineString) {
+                addSegments(((LineString) subGeom).getCoordinateSequence());
+            } else if (subGeom instanceof Polygon) {
+                Polygon p = (Polygon) subGeom;
+                addSegments(p.getExteriorRing().getCoordinateSequence());
+                int nbInterior = p.getNumInteriorRing();
+                for (int j = 0; j < nbInterior; j++) {
+                    addSegments(p.getInteriorRingN(j).getCoordinateSequence());
+                }
+            } else if (subGeom != geometry) {
+                addGeometry(subGeom);
+            }
+        }
+    }
+
+    private void addSegments(CoordinateSequence coords) {
+        for (int j = 0; j < coords.size() - 1; j++) {
+            double z0 = coords.getOrdinate(j, Coordinate.Z);
+            double z1 = coords.getOrdinate(j + 1, Coordinate.Z);
+            if (!(Double.isNaN(z0) || Double.isNaN(z1))) {
+                if (segments.length < 6 * (segmentCount + 1)) {
+                    segments = Arrays.copyOf(segments, segments.length * 2);
+                }
+                int offset = 6 * segmentCount;
+                double x0 = coords.getX(j);
+                double y0 = coords.getY(j);
+                double x1 = coords.getX(j + 1);
+                double y1 = coords.getY(j + 1);
+                segments[offset] = x0;
+                segments[offset + 1] = y0;
+                segments[offset + 2] = z0;
+                segments[offset + 3] = x1;
+                segments[offset + 4] = y1;
+                segments[offset + 5] = z1;
+                tree.insert(new Envelope(x0, x1, y0, y1), segmentCount);
+                segmentCount++;
+            }
+        }
+    }
+
+    /**
+     * @return True if there is no obstacle segment
+     */
+    public boolean isEmpty() {
+        return segmentCount == 0;
+    }
+
+    /**
+     * @return Number of obstacle segments
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Build the spatial index, further calls do nothing. Called by the first
+     * computation, it must be called before sharing the index between threads.
+     */
+    public synchronized void build() {
+        if (!built) {
+            if (segmentCount > 0) {
+                tree.build();
+            }
+            built = true;
+        }
+    }
+
+    /**
+     * Compute the Sky View Factor of a point
+     *
+     * @param x X coordinate of the point
+     * @param y Y coordinate of the point
+     * @param z Z coordinate of the point, NaN is the ground (0)
+     * @param distance Only obstacles located within this distance from the
+     * point are considered
+     * @param rayCount Number of rays
+     * @param stepRayLength Length of the sub rays used to query the index
+     * @return The Sky View Factor [0-1]
+     */
+    public double computeSvf(double x, double y, double z, double distance, int rayCount, double stepRayLength) {
+        if (!built) {
+            build();
+        }
+        if (segmentCount == 0) {
+            return 1;
+        }
+        RayVisitor visitor = new RayVisitor(x, y, Double.isNaN(z) ? 0 : z);
+        double sumArea = 2 * Math.PI;
+        double elementaryAngle = sumArea / rayCount;
+        int stepCount = (int) Math.round(distance / stepRayLength);
+        double stepLength = distance / stepCount;
+        Envelope stepEnvelope = new Envelope();
+        for (int i = 0; i < rayCount; i++) {
+            double angleRad = elementaryAngle * i;
+            // Translation vector of a ray step
+            double vx = Math.cos(angleRad) * stepLength;
+            double vy = Math.sin(angleRad) * stepLength;
+            visitor.max = 0;
+            for (int j = 0; j < stepCount; j++) {
+                visitor.setStep(x + vx * j, y + vy * j, x + vx * (j + 1), y + vy * (j + 1), j * stepLength);
+                stepEnvelope.init(visitor.px, visitor.qx, visitor.py, visitor.qy);
+                tree.query(stepEnvelope, visitor);
+            }
+            double sinTheta = Math.sin(Math.atan(visitor.max));
+            sumArea -= elementaryAngle * sinTheta * sinTheta;
+        }
+        return sumArea / (2 * Math.PI);
+    }
+
+    /**
+     * Update the maximum elevation ratio of a ray with the segments that
+     * intersect a ray step
+     */
+    private final class RayVisitor implements ItemVisitor {
+        private final double x;
+        private final double y;
+        private final double z;
+        private double px, py, qx, qy;
+        private double stepDistance;
+        private double max = 0;
+
+        RayVisitor(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        void setStep(double px, double py, double qx, double qy, double stepDistance) {
+            this.px = px;
+            this.py = py;
+            this.qx = qx;
+            this.qy = qy;
+            this.stepDistance = stepDistance;
+        }
+
+        @Override
+        public void visitItem(Object item) {
+            int offset = 6 * (Integer) item;
+            double ax = segments[offset];
+            double ay = segments[offset + 1];
+            double az = segments[offset + 2];
+            double bx = segments[offset + 3];
+            double by = segments[offset + 4];
+            double bz = segments[offset + 5];
+            if (Math.max(az, bz) <= max * stepDistance) {
+                return;
+            }
+            double rx = qx - px;
+            double ry = qy - py;
+            double sx = bx - ax;
+            double sy = by - ay;
+            double apx = ax - px;
+            double apy = ay - py;
+            double denom = rx * sy - ry * sx;
+            // Position of the intersection along the obstacle segment
+            double u;
+            if (denom == 0) {
+                if (apx * ry - apy * rx != 0) {
+                    // Parallel segments
+                    return;
+                }
+                // Collinear segments, keep only a single point contact
+                double rr = rx * rx + ry * ry;
+                double ta = (apx * rx + apy * ry) / rr;
+                double tb = ((bx - px) * rx + (by - py) * ry) / rr;
+                double start = Math.max(0, Math.min(ta, tb));
+                double end = Math.min(1, Math.max(ta, tb));
+                if (start != end) {
+                    return;
+                }
+                u = ta == start ? 0 : 1;
+            } else {
+                double t = (apx * sy - apy * sx) / denom;
+                u = (apx * ry - apy * rx) / denom;
+                if (t < 0 || t > 1 || u < 0 || u > 1) {
+                    return;
+                }
+            }
+            double ix = ax + u * sx;
+            double iy = ay + u * sy;
+            double iz = az + u * (bz - az);
+            double ratio = (iz - z) / Math.sqrt((ix - x) * (ix - x) + (iy - y) * (iy - y));
+            if (ratio > max) {
+                max = ratio;
+            }
+        }
+    }
+}
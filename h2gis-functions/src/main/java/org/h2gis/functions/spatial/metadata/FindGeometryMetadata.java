@@ -23,7 +23,13 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
 import org.h2.util.StringUtils;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
@@ -35,6 +41,9 @@ import org.h2gis.utilities.TableLocation;
 
 public class FindGeometryMetadata extends DeterministicScalarFunction{
 
+    // Metadata of the geometry columns of each opened database
+    private static final Map<Database, GeometryColumnsCatalog> CATALOGS = new WeakHashMap<>();
+
     public FindGeometryMetadata() {
         addProperty(PROP_REMARKS, "Extract geometry metadata from its create table signature."
                 + "eg : GEOMETRY; GEOMETRY(POINT); GEOMETRY(POINT Z); GEOMETRY(POINTZ, 4326)...");
@@ -63,6 +72,40 @@ public class FindGeometryMetadata extends DeterministicScalarFunction{
      * @throws SQLException
      */
     public static ValueArray extractMetadata(Connection connection, String catalogName, String schemaName, String tableName, String columnName, String geometryTableSignature) throws SQLException {
+        Database database = getDatabase(connection);
+        if (database == null) {
+            return readMetadata(connection, catalogName, schemaName, tableName, columnName, geometryTableSignature);
+        }
+        GeometryColumnsCatalog catalog;
+        synchronized (CATALOGS) {
+            catalog = CATALOGS.computeIfAbsent(database, k -> new GeometryColumnsCatalog());
+        }
+        String key = catalogName + '\u0000' + schemaName + '\u0000' + tableName + '\u0000' + columnName + '\u0000' + geometryTableSignature;
+        long metaId = database.getModificationMetaId();
+        long dataId = database.getModificationDataId();
+        ValueArray metadata = catalog.get(key, metaId, dataId);
+        if (metadata == null) {
+            metadata = readMetadata(connection, catalogName, schemaName, tableName, columnName, geometryTableSignature);
+            catalog.put(key, metadata, metaId, GeometryMetaData.getMetaData(geometryTableSignature).getSRID() == 0 ? dataId : -1);
+        }
+        return metadata;
+    }
+
+    /**
+     * @param connection Connection given to the function
+     * @return The database of an embedded connection, null otherwise
+     */
+    private static Database getDatabase(Connection connection) {
+        if (connection instanceof JdbcConnection) {
+            Object session = ((JdbcConnection) connection).getSession();
+            if (session instanceof Session) {
+                return ((Session) session).getDatabase();
+            }
+        }
+        return null;
+    }
+
+    private static ValueArray readMetadata(Connection connection, String catalogName, String schemaName, String tableName, String columnName, String geometryTableSignature) throws SQLException {
         GeometryMetaData geomMeta = GeometryMetaData.getMetaData(geometryTableSignature);
         int srid = geomMeta.getSRID();
         Value[] values = new Value[4];
@@ -83,4 +126,45 @@ public class FindGeometryMetadata extends DeterministicScalarFunction{
         return ValueArray.get(values);
     }
 
+    /**
+     * Metadata of the geometry columns of a database. The entries are valid
+     * until the schema is modified. When the SRID is read from the first
+     * stored geometry, the entry is also valid only until the data is
+     * modified.
+     */
+    private static class GeometryColumnsCatalog {
+        private long metaId = -1;
+        private final Map<String, CatalogEntry> entries = new HashMap<>();
+
+        synchronized ValueArray get(String key, long currentMetaId, long currentDataId) {
+            if (metaId != currentMetaId) {
+                entries.clear();
+                metaId = currentMetaId;
+                return null;
+            }
+            CatalogEntry entry = entries.get(key);
+            if (entry == null || (entry.dataId != -1 && entry.dataId != currentDataId)) {
+                return null;
+            }
+            return entry.metadata;
+        }
+
+        synchronized void put(String key, ValueArray metadata, long currentMetaId, long dataId) {
+            if (metaId == currentMetaId) {
+                entries.put(key, new CatalogEntry(metadata, dataId));
+            }
+        }
+    }
+
+    private static class CatalogEntry {
+        private final ValueArray metadata;
+        // -1 if the metadata does not depend on the table content
+        private final long dataId;
+
+        CatalogEntry(ValueArray metadata, long dataId) {
+            this.metadata = metadata;
+            this.dataId = dataId;
+        }
+    }
+
 }
@@ -0,0 +1,209 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.predicates;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * Keep the prepared form of the geometries that are repeated across the
+ * calls of a spatial predicate.
+ *
+ * In a join like {@code WHERE ST_Intersects(area.the_geom, pts.the_geom)}
+ * the same large polygon is given for many rows. H2 gives a new Geometry
+ * instance on each call, so the geometries are identified by their type,
+ * SRID, number of points and envelope, then compared with
+ * {@link Geometry#equalsExact(Geometry)}. A query is evaluated by a single
+ * thread, so each thread holds its own cache without any lock. A geometry
+ * is only a candidate the first time it is seen, it is prepared the second
+ * time and the geometries that are not repeated never evict the prepared
+ * ones. The threads of the H2 server live as long as the database, the
+ * cache is softly referenced so that the garbage collector can reclaim the
+ * geometries of a finished query when the memory is needed.
+ */
+public final class PreparedGeometryCache {
+
+    /** Maximum number of prepared geometries and of candidates kept by each thread */
+    private static final int CACHE_SIZE = 8;
+    /** Smaller geometries are not worth preparing */
+    private static final int MIN_POINTS = 10;
+
+    private static final ThreadLocal<SoftReference<Cache>> CACHE = new ThreadLocal<>();
+
+    private PreparedGeometryCache() {
+    }
+
+    /**
+     * Return the prepared geometry of a repeated geometry
+     *
+     * @param geometry Geometry argument of a predicate
+     * @return The prepared geometry or null if the geometry is not repeated
+     */
+    public static PreparedGeometry getPrepared(Geometry geometry) {
+        Entry entry = getEntry(geometry);
+        return entry == null ? null : entry.getPrepared();
+    }
+
+    /**
+     * Test the distance between a repeated geometry and an other geometry
+     *
+     * @param geometry Geometry argument of a predicate
+     * @param other Other geometry
+     * @param distance Distance
+     * @return True if the geometries are within the distance, null if the
+     * geometry is not repeated
+     */
+    public static Boolean isWithinDistance(Geometry geometry, Geometry other, double distance) {
+        Entry entry = getEntry(geometry);
+        if (entry == null) {
+            return null;
+        }
+        // The facets distance is not null when other is inside a polygon
+        return entry.getPrepared().intersects(other) || entry.getFacetDistance().distance(other) <= distance;
+    }
+
+    /**
+     * Remove all the geometries from the cache of the current thread
+     */
+    public static void clear() {
+        CACHE.remove();
+    }
+
+    private static Entry getEntry(Geometry geometry) {
+        if (geometry.getNumPoints() < MIN_POINTS || geometry.getClass() == GeometryCollection.class) {
+            // The predicates do not support the heterogeneous collections the same way once prepared
+            return null;
+        }
+        SoftReference<Cache> reference = CACHE.get();
+        Cache cache = reference == null ? null : reference.get();
+        if (cache == null) {
+            cache = new Cache();
+            CACHE.set(new SoftReference<>(cache));
+        }
+        return cache.get(geometry);
+    }
+
+    private static boolean isSame(Entry entry, Key key, Geometry geometry) {
+        return entry != null && entry.key.equals(key)
+                && (entry.geometry == geometry || entry.geometry.equalsExact(geometry));
+    }
+
+    /**
+     * Prepared geometries and candidates of one thread, both replaced in a
+     * round robin order
+     */
+    private static final class Cache {
+        private final Entry[] prepared = new Entry[CACHE_SIZE];
+        private final Entry[] candidates = new Entry[CACHE_SIZE];
+        private int nextPrepared = 0;
+        private int nextCandidate = 0;
+
+        Entry get(Geometry geometry) {
+            Key key = new Key(geometry);
+            for (Entry entry : prepared) {
+                if (isSame(entry, key, geometry)) {
+                    return entry;
+                }
+            }
+            for (int i = 0; i < CACHE_SIZE; i++) {
+                Entry entry = candidates[i];
+                if (isSame(entry, key, geometry)) {
+                    // Second time this geometry is seen, keep its prepared form
+                    candidates[i] = null;
+                    prepared[nextPrepared] = entry;
+                    nextPrepared = (nextPrepared + 1) % CACHE_SIZE;
+                    return entry;
+                }
+            }
+            candidates[nextCandidate] = new Entry(key, geometry);
+            nextCandidate = (nextCandidate + 1) % CACHE_SIZE;
+            return null;
+        }
+    }
+
+    /**
+     * Identify the geometry without reading all its coordinates twice
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final int srid;
+        private final int numPoints;
+        private final Envelope envelope;
+        private final int hash;
+
+        Key(Geometry geometry) {
+            type = geometry.getClass();
+            srid = geometry.getSRID();
+            numPoints = geometry.getNumPoints();
+            envelope = geometry.getEnvelopeInternal();
+            hash = 31 * (31 * (31 * type.hashCode() + srid) + numPoints) + envelope.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && srid == other.srid && numPoints == other.numPoints
+                    && envelope.equals(other.envelope);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Geometry and its indexes, built on demand
+     */
+    private static final class Entry {
+        private final Key key;
+        private final Geometry geometry;
+        private PreparedGeometry prepared;
+        private IndexedFacetDistance facetDistance;
+
+        Entry(Key key, Geometry geometry) {
+            this.key = key;
+            this.geometry = geometry;
+        }
+
+        PreparedGeometry getPrepared() {
+            if (prepared == null) {
+                prepared = PreparedGeometryFactory.prepare(geometry);
+            }
+            return prepared;
+        }
+
+        IndexedFacetDistance getFacetDistance() {
+            if (facetDistance == null) {
+                facetDistance = new IndexedFacetDistance(geometry);
+            }
+            return facetDistance;
+        }
+    }
+}
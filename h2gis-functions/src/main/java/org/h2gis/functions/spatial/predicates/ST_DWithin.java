@@ -57,6 +57,16 @@ public class ST_DWithin extends DeterministicScalarFunction {
         if(geomA.getSRID()!=geomB.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
-        return geomA.isWithinDistance(geomB, distance);
+        if(geomA.getEnvelopeInternal().distance(geomB.getEnvelopeInternal()) > distance) {
+            return false;
+        }
+        Boolean withinDistance = PreparedGeometryCache.isWithinDistance(geomA, geomB, distance);
+        if(withinDistance==null) {
+            withinDistance = PreparedGeometryCache.isWithinDistance(geomB, geomA, distance);
+            if(withinDistance==null) {
+                return geomA.isWithinDistance(geomB, distance);
+            }
+        }
+        return withinDistance;
     }
 }
@@ -23,6 +23,7 @@ package org.h2gis.functions.spatial.predicates;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * Return true if the geometry A intersects the geometry B
@@ -57,6 +58,14 @@ public class ST_Intersects extends DeterministicScalarFunction {
         if(surface.getSRID()!=testGeometry.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
-        return surface.intersects(testGeometry);
+        PreparedGeometry prepared = PreparedGeometryCache.getPrepared(surface);
+        if(prepared==null) {
+            prepared = PreparedGeometryCache.getPrepared(testGeometry);
+            if(prepared==null) {
+                return surface.intersects(testGeometry);
+            }
+            return prepared.intersects(surface);
+        }
+        return prepared.intersects(testGeometry);
     }
 }
@@ -0,0 +1,308 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.predicates;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedGeometryIndex;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import java.sql.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Join two tables on a spatial predicate.
+ *
+ * The geometries of the second table are read once and indexed in a STR
+ * tree, the rows of the first table are read by blocks and each block is
+ * joined on the common fork join pool. Each pair of geometries is tested
+ * once, from the row of the first table.
+ */
+public class ST_SpatialJoin extends AbstractFunction implements ScalarFunction {
+
+    /** Smaller geometries are not worth preparing */
+    private static final int MIN_POINTS = 10;
+
+    public ST_SpatialJoin() {
+        addProperty(PROP_REMARKS, "Return the pairs of rows of two tables whose geometries satisfy a spatial predicate.\n"
+                + "SELECT * FROM ST_SpatialJoin('TABLE_A', 'TABLE_B', 'INTERSECTS');\n"
+                + "SELECT * FROM ST_SpatialJoin('TABLE_A', 'TABLE_B', 'DWITHIN', distance);\n"
+                + "The predicate is evaluated as predicate(geometry of TABLE_A, geometry of TABLE_B), supported\n"
+                + "predicates are INTERSECTS, CONTAINS, WITHIN, COVERS, COVEREDBY, TOUCHES, CROSSES, OVERLAPS,\n"
+                + "EQUALS and DWITHIN.\n"
+                + "The geometries of TABLE_B are kept in memory, it should be the smallest table.\n"
+                + "The result contains the primary keys PK_A and PK_B of the tables (or the row number if the table\n"
+                + "has no integer primary key).");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "spatialJoin";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableA Table scanned by blocks
+     * @param tableB Table indexed in memory
+     * @param predicate Name of the spatial predicate
+     * @return PK_A, PK_B
+     * @throws SQLException
+     */
+    public static ResultSet spatialJoin(Connection connection, String tableA, String tableB,
+                                        String predicate) throws SQLException {
+        Predicate joinPredicate = Predicate.parse(predicate);
+        if (joinPredicate == Predicate.DWITHIN) {
+            throw new SQLException("The DWITHIN predicate expects a distance");
+        }
+        return spatialJoin(connection, tableA, tableB, joinPredicate, 0);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableA Table scanned by blocks
+     * @param tableB Table indexed in memory
+     * @param predicate Name of the spatial predicate
+     * @param distance Distance of the DWITHIN predicate
+     * @return PK_A, PK_B
+     * @throws SQLException
+     */
+    public static ResultSet spatialJoin(Connection connection, String tableA, String tableB,
+                                        String predicate, double distance) throws SQLException {
+        Predicate joinPredicate = Predicate.parse(predicate);
+        if (joinPredicate != Predicate.DWITHIN) {
+            throw new SQLException("Only the DWITHIN predicate expects a distance");
+        }
+        if (distance < 0) {
+            throw new SQLException("The distance must be greater than or equal to 0");
+        }
+        return spatialJoin(connection, tableA, tableB, joinPredicate, distance);
+    }
+
+    private static ResultSet spatialJoin(Connection connection, String tableA, String tableB,
+                                         Predicate predicate, double distance) throws SQLException {
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else {
+            rs = new SimpleResultSet(new JoinRowSource(connection, tableA, tableB, predicate, distance));
+        }
+        KeyedRowSource.addKeyColumn(rs, "PK_A");
+        KeyedRowSource.addKeyColumn(rs, "PK_B");
+        return rs;
+    }
+
+    /**
+     * Supported predicates, with the predicate to use when the geometry of
+     * the second table is prepared
+     */
+    private enum Predicate {
+        INTERSECTS, CONTAINS, WITHIN, COVERS, COVEREDBY, TOUCHES, CROSSES, OVERLAPS, EQUALS, DWITHIN;
+
+        static Predicate parse(String name) throws SQLException {
+            if (name == null) {
+                throw new SQLException("The spatial predicate cannot be null");
+            }
+            String predicate = name.trim().toUpperCase(Locale.ROOT);
+            if (predicate.startsWith("ST_")) {
+                predicate = predicate.substring(3);
+            }
+            try {
+                return valueOf(predicate);
+            } catch (IllegalArgumentException ex) {
+                throw new SQLException("Unsupported spatial predicate " + name);
+            }
+        }
+
+        /**
+         * @return The predicate of (b, a) equivalent to this predicate of (a, b)
+         */
+        Predicate converse() {
+            switch (this) {
+                case CONTAINS:
+                    return WITHIN;
+                case WITHIN:
+                    return CONTAINS;
+                case COVERS:
+                    return COVEREDBY;
+                case COVEREDBY:
+                    return COVERS;
+                default:
+                    return this;
+            }
+        }
+
+        boolean test(Geometry a, Geometry b, double distance) {
+            switch (this) {
+                case INTERSECTS:
+                    return a.intersects(b);
+                case CONTAINS:
+                    return a.contains(b);
+                case WITHIN:
+                    return a.within(b);
+                case COVERS:
+                    return a.covers(b);
+                case COVEREDBY:
+                    return a.coveredBy(b);
+                case TOUCHES:
+                    return a.touches(b);
+                case CROSSES:
+                    return a.crosses(b);
+                case OVERLAPS:
+                    return a.overlaps(b);
+                case EQUALS:
+                    return a.equalsTopo(b);
+                default:
+                    return a.isWithinDistance(b, distance);
+            }
+        }
+
+        boolean test(PreparedGeometry a, Geometry b) {
+            switch (this) {
+                case INTERSECTS:
+                    return a.intersects(b);
+                case CONTAINS:
+                    return a.contains(b);
+                case WITHIN:
+                    return a.within(b);
+                case COVERS:
+                    return a.covers(b);
+                case COVEREDBY:
+                    return a.coveredBy(b);
+                case TOUCHES:
+                    return a.touches(b);
+                case CROSSES:
+                    return a.crosses(b);
+                case OVERLAPS:
+                    return a.overlaps(b);
+                default:
+                    return a.getGeometry().equalsTopo(b);
+            }
+        }
+    }
+
+    /**
+     * Read the rows of the first table and join them on request
+     */
+    private static class JoinRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String tableA;
+        private final String tableB;
+        private final Predicate predicate;
+        private final double distance;
+        // Geometries of the second table
+        private KeyedGeometryIndex indexB;
+        private AtomicReferenceArray<PreparedGeometry> preparedB;
+
+        private JoinRowSource(Connection connection, String tableA, String tableB, Predicate predicate,
+                              double distance) {
+            super(BLOCK_SIZE);
+            this.connection = connection;
+            this.tableA = tableA;
+            this.tableB = tableB;
+            this.predicate = predicate;
+            this.distance = distance;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation locationA = TableLocation.parse(tableA, dbType);
+            TableLocation locationB = TableLocation.parse(tableB, dbType);
+            Tuple<String, GeometryMetaData> geometryA = GeometryTableUtilities.getFirstColumnMetaData(connection, locationA);
+            Tuple<String, GeometryMetaData> geometryB = GeometryTableUtilities.getFirstColumnMetaData(connection, locationB);
+            if (geometryA.second().SRID != geometryB.second().SRID) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            if (indexB == null) {
+                KeyedGeometryIndex index = KeyedGeometryIndex.load(connection, locationB, geometryB.first(), dbType);
+                preparedB = new AtomicReferenceArray<>(index.size());
+                indexB = index;
+            }
+            return queryWithKey(connection, locationA, TableLocation.quoteIdentifier(geometryA.first(), dbType), dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) {
+            for (Object[] input : inputs) {
+                Geometry geometry = (Geometry) input[1];
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                Envelope envelope = new Envelope(geometry.getEnvelopeInternal());
+                if (predicate == Predicate.DWITHIN) {
+                    envelope.expandBy(distance);
+                }
+                @SuppressWarnings("unchecked")
+                List<Integer> candidates = indexB.getIndex().query(envelope);
+                Collections.sort(candidates);
+                PreparedGeometry prepared = null;
+                if (predicate != Predicate.DWITHIN && candidates.size() > 1 && isPreparable(geometry)) {
+                    prepared = PreparedGeometryFactory.prepare(geometry);
+                }
+                for (int candidate : candidates) {
+                    if (test(geometry, prepared, candidate)) {
+                        outputRows.add(new Object[]{input[0], indexB.getKey(candidate)});
+                    }
+                }
+            }
+        }
+
+        private boolean test(Geometry geometry, PreparedGeometry prepared, int candidate) {
+            Geometry other = indexB.getGeometry(candidate);
+            // Prepare the largest geometry of the pair, the geometries of the
+            // second table are prepared once and shared by the tasks
+            if (predicate != Predicate.DWITHIN && isPreparable(other)
+                    && (prepared == null || other.getNumPoints() > geometry.getNumPoints())) {
+                PreparedGeometry preparedOther = preparedB.get(candidate);
+                if (preparedOther == null) {
+                    preparedOther = PreparedGeometryFactory.prepare(other);
+                    preparedB.compareAndSet(candidate, null, preparedOther);
+                }
+                return predicate.converse().test(preparedOther, geometry);
+            }
+            if (prepared != null) {
+                return predicate.test(prepared, other);
+            }
+            return predicate.test(geometry, other, distance);
+        }
+
+        private static boolean isPreparable(Geometry geometry) {
+            // The predicates do not support the heterogeneous collections the same way once prepared
+            return geometry.getNumPoints() >= MIN_POINTS && geometry.getClass() != GeometryCollection.class;
+        }
+    }
+}
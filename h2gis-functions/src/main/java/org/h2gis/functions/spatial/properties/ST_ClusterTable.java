@@ -0,0 +1,201 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.properties;
+
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rewrite the rows of a table along a Hilbert curve.
+ *
+ * H2 stores the rows by row key, in the insertion order for a table loaded
+ * from a file. Once the rows are rewritten along the curve, the rows of a
+ * same area share the same pages and a bounding box query reads fewer pages.
+ */
+public class ST_ClusterTable extends AbstractFunction implements ScalarFunction {
+
+    public ST_ClusterTable() {
+        addProperty(PROP_REMARKS, "Rewrite the rows of a table in the order of the Hilbert curve of the first geometry\n"
+                + "column (see ST_Hilbert) to improve the locality of the spatial queries.\n"
+                + "CALL ST_ClusterTable('mytable');\n"
+                + "CALL ST_ClusterTable('mytable', true);\n"
+                + "The rows of a table with an integer primary key are stored by key value, the second argument\n"
+                + "must be true to renumber the key from 1 in the curve order: the key values of the rows are\n"
+                + "reassigned. A table referenced by a foreign key is refused. The rows with a null geometry are\n"
+                + "written last.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "clusterTable";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table without integer primary key
+     * @return true if the table has been rewritten
+     * @throws SQLException
+     */
+    public static boolean clusterTable(Connection connection, String tableName) throws SQLException {
+        return clusterTable(connection, tableName, false);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table to rewrite
+     * @param renumberKey True to renumber the integer primary key in the curve order, the key values of the rows
+     * are reassigned
+     * @return true if the table has been rewritten
+     * @throws SQLException
+     */
+    public static boolean clusterTable(Connection connection, String tableName, boolean renumberKey) throws SQLException {
+        DBTypes dbType = DBUtils.getDBType(connection);
+        TableLocation location = TableLocation.parse(tableName, dbType);
+        Tuple<String, GeometryMetaData> geometryColumn = GeometryTableUtilities.getFirstColumnMetaData(connection, location);
+        Tuple<String, Integer> primaryKey = JDBCUtilities.getIntegerPrimaryKeyNameAndIndex(connection, location);
+        if (primaryKey != null && !renumberKey) {
+            throw new SQLException("The rows of the table " + location + " are stored by primary key, "
+                    + "the primary key must be renumbered to cluster the table");
+        }
+        // All the rows are deleted then inserted again, the referencing rows would be deleted or orphaned
+        try (ResultSet rs = connection.getMetaData().getExportedKeys(location.getCatalog(null), location.getSchema(null),
+                location.getTable())) {
+            if (rs.next()) {
+                throw new SQLException("The table " + location + " is referenced by the foreign key "
+                        + rs.getString("FK_NAME") + " of the table " + rs.getString("FKTABLE_NAME")
+                        + ", it cannot be rewritten");
+            }
+        }
+        long[] rowKeys = new long[16];
+        double[] x = new double[16];
+        double[] y = new double[16];
+        boolean[] empty = new boolean[16];
+        int rowCount = 0;
+        Envelope extent = new Envelope();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT _ROWID_, " + TableLocation.quoteIdentifier(geometryColumn.first(), dbType)
+                     + " FROM " + location)) {
+            while (rs.next()) {
+                if (rowCount == rowKeys.length) {
+                    int size = rowCount * 2;
+                    rowKeys = Arrays.copyOf(rowKeys, size);
+                    x = Arrays.copyOf(x, size);
+                    y = Arrays.copyOf(y, size);
+                    empty = Arrays.copyOf(empty, size);
+                }
+                rowKeys[rowCount] = rs.getLong(1);
+                Geometry geometry = (Geometry) rs.getObject(2);
+                if (geometry == null || geometry.isEmpty()) {
+                    empty[rowCount] = true;
+                } else {
+                    Envelope envelope = geometry.getEnvelopeInternal();
+                    x[rowCount] = envelope.centre().x;
+                    y[rowCount] = envelope.centre().y;
+                    extent.expandToInclude(x[rowCount], y[rowCount]);
+                }
+                rowCount++;
+            }
+        }
+        long[] keys = new long[rowCount];
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            keys[i] = empty[i] ? Long.MAX_VALUE : ST_Hilbert.hilbertIndex(extent, x[i], y[i]);
+            order[i] = i;
+        }
+        // The sort is stable, rows with the same key keep their order
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+        TableLocation keyTable = TableUtilities.suffixTableLocation(location, "_CLUSTER_KEYS");
+        TableLocation rowTable = TableUtilities.suffixTableLocation(location, "_CLUSTER_ROWS");
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        List<String> columnNames = JDBCUtilities.getColumnNames(connection, location.toString());
+        for (String columnName : columnNames) {
+            String column = TableLocation.quoteIdentifier(columnName, dbType);
+            if (columns.length() > 0) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            columns.append(column);
+            values.append(primaryKey != null && columnName.equals(primaryKey.first()) ? "_ROWID_" : column);
+        }
+        // The work tables are transactional temporary tables, creating them does not commit the current
+        // transaction and they are dropped when it ends. Within the transaction of the caller nothing is committed.
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + keyTable
+                    + "(ROW_KEY BIGINT PRIMARY KEY, POSITION INTEGER) ON COMMIT DROP TRANSACTIONAL");
+            st.execute("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + rowTable + " ON COMMIT DROP TRANSACTIONAL AS SELECT * FROM "
+                    + location + " WITH NO DATA");
+            // Left by a failed call in the same transaction
+            st.execute("DELETE FROM " + keyTable);
+            st.execute("DELETE FROM " + rowTable);
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + keyTable + " VALUES (?, ?)")) {
+                for (int i = 0; i < rowCount; i++) {
+                    ps.setLong(1, rowKeys[order[i]]);
+                    ps.setInt(2, i);
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            // The copy is filled in the curve order, its row keys follow this order
+            st.execute("INSERT INTO " + rowTable + " SELECT A.* FROM " + location + " A, " + keyTable
+                    + " B WHERE A._ROWID_ = B.ROW_KEY ORDER BY B.POSITION");
+            st.execute("DELETE FROM " + location);
+            st.execute("INSERT INTO " + location + "(" + columns + ") SELECT " + values + " FROM "
+                    + rowTable + " ORDER BY _ROWID_");
+            st.execute("DELETE FROM " + keyTable);
+            st.execute("DELETE FROM " + rowTable);
+            if (autoCommit) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            if (autoCommit) {
+                connection.rollback();
+            }
+            throw ex;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.properties;
+
+import org.h2gis.api.DeterministicScalarFunction;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.sql.SQLException;
+
+/**
+ * Sort key of a geometry along a Hilbert curve. Geometries that are close
+ * in space have close keys, ordering the rows of a table by this key keeps
+ * the rows of a same area in the same pages.
+ */
+public class ST_Hilbert extends DeterministicScalarFunction {
+
+    /** Number of subdivisions of each axis of the extent, as a power of 2 */
+    public static final int HILBERT_ORDER = 16;
+
+    public ST_Hilbert() {
+        addProperty(PROP_REMARKS, "Return the position of the center of the envelope of a geometry along a Hilbert curve\n"
+                + "that covers the given extent.\n"
+                + "SELECT * FROM mytable ORDER BY ST_Hilbert(the_geom, (SELECT ST_Extent(the_geom) FROM mytable));\n"
+                + "The extent is divided in 65536 x 65536 cells, the geometries outside the extent are given the key\n"
+                + "of the closest border cell.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "hilbert";
+    }
+
+    /**
+     * @param geometry Geometry
+     * @param extent Geometry whose envelope is covered by the curve
+     * @return Position along the curve or null if a geometry is null or empty
+     * @throws SQLException
+     */
+    public static Long hilbert(Geometry geometry, Geometry extent) throws SQLException {
+        if (geometry == null || extent == null || geometry.isEmpty() || extent.isEmpty()) {
+            return null;
+        }
+        if (geometry.getSRID() != extent.getSRID()) {
+            throw new SQLException("Operation on mixed SRID geometries not supported");
+        }
+        Envelope envelope = geometry.getEnvelopeInternal();
+        return hilbertIndex(extent.getEnvelopeInternal(), envelope.centre().x, envelope.centre().y);
+    }
+
+    /**
+     * Position of a coordinate along a Hilbert curve that covers the extent
+     *
+     * @param extent Extent covered by the curve
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Position along the curve, from 0 to 2^(2 * HILBERT_ORDER) - 1
+     */
+    public static long hilbertIndex(Envelope extent, double x, double y) {
+        long side = 1L << HILBERT_ORDER;
+        long ix = extent.getWidth() > 0 ? (long) ((x - extent.getMinX()) / extent.getWidth() * (side - 1)) : 0;
+        long iy = extent.getHeight() > 0 ? (long) ((y - extent.getMinY()) / extent.getHeight() * (side - 1)) : 0;
+        ix = Math.max(0, Math.min(side - 1, ix));
+        iy = Math.max(0, Math.min(side - 1, iy));
+        long index = 0;
+        for (long s = side / 2; s > 0; s /= 2) {
+            long rx = (ix & s) > 0 ? 1 : 0;
+            long ry = (iy & s) > 0 ? 1 : 0;
+            index += s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    ix = side - 1 - ix;
+                    iy = side - 1 - iy;
+                }
+                long t = ix;
+                ix = iy;
+                iy = t;
+            }
+        }
+        return index;
+    }
+}
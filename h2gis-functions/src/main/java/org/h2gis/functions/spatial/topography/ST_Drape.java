@@ -63,13 +63,27 @@ public class ST_Drape extends DeterministicScalarFunction{
         }
         
         //Check if triangles are triangles and create a quadtree to perform spatial queries
-        int nb = triangles.getNumGeometries();
-        STRtree sTRtree = new STRtree();
-        for (int i = 0; i < nb; i++) {
-            Geometry geom = triangles.getGeometryN(i);
-            sTRtree.insert(geom.getEnvelopeInternal(), TINFeatureFactory.createTriangle(geom));
+        //The index is reused when the same triangles are given for many rows
+        return drapeIndexed(geomToDrape, TriangleIndex.of(triangles));
+    }
+
+    /**
+     * Drape a geometry to a set of indexed triangles
+     * @param geomToDrape
+     * @param triangleIndex
+     * @return
+     * @throws SQLException
+     */
+    public static Geometry drapeIndexed(Geometry geomToDrape, TriangleIndex triangleIndex) throws SQLException {
+        if (geomToDrape == null) {
+            return null;
+        }
+        STRtree sTRtree = triangleIndex.getTree();
+        // Only the triangles around the geometry are used to split it
+        Geometry triangles = null;
+        if (geomToDrape.getDimension() > 0) {
+            triangles = triangleIndex.getTriangles(geomToDrape.getEnvelopeInternal(), geomToDrape.getFactory());
         }
-      
         if (geomToDrape instanceof Point) {
             return drapePoint(geomToDrape, triangles, sTRtree);
         } else if (geomToDrape instanceof MultiPoint) {
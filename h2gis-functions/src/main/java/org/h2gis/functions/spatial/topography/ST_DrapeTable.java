@@ -0,0 +1,133 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.topography;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.KeyedRowSource;
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Geometry;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Drape all the geometries of a table to the triangles of a TIN table.
+ *
+ * The triangles are read and indexed once, then the geometries are draped in
+ * parallel blocks.
+ */
+public class ST_DrapeTable extends AbstractFunction implements ScalarFunction {
+
+    public ST_DrapeTable() {
+        addProperty(PROP_REMARKS, "Drape the geometries of a table to the triangles of a TIN table.\n"
+                + "SELECT * FROM ST_DrapeTable('ROADS', 'TIN');\n"
+                + "The supported input geometry types are POINT, MULTIPOINT, LINESTRING, MULTILINESTRING, POLYGON and MULTIPOLYGON.\n"
+                + "The triangles of the TIN table must be stored as POLYGON Z.\n"
+                + "The result contains the primary key of the input table (or the row number if the table has no\n"
+                + "integer primary key) and the draped geometry, see ST_Drape.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "drape";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table of the geometries to drape
+     * @param tinTableName Table of the triangles
+     * @return PK, THE_GEOM
+     * @throws SQLException
+     */
+    public static ResultSet drape(Connection connection, String tableName, String tinTableName) throws SQLException {
+        SimpleResultSet rs;
+        if (TableUtilities.isColumnListConnection(connection)) {
+            // H2 reads all the rows to get the column list, do not compute them
+            rs = new SimpleResultSet();
+        } else {
+            rs = new SimpleResultSet(new DrapeRowSource(connection, tableName, tinTableName));
+        }
+        KeyedRowSource.addKeyColumn(rs, "PK");
+        rs.addColumn("THE_GEOM", Types.OTHER, "GEOMETRY", 0, 0);
+        return rs;
+    }
+
+    /**
+     * Read the geometries and drape them on request
+     */
+    private static class DrapeRowSource extends KeyedRowSource {
+        private final Connection connection;
+        private final String tableName;
+        private final String tinTableName;
+        private TriangleIndex triangleIndex;
+
+        private DrapeRowSource(Connection connection, String tableName, String tinTableName) {
+            super(BLOCK_SIZE);
+            this.connection = connection;
+            this.tableName = tableName;
+            this.tinTableName = tinTableName;
+        }
+
+        @Override
+        protected ResultSet openQuery() throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            TableLocation tableLocation = TableLocation.parse(tableName, dbType);
+            TableLocation tinLocation = TableLocation.parse(tinTableName, dbType);
+            Tuple<String, GeometryMetaData> geometryColumn = GeometryTableUtilities.getFirstColumnMetaData(connection, tableLocation);
+            Tuple<String, GeometryMetaData> tinColumn = GeometryTableUtilities.getFirstColumnMetaData(connection, tinLocation);
+            if (geometryColumn.second().SRID != tinColumn.second().SRID) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+            if (triangleIndex == null) {
+                TriangleIndex index = new TriangleIndex();
+                try (Statement st = connection.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT " + TableLocation.quoteIdentifier(tinColumn.first(), dbType)
+                             + " FROM " + tinLocation)) {
+                    while (rs.next()) {
+                        Geometry triangles = (Geometry) rs.getObject(1);
+                        if (triangles != null) {
+                            index.addTriangles(triangles);
+                        }
+                    }
+                } catch (IllegalArgumentException ex) {
+                    throw new SQLException(ex.getLocalizedMessage(), ex);
+                }
+                index.build();
+                triangleIndex = index;
+            }
+            return queryWithKey(connection, tableLocation, TableLocation.quoteIdentifier(geometryColumn.first(), dbType), dbType);
+        }
+
+        @Override
+        protected void compute(List<Object[]> inputs, List<Object[]> outputRows) throws SQLException {
+            for (Object[] input : inputs) {
+                outputRows.add(new Object[]{input[0], ST_Drape.drapeIndexed((Geometry) input[1], triangleIndex)});
+            }
+        }
+    }
+}
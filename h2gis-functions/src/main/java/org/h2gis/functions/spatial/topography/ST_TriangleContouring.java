@@ -21,11 +21,11 @@
 package org.h2gis.functions.spatial.topography;
 
 import org.h2.tools.SimpleResultSet;
-import org.h2.tools.SimpleRowSource;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueVarchar;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.functions.io.utility.ParallelRowSource;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
 import org.h2gis.utilities.dbtypes.DBUtils;
@@ -116,18 +116,17 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
     }
 
     /**
-     * Explode fields only on request
+     * Explode fields only on request. The triangles are read in blocks and
+     * split on the worker threads, the rows are returned in the order of the
+     * input table.
      */
-    private static class ExplodeResultSet implements SimpleRowSource {
-        // If true, table query is closed the read again
-        private boolean firstRow = true;
-        private ResultSet tableQuery;
-        private boolean endOfResultSet = false;
+    private static class ExplodeResultSet extends ParallelRowSource<InputTriangle> {
+        /** Number of triangles split by a single task */
+        private static final int TRIANGLE_BLOCK_SIZE = 1024;
         private String tableName;
         private String spatialFieldName;
         private Integer spatialFieldIndex;
         private int columnCount;
-        private Queue<GeneratedTriangle> generatedRows = new LinkedList<GeneratedTriangle>();
         private Connection connection;
         private boolean useZ;
         private String isoFieldName1 = "",isoFieldName2 = "",isoFieldName3 = "";
@@ -138,6 +137,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         private TableLocation tableLocation;
 
         private ExplodeResultSet(Connection connection, String tableName, String isoField1,String isoField2,String isoField3, List<Double> isoLvls) throws SQLException {
+            super(TRIANGLE_BLOCK_SIZE);
             this.tableName = tableName;                      
             this.tableLocation=TableLocation.parse(tableName, DBUtils.getDBType(connection));
             this.spatialFieldName = "";
@@ -150,6 +150,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         }
 
         private ExplodeResultSet(Connection connection, String tableName, List<Double> isoLvls) throws SQLException {
+            super(TRIANGLE_BLOCK_SIZE);
             this.tableName = tableName;            
             this.tableLocation=TableLocation.parse(tableName, DBUtils.getDBType(connection));
             this.spatialFieldName = "";
@@ -159,72 +160,41 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         }
 
         @Override
-        public Object[] readRow() throws SQLException {
-            if(firstRow) {
-                reset();
+        protected InputTriangle readInput(ResultSet tableQuery) throws SQLException {
+            Geometry inputTriangle = (Geometry) tableQuery.getObject(spatialFieldIndex);
+            if(inputTriangle == null || inputTriangle.getNumPoints() != 4) {
+                throw new SQLException("Invalid geometry input, got " + (inputTriangle == null ? "null" : inputTriangle.toText()));
             }
-            while(generatedRows.isEmpty() && !endOfResultSet) {
-                parseRow();
-            }
-            if(generatedRows.isEmpty()) {
-                // No more rows
-                return null;
-            } else {
-                Object[] objects = new Object[columnCount+1];
-                GeneratedTriangle result = generatedRows.remove();
-                for(int i=1;i<=columnCount+1;i++) {
-                    if(i==spatialFieldIndex) {
-                        objects[i-1] = result.getTriangle();
-                    } else if(i==columnCount+1) {
-                        objects[i-1] = result.getIdIso();
-                    } else {
-                        objects[i-1] = tableQuery.getObject(i);
-                    }
+            Object[] values = new Object[columnCount + 1];
+            for(int i=1;i<=columnCount;i++) {
+                if(i!=spatialFieldIndex) {
+                    values[i-1] = tableQuery.getObject(i);
                 }
-                return objects;
             }
+            return new InputTriangle(values, triFactory.getTriangle(inputTriangle.getCoordinates(), tableQuery));
         }
 
         @Override
-        public void close() {
-            if(tableQuery!=null) {
-                try {
-                    tableQuery.close();
-                    tableQuery = null;
-                } catch (SQLException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
-        }
-
-        private void parseRow() throws SQLException {
-            generatedRows.clear();
-            if(tableQuery.next()) {
-                Geometry inputTriangle = (Geometry) tableQuery.getObject(spatialFieldIndex);
-                if(inputTriangle == null || inputTriangle.getNumPoints() != 4) {
-                    throw new SQLException("Invalid geometry input, got " + (inputTriangle == null ? "null" : inputTriangle.toText()));
-                }
+        protected void compute(List<InputTriangle> inputs, List<Object[]> outputRows) {
+            for(InputTriangle input : inputs) {
                 // Compute ISO
-                TriMarkers triangle = triFactory.getTriangle(inputTriangle.getCoordinates());
-                Map<Short, Deque<TriMarkers>> result = Contouring.processTriangle(triangle, isoLvls);
+                Map<Short, Deque<TriMarkers>> result = Contouring.processTriangle(input.triangle, isoLvls);
                 for(Map.Entry<Short, Deque<TriMarkers>> isoResult : result.entrySet()) {
                     for(TriMarkers outputTriangle : isoResult.getValue()) {
                         Coordinate[] pverts = {outputTriangle.p0, outputTriangle.p1, outputTriangle.p2,
                                 outputTriangle.p0};
                         Polygon polygon = factory.createPolygon(factory.createLinearRing(pverts), null);
-                        generatedRows.add(new GeneratedTriangle(polygon, isoResult.getKey()));
+                        Object[] objects = input.values.clone();
+                        objects[spatialFieldIndex - 1] = polygon;
+                        objects[columnCount] = (int) isoResult.getKey();
+                        outputRows.add(objects);
                     }
                 }
-            } else {
-                endOfResultSet = true;
             }
         }
 
         @Override
-        public void reset() throws SQLException {
-            if(tableQuery!=null && !tableQuery.isClosed()) {
-                close();
-            }            
+        protected ResultSet openQuery() throws SQLException {
             LinkedHashMap<String, Integer> geomNamesAndIndexes = GeometryTableUtilities.getGeometryColumnNamesAndIndexes(connection, tableLocation);
             Map.Entry<String, Integer> firstGeomNameAndIndex = geomNamesAndIndexes.entrySet().iterator().next();
             if (spatialFieldName != null && !spatialFieldName.isEmpty()) {
@@ -240,8 +210,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             spatialFieldIndex = firstGeomNameAndIndex.getValue();
             
             Statement st = connection.createStatement();
-            tableQuery = st.executeQuery("SELECT * FROM "+tableName);
-            firstRow = false;
+            ResultSet tableQuery = st.executeQuery("SELECT * FROM "+tableName);
             ResultSetMetaData meta = tableQuery.getMetaData();
             columnCount = meta.getColumnCount();
 
@@ -251,11 +220,13 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
                 int vertex1FieldIndex = tableQuery.findColumn(isoFieldName1);
                 int vertex2FieldIndex = tableQuery.findColumn(isoFieldName2);
                 int vertex3FieldIndex = tableQuery.findColumn(isoFieldName3);
-                triFactory = new ValueOnField(vertex1FieldIndex, vertex2FieldIndex, vertex3FieldIndex, tableQuery);
+                triFactory = new ValueOnField(vertex1FieldIndex, vertex2FieldIndex, vertex3FieldIndex);
             }
             if(spatialFieldIndex == null) {
+                st.close();
                 throw new SQLException("Geometry field "+spatialFieldName+" of table "+tableName+" not found");
             }
+            return tableQuery;
         }
 
         public ResultSet getResultSet() throws SQLException {
@@ -268,23 +239,16 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
     }
 
     /**
-     * Triangle to add in table
+     * Triangle read from the input table
      */
-    private static class GeneratedTriangle {
-        private final Polygon triangle;
-        private final int idIso;
+    private static class InputTriangle {
+        /** Values of the other columns */
+        private final Object[] values;
+        private final TriMarkers triangle;
 
-        private GeneratedTriangle(Polygon triangle, int idIso) {
+        private InputTriangle(Object[] values, TriMarkers triangle) {
+            this.values = values;
             this.triangle = triangle;
-            this.idIso = idIso;
-        }
-
-        public Polygon getTriangle() {
-            return triangle;
-        }
-
-        public int getIdIso() {
-            return idIso;
         }
     }
 
@@ -292,7 +256,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
      * Triangle factory
      */
     private interface TriMarkersFactory {
-        TriMarkers getTriangle(Coordinate[] pts) throws SQLException;
+        TriMarkers getTriangle(Coordinate[] pts, ResultSet rs) throws SQLException;
     }
 
     /**
@@ -300,7 +264,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
      */
     private static class ValueOnZ implements TriMarkersFactory {
         @Override
-        public TriMarkers getTriangle(Coordinate[] pts) throws SQLException {
+        public TriMarkers getTriangle(Coordinate[] pts, ResultSet rs) throws SQLException {
             return new TriMarkers(pts[0], pts[1],
                     pts[2], pts[0].z,
                     pts[1].z,
@@ -315,17 +279,15 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         private final int vertex1FieldIndex;
         private final int vertex2FieldIndex;
         private final int vertex3FieldIndex;
-        private final ResultSet rs;
 
-        private ValueOnField(int vertex1FieldIndex, int vertex2FieldIndex, int vertex3FieldIndex, ResultSet rs) {
+        private ValueOnField(int vertex1FieldIndex, int vertex2FieldIndex, int vertex3FieldIndex) {
             this.vertex1FieldIndex = vertex1FieldIndex;
             this.vertex2FieldIndex = vertex2FieldIndex;
             this.vertex3FieldIndex = vertex3FieldIndex;
-            this.rs = rs;
         }
 
         @Override
-        public TriMarkers getTriangle(Coordinate[] pts) throws SQLException {
+        public TriMarkers getTriangle(Coordinate[] pts, ResultSet rs) throws SQLException {
             return new TriMarkers(pts[0], pts[1],
                     pts[2], rs.getDouble(vertex1FieldIndex),
                     rs.getDouble(vertex2FieldIndex),
@@ -0,0 +1,212 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.spatial.topography;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Triangle;
+import org.locationtech.jts.index.ItemVisitor;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index of the triangles of a TIN, shared by the draping of many
+ * geometries.
+ *
+ * The index of the last triangles given to {@link #of(Geometry)} is kept
+ * through a soft reference, so repeated calls with an identical triangles
+ * argument do not rebuild it.
+ */
+public class TriangleIndex {
+
+    /** Above this number of triangles the index is not cached */
+    public static final int CACHE_MAX_TRIANGLES = 1_000_000;
+
+    private static volatile SoftReference<TriangleIndex> lastIndex = new SoftReference<>(null);
+
+    // Source of the cached index, used to detect an identical argument
+    private Geometry source;
+    // Last instance found identical to the source, H2 may give the same instance for many rows
+    private volatile Geometry lastMatch;
+    private final STRtree tree = new STRtree();
+    private int size = 0;
+
+    /**
+     * Return the index of the triangles, from the cache when the triangles
+     * are identical to the previous call.
+     *
+     * @param triangles Collection of POLYGON Z triangles
+     * @return The built index
+     * @throws IllegalArgumentException if a geometry is not a triangle
+     */
+    public static TriangleIndex of(Geometry triangles) {
+        TriangleIndex cached = lastIndex.get();
+        if (cached != null && cached.isSource(triangles)) {
+            return cached;
+        }
+        TriangleIndex index = new TriangleIndex();
+        index.addTriangles(triangles);
+        index.build();
+        if (index.size <= CACHE_MAX_TRIANGLES) {
+            index.source = triangles;
+            lastIndex = new SoftReference<>(index);
+        }
+        return index;
+    }
+
+    private boolean isSource(Geometry triangles) {
+        if (source == triangles || lastMatch == triangles) {
+            return true;
+        }
+        int numGeometries = source.getNumGeometries();
+        if (source.getSRID() != triangles.getSRID()
+                || numGeometries != triangles.getNumGeometries()
+                || !source.getEnvelopeInternal().equals(triangles.getEnvelopeInternal())) {
+            return false;
+        }
+        for (int i = 0; i < numGeometries; i++) {
+            if (!isSameGeometry(source.getGeometryN(i), triangles.getGeometryN(i))) {
+                return false;
+            }
+        }
+        lastMatch = triangles;
+        return true;
+    }
+
+    /**
+     * Compare the XYZ of two simple geometries without copying their
+     * coordinates
+     */
+    private static boolean isSameGeometry(Geometry a, Geometry b) {
+        if (a.getClass() != b.getClass()) {
+            return false;
+        }
+        if (a instanceof Polygon) {
+            Polygon polygonA = (Polygon) a;
+            Polygon polygonB = (Polygon) b;
+            int holes = polygonA.getNumInteriorRing();
+            if (holes != polygonB.getNumInteriorRing()
+                    || !isSameSequence(polygonA.getExteriorRing().getCoordinateSequence(),
+                    polygonB.getExteriorRing().getCoordinateSequence())) {
+                return false;
+            }
+            for (int i = 0; i < holes; i++) {
+                if (!isSameSequence(polygonA.getInteriorRingN(i).getCoordinateSequence(),
+                        polygonB.getInteriorRingN(i).getCoordinateSequence())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // Not a triangle, addTriangles rejects it anyway
+        if (!a.equalsExact(b)) {
+            return false;
+        }
+        Coordinate[] coordinatesA = a.getCoordinates();
+        Coordinate[] coordinatesB = b.getCoordinates();
+        for (int i = 0; i < coordinatesA.length; i++) {
+            if (!coordinatesA[i].equals3D(coordinatesB[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameSequence(CoordinateSequence a, CoordinateSequence b) {
+        int size = a.size();
+        if (size != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            double za = a.getZ(i);
+            double zb = b.getZ(i);
+            if (a.getX(i) != b.getX(i) || a.getY(i) != b.getY(i)
+                    || (za != zb && !(Double.isNaN(za) && Double.isNaN(zb)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the triangles of a geometry, before calling {@link #build()}
+     *
+     * @param triangles POLYGON Z triangle or collection of triangles
+     * @throws IllegalArgumentException if a geometry is not a triangle
+     */
+    public void addTriangles(Geometry triangles) {
+        int nb = triangles.getNumGeometries();
+        for (int i = 0; i < nb; i++) {
+            Geometry geom = triangles.getGeometryN(i);
+            tree.insert(geom.getEnvelopeInternal(), TINFeatureFactory.createTriangle(geom));
+            size++;
+        }
+    }
+
+    /**
+     * Build the spatial index, it can then be queried by many threads
+     */
+    public void build() {
+        if (size > 0) {
+            tree.build();
+        }
+    }
+
+    /**
+     * @return Number of triangles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Spatial index of {@link Triangle}
+     */
+    public STRtree getTree() {
+        return tree;
+    }
+
+    /**
+     * @param envelope Area of interest
+     * @param factory Factory of the triangle polygons
+     * @return Collection of the triangle polygons that intersects the envelope
+     */
+    public Geometry getTriangles(Envelope envelope, GeometryFactory factory) {
+        final List<Polygon> polygons = new ArrayList<>();
+        if (size > 0) {
+            tree.query(envelope, new ItemVisitor() {
+                @Override
+                public void visitItem(Object item) {
+                    Triangle triangle = (Triangle) item;
+                    polygons.add(factory.createPolygon(new Coordinate[]{triangle.p0, triangle.p1, triangle.p2,
+                            triangle.p0}));
+                }
+            });
+        }
+        return factory.createMultiPolygon(polygons.toArray(new Polygon[0]));
+    }
+}
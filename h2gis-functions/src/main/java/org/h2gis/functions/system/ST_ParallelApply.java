@@ -0,0 +1,615 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.functions.system;
+
+import org.h2.value.ValueGeometry;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.io.utility.ParallelRowWriter;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Evaluate a function call on all the rows of a table with a pool of
+ * threads.
+ *
+ * The expression is made of calls to the Java functions registered in the
+ * database, of columns of the source table and of constants. The calls are
+ * resolved once to the Java methods of the functions, then the rows are read
+ * by the calling thread, evaluated by blocks on the worker threads and
+ * written by the calling thread in the order of the source table.
+ */
+public class ST_ParallelApply extends AbstractFunction implements ScalarFunction {
+
+    public ST_ParallelApply() {
+        addProperty(PROP_REMARKS, "Evaluate an expression on all the rows of a table with a pool of threads and store the\n"
+                + "result in a new table.\n"
+                + "CALL ST_ParallelApply('SOURCE_TABLE', 'ST_Buffer(ST_MakeValid(THE_GEOM), 10)', 'TARGET_TABLE');\n"
+                + "CALL ST_ParallelApply('SOURCE_TABLE', 'ST_Simplify(THE_GEOM, 2)', 'TARGET_TABLE', threads);\n"
+                + "The expression can only contain calls to functions that do not use the connection, columns of\n"
+                + "the source table and constants (numbers, 'strings', TRUE, FALSE, NULL). The parameters of the\n"
+                + "functions must be geometries, numbers, booleans or strings.\n"
+                + "The target table contains the integer primary key of the source table (or a PK column with the\n"
+                + "row number) and the result, named THE_GEOM for a geometry or RESULT otherwise.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "parallelApply";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param sourceTable Table to read
+     * @param expression Function call to evaluate on each row
+     * @param targetTable Table to create
+     * @return true if the target table has been created
+     * @throws SQLException
+     */
+    public static boolean parallelApply(Connection connection, String sourceTable, String expression,
+                                        String targetTable) throws SQLException {
+        return parallelApply(connection, sourceTable, expression, targetTable, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param connection Active connection
+     * @param sourceTable Table to read
+     * @param expression Function call to evaluate on each row
+     * @param targetTable Table to create
+     * @param threads Number of worker threads
+     * @return true if the target table has been created
+     * @throws SQLException
+     */
+    public static boolean parallelApply(Connection connection, String sourceTable, String expression,
+                                        String targetTable, int threads) throws SQLException {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new SQLException("The expression cannot be empty");
+        }
+        DBTypes dbType = DBUtils.getDBType(connection);
+        TableLocation source = TableLocation.parse(sourceTable, dbType);
+        TableLocation target = TableLocation.parse(targetTable, dbType);
+        List<String> columns = new ArrayList<>();
+        Node root = new ExpressionParser(connection, expression, columns).parse();
+        String resultType = getSQLType(root.getType());
+        if (resultType == null) {
+            throw new SQLException("Unsupported result type " + root.getType().getSimpleName());
+        }
+        Tuple<String, Integer> primaryKey = JDBCUtilities.getIntegerPrimaryKeyNameAndIndex(connection, source);
+        String pkColumn = TableLocation.quoteIdentifier(primaryKey != null ? primaryKey.first() : "PK", dbType);
+        StringBuilder query = new StringBuilder("SELECT ");
+        query.append(primaryKey != null ? pkColumn : "0");
+        for (String column : columns) {
+            query.append(", ").append(TableLocation.quoteIdentifier(column, dbType));
+        }
+        query.append(" FROM ").append(source);
+        String resultColumn = Geometry.class.isAssignableFrom(root.getType()) ? "THE_GEOM" : "RESULT";
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE " + target + "(" + pkColumn + " BIGINT PRIMARY KEY, " + resultColumn
+                    + " " + resultType + ")");
+            boolean done = false;
+            try (ResultSet rs = st.executeQuery(query.toString());
+                 PreparedStatement ps = connection.prepareStatement("INSERT INTO " + target + " VALUES (?, ?)");
+                 ParallelRowWriter<List<Object[]>> rowWriter = new ParallelRowWriter<>(threads,
+                         rows -> evaluate(root, rows), rows -> insertRows(ps, rows))) {
+                Object[] row = new Object[columns.size() + 1];
+                long id = 1;
+                while (rs.next()) {
+                    row[0] = primaryKey != null ? rs.getLong(1) : id++;
+                    for (int i = 1; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rowWriter.add(row);
+                }
+                rowWriter.finish();
+                done = true;
+            } catch (IOException ex) {
+                if (ex.getCause() instanceof SQLException) {
+                    throw (SQLException) ex.getCause();
+                }
+                throw new SQLException(ex.getMessage(), ex);
+            } finally {
+                if (!done) {
+                    st.execute("DROP TABLE IF EXISTS " + target);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the expression on a block of rows, called from the worker threads
+     */
+    private static List<Object[]> evaluate(Node root, List<Object[]> rows) throws IOException {
+        List<Object[]> results = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            try {
+                results.add(new Object[]{row[0], root.evaluate(row)});
+            } catch (SQLException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Insert a block of results, called from the thread that reads the rows
+     */
+    private static void insertRows(PreparedStatement ps, List<Object[]> rows) throws IOException {
+        try {
+            for (Object[] row : rows) {
+                ps.setObject(1, row[0]);
+                ps.setObject(2, row[1]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param type Java type of the result
+     * @return SQL type of the result column, null if not supported
+     */
+    private static String getSQLType(Class<?> type) {
+        if (Geometry.class.isAssignableFrom(type)) {
+            return "GEOMETRY";
+        } else if (type == Double.class || type == double.class || type == Float.class || type == float.class) {
+            return "DOUBLE PRECISION";
+        } else if (type == Integer.class || type == int.class || type == Short.class || type == short.class) {
+            return "INTEGER";
+        } else if (type == Long.class || type == long.class) {
+            return "BIGINT";
+        } else if (type == Boolean.class || type == boolean.class) {
+            return "BOOLEAN";
+        } else if (type == String.class) {
+            return "VARCHAR";
+        }
+        return null;
+    }
+
+    /**
+     * Node of the expression
+     */
+    private interface Node {
+        /**
+         * @param row Primary key followed by the columns used by the expression
+         * @return Value of the node
+         * @throws SQLException
+         */
+        Object evaluate(Object[] row) throws SQLException;
+
+        /**
+         * @return Java type of the value
+         */
+        Class<?> getType();
+    }
+
+    private static final class Constant implements Node {
+        private final Object value;
+
+        private Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Object[] row) {
+            return value;
+        }
+
+        @Override
+        public Class<?> getType() {
+            return value == null ? Object.class : value.getClass();
+        }
+    }
+
+    private static final class Column implements Node {
+        private final int index;
+
+        private Column(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Object evaluate(Object[] row) {
+            return row[index];
+        }
+
+        @Override
+        public Class<?> getType() {
+            return Object.class;
+        }
+    }
+
+    private static final class Call implements Node {
+        private final String name;
+        private final Method method;
+        private final Node[] arguments;
+
+        private Call(String name, Method method, Node[] arguments) {
+            this.name = name;
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object evaluate(Object[] row) throws SQLException {
+            Class<?>[] types = method.getParameterTypes();
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = convert(arguments[i].evaluate(row), types[i]);
+                if (values[i] == null && types[i].isPrimitive()) {
+                    // Same as SQL, a null argument gives a null result
+                    return null;
+                }
+            }
+            try {
+                return method.invoke(null, values);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                throw new SQLException("Error while evaluating " + name + ": " + cause.getMessage(), cause);
+            } catch (IllegalAccessException ex) {
+                throw new SQLException("Cannot call " + name, ex);
+            }
+        }
+
+        @Override
+        public Class<?> getType() {
+            return method.getReturnType();
+        }
+
+        private Object convert(Object value, Class<?> type) throws SQLException {
+            if (value == null || type.isInstance(value)) {
+                return value;
+            }
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (type == double.class || type == Double.class) {
+                    return number.doubleValue();
+                } else if (type == int.class || type == Integer.class) {
+                    return number.intValue();
+                } else if (type == long.class || type == Long.class) {
+                    return number.longValue();
+                } else if (type == float.class || type == Float.class) {
+                    return number.floatValue();
+                } else if (type == short.class || type == Short.class) {
+                    return number.shortValue();
+                }
+            } else if (value instanceof Boolean && type == boolean.class) {
+                return value;
+            } else if (value instanceof String && Geometry.class.isAssignableFrom(type)) {
+                // Same conversion as H2, EWKT with an optional SRID
+                Geometry geometry;
+                try {
+                    geometry = ValueGeometry.get((String) value).getGeometry();
+                } catch (RuntimeException ex) {
+                    throw new SQLException("Cannot parse the geometry " + value, ex);
+                }
+                if (type.isInstance(geometry)) {
+                    return geometry;
+                }
+            }
+            if (type == String.class) {
+                return value.toString();
+            }
+            throw new SQLException("Cannot convert " + value.getClass().getSimpleName() + " to "
+                    + type.getSimpleName() + " in " + name);
+        }
+    }
+
+    /**
+     * Parse the expression and resolve the function calls
+     */
+    private static final class ExpressionParser {
+        private final Connection connection;
+        private final String expression;
+        private final List<String> columns;
+        private int position = 0;
+
+        private ExpressionParser(Connection connection, String expression, List<String> columns) {
+            this.connection = connection;
+            this.expression = expression;
+            this.columns = columns;
+        }
+
+        Node parse() throws SQLException {
+            Node node = parseNode();
+            skipSpaces();
+            if (position < expression.length()) {
+                throw error();
+            }
+            return node;
+        }
+
+        private Node parseNode() throws SQLException {
+            skipSpaces();
+            if (position >= expression.length()) {
+                throw error();
+            }
+            char c = expression.charAt(position);
+            if (c == '\'') {
+                return new Constant(parseString());
+            } else if (Character.isDigit(c) || c == '-' || c == '.') {
+                return new Constant(parseNumber());
+            }
+            boolean quoted = c == '"';
+            String identifier = parseIdentifier();
+            skipSpaces();
+            if (position < expression.length() && expression.charAt(position) == '(') {
+                position++;
+                List<Node> arguments = new ArrayList<>();
+                skipSpaces();
+                if (position < expression.length() && expression.charAt(position) == ')') {
+                    position++;
+                } else {
+                    while (true) {
+                        arguments.add(parseNode());
+                        skipSpaces();
+                        if (position >= expression.length()) {
+                            throw error();
+                        }
+                        char separator = expression.charAt(position++);
+                        if (separator == ')') {
+                            break;
+                        } else if (separator != ',') {
+                            position--;
+                            throw error();
+                        }
+                    }
+                }
+                return resolve(identifier, arguments.toArray(new Node[0]));
+            }
+            if (!quoted) {
+                switch (identifier) {
+                    case "TRUE":
+                        return new Constant(Boolean.TRUE);
+                    case "FALSE":
+                        return new Constant(Boolean.FALSE);
+                    case "NULL":
+                        return new Constant(null);
+                    default:
+                        break;
+                }
+            }
+            int index = columns.indexOf(identifier);
+            if (index < 0) {
+                columns.add(identifier);
+                index = columns.size() - 1;
+            }
+            return new Column(index + 1);
+        }
+
+        private String parseString() throws SQLException {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < expression.length()) {
+                char c = expression.charAt(position++);
+                if (c == '\'') {
+                    if (position < expression.length() && expression.charAt(position) == '\'') {
+                        position++;
+                    } else {
+                        return value.toString();
+                    }
+                }
+                value.append(c);
+            }
+            throw error();
+        }
+
+        private Number parseNumber() throws SQLException {
+            int start = position;
+            position++;
+            while (position < expression.length()) {
+                char c = expression.charAt(position);
+                if (Character.isDigit(c) || c == '.' || c == 'e' || c == 'E'
+                        || ((c == '-' || c == '+') && Character.toUpperCase(expression.charAt(position - 1)) == 'E')) {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            String number = expression.substring(start, position);
+            try {
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                    long value = Long.parseLong(number);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return value;
+                }
+                return Double.parseDouble(number);
+            } catch (NumberFormatException ex) {
+                position = start;
+                throw error();
+            }
+        }
+
+        private String parseIdentifier() throws SQLException {
+            int start = position;
+            if (expression.charAt(position) == '"') {
+                int end = expression.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw error();
+                }
+                position = end + 1;
+                return expression.substring(start + 1, end);
+            }
+            while (position < expression.length()
+                    && (Character.isLetterOrDigit(expression.charAt(position)) || expression.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw error();
+            }
+            return expression.substring(start, position).toUpperCase(Locale.ROOT);
+        }
+
+        private void skipSpaces() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+        }
+
+        private SQLException error() {
+            return new SQLException("Syntax error in the expression " + expression + " at position " + position);
+        }
+
+        /**
+         * Find the Java method of a function alias
+         */
+        private Node resolve(String name, Node[] arguments) throws SQLException {
+            String javaClass = null;
+            String javaMethod = null;
+            try (PreparedStatement ps = connection.prepareStatement("SELECT JAVA_CLASS, JAVA_METHOD FROM "
+                    + "INFORMATION_SCHEMA.FUNCTION_ALIASES WHERE ALIAS_NAME = ?")) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        javaClass = rs.getString(1);
+                        javaMethod = rs.getString(2);
+                    }
+                }
+            }
+            if (javaClass == null) {
+                throw new SQLException("Function " + name + " not found");
+            }
+            Class<?> functionClass;
+            try {
+                functionClass = Class.forName(javaClass);
+            } catch (ClassNotFoundException ex) {
+                throw new SQLException("Cannot load the class of the function " + name, ex);
+            }
+            boolean usesConnection = false;
+            boolean sameCount = false;
+            Method best = null;
+            Method ambiguous = null;
+            int bestRank = -1;
+            for (Method method : functionClass.getMethods()) {
+                if (!method.getName().equals(javaMethod) || !Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length > 0 && types[0] == Connection.class) {
+                    // An other overload may not need the connection
+                    usesConnection |= types.length == arguments.length + 1;
+                } else if (types.length == arguments.length && !method.isVarArgs()) {
+                    sameCount = true;
+                    int rank = getRank(types, arguments);
+                    if (rank > bestRank) {
+                        best = method;
+                        bestRank = rank;
+                        ambiguous = null;
+                    } else if (rank >= 0 && rank == bestRank) {
+                        ambiguous = method;
+                    }
+                }
+            }
+            if (ambiguous != null) {
+                throw new SQLException("The call to the function " + name + " is ambiguous, the methods " + best
+                        + " and " + ambiguous + " accept the arguments");
+            } else if (best != null) {
+                return new Call(name, best, arguments);
+            } else if (sameCount) {
+                StringBuilder types = new StringBuilder();
+                for (Node argument : arguments) {
+                    types.append(types.length() > 0 ? ", " : "").append(argument.getType().getSimpleName());
+                }
+                throw new SQLException("The function " + name + " does not accept the arguments (" + types + ")");
+            } else if (usesConnection) {
+                throw new SQLException("The function " + name + " uses the connection, it cannot be evaluated in parallel");
+            }
+            throw new SQLException("The function " + name + " does not accept " + arguments.length + " arguments");
+        }
+
+        /**
+         * @param types Parameter types of a method
+         * @param arguments Arguments of the call
+         * @return Sum of the ranks of the arguments, -1 if an argument cannot be converted
+         */
+        private static int getRank(Class<?>[] types, Node[] arguments) {
+            int rank = 0;
+            for (int i = 0; i < types.length; i++) {
+                int argumentRank = getRank(types[i], arguments[i].getType());
+                if (argumentRank < 0) {
+                    return -1;
+                }
+                rank += argumentRank;
+            }
+            return rank;
+        }
+
+        /**
+         * @param type Parameter type
+         * @param argument Type of the argument, Object for a column or NULL
+         * @return 2 if the argument is given as is, 1 if it is converted, 0 if its type is only known when the
+         * rows are read, -1 if it cannot be converted
+         */
+        private static int getRank(Class<?> type, Class<?> argument) {
+            if (argument == Object.class) {
+                return 0;
+            } else if (wrap(type).isAssignableFrom(argument)) {
+                return 2;
+            } else if (Number.class.isAssignableFrom(argument) && getSQLType(wrap(type)) != null
+                    && Number.class.isAssignableFrom(wrap(type))) {
+                return 1;
+            } else if (argument == String.class && Geometry.class.isAssignableFrom(type)) {
+                return 1;
+            } else if (type == String.class) {
+                return 1;
+            }
+            return -1;
+        }
+
+        private static Class<?> wrap(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return type;
+            } else if (type == double.class) {
+                return Double.class;
+            } else if (type == int.class) {
+                return Integer.class;
+            } else if (type == long.class) {
+                return Long.class;
+            } else if (type == float.class) {
+                return Float.class;
+            } else if (type == short.class) {
+                return Short.class;
+            } else if (type == boolean.class) {
+                return Boolean.class;
+            }
+            return type;
+        }
+    }
+}
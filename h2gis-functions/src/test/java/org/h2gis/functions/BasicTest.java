@@ -100,6 +100,97 @@ public class BasicTest {
         }
 
 
+        @Test
+        public void testUpdateTriggerRowsCoalesced() throws SQLException {
+               try {
+                   st.execute("drop trigger if exists rowupdatetrigger");
+                   st.execute("DROP TABLE IF EXISTS test");
+                   st.execute("create table test as select x id, 'POINT(1 2)'::geometry the_geom from system_range(1, 100)");
+                   st.execute("create trigger rowupdatetrigger AFTER INSERT, UPDATE, DELETE ON test FOR EACH ROW CALL \""+UpdateTrigger.class.getName()+"\"");
+                   TableLocation notificationTable = new TableLocation(UpdateTrigger.TRIGGER_SCHEMA, UpdateTrigger.NOTIFICATION_TABLE);
+                   st.execute("delete from "+notificationTable);
+                   st.execute("update test set the_geom = 'POINT(5 5)'");
+                   try (ResultSet rs = st.executeQuery("select count(*) from "+notificationTable)) {
+                       assertTrue(rs.next());
+                       assertEquals(1, rs.getInt(1));
+                   }
+                   assertEquals(100, UpdateTrigger.getChanges(connection, "rowupdatetrigger"));
+                   assertEquals(100, UpdateTrigger.consumeChanges(connection, "public.rowupdatetrigger"));
+                   assertEquals(0, UpdateTrigger.getChanges(connection, "rowupdatetrigger"));
+                   try (ResultSet rs = st.executeQuery("select count(*) from "+notificationTable)) {
+                       assertTrue(rs.next());
+                       assertEquals(0, rs.getInt(1));
+                   }
+                   st.execute("delete from test where id <= 10");
+                   assertEquals(10, UpdateTrigger.consumeChanges(connection, "rowupdatetrigger"));
+                   // The rolled back modifications are still counted, the notification is inserted again after the
+                   // next consumption
+                   connection.setAutoCommit(false);
+                   try {
+                       st.execute("delete from test where id <= 20");
+                       connection.rollback();
+                   } finally {
+                       connection.setAutoCommit(true);
+                   }
+                   st.execute("delete from test where id <= 15");
+                   try (ResultSet rs = st.executeQuery("select count(*) from "+notificationTable)) {
+                       assertTrue(rs.next());
+                       assertEquals(0, rs.getInt(1));
+                   }
+                   assertEquals(15, UpdateTrigger.consumeChanges(connection, "rowupdatetrigger"));
+                   st.execute("delete from test where id <= 20");
+                   try (ResultSet rs = st.executeQuery("select count(*) from "+notificationTable)) {
+                       assertTrue(rs.next());
+                       assertEquals(1, rs.getInt(1));
+                   }
+               } finally {
+                   st.execute("drop trigger if exists rowupdatetrigger");
+                   st.execute("DROP TABLE IF EXISTS test");
+               }
+        }
+
+        @Test
+        public void testUpdateTriggerOneNotificationByUpdate() throws SQLException {
+               try {
+                   st.execute("drop trigger if exists rowupdatetrigger");
+                   st.execute("DROP TABLE IF EXISTS test");
+                   st.execute("create table test as select x id, 'POINT(1 2)'::geometry the_geom from system_range(1, 1000)");
+                   st.execute("create trigger rowupdatetrigger AFTER INSERT, UPDATE, DELETE ON test FOR EACH ROW CALL \""+UpdateTrigger.class.getName()+"\"");
+                   TableLocation notificationTable = new TableLocation(UpdateTrigger.TRIGGER_SCHEMA, UpdateTrigger.NOTIFICATION_TABLE);
+                   st.execute("delete from "+notificationTable);
+                   st.execute("update test set the_geom = 'POINT(5 5)'");
+                   st.execute("update test set the_geom = 'POINT(6 6)' where id <= 500");
+                   try (ResultSet rs = st.executeQuery("select idtrigger, count(*) from "+notificationTable+" group by idtrigger")) {
+                       assertTrue(rs.next());
+                       assertEquals(1, rs.getInt(2));
+                       assertFalse(rs.next());
+                   }
+                   assertEquals(1500, UpdateTrigger.consumeChanges(connection, "rowupdatetrigger"));
+               } finally {
+                   st.execute("drop trigger if exists rowupdatetrigger");
+                   st.execute("DROP TABLE IF EXISTS test");
+               }
+        }
+
+        @Test
+        public void testUpdateTriggerByDatabase() throws SQLException {
+               // Both private in-memory databases have the same catalog name
+               try (Connection first = DriverManager.getConnection("jdbc:h2:mem:");
+                    Connection second = DriverManager.getConnection("jdbc:h2:mem:")) {
+                   for (Connection con : new Connection[]{first, second}) {
+                       try (Statement stat = con.createStatement()) {
+                           stat.execute("create table test(id int)");
+                           stat.execute("create trigger rowupdatetrigger AFTER INSERT, UPDATE, DELETE ON test FOR EACH ROW CALL \""+UpdateTrigger.class.getName()+"\"");
+                       }
+                   }
+                   try (Statement stat = first.createStatement()) {
+                       stat.execute("insert into test values (1), (2)");
+                   }
+                   assertEquals(2, UpdateTrigger.getChanges(first, "rowupdatetrigger"));
+                   assertEquals(0, UpdateTrigger.getChanges(second, "rowupdatetrigger"));
+               }
+        }
+
         @Test
         public void testGeometryType() throws Exception {
             st.execute("DROP TABLE IF EXISTS GEOMTABLE;");
@@ -139,6 +230,40 @@ public class BasicTest {
 
         }
 
+
+    @Test
+    public void testLoadTwice() throws Exception {
+        // The database is already initialised, nothing is registered again
+        H2GISFunctions.load(connection);
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM SPATIAL_REF_SYS")) {
+            assertTrue(rs.next());
+            assertEquals(4257, rs.getInt(1));
+        }
+        // A missing function is registered again
+        st.execute("DROP ALIAS ST_AREA");
+        H2GISFunctions.load(connection);
+        try (ResultSet rs = st.executeQuery("select ST_Area('POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))'::geometry)")) {
+            assertTrue(rs.next());
+            assertEquals(100.0, rs.getDouble(1), 1e-12);
+        }
+        try (ResultSet rs = connection.getMetaData().getProcedures(null, null, "ST_AREA")) {
+            assertTrue(rs.next());
+            assertEquals("Compute geometry area.", rs.getString("REMARKS"));
+        }
+        // A missing aggregate is registered again
+        st.execute("DROP AGGREGATE ST_ACCUM");
+        H2GISFunctions.load(connection);
+        try (ResultSet rs = st.executeQuery("select ST_NumGeometries(ST_Accum(the_geom)) from "
+                + "(select 'POINT(1 1)'::geometry the_geom union all select 'POINT(2 2)'::geometry)")) {
+            assertTrue(rs.next());
+            assertEquals(2, rs.getInt(1));
+        }
+        // The marker is not visible in the H2GISVersion remarks
+        try (ResultSet rs = connection.getMetaData().getProcedures(null, null, "H2GISVERSION")) {
+            assertTrue(rs.next());
+            assertFalse(rs.getString("REMARKS").contains("["));
+        }
+    }
     
     @Test
     public void testSFSUtilitiesFirstGeometryFieldName1() throws Exception {
@@ -391,4 +391,50 @@ public class AscReaderDriverTest {
         }
         st.execute("DROP TABLE PRECIP30MIN_ASC IF EXISTS");        
     }
+
+    @Test
+    public void testReadPrecipTiles() throws IOException, SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS PRECIP30MIN, PRECIP30MIN_TILES");
+        AscReaderDriver reader = new AscReaderDriver();
+        reader.read(connection, new File(AscReaderDriverTest.class.getResource("precip30min.asc").getPath()), new EmptyProgressVisitor(), "PRECIP30MIN", 4326);
+        reader = new AscReaderDriver();
+        reader.setTileSize(8);
+        reader.read(connection, new File(AscReaderDriverTest.class.getResource("precip30min.asc").getPath()), new EmptyProgressVisitor(), "PRECIP30MIN_TILES", 4326);
+
+        try(ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM PRECIP30MIN_TILES")) {
+            assertTrue(rs.next());
+            assertEquals(6, rs.getInt(1));
+        }
+        // Check first read cell
+        try(ResultSet rs = st.executeQuery("SELECT ST_TileValue(TILE, ST_SETSRID(ST_MAKEPOINT(-179.75,-80.25), 4326)) FROM PRECIP30MIN_TILES WHERE THE_GEOM && ST_SETSRID(ST_MAKEPOINT(-179.75,-80.25), 4326)")) {
+            assertTrue(rs.next());
+            assertEquals(234, rs.getDouble(1), 0.00001);
+        }
+        // Check last read cell
+        try(ResultSet rs = st.executeQuery("SELECT ST_TileValue(TILE, ST_SETSRID(ST_MAKEPOINT(-172.75, -89.75), 4326)) FROM PRECIP30MIN_TILES WHERE THE_GEOM && ST_SETSRID(ST_MAKEPOINT(-172.75, -89.75), 4326)")) {
+            assertTrue(rs.next());
+            assertEquals(114, rs.getDouble(1), 0.00001);
+        }
+        // Check nodata cell
+        try(ResultSet rs = st.executeQuery("SELECT ST_TileValue(TILE, ST_SETSRID(ST_MAKEPOINT(-177.25, -84.25), 4326)) FROM PRECIP30MIN_TILES WHERE THE_GEOM && ST_SETSRID(ST_MAKEPOINT(-177.25, -84.25), 4326)")) {
+            assertTrue(rs.next());
+            assertNull(rs.getObject(1));
+        }
+        // Tiles expanded to cells must match the cell by cell import
+        try(ResultSet rs = st.executeQuery("SELECT COUNT(*), SUM(Z) FROM ST_ExplodeTiles('PRECIP30MIN_TILES')")) {
+            assertTrue(rs.next());
+            try(ResultSet rsRef = connection.createStatement().executeQuery("SELECT COUNT(*), SUM(Z) FROM PRECIP30MIN")) {
+                assertTrue(rsRef.next());
+                assertEquals(rsRef.getInt(1), rs.getInt(1));
+                assertEquals(rsRef.getDouble(2), rs.getDouble(2), 0.00001);
+            }
+        }
+        try(ResultSet rs = st.executeQuery("SELECT THE_GEOM, Z FROM ST_ExplodeTiles('PRECIP30MIN_TILES', ST_MAKEENVELOPE(-179.9, -80.4, -179.6, -80.1), true)")) {
+            assertTrue(rs.next());
+            GeometryAsserts.assertGeometryEquals("SRID=4326;POLYGON Z((-180 -80 234, -180 -80.5 234, -179.5 -80.5 234, -179.5 -80 234, -180 -80 234))", (Geometry) rs.getObject("THE_GEOM"));
+            assertEquals(234, rs.getDouble("Z"), 0.00001);
+            assertFalse(rs.next());
+        }
+    }
 }
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -40,6 +41,7 @@ import java.sql.Statement;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -155,6 +157,87 @@ public class CSVDriverTest {
         }
     }
 
+    @Test
+    public void testDriverTypedImport() throws SQLException, IOException {
+        File csvFile = new File("target/csv_typed.csv");
+        try (PrintWriter writer = new PrintWriter(csvFile, "UTF-8")) {
+            writer.println("id;big;val;day;wkt;name;lon;lat");
+            writer.println("1;10000000000;1.5;2020-01-02;'POINT (1 2)';'first; name';-2.5;47.1");
+            writer.println("2;20000000000;2;2020-01-03;'LINESTRING (0 0, 1 1)';'multi");
+            writer.println("line';-2.6;47.2");
+            writer.println("3;;;;;;-2.7;47.3");
+        }
+        CSVDriverFunction exp = new CSVDriverFunction();
+        exp.importFile(connection, "MYCSV", csvFile,
+                "typed=true threads=2 fieldSeparator=; fieldDelimiter=' xColumn=lon yColumn=lat srid=4326", true, new EmptyProgressVisitor());
+        try (ResultSet rs = st.executeQuery("SELECT COLUMN_NAME, TYPE_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'MYCSV' ORDER BY ORDINAL_POSITION")) {
+            String[] expected = new String[]{"ID", "INTEGER", "BIG", "BIGINT", "VAL", "DOUBLE", "DAY", "DATE", "WKT", "GEOMETRY",
+                "NAME", "VARCHAR", "LON", "DOUBLE", "LAT", "DOUBLE", "THE_GEOM", "GEOMETRY"};
+            for (int i = 0; i < expected.length; i += 2) {
+                assertTrue(rs.next());
+                assertEquals(expected[i], rs.getString(1));
+                assertEquals(expected[i + 1], rs.getString(2));
+            }
+        }
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*), SUM(ID), SUM(BIG), COUNT(VAL), MAX(DAY) FROM MYCSV")) {
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            assertEquals(6, rs.getInt(2));
+            assertEquals(30000000000L, rs.getLong(3));
+            assertEquals(2, rs.getInt(4));
+            assertEquals("2020-01-03", rs.getString(5));
+        }
+        try (ResultSet rs = st.executeQuery("SELECT NAME, WKT, THE_GEOM FROM MYCSV ORDER BY ID")) {
+            assertTrue(rs.next());
+            assertEquals("first; name", rs.getString(1));
+            assertEquals("SRID=4326;POINT (1 2)", rs.getString(2));
+            assertEquals("SRID=4326;POINT (-2.5 47.1)", rs.getString(3));
+            assertTrue(rs.next());
+            assertEquals("multi\nline", rs.getString(1).replace("\r", ""));
+            assertTrue(rs.next());
+            assertEquals("SRID=4326;POINT (-2.7 47.3)", rs.getString(3));
+        }
+    }
+
+    @Test
+    public void testDriverTypedImportFailure() throws SQLException, IOException {
+        File csvFile = new File("target/csv_typed_failure.csv");
+        try (PrintWriter writer = new PrintWriter(csvFile, "UTF-8")) {
+            writer.println("id;val");
+            writer.println("1;" + Long.MIN_VALUE);
+            for (int i = 2; i < 1000; i++) {
+                writer.println(i + ";" + i);
+            }
+            // Outside of the sample, not an integer
+            writer.println("1000;1.5");
+        }
+        st.execute("DROP TABLE IF EXISTS MYCSV_FAILURE");
+        CSVDriverFunction exp = new CSVDriverFunction();
+        SQLException ex = assertThrows(SQLException.class, () -> exp.importFile(connection, "MYCSV_FAILURE", csvFile,
+                "typed=true sampleSize=10 fieldSeparator=;", true, new EmptyProgressVisitor()));
+        assertTrue(ex.getMessage().contains("column val"), ex.getMessage());
+        assertTrue(ex.getMessage().contains("line 1001"), ex.getMessage());
+        // The rows inserted before the error are not kept
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'MYCSV_FAILURE'")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+        try (PrintWriter writer = new PrintWriter(csvFile, "UTF-8")) {
+            writer.println("id;val");
+            writer.println("1;" + Long.MIN_VALUE);
+        }
+        exp.importFile(connection, "MYCSV_FAILURE", csvFile, "typed=true fieldSeparator=;", true, new EmptyProgressVisitor());
+        try (ResultSet rs = st.executeQuery("SELECT TYPE_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'MYCSV_FAILURE' AND COLUMN_NAME = 'VAL'")) {
+            assertTrue(rs.next());
+            assertEquals("BIGINT", rs.getString(1));
+        }
+        try (ResultSet rs = st.executeQuery("SELECT VAL FROM MYCSV_FAILURE")) {
+            assertTrue(rs.next());
+            assertEquals(Long.MIN_VALUE, rs.getLong(1));
+        }
+        st.execute("DROP TABLE MYCSV_FAILURE");
+    }
+
     @Test
     public void testDriverDeleteTablePOSTGIS(TestInfo testInfo) throws SQLException, IOException {
         String url = "jdbc:postgresql://localhost:5432/orbisgis_db";
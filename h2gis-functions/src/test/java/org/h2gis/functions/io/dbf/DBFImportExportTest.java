@@ -322,4 +322,32 @@ public class DBFImportExportTest {
         assertFalse(rs.next());
         rs.close();
     }
+
+    @Test
+    public void testReadRepeatedValues() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        File dbfFile = new File("target/codes_export.dbf");
+        stat.execute("DROP TABLE IF EXISTS CODES, CODES2");
+        stat.execute("create table codes(id integer, big bigint, val double, code varchar(10), descr varchar(20))");
+        stat.execute("insert into codes select x, x * 10000000000, (x - 500) / 8.0, " +
+                "case mod(x, 4) when 0 then null when 1 then 'A' when 2 then ' é b ' else 'CODE' end, " +
+                "concat('row ', x) from system_range(1, 2000)");
+        stat.execute("CALL DBFWrite('"+dbfFile.getPath()+"', 'codes', true)");
+        DBFDriver dbfDriver = new DBFDriver();
+        dbfDriver.initDriverFromFile(dbfFile);
+        try {
+            // The repeated codes are interned
+            assertSame(dbfDriver.getField(0, 3), dbfDriver.getField(4, 3));
+            assertSame(dbfDriver.getField(1, 3), dbfDriver.getField(1001, 3));
+        } finally {
+            dbfDriver.close();
+        }
+        stat.execute("CALL DBFRead('"+dbfFile.getPath()+"', 'CODES2')");
+        try (ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM CODES A, CODES2 B WHERE A.ID = B.ID " +
+                "AND A.BIG = B.BIG AND A.VAL = B.VAL AND COALESCE(TRIM(A.CODE), '-') = COALESCE(B.CODE, '-') " +
+                "AND A.DESCR = B.DESCR")) {
+            assertTrue(rs.next());
+            assertEquals(2000, rs.getInt(1));
+        }
+    }
 }
@@ -24,6 +24,7 @@ import org.h2.jdbc.JdbcSQLDataException;
 import org.h2.jdbc.JdbcSQLException;
 import org.h2.util.StringUtils;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.InstrumentedProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.h2gis.postgis_jts_osgi.DataSourceFactoryImpl;
@@ -1269,4 +1270,24 @@ public class GeojsonImportExportTest {
             assertGeometryEquals("POINT Z (-1.637021666666667 47.15928666666667 10.2)", res.getObject(1));   
         }
     }
+
+    @Test
+    public void testExportImportMetrics() throws Exception {
+        try (Statement stat = connection.createStatement()) {
+            File geojsonFile = new File("target/points_metrics.geojson");
+            stat.execute("DROP TABLE IF EXISTS POINTS_METRICS, POINTS_METRICS_READ");
+            stat.execute("create table POINTS_METRICS(id int, the_geom GEOMETRY(POINT))");
+            stat.execute("insert into POINTS_METRICS values(1, 'POINT(1 2)'), (2, 'POINT(3 4)'), (3, 'POINT(5 6)')");
+            GeoJsonDriverFunction driver = new GeoJsonDriverFunction();
+            InstrumentedProgressVisitor exportMetrics = new InstrumentedProgressVisitor();
+            driver.exportTable(connection, "POINTS_METRICS", geojsonFile, true, exportMetrics);
+            assertEquals(3, exportMetrics.getRows());
+            InstrumentedProgressVisitor importMetrics = new InstrumentedProgressVisitor();
+            driver.importFile(connection, "POINTS_METRICS_READ", geojsonFile, true, importMetrics);
+            assertEquals(3, importMetrics.getRows());
+            assertEquals(1, importMetrics.getBatchCount());
+            assertEquals(geojsonFile.length(), importMetrics.getBytes());
+            assertTrue(importMetrics.getDatabaseTime() > 0);
+        }
+    }
 }
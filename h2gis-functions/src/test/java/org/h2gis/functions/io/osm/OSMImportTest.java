@@ -23,6 +23,7 @@ package org.h2gis.functions.io.osm;
 import org.h2.util.StringUtils;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.junit.jupiter.api.*;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 
 import java.io.File;
@@ -214,6 +215,93 @@ public class OSMImportTest {
         rs.close();
     }
     
+    @Test
+    public void importPbfOSMFile() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS  OSM_NODE, OSM_NODE_TAG, OSM_WAY,OSM_WAY_TAG, OSM_WAY_NODE, OSM_RELATION, OSM_RELATION_TAG, OSM_NODE_MEMBER, OSM_WAY_MEMBER, OSM_RELATION_MEMBER;");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm.pbf").getPath()) + ", 'OSM');");
+        ResultSet rs = st.executeQuery("SELECT count(TABLE_NAME) FROM INFORMATION_SCHEMA.TABLES where TABLE_NAME LIKE 'OSM%'");
+        rs.next();
+        assertTrue(rs.getInt(1) == 10);
+        rs.close();
+        // Check number
+        rs = st.executeQuery("SELECT count(ID_NODE) FROM OSM_NODE");
+        rs.next();
+        assertEquals(3243, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT count(ID_WAY) FROM OSM_WAY");
+        rs.next();
+        assertEquals(472, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT count(*) FROM OSM_WAY_NODE");
+        rs.next();
+        assertEquals(4180, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT count(*) FROM OSM_WAY_MEMBER");
+        rs.next();
+        assertEquals(79, rs.getInt(1));
+        rs.close();
+        // Check content
+
+        //NODE
+        rs = st.executeQuery("SELECT THE_GEOM FROM OSM_NODE WHERE ID_NODE=462020579");
+        assertTrue(rs.next());
+        assertEquals("SRID=4326;POINT (-2.1213541 47.6347657)", rs.getString("the_geom"));
+        rs.close();
+
+        rs = st.executeQuery("SELECT * FROM OSM_NODE WHERE ID_NODE=670177172");
+        assertTrue(rs.next());
+        // NODE Z extraction
+        assertEquals(91.9,rs.getDouble("ELE"),0.1);
+        assertFalse(rs.wasNull());
+        assertEquals(4326,((Point)rs.getObject("THE_GEOM")).getSRID());
+        rs.close();
+
+        rs = st.executeQuery("SELECT THE_GEOM, USER_NAME, VERSION, CHANGESET FROM OSM_NODE WHERE ID_NODE=3003052969");
+        assertTrue(rs.next());
+        assertEquals("SRID=4326;POINT (-2.121123 47.635276)", rs.getString("the_geom"));
+        assertEquals("lann", rs.getString("USER_NAME"));
+        assertEquals(1, rs.getInt("VERSION"));
+        assertEquals(24599787, rs.getInt("CHANGESET"));
+        rs.close();
+
+        rs = st.executeQuery("SELECT count(ID_RELATION) FROM OSM_RELATION");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        rs.close();
+
+        rs = st.executeQuery("SELECT TAG_VALUE FROM OSM_NODE_TAG WHERE ID_NODE=1983979521 and TAG_KEY='amenity'");
+        assertTrue(rs.next());
+        assertEquals("post_office", rs.getString(1));
+        rs.close();
+
+        rs = st.executeQuery("SELECT TAG_VALUE FROM OSM_WAY_TAG WHERE ID_WAY=296514939 and TAG_KEY='building'");
+        assertTrue(rs.next());
+        assertEquals("yes", rs.getString(1));
+        rs.close();
+    }
+
+    @Test
+    public void importOSMFileWayGeometry() throws SQLException {
+        for (String fileName : new String[]{"saint_jean.osm", "saint_jean.osm.pbf"}) {
+            st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource(fileName).getPath()) + ", 'OSM', null, true, true);");
+            ResultSet rs = st.executeQuery("SELECT count(THE_GEOM), SUM(ST_NPoints(THE_GEOM)) FROM OSM_WAY");
+            assertTrue(rs.next());
+            assertEquals(472, rs.getInt(1));
+            assertEquals(4180, rs.getInt(2));
+            rs.close();
+            rs = st.executeQuery("SELECT count(*) FROM OSM_WAY W WHERE NOT ST_Equals(ST_StartPoint(W.THE_GEOM), "
+                    + "(SELECT N.THE_GEOM FROM OSM_WAY_NODE WN, OSM_NODE N WHERE WN.ID_NODE = N.ID_NODE AND WN.ID_WAY = W.ID_WAY AND WN.NODE_ORDER = 1))");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+            rs.close();
+            rs = st.executeQuery("SELECT THE_GEOM FROM OSM_WAY WHERE ID_WAY=296514939");
+            assertTrue(rs.next());
+            assertEquals(4326, ((Geometry) rs.getObject(1)).getSRID());
+            assertTrue(((Geometry) rs.getObject(1)).isValid());
+            rs.close();
+        }
+    }
+
     @Test
     public void importOSMFileTwice() throws SQLException {
         st.execute("DROP TABLE IF EXISTS  OSM_NODE, OSM_NODE_TAG, OSM_WAY,OSM_WAY_TAG, OSM_WAY_NODE, OSM_RELATION, OSM_RELATION_TAG, OSM_NODE_MEMBER, OSM_WAY_MEMBER, OSM_RELATION_MEMBER;");
@@ -328,6 +416,22 @@ public class OSMImportTest {
         rs.close();
         }
     }
+
+    @Test
+    public void nodeIndexNegativeId() throws IOException {
+        try (OSMNodeIndex nodeIndex = new OSMNodeIndex()) {
+            nodeIndex.put(-12, -2.1213541, 47.6347657);
+            nodeIndex.put(462020579, -2.121123, 47.635276);
+            double[] coordinate = new double[2];
+            assertTrue(nodeIndex.get(-12, coordinate));
+            assertEquals(-2.1213541, coordinate[0], 1e-7);
+            assertEquals(47.6347657, coordinate[1], 1e-7);
+            assertTrue(nodeIndex.get(462020579, coordinate));
+            assertEquals(-2.121123, coordinate[0], 1e-7);
+            assertEquals(47.635276, coordinate[1], 1e-7);
+            assertFalse(nodeIndex.get(-13, coordinate));
+        }
+    }
     
     /**
      * A method to test if the internet network is active.
@@ -23,6 +23,7 @@ import org.h2.util.StringUtils;
 import org.h2.value.ValueGeometry;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.InstrumentedProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.h2gis.functions.io.DriverManager;
@@ -925,4 +926,64 @@ public class SHPImportExportTest {
         assertEquals(coord.z, 5, 10E-1);
         res.close();
     }
+
+    @Test
+    public void exportImportMetrics() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        File shpFile = new File("target/area_metrics.shp");
+        stat.execute("DROP TABLE IF EXISTS AREA, AREA_METRICS");
+        stat.execute("create table area(idarea int primary key, the_geom GEOMETRY(POLYGON))");
+        stat.execute("insert into area values(1, 'POLYGON ((-10 109, 90 109, 90 9, -10 9, -10 109))')");
+        stat.execute("insert into area values(2, 'POLYGON ((90 109, 190 109, 190 9, 90 9, 90 109))')");
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        InstrumentedProgressVisitor exportMetrics = new InstrumentedProgressVisitor();
+        driverFunction.exportTable(connection, "AREA", shpFile, true, exportMetrics);
+        assertEquals(2, exportMetrics.getRows());
+        assertTrue(exportMetrics.getBytes() > 0);
+        InstrumentedProgressVisitor importMetrics = new InstrumentedProgressVisitor();
+        driverFunction.importFile(connection, "AREA_METRICS", shpFile, true, importMetrics);
+        assertEquals(2, importMetrics.getRows());
+        assertEquals(1, importMetrics.getBatchCount());
+        assertEquals(exportMetrics.getBytes(), importMetrics.getBytes());
+        assertTrue(importMetrics.getDatabaseTime() > 0);
+    }
+
+    @Test
+    public void exportTableParallel() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS AREA, AREA_PARALLEL");
+        stat.execute("create table area(idarea int primary key, name varchar(20), the_geom GEOMETRY(POLYGON))");
+        stat.execute("insert into area select x, case when mod(x, 3) = 0 then null else concat('area ', x) end, " +
+                "ST_Buffer(ST_MakePoint(x, mod(x, 7)), 2) from system_range(1, 2500)");
+        File sequentialFile = new File("target/area_sequential.shp");
+        File parallelFile = new File("target/area_parallel.shp");
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        driverFunction.setThreadCount(1);
+        driverFunction.exportTable(connection, "AREA", sequentialFile, true, new EmptyProgressVisitor());
+        driverFunction.setThreadCount(4);
+        driverFunction.exportTable(connection, "AREA", parallelFile, true, new EmptyProgressVisitor());
+        // Records are written in the same order whatever the number of threads
+        for (String extension : new String[]{"shp", "shx", "dbf"}) {
+            assertArrayEquals(Files.readAllBytes(new File("target/area_sequential." + extension).toPath()),
+                    Files.readAllBytes(new File("target/area_parallel." + extension).toPath()));
+        }
+        driverFunction.importFile(connection, "AREA_PARALLEL", parallelFile, true, new EmptyProgressVisitor());
+        try (ResultSet res = stat.executeQuery("SELECT COUNT(*), MAX(IDAREA) FROM AREA_PARALLEL")) {
+            assertTrue(res.next());
+            assertEquals(2500, res.getInt(1));
+            assertEquals(2500, res.getInt(2));
+        }
+    }
+
+    @Test
+    public void exportEmptyTableMetrics() throws SQLException {
+        Statement stat = connection.createStatement();
+        File shpFile = new File("target/area_empty_metrics.shp");
+        stat.execute("DROP TABLE IF EXISTS AREA_EMPTY");
+        stat.execute("create table area_empty(idarea int primary key, the_geom GEOMETRY(POLYGON))");
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        InstrumentedProgressVisitor exportMetrics = new InstrumentedProgressVisitor();
+        assertThrows(SQLException.class, () -> driverFunction.exportTable(connection, "AREA_EMPTY", shpFile, true, exportMetrics));
+        assertEquals(0, exportMetrics.getRows());
+    }
 }
@@ -177,6 +177,42 @@ public class SpatialFunction2Test {
         rs.close();
     }
     
+    @Test
+    public void test_ST_GeometryShadowTable() throws Exception {
+        st.execute("DROP TABLE IF EXISTS SHADOW_BUILDINGS;"
+                + "CREATE TABLE SHADOW_BUILDINGS(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY, HEIGHT DOUBLE);"
+                + "INSERT INTO SHADOW_BUILDINGS VALUES (1, 'POLYGON ((10 10, 10 5, 8 5, 8 10, 10 10))', 1),"
+                + " (2, 'POLYGON ((10 12, 10 11, 8 11, 8 12, 10 12))', 1), (3, 'LINESTRING (20 5, 20 10)', null);");
+        // The second sun position is below the horizon
+        String sun = "'MULTIPOINT((4.71238898038469 0.7853981633974483), (4.71238898038469 -0.1))'::GEOMETRY";
+        ResultSet rs = st.executeQuery("SELECT T.PK, T.SUN_ID, ST_Area(ST_SymDifference(T.THE_GEOM, "
+                + "ST_GeometryShadow(B.THE_GEOM, radians(270), radians(45), 2))) DIFF, T.THE_GEOM "
+                + "FROM ST_GeometryShadowTable('SHADOW_BUILDINGS', " + sun + ", 'HEIGHT * 2') T, SHADOW_BUILDINGS B "
+                + "WHERE T.PK = B.ID ORDER BY T.PK, T.SUN_ID");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+            if (rs.getInt("PK") < 3 && rs.getInt("SUN_ID") == 1) {
+                assertEquals(0, rs.getDouble("DIFF"), 1e-9);
+            } else {
+                assertNull(rs.getObject("THE_GEOM"));
+            }
+        }
+        assertEquals(6, count);
+        rs = st.executeQuery("SELECT SUN_ID, ST_Area(THE_GEOM), ST_NumGeometries(THE_GEOM) "
+                + "FROM ST_GeometryShadowTable('SHADOW_BUILDINGS', " + sun + ", 'HEIGHT * 2', true) ORDER BY SUN_ID");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertEquals(12, rs.getDouble(2), 1e-9);
+        assertEquals(2, rs.getInt(3));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertNull(rs.getObject(2));
+        assertFalse(rs.next());
+        rs.close();
+        st.execute("DROP TABLE SHADOW_BUILDINGS");
+    }
+
     @Test
     public void test_ST_FlipCoordinates1() throws Exception {
         ResultSet rs = st.executeQuery("SELECT ST_FlipCoordinates('POINT(1 2)');");
@@ -982,6 +1018,26 @@ public class SpatialFunction2Test {
                 "ST_UPDATEZ(ST_FORCE3D(ST_buffer('SRID=2154;POINT(0 0)'::GEOMETRY, 10, 120)), 12), 50, 8) as result");
         });
     }
+
+    @Test
+    public void test_ST_SvfTable() throws Exception {
+        // Two 12 m high walls along x = -10 and x = 10, the geometry column name must be quoted
+        st.execute("DROP TABLE IF EXISTS SVF_POINTS, SVF_OBSTACLES;"
+                + "CREATE TABLE SVF_POINTS(ID INTEGER PRIMARY KEY, \"THE GEOM\" GEOMETRY(POINTZ));"
+                + "INSERT INTO SVF_POINTS VALUES (1, 'POINTZ(0 0 0)'), (2, 'POINTZ(2 1 0)'), (3, 'POINTZ(40 40 0)'), (4, 'POINTZ(-9 0 0)');"
+                + "CREATE TABLE SVF_OBSTACLES(\"THE GEOM\" GEOMETRY);"
+                + "INSERT INTO SVF_OBSTACLES VALUES ('LINESTRINGZ(-10 -1000 12, -10 1000 12)'), ('LINESTRINGZ(10 -1000 12, 10 1000 12)');");
+        double[] expected = new double[]{0.6403, 0.6312, 0.9646, 0.4645};
+        ResultSet rs = st.executeQuery("SELECT PK, SVF FROM ST_SvfTable('SVF_POINTS', 'SVF_OBSTACLES', 100, 120) ORDER BY PK");
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(rs.next());
+            assertEquals(i + 1, rs.getInt("PK"));
+            assertEquals(expected[i], rs.getDouble("SVF"), 1e-4);
+        }
+        assertFalse(rs.next());
+        rs.close();
+        st.execute("DROP TABLE SVF_POINTS, SVF_OBSTACLES");
+    }
     
     
     @Test
@@ -1116,6 +1172,29 @@ public class SpatialFunction2Test {
                 + "150);");
         });       
     }
+
+    @Test
+    public void test_ST_IsovistTable() throws Exception {
+        st.execute("DROP TABLE IF EXISTS ISOVIST_POINTS, ISOVIST_WALLS;"
+                + "CREATE TABLE ISOVIST_POINTS(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY(POINT));"
+                + "INSERT INTO ISOVIST_POINTS VALUES (1, 'POINT(0 0)'), (2, 'POINT(10 20)');"
+                + "CREATE TABLE ISOVIST_WALLS(THE_GEOM GEOMETRY);"
+                + "INSERT INTO ISOVIST_WALLS VALUES ('LINESTRING (100 0, 100 100, 0 100)'), ('LINESTRING (1000 1000, 1100 1000)');");
+        ResultSet rs = st.executeQuery("SELECT ST_AREA(ST_SYMDIFFERENCE(T.THE_GEOM, "
+                + "ST_Isovist(P.THE_GEOM, 'LINESTRING (100 0, 100 100, 0 100)'::GEOMETRY, 150))) DIFF "
+                + "FROM ST_IsovistTable('ISOVIST_POINTS', 'ISOVIST_WALLS', 150) T, ISOVIST_POINTS P WHERE T.PK = P.ID");
+        int count = 0;
+        while (rs.next()) {
+            assertEquals(0, rs.getDouble("DIFF"), 1e-6);
+            count++;
+        }
+        assertEquals(2, count);
+        rs = st.executeQuery("SELECT THE_GEOM FROM ST_IsovistTable('ISOVIST_POINTS', 'ISOVIST_WALLS', 150, 0, PI() / 2) WHERE PK = 1");
+        assertTrue(rs.next());
+        assertEquals(10000, ((Geometry) rs.getObject(1)).getArea(), 1e-6);
+        rs.close();
+        st.execute("DROP TABLE ISOVIST_POINTS, ISOVIST_WALLS");
+    }
     
     
 }
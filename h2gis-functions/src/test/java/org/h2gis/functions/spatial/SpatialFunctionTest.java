@@ -427,6 +427,87 @@ public class SpatialFunctionTest {
         st.execute("DROP TABLE input_table;");
     }
 
+    @Test
+    public void test_ST_PredicatesRepeatedGeometry() throws Exception {
+        // The same polygon is given for each point, its prepared form is reused
+        st.execute("DROP TABLE IF EXISTS area, pts;"
+                + "CREATE TABLE area(the_geom GEOMETRY(POLYGON));"
+                + "INSERT INTO area VALUES('POLYGON((0 0, 10 0, 10 10, 7 10, 7 3, 3 3, 3 10, 0 10, 0 5, 0 2, 0 0))');"
+                + "CREATE TABLE pts AS SELECT ST_MakePoint(x.X - 0.5, y.X - 0.5) the_geom"
+                + " FROM SYSTEM_RANGE(1, 10) x, SYSTEM_RANGE(1, 10) y;");
+        ResultSet rs = st.executeQuery("SELECT SUM(CASE WHEN ST_Intersects(a.the_geom, p.the_geom) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_Intersects(p.the_geom, a.the_geom) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_Contains(a.the_geom, p.the_geom) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_Within(p.the_geom, a.the_geom) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_Covers(a.the_geom, p.the_geom) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_DWithin(a.the_geom, p.the_geom, 0) THEN 1 ELSE 0 END),"
+                + "SUM(CASE WHEN ST_DWithin(p.the_geom, a.the_geom, 0.5) THEN 1 ELSE 0 END)"
+                + " FROM area a, pts p");
+        assertTrue(rs.next());
+        assertEquals(72, rs.getInt(1));
+        assertEquals(72, rs.getInt(2));
+        assertEquals(72, rs.getInt(3));
+        assertEquals(72, rs.getInt(4));
+        assertEquals(72, rs.getInt(5));
+        assertEquals(72, rs.getInt(6));
+        assertEquals(88, rs.getInt(7));
+        st.execute("DROP TABLE area, pts;");
+    }
+
+    @Test
+    public void test_ST_SpatialJoin() throws Exception {
+        st.execute("DROP TABLE IF EXISTS JOIN_AREAS, JOIN_POINTS;"
+                + "CREATE TABLE JOIN_AREAS(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO JOIN_AREAS VALUES (10, 'POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))'),"
+                + " (20, 'POLYGON ((5 5, 15 5, 15 15, 5 15, 5 5))'), (30, 'POLYGON ((100 100, 110 100, 110 110, 100 100))');"
+                + "CREATE TABLE JOIN_POINTS(THE_GEOM GEOMETRY);"
+                + "INSERT INTO JOIN_POINTS VALUES ('POINT (1 1)'), ('POINT (7 7)'), ('POINT (14 14)'), ('POINT (10 2)'), (NULL), ('POINT (50 50)');");
+        ResultSet rs = st.executeQuery("SELECT PK_A, PK_B FROM ST_SpatialJoin('JOIN_POINTS', 'JOIN_AREAS', 'INTERSECTS')");
+        int[][] expected = new int[][]{{1, 10}, {2, 10}, {2, 20}, {3, 20}, {4, 10}};
+        for (int[] pair : expected) {
+            assertTrue(rs.next());
+            assertEquals(pair[0], rs.getInt(1));
+            assertEquals(pair[1], rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        // The point on the boundary is not contained
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('JOIN_AREAS', 'JOIN_POINTS', 'ST_Contains')");
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('JOIN_POINTS', 'JOIN_AREAS', 'DWITHIN', 50)");
+        assertTrue(rs.next());
+        assertEquals(9, rs.getInt(1));
+        assertThrows(SQLException.class, () -> st.executeQuery("SELECT * FROM ST_SpatialJoin('JOIN_POINTS', 'JOIN_AREAS', 'DISJOINT')"));
+        rs.close();
+        st.execute("DROP TABLE JOIN_AREAS, JOIN_POINTS");
+    }
+
+    @Test
+    public void test_ST_KNearestNeighbors() throws Exception {
+        st.execute("DROP TABLE IF EXISTS KNN_QUERY, KNN_TARGET;"
+                + "CREATE TABLE KNN_QUERY(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO KNN_QUERY VALUES (1, 'POINT (0 0)'), (2, 'POINT (10 0)'), (3, NULL);"
+                + "CREATE TABLE KNN_TARGET(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO KNN_TARGET VALUES (10, 'POINT (1 0)'), (20, 'POINT (3 0)'),"
+                + " (30, 'POLYGON ((100 0, 110 0, 110 10, 100 0))'), (40, 'POINT (0 5)');");
+        ResultSet rs = st.executeQuery("SELECT PK_A, PK_B, RANK, DISTANCE FROM ST_KNearestNeighbors('KNN_QUERY', 'KNN_TARGET', 2)");
+        double[][] expected = new double[][]{{1, 10, 1, 1}, {1, 20, 2, 3}, {2, 20, 1, 7}, {2, 10, 2, 9}};
+        for (double[] row : expected) {
+            assertTrue(rs.next());
+            assertEquals((int) row[0], rs.getInt(1));
+            assertEquals((int) row[1], rs.getInt(2));
+            assertEquals((int) row[2], rs.getInt(3));
+            assertEquals(row[3], rs.getDouble(4), 1e-12);
+        }
+        assertFalse(rs.next());
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_KNearestNeighbors('KNN_QUERY', 'KNN_TARGET', 3, 4)");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertThrows(SQLException.class, () -> st.executeQuery("SELECT * FROM ST_KNearestNeighbors('KNN_QUERY', 'KNN_TARGET', 0)"));
+        rs.close();
+        st.execute("DROP TABLE KNN_QUERY, KNN_TARGET");
+    }
+
     @Test
     public void test_ST_XYZMinMax() throws Exception {
         st.execute("DROP TABLE IF EXISTS input_table;"
@@ -2507,4 +2588,84 @@ public class SpatialFunctionTest {
         assertGeometryEquals("SRID=4326;POLYGON ((28 0, 28 42, 84 42, 84 0, 28 0))", rs.getObject(1));
         st.execute("drop table forests");
     }
+
+    @Test
+    public void test_ST_Hilbert() throws Exception {
+        ResultSet rs = st.executeQuery("SELECT ST_Hilbert('POINT (0 0)', 'POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))'),"
+                + " ST_Hilbert('POINT (0 1)', 'POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))'),"
+                + " ST_Hilbert('LINESTRING (1 1, 0.5 0.5)', 'LINESTRING (0 0, 1 1)'),"
+                + " ST_Hilbert('POINT (2 -1)', 'POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))'),"
+                + " ST_Hilbert(NULL, 'POINT (0 0)')");
+        assertTrue(rs.next());
+        assertEquals(0L, rs.getLong(1));
+        assertEquals(1431655765L, rs.getLong(2));
+        assertTrue(rs.getLong(3) > rs.getLong(2));
+        // Outside of the extent, the key of the closest corner
+        assertEquals(4294967295L, rs.getLong(4));
+        assertNull(rs.getObject(5));
+        rs.close();
+    }
+
+    @Test
+    public void test_ST_ClusterTable() throws Exception {
+        st.execute("DROP TABLE IF EXISTS CLUSTER_POINTS, CLUSTER_KEYS;"
+                + "CREATE TABLE CLUSTER_POINTS(THE_GEOM GEOMETRY, NAME VARCHAR);"
+                + "INSERT INTO CLUSTER_POINTS VALUES (NULL, 'e'), ('POINT (1 0)', 'd'), ('POINT (0 0)', 'a'),"
+                + " ('POINT (1 1)', 'c'), ('POINT (0 1)', 'b');"
+                + "CREATE TABLE CLUSTER_KEYS(ID SERIAL PRIMARY KEY, THE_GEOM GEOMETRY, NAME VARCHAR);"
+                + "INSERT INTO CLUSTER_KEYS(THE_GEOM, NAME) SELECT THE_GEOM, NAME FROM CLUSTER_POINTS;");
+        ResultSet rs = st.executeQuery("SELECT ST_ClusterTable('CLUSTER_POINTS')");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        rs = st.executeQuery("SELECT NAME FROM CLUSTER_POINTS");
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            assertTrue(rs.next());
+            assertEquals(name, rs.getString(1));
+        }
+        assertFalse(rs.next());
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ClusterTable('CLUSTER_KEYS')"));
+        st.execute("CALL ST_ClusterTable('CLUSTER_KEYS', true)");
+        rs = st.executeQuery("SELECT ID, NAME FROM CLUSTER_KEYS");
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            assertTrue(rs.next());
+            assertEquals(name.charAt(0) - 'a' + 1, rs.getInt(1));
+            assertEquals(name, rs.getString(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        // The key values are reassigned, a referenced table is refused
+        st.execute("CREATE TABLE CLUSTER_REFS(ID_KEY INTEGER REFERENCES CLUSTER_KEYS(ID));"
+                + "INSERT INTO CLUSTER_REFS VALUES (1);");
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ClusterTable('CLUSTER_KEYS', true)"));
+        rs = st.executeQuery("SELECT COUNT(*) FROM CLUSTER_KEYS");
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        rs.close();
+        // Within the transaction of the caller nothing is committed
+        connection.setAutoCommit(false);
+        try {
+            st.execute("INSERT INTO CLUSTER_POINTS VALUES ('POINT (0 0)', 'f');"
+                    + "CALL ST_ClusterTable('CLUSTER_POINTS')");
+            rs = st.executeQuery("SELECT NAME FROM CLUSTER_POINTS");
+            for (String name : new String[]{"a", "f", "b", "c", "d", "e"}) {
+                assertTrue(rs.next());
+                assertEquals(name, rs.getString(1));
+            }
+            assertFalse(rs.next());
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        rs = st.executeQuery("SELECT NAME FROM CLUSTER_POINTS");
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            assertTrue(rs.next());
+            assertEquals(name, rs.getString(1));
+        }
+        assertFalse(rs.next());
+        rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE 'CLUSTER_POINTS_CLUSTER%'");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        st.execute("DROP TABLE CLUSTER_REFS, CLUSTER_POINTS, CLUSTER_KEYS");
+    }
 }
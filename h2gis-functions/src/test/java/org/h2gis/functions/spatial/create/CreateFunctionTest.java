@@ -750,6 +750,41 @@ public class CreateFunctionTest {
         st.execute("DROP TABLE grid;");
     }
 
+    @Test
+    public void testST_MakeGridIntersectingCells() throws Exception {
+        st.execute("DROP TABLE IF EXISTS input_table,grid;"
+                + "CREATE TABLE input_table(the_geom Geometry);"
+                + "INSERT INTO input_table VALUES ('POLYGON((0 0, 0.5 0, 0.5 0.5, 0 0.5, 0 0))'),"
+                + "('LINESTRING(2.5 2.5, 4.5 2.5)'), ('POINT(9.5 9.5)');"
+                + "CREATE SPATIAL INDEX ON input_table(the_geom);");
+        ResultSet rs = st.executeQuery("select count(*) from st_makegrid('input_table', 1, 1);");
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        rs.close();
+        st.execute("CREATE TABLE grid AS SELECT * FROM st_makegrid('input_table', 1, 1, false, true);");
+        rs = st.executeQuery("select ID, ID_COL, ID_ROW from grid;");
+        int[][] expected = new int[][]{{0, 1, 1}, {22, 3, 3}, {23, 4, 3}, {24, 5, 3}, {99, 10, 10}};
+        for (int[] cell : expected) {
+            assertTrue(rs.next());
+            assertEquals(cell[0], rs.getInt(1));
+            assertEquals(cell[1], rs.getInt(2));
+            assertEquals(cell[2], rs.getInt(3));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        rs = st.executeQuery("select the_geom from grid where ID = 23;");
+        rs.next();
+        assertGeometryEquals("POLYGON((3 2, 4 2, 4 3, 3 3, 3 2))", rs.getObject(1));
+        rs.close();
+        // Two grids computed at the same time do not share their cells
+        rs = st.executeQuery("select count(*) from st_makegrid('input_table', 1, 1) a, "
+                + "st_makegrid('POLYGON((0 0, 2 0, 2 2, 0 0))'::GEOMETRY, 1, 1, false, true) b;");
+        rs.next();
+        assertEquals(400, rs.getInt(1));
+        rs.close();
+        st.execute("DROP TABLE input_table, grid;");
+    }
+
     @Test
     public void test_ST_MakePolygon1() throws Exception {
         ResultSet rs = st.executeQuery("SELECT ST_MakePolygon('LINESTRING (100 250, 100 350, 200 350, 200 250, 100 250)'::GEOMETRY );");
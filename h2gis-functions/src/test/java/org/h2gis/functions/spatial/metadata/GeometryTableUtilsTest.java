@@ -420,6 +420,34 @@ public class GeometryTableUtilsTest {
         assertEquals(4326, GeometryTableUtilities.getSRID(connection, TableLocation.parse("T_SRID")));
     }
 
+    /**
+     * The cached metadata must follow the schema and the data changes
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testGeometryColumnsCacheInvalidation() throws SQLException {
+        st.execute("drop table IF EXISTS T_SRID");
+        st.execute("create table T_SRID (the_geom GEOMETRY)");
+        try (ResultSet rs = st.executeQuery("SELECT SRID, TYPE FROM GEOMETRY_COLUMNS WHERE F_TABLE_NAME = 'T_SRID'")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt("srid"));
+            assertEquals("GEOMETRY", rs.getString("type"));
+        }
+        st.execute("insert into T_SRID VALUES(ST_GEOMFROMTEXT('POINT (2 47)',4326))");
+        assertEquals(4326, GeometryTableUtilities.getSRID(connection, TableLocation.parse("T_SRID")));
+        st.execute("alter table T_SRID add column the_geom2 GEOMETRY(LINESTRING Z, 2154)");
+        try (ResultSet rs = st.executeQuery("SELECT SRID, TYPE, COORD_DIMENSION FROM GEOMETRY_COLUMNS WHERE F_TABLE_NAME = 'T_SRID' AND F_GEOMETRY_COLUMN = 'THE_GEOM2'")) {
+            assertTrue(rs.next());
+            assertEquals(2154, rs.getInt("srid"));
+            assertEquals("LINESTRINGZ", rs.getString("type"));
+            assertEquals(3, rs.getInt("coord_dimension"));
+        }
+        st.execute("drop table T_SRID");
+        st.execute("create table T_SRID (the_geom GEOMETRY(POINT, 3857))");
+        assertEquals(3857, GeometryTableUtilities.getSRID(connection, TableLocation.parse("T_SRID")));
+    }
+
     /**
      * Check constraint pass
      *
@@ -543,6 +571,36 @@ public class GeometryTableUtilsTest {
                 GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "GEOM").getEnvelopeInternal());
     }
 
+    @Test
+    public void testEstimatedExtentWithoutIndexModified() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS GEOMTABLE_EXTENT; CREATE TABLE GEOMTABLE_EXTENT (THE_GEOM GEOMETRY);");
+        st.execute("INSERT INTO GEOMTABLE_EXTENT VALUES ('POINT (1 1)'), ('POINT (2 2)')");
+        TableLocation tableLocation = TableLocation.parse("GEOMTABLE_EXTENT", DBTypes.H2GIS);
+        assertEquals(new Envelope(1.0, 2.0, 1.0, 2.0),
+                GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "THE_GEOM").getEnvelopeInternal());
+        // The extent is kept until the table is modified
+        st.execute("INSERT INTO GEOMTABLE_EXTENT VALUES ('POINT (10 -5)')");
+        assertEquals(new Envelope(1.0, 10.0, -5.0, 2.0),
+                GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "THE_GEOM").getEnvelopeInternal());
+        st.execute("DELETE FROM GEOMTABLE_EXTENT WHERE ST_X(THE_GEOM) > 5");
+        assertEquals(new Envelope(1.0, 2.0, 1.0, 2.0),
+                GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "THE_GEOM").getEnvelopeInternal());
+        // The extent of rolled back rows is not kept
+        connection.setAutoCommit(false);
+        try {
+            st.execute("INSERT INTO GEOMTABLE_EXTENT VALUES ('POINT (20 20)')");
+            assertEquals(new Envelope(1.0, 20.0, 1.0, 20.0),
+                    GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "THE_GEOM").getEnvelopeInternal());
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        assertEquals(new Envelope(1.0, 2.0, 1.0, 2.0),
+                GeometryTableUtilities.getEstimatedExtent(connection, tableLocation, "THE_GEOM").getEnvelopeInternal());
+        st.execute("DROP TABLE GEOMTABLE_EXTENT");
+    }
+
     @Test
     public void testEstimatedExtentWithIndex() throws SQLException {
         Statement st = connection.createStatement();
@@ -26,17 +26,28 @@ import org.h2.value.ValueGeometry;
 import org.h2gis.functions.DummyFunction;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
+import org.h2gis.functions.spatial.aggregate.GeometryAccumulator;
+import org.h2gis.functions.spatial.aggregate.ST_UnionAgg;
 import org.h2gis.functions.spatial.convert.ST_GeomFromText;
 import org.h2gis.functions.spatial.convert.ST_PointFromText;
 import org.h2gis.utilities.GeometryTypeCodes;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.io.WKTReader;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
 import static org.junit.jupiter.api.Assertions.*;
@@ -106,6 +117,35 @@ public class OGCSpatialFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_UnionAgg() throws Exception {
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_Area(ST_UnionAgg(footprint)), ST_SRID(ST_UnionAgg(footprint)) FROM buildings GROUP BY SUBSTRING(address,4)");
+        assertTrue(rs.next());
+        assertEquals(16, rs.getDouble(1), 1e-8);
+        assertEquals(101, rs.getInt(2));
+        rs.close();
+        rs = st.executeQuery("SELECT ST_UnionAgg(footprint) FROM buildings WHERE 1 = 0");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        rs.close();
+    }
+
+    @Test
+    public void test_ST_UnionAggBatches() throws Exception {
+        // Small batches to merge several partial unions
+        ST_UnionAgg union = new ST_UnionAgg(3);
+        WKTReader reader = new WKTReader();
+        for (int i = 0; i < 50; i++) {
+            union.add(reader.read("POLYGON ((" + i + " 0, " + (i + 1.5) + " 0, " + (i + 1.5) + " 1, " + i + " 1, " + i + " 0))"));
+        }
+        union.add(null);
+        Geometry result = union.getResult();
+        assertEquals("Polygon", result.getGeometryType());
+        assertEquals(50.5, result.getArea(), 1e-12);
+        assertEquals(new Envelope(0, 50.5, 0, 1), result.getEnvelopeInternal());
+    }
+
     @Test
     public void test_ST_AccumArea() throws Exception {
         Statement st = connection.createStatement();
@@ -176,6 +216,59 @@ public class OGCSpatialFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_AccumPointsZ() throws Exception {
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_Accum(ST_MakePoint(X, X * 2, X * 3)), ST_Accum(ST_MakeLine(ST_MakePoint(X, 0), ST_MakePoint(X, 1)))"
+                + " FROM SYSTEM_RANGE(1, 1000)");
+        assertTrue(rs.next());
+        Geometry points = (Geometry) rs.getObject(1);
+        assertTrue(points instanceof MultiPoint);
+        assertEquals(1000, points.getNumGeometries());
+        assertEquals(new Coordinate(500, 1000, 1500), points.getGeometryN(499).getCoordinate());
+        assertEquals(1500, points.getGeometryN(499).getCoordinate().getZ(), 0);
+        Geometry lines = (Geometry) rs.getObject(2);
+        assertTrue(lines instanceof MultiLineString);
+        assertEquals(1000, lines.getNumGeometries());
+        assertGeometryEquals("LINESTRING (1000 0, 1000 1)", lines.getGeometryN(999));
+        rs.close();
+    }
+
+    @Test
+    public void test_GeometryAccumulatorSpill() throws Exception {
+        WKTReader reader = new WKTReader();
+        GeometryAccumulator accumulator = new GeometryAccumulator(1024);
+        List<Geometry> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(reader.read("POINT (" + i + " " + i + ")"));
+        }
+        for (int i = 0; i < 100; i++) {
+            expected.add(reader.read("POLYGON ((" + i + " 0, " + i + " 1, " + (i + 1) + " 1, " + i + " 0))"));
+        }
+        for (Geometry geometry : expected) {
+            accumulator.add(geometry);
+        }
+        assertTrue(accumulator.isSpilled());
+        assertEquals(200, accumulator.size());
+        assertEquals(0, accumulator.getMinDimension());
+        assertEquals(2, accumulator.getMaxDimension());
+        List<Geometry> geometries = accumulator.getGeometries(new GeometryFactory());
+        assertEquals(expected.size(), geometries.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).equalsExact(geometries.get(i)));
+        }
+        // The temporary file is deleted once read
+        assertFalse(accumulator.isSpilled());
+        // and when the aggregate is abandoned
+        GeometryAccumulator abandoned = new GeometryAccumulator(1024);
+        for (Geometry geometry : expected) {
+            abandoned.add(geometry);
+        }
+        assertTrue(abandoned.isSpilled());
+        abandoned.close();
+        assertFalse(abandoned.isSpilled());
+    }
+
     @Test
     public void testFunctionRemarks() throws SQLException {
         H2GISFunctions.registerFunction(connection.createStatement(), new DummyFunction(), "");
@@ -294,6 +294,30 @@ public class TopographyTest {
     }
 
 
+    @Test
+    public void testST_TriangleContouringOrder() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS TIN");
+            st.execute("CREATE TABLE TIN AS SELECT X ID, 'POLYGON ((-9.19 3.7 1, 0.3 1.41 4.4, -5.7 -4.15 4, -9.19 3.7 1))'::geometry the_geom FROM SYSTEM_RANGE(1, 5000)");
+            ResultSet rs = st.executeQuery("select count(*) from ST_TriangleContouring('TIN', 2,3,4,5) WHERE ID = 1");
+            assertTrue(rs.next());
+            int trianglesCount = rs.getInt(1);
+            rs = st.executeQuery("select ID from ST_TriangleContouring('TIN', 2,3,4,5)");
+            // Triangles of the many blocks are returned in the order of the input table
+            int count = 0;
+            long lastId = 0;
+            while (rs.next()) {
+                assertTrue(rs.getLong(1) >= lastId);
+                lastId = rs.getLong(1);
+                count++;
+            }
+            assertEquals(5000 * trianglesCount, count);
+        } finally {
+            st.close();
+        }
+    }
+
     @Test
     public void testST_TriangleContouringWithZDoubleRange() throws SQLException {
         Statement st = connection.createStatement();
@@ -457,4 +481,44 @@ public class TopographyTest {
             st.close();
         }
     }
+
+    @Test
+    public void testST_DrapeSameXYOtherZ() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            // The two TIN have the same XY, the index of the first one must not be reused
+            ResultSet rs = st.executeQuery("select st_drape('POINT (9 2)'::GEOMETRY, 'POLYGON Z((0 0 0, 10 0 0, 10 10 10, 0 0 0))'::geometry)");
+            rs.next();
+            assertGeometryEquals("POINT Z (9 2 2)", rs.getObject(1));
+            rs = st.executeQuery("select st_drape('POINT (9 2)'::GEOMETRY, 'POLYGON Z((0 0 0, 10 0 0, 10 10 20, 0 0 0))'::geometry)");
+            rs.next();
+            assertGeometryEquals("POINT Z (9 2 4)", rs.getObject(1));
+        } finally {
+            st.close();
+        }
+    }
+
+    @Test
+    public void testST_DrapeTable() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS DRAPE_TIN, DRAPE_INPUT;"
+                    + "CREATE TABLE DRAPE_TIN(THE_GEOM GEOMETRY(POLYGONZ));"
+                    + "INSERT INTO DRAPE_TIN VALUES ('POLYGONZ ((0 0 0, 10 0 0, 10 10 10, 0 0 0))'), ('POLYGONZ ((10 10 10, 10 0 0, 15 0 0, 10 10 0))');"
+                    + "CREATE TABLE DRAPE_INPUT(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY);"
+                    + "INSERT INTO DRAPE_INPUT VALUES (1, 'LINESTRING (-5 5, 15 5)'), (2, 'POINT (9 2)'), (3, 'POLYGON ((1 8, 8 8, 8 2, 1 2, 1 8))');");
+            ResultSet rs = st.executeQuery("SELECT * FROM ST_DrapeTable('DRAPE_INPUT', 'DRAPE_TIN') ORDER BY PK");
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt("PK"));
+            assertGeometryEquals("LINESTRING Z (-5 5 0, 5 5 5, 10 5 5, 12.5 5 5, 15 5 0)", rs.getObject("THE_GEOM"));
+            assertTrue(rs.next());
+            assertGeometryEquals("POINT Z (9 2 2)", rs.getObject("THE_GEOM"));
+            assertTrue(rs.next());
+            assertGeometryEquals("POLYGON Z((1 2 0, 1 8 0, 8 8 8, 8 2 2, 2 2 2, 1 2 0))", rs.getObject("THE_GEOM"));
+            assertFalse(rs.next());
+            st.execute("DROP TABLE DRAPE_TIN, DRAPE_INPUT");
+        } finally {
+            st.close();
+        }
+    }
 }
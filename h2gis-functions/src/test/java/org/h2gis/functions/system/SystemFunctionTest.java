@@ -25,10 +25,12 @@ import org.h2.jdbc.JdbcSQLException;
 import org.h2.jdbc.JdbcSQLNonTransientException;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.junit.jupiter.api.*;
+import org.locationtech.jts.geom.Geometry;
 
 import java.sql.Array;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -139,4 +141,56 @@ public class SystemFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_ParallelApply() throws Exception {
+        st.execute("DROP TABLE IF EXISTS APPLY_SOURCE, APPLY_TARGET, APPLY_AREA, APPLY_SRID;"
+                + "CREATE TABLE APPLY_SOURCE(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY, D DOUBLE PRECISION);"
+                + "INSERT INTO APPLY_SOURCE SELECT X, ST_MakePoint(X, X), X / 10.0 FROM SYSTEM_RANGE(1, 2500);"
+                + "INSERT INTO APPLY_SOURCE VALUES (2501, NULL, 1);");
+        st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_Buffer(THE_GEOM, D)', 'APPLY_TARGET', 4)");
+        ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(B.THE_GEOM) FROM APPLY_SOURCE A, APPLY_TARGET B"
+                + " WHERE A.ID = B.ID AND (B.THE_GEOM IS NULL OR ST_Equals(B.THE_GEOM, ST_Buffer(A.THE_GEOM, A.D)))");
+        assertTrue(rs.next());
+        assertEquals(2501, rs.getInt(1));
+        assertEquals(2500, rs.getInt(2));
+        st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_Area(ST_Expand(\"THE_GEOM\", 1, 2))', 'APPLY_AREA')");
+        rs = st.executeQuery("SELECT RESULT FROM APPLY_AREA WHERE ID = 1");
+        assertTrue(rs.next());
+        assertEquals(8, rs.getDouble(1), 1e-12);
+        // The geometry constants are converted like H2 does, EWKT with an optional SRID
+        st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_SRID(''SRID=4326;POINT(1 1)'')', 'APPLY_SRID')");
+        rs = st.executeQuery("SELECT RESULT FROM APPLY_SRID WHERE ID = 1");
+        assertTrue(rs.next());
+        assertEquals(4326, rs.getInt(1));
+        st.execute("DROP TABLE APPLY_SRID");
+        st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_SRID(''POINT(1 1)'')', 'APPLY_SRID')");
+        rs = st.executeQuery("SELECT RESULT FROM APPLY_SRID WHERE ID = 1");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_EstimatedExtent(''APPLY_SOURCE'')', 'APPLY_ERROR')"));
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ParallelApply('APPLY_SOURCE', 'ST_Buffer(THE_GEOM, ', 'APPLY_ERROR')"));
+        // The overload is chosen with the types of the arguments, H2 does not count the connection parameter
+        st.execute("DROP TABLE IF EXISTS APPLY_BIG, APPLY_OVERLOADED;"
+                + "CREATE TABLE APPLY_BIG(ID BIGINT PRIMARY KEY, THE_GEOM GEOMETRY, D DOUBLE PRECISION);"
+                + "INSERT INTO APPLY_BIG VALUES (5000000001, 'LINESTRING(0 0, 1 1, 2 2)', 2);"
+                + "CREATE ALIAS APPLY_OVERLOAD FOR \"" + SystemFunctionTest.class.getName() + ".applyOverload\"");
+        st.execute("CALL ST_ParallelApply('APPLY_BIG', 'APPLY_OVERLOAD(THE_GEOM, D)', 'APPLY_OVERLOADED')");
+        rs = st.executeQuery("SELECT ID, RESULT FROM APPLY_OVERLOADED");
+        assertTrue(rs.next());
+        assertEquals(5000000001L, rs.getLong(1));
+        assertEquals(6, rs.getDouble(2), 1e-12);
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ParallelApply('APPLY_BIG', 'APPLY_OVERLOAD(THE_GEOM)', 'APPLY_ERROR')"));
+        assertThrows(SQLException.class, () -> st.execute("CALL ST_ParallelApply('APPLY_BIG', 'APPLY_OVERLOAD(TRUE, D)', 'APPLY_ERROR')"));
+        rs.close();
+        st.execute("DROP ALIAS APPLY_OVERLOAD");
+        st.execute("DROP TABLE APPLY_SOURCE, APPLY_TARGET, APPLY_AREA, APPLY_SRID, APPLY_BIG, APPLY_OVERLOADED");
+    }
+
+    public static double applyOverload(Geometry geometry, double factor) {
+        return geometry.getNumPoints() * factor;
+    }
+
+    public static double applyOverload(Connection connection, Geometry geometry) {
+        return -1;
+    }
 }
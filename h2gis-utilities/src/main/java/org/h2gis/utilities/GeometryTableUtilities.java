@@ -702,7 +702,8 @@ public class GeometryTableUtilities {
      * Compute the 'estimated' extent of the given spatial table. In case of
      * POSTGIS : the estimated is taken from the geometry column's statistics.
      * In case of H2GIS : the estimated is taken from the spatial index of the
-     * geometry column. If the estimated extend is null the extent is computed.
+     * geometry column. If the estimated extend is null the extent is computed
+     * and kept until the table is modified.
      *
      * @param connection
      * @param tableLocation
@@ -745,16 +746,12 @@ public class GeometryTableUtilities {
                     }
                 }
             }
-            query = new StringBuilder("SELECT  ENVELOPE(");
-            query.append(TableLocation.quoteIdentifier(geometryColumnName)).append(") FROM ").append(tableLocation.getTable());
-            try (ResultSet rsEnv = connection.createStatement().executeQuery(query.toString())) {
-                if (rsEnv.next()) {
-                    result = (Geometry) rsEnv.getObject(1);
-                    if (result != null) {
-                        result.setSRID(srid);
-                        return result;
-                    }
-                }
+            // No spatial index, the extent is computed once and kept until the table is modified
+            Envelope envelope = H2ExtentCache.getExtent(connection, tableLocation, geometryColumnName);
+            if (envelope != null) {
+                result = new GeometryFactory().toGeometry(envelope);
+                result.setSRID(srid);
+                return result;
             }
         }
         throw new SQLException("Unable to compute the estimated extent");
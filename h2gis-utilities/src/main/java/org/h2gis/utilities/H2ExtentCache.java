@@ -0,0 +1,148 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+package org.h2gis.utilities;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keep the extent of the H2 geometry columns that have no spatial index.
+ *
+ * The extent is computed by a full scan of the table, it is kept until the
+ * LAST_MODIFICATION of the table in INFORMATION_SCHEMA.TABLES changes. H2
+ * updates it when rows are written and when a transaction that modified the
+ * table is committed or rolled back. The extents are kept per connection,
+ * an extent computed with uncommitted rows is never given to another
+ * session.
+ */
+final class H2ExtentCache {
+
+    private static final Map<Connection, Map<String, CachedExtent>> EXTENTS = new WeakHashMap<>();
+
+    private H2ExtentCache() {
+    }
+
+    /**
+     * Return the extent of a geometry column, computed with the ENVELOPE
+     * aggregate if the table has been modified since the last call.
+     *
+     * @param connection Active connection
+     * @param tableLocation Table name
+     * @param geometryColumnName Geometry column name
+     * @return The extent, null if the table does not contain any geometry
+     * @throws SQLException
+     */
+    static Envelope getExtent(Connection connection, TableLocation tableLocation, String geometryColumnName) throws SQLException {
+        TableVersion version = getTableVersion(connection, tableLocation);
+        String key = tableLocation.toString() + "." + TableLocation.quoteIdentifier(geometryColumnName);
+        if (version != null) {
+            synchronized (EXTENTS) {
+                Map<String, CachedExtent> extents = EXTENTS.get(connection);
+                CachedExtent cached = extents == null ? null : extents.get(key);
+                if (cached != null && cached.version.equals(version)) {
+                    return cached.envelope == null ? null : new Envelope(cached.envelope);
+                }
+            }
+        }
+        Envelope envelope = null;
+        String query = "SELECT ENVELOPE(" + TableLocation.quoteIdentifier(geometryColumnName) + ") FROM " + tableLocation;
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(query)) {
+            if (rs.next()) {
+                Geometry result = (Geometry) rs.getObject(1);
+                if (result != null) {
+                    envelope = result.getEnvelopeInternal();
+                }
+            }
+        }
+        // Keep the extent only if no row has been written during the scan
+        if (version != null && version.equals(getTableVersion(connection, tableLocation))) {
+            synchronized (EXTENTS) {
+                EXTENTS.computeIfAbsent(connection, k -> new HashMap<>())
+                        .put(key, new CachedExtent(version, envelope));
+            }
+        }
+        return envelope == null ? null : new Envelope(envelope);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableLocation Table name
+     * @return The identifier and last modification of the table, null if the
+     * table is not found
+     * @throws SQLException
+     */
+    private static TableVersion getTableVersion(Connection connection, TableLocation tableLocation) throws SQLException {
+        try (PreparedStatement pst = connection.prepareStatement("SELECT ID, LAST_MODIFICATION FROM INFORMATION_SCHEMA.TABLES"
+                + " WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?")) {
+            pst.setString(1, tableLocation.getSchema("PUBLIC"));
+            pst.setString(2, tableLocation.getTable());
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? new TableVersion(rs.getInt(1), rs.getLong(2)) : null;
+            }
+        }
+    }
+
+    /**
+     * A dropped and created again table has a new identifier
+     */
+    private static final class TableVersion {
+        private final int id;
+        private final long lastModification;
+
+        TableVersion(int id, long lastModification) {
+            this.id = id;
+            this.lastModification = lastModification;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TableVersion)) {
+                return false;
+            }
+            TableVersion other = (TableVersion) o;
+            return id == other.id && lastModification == other.lastModification;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id + Long.hashCode(lastModification);
+        }
+    }
+
+    private static final class CachedExtent {
+        private final TableVersion version;
+        private final Envelope envelope;
+
+        CachedExtent(TableVersion version, Envelope envelope) {
+            this.version = version;
+            this.envelope = envelope;
+        }
+    }
+}
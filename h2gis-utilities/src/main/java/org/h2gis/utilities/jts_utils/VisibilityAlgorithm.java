@@ -123,6 +123,13 @@ public class VisibilityAlgorithm {
     addSegment(originalSegments, p0, p1);
   }
 
+  /**
+   * Remove all occlusion segments, the instance can then be used for another view point
+   */
+  public void clearSegments() {
+    originalSegments.clear();
+  }
+
   private static double angle(Coordinate a, Coordinate b) {
     return Math.atan2(b.y - a.y, b.x - a.x);
   }
@@ -20,26 +20,49 @@
 
 package org.h2gis.utilities.trigger;
 
+import org.h2.api.ErrorCode;
 import org.h2.api.Trigger;
 import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This trigger is used to track modifications on tables by inserting notifications into a temporary table.
  * The table H2GIS_SCHEMA.UPDATE_TRIGGERS contain the list of created triggers.
  * The table H2GIS_SCHEMA.UPDATE_NOTIFICATIONS contain the list of updates related to triggers.
- * When this trigger is attached to a table, a line is inserted in H2GIS_SCHEMA.UPDATE_NOTIFICATIONS each time this table is updated.
+ * When this trigger is attached to a table, the modifications are counted in memory and a line is inserted in
+ * H2GIS_SCHEMA.UPDATE_NOTIFICATIONS by the first modification that follows the last call to
+ * {@link #consumeChanges(Connection, String)}. The other modifications do not execute any SQL, a bulk update of the
+ * table inserts a single line.
+ * The counter is not transactional: the modifications of a rolled back transaction are still counted, and if the
+ * notification line is rolled back or deleted by hand, the next line is only inserted after the next consumption.
+ * H2 calls a ROLLBACK trigger with the undo rows, that cannot be told apart from the opposite modifications.
+ * The triggers are registered by database, the constant H2GIS_SCHEMA.DATABASE_ID identifies the database.
  * @author Nicolas Fortin
  */
 public class UpdateTrigger implements Trigger {
     private int idTrigger;
+    private String triggerKey;
+    private final AtomicLong changes = new AtomicLong();
+    /** True if a notification line has been inserted since the last consumption */
+    private final AtomicBoolean notified = new AtomicBoolean();
     public static final String TRIGGER_SCHEMA = "H2GIS_SCHEMA";
     public static final String TRIGGER_TABLE = "UPDATE_TRIGGERS";
     public static final String NOTIFICATION_TABLE = "UPDATE_NOTIFICATIONS";
+    public static final String DATABASE_ID_CONSTANT = "DATABASE_ID";
+    /** Opened triggers by database identifier, schema and trigger name */
+    private static final Map<String, UpdateTrigger> TRIGGERS = new ConcurrentHashMap<>();
 
     @Override
     public void close() throws SQLException {
+        if (triggerKey != null) {
+            TRIGGERS.remove(triggerKey, this);
+        }
     }
 
     @Override
@@ -90,25 +113,126 @@ public class UpdateTrigger implements Trigger {
         } finally {
             st.close();
         }
+        triggerKey = getTriggerKey(getDatabaseId(conn, true), schemaName, triggerName);
+        TRIGGERS.put(triggerKey, this);
     }
 
     @Override
     public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        changes.incrementAndGet();
+        if (!notified.compareAndSet(false, true)) {
+            // The pending notification has not been consumed yet
+            return;
+        }
         final TableLocation notificationTable = new TableLocation(TRIGGER_SCHEMA, NOTIFICATION_TABLE);
-        try {
-            PreparedStatement st = conn.prepareStatement("INSERT INTO "+notificationTable+"(idtrigger) VALUES(?)");
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO " + notificationTable + "(idtrigger) VALUES(?)")) {
             st.setInt(1, idTrigger);
-            try {
-                st.execute();
-            } finally {
-                st.close();
-            }
+            st.execute();
         } catch (Exception ex) {
-            // Ignore exception to not interfere with database
+            // Ignore exception to not interfere with database, the next modification tries again
+            notified.set(false);
         }
     }
 
     @Override
     public void remove() throws SQLException {
+        close();
+    }
+
+    /**
+     * @return Number of rows (or statements for a statement trigger) modified since the last consumption
+     */
+    public long getChanges() {
+        return changes.get();
+    }
+
+    /**
+     * Number of pending modifications of a trigger, the modifications are not consumed.
+     *
+     * @param connection Active connection
+     * @param triggerName Trigger identifier [[catalog.]schema.]trigger
+     * @return Number of rows (or statements for a statement trigger) modified since the last consumption, 0 if the
+     * trigger is unknown
+     * @throws SQLException
+     */
+    public static long getChanges(Connection connection, String triggerName) throws SQLException {
+        UpdateTrigger trigger = findTrigger(connection, triggerName);
+        return trigger == null ? 0 : trigger.getChanges();
+    }
+
+    /**
+     * Consume the pending modifications of a trigger. The notification line of this trigger is removed from
+     * H2GIS_SCHEMA.UPDATE_NOTIFICATIONS and the next modification of the table inserts a new one.
+     *
+     * @param connection Active connection
+     * @param triggerName Trigger identifier [[catalog.]schema.]trigger
+     * @return Number of rows (or statements for a statement trigger) modified since the last consumption, 0 if the
+     * trigger is unknown
+     * @throws SQLException
+     */
+    public static long consumeChanges(Connection connection, String triggerName) throws SQLException {
+        UpdateTrigger trigger = findTrigger(connection, triggerName);
+        if (trigger == null) {
+            return 0;
+        }
+        if (trigger.changes.get() > 0) {
+            // Remove the notification before the reset, a concurrent modification is then counted by this call
+            final TableLocation notificationTable = new TableLocation(TRIGGER_SCHEMA, NOTIFICATION_TABLE);
+            try (PreparedStatement st = connection.prepareStatement("DELETE FROM " + notificationTable +
+                    " WHERE idtrigger = ?")) {
+                st.setInt(1, trigger.idTrigger);
+                st.execute();
+                // The next modification inserts a new notification
+                trigger.notified.set(false);
+            } catch (SQLException ex) {
+                // The notification table is a temporary table of the session that has created the trigger
+                if (ex.getErrorCode() != ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1) {
+                    throw ex;
+                }
+            }
+        }
+        return trigger.changes.getAndSet(0);
+    }
+
+    private static UpdateTrigger findTrigger(Connection connection, String triggerName) throws SQLException {
+        String databaseId = getDatabaseId(connection, false);
+        if (databaseId == null) {
+            // No trigger has been created in this database
+            return null;
+        }
+        TableLocation location = TableLocation.parse(triggerName, DBTypes.H2GIS);
+        return TRIGGERS.get(getTriggerKey(databaseId, location.getSchema("PUBLIC"), location.getTable()));
+    }
+
+    /**
+     * Two databases may have the same catalog name, the in-memory databases without name for example. The database
+     * is identified by a random UUID stored in the constant H2GIS_SCHEMA.DATABASE_ID.
+     *
+     * @param connection Active connection
+     * @param create True to create the identifier if it does not exist
+     * @return The database identifier, null if it does not exist
+     * @throws SQLException
+     */
+    private static String getDatabaseId(Connection connection, boolean create) throws SQLException {
+        final String constant = TRIGGER_SCHEMA + "." + DATABASE_ID_CONSTANT;
+        try (Statement st = connection.createStatement()) {
+            if (create) {
+                st.execute("create constant if not exists " + constant + " value RANDOM_UUID()");
+            } else {
+                try (ResultSet rs = st.executeQuery("select count(*) from INFORMATION_SCHEMA.CONSTANTS where" +
+                        " CONSTANT_SCHEMA = '" + TRIGGER_SCHEMA + "' and CONSTANT_NAME = '" + DATABASE_ID_CONSTANT + "'")) {
+                    if (!rs.next() || rs.getInt(1) == 0) {
+                        return null;
+                    }
+                }
+            }
+            try (ResultSet rs = st.executeQuery("select " + constant)) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static String getTriggerKey(String databaseId, String schema, String triggerName) {
+        return (databaseId + "." + schema + "." + triggerName).replace("\"", "");
     }
 }
@@ -29,6 +29,7 @@ import org.locationtech.jts.io.WKTReader;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 /**
  * Test isovist algorithm
@@ -48,6 +49,23 @@ public class VisibilityAlgorithmTest {
     assertEquals(33, poly.getNumPoints());
   }
 
+  /**
+   * Test reuse of the instance for another view point
+   */
+  @Test
+  public void testIsoVistClearSegments() throws ParseException {
+    WKTReader wktReader = new WKTReader();
+
+    VisibilityAlgorithm c = new VisibilityAlgorithm(50);
+    c.addGeometry(wktReader.read("LINESTRING (10 -10, 10 10)"));
+    assertNotEquals(33, c.getIsoVist(new Coordinate(0, 0), true).getNumPoints());
+
+    c.clearSegments();
+    Polygon poly = c.getIsoVist(new Coordinate(100, 100), true);
+
+    assertEquals(33, poly.getNumPoints());
+  }
+
   /**
    * Test with geometry crossing 0 coordinates
    *